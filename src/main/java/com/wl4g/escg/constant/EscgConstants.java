@@ -67,6 +67,7 @@ public abstract class EscgConstants extends EnvironmentUtil {
     public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT = CACHE_PREFIX_ESCG + ":requestlimit";
     public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_RATE = CACHE_PREFIX_ESCG_REQUESTLIMIT + ":config:rate";
     public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_QUOTA = CACHE_PREFIX_ESCG_REQUESTLIMIT + ":config:quota";
+    public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_ADAPTIVE = CACHE_PREFIX_ESCG_REQUESTLIMIT + ":config:adaptive";
     public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT_TOKEN_RATE = CACHE_PREFIX_ESCG_REQUESTLIMIT + ":token:rate";
     public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT_TOKEN_QUOTA = CACHE_PREFIX_ESCG_REQUESTLIMIT + ":token:quota";
     public static final String CACHE_PREFIX_ESCG_REQUESTLIMIT_EVENT_HITS_RATE = CACHE_PREFIX_ESCG_REQUESTLIMIT
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter;
+
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.util.Objects.nonNull;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+
+import com.wl4g.escg.ipfilter.config.IpFilterProperties;
+import com.wl4g.escg.ipfilter.feed.IpListFeedManager;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * The connection-level IP filter, which matches the peer address of the
+ * accepted connections with the default strategy of the IP filter (the same
+ * compiled CIDRs and feeds), and closes the denied connections immediately on
+ * the channel active, before the TLS handshake, HTTP decoding and routing.
+ *
+ * <p>
+ * Note: Only the peer address is known at the connection level, so it should
+ * only be enabled when the clients connect to the gateway directly, otherwise
+ * the load balancers in front of the gateway may be rejected. The forwarded
+ * client addresses are still filtered by the route filter
+ * {@link IpSubnetFilterFactory}.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-14 v1.0.0
+ * @since v1.0.0
+ */
+public class IpFilterConnectionCustomizer implements NettyServerCustomizer {
+
+    private final IpFilterChannelHandler handler;
+
+    public IpFilterConnectionCustomizer(@NotNull IpFilterProperties ipFilterConfig,
+            @NotNull IamGatewayMetricsFacade metricsFacade, @NotNull IpListFeedManager feedManager) {
+        notNullOf(ipFilterConfig, "ipFilterConfig");
+        this.handler = new IpFilterChannelHandler(
+                new IpSubnetMatcher(ipFilterConfig.getDefaultStrategy(), metricsFacade, feedManager),
+                notNullOf(metricsFacade, "metricsFacade"));
+    }
+
+    @Override
+    public HttpServer apply(HttpServer server) {
+        return server.doOnChannelInit((observer, channel, remoteAddress) -> channel.pipeline().addFirst(HANDLER_NAME, handler));
+    }
+
+    @Sharable
+    static class IpFilterChannelHandler extends ChannelInboundHandlerAdapter {
+        private final IpSubnetMatcher matcher;
+        private final IamGatewayMetricsFacade metricsFacade;
+
+        IpFilterChannelHandler(IpSubnetMatcher matcher, IamGatewayMetricsFacade metricsFacade) {
+            this.matcher = matcher;
+            this.metricsFacade = metricsFacade;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            SocketAddress remoteAddress = ctx.channel().remoteAddress();
+            // The non-IP connections (e.g: unix domain socket) are passed.
+            InetAddress address = remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getAddress()
+                    : null;
+            if (nonNull(address) && !matcher.isAllowed(address, null)) {
+                metricsFacade.counter(MetricsName.IPFILTER_CONNECTION_REJECTED_TOTAL, 1);
+                // Reset the connection without lingering in TIME_WAIT, so as to
+                // shed the flood of connections cheaply.
+                ctx.channel().config().setOption(ChannelOption.SO_LINGER, 0);
+                ctx.close();
+                return;
+            }
+            ctx.fireChannelActive();
+            // Only check once for each connection.
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    public static final String HANDLER_NAME = "escg.ipFilterConnectionHandler";
+
+}
@@ -17,8 +17,7 @@ package com.wl4g.escg.ipfilter;
 
 import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
 import static com.wl4g.infra.common.lang.Assert2.notNullOf;
-import static java.lang.String.format;
-import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.springframework.util.CollectionUtils.isEmpty;
 
 import java.net.Inet4Address;
 import java.net.Inet6Address;
@@ -32,24 +31,21 @@ import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFac
 import org.springframework.cloud.gateway.support.HttpStatusHolder;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
-import org.springframework.http.HttpHeaders;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ServerWebExchange;
 
 import com.wl4g.escg.ipfilter.config.IpFilterProperties;
 import com.wl4g.escg.ipfilter.config.IpFilterProperties.StrategyProperties;
+import com.wl4g.escg.ipfilter.feed.IpListFeedManager;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.server.ClientAddressResolver;
 import com.wl4g.escg.util.IamGatewayUtil;
 import com.wl4g.escg.util.IamGatewayUtil.SafeFilterOrdered;
 import com.wl4g.infra.common.bean.ConfigBeanUtils;
-import com.wl4g.infra.common.net.CIDR;
 
-import io.netty.handler.ipfilter.IpFilterRuleType;
-import io.netty.handler.ipfilter.IpSubnetFilterRule;
 import io.netty.util.NetUtil;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -61,17 +57,22 @@ import reactor.core.publisher.Mono;
  * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
  * @date 2022-05-05 v1.0.0
  * @since v1.0.0
- * @see {@link io.netty.handler.ipfilter.IpSubnetFilterRule}
+ * @see {@link com.wl4g.escg.util.net.CidrTrie}
  */
 public class IpSubnetFilterFactory extends AbstractGatewayFilterFactory<IpSubnetFilterFactory.Config> {
 
     private final IpFilterProperties ipFilterConfig;
     private final IamGatewayMetricsFacade metricsFacade;
+    private final IpListFeedManager feedManager;
+    private final ClientAddressResolver clientAddressResolver;
 
-    public IpSubnetFilterFactory(IpFilterProperties ipListConfig, IamGatewayMetricsFacade metricsFacade) {
+    public IpSubnetFilterFactory(IpFilterProperties ipListConfig, IamGatewayMetricsFacade metricsFacade,
+            IpListFeedManager feedManager, ClientAddressResolver clientAddressResolver) {
         super(IpSubnetFilterFactory.Config.class);
         this.ipFilterConfig = notNullOf(ipListConfig, "ipListConfig");
         this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        this.feedManager = notNullOf(feedManager, "feedManager");
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
     }
 
     @Override
@@ -138,9 +139,22 @@ public class IpSubnetFilterFactory extends AbstractGatewayFilterFactory<IpSubnet
         }
     }
 
-    @AllArgsConstructor
+    /**
+     * The route filter of the compiled {@link IpSubnetMatcher}.
+     */
     class IpSubnetGatewayFilter implements GatewayFilter, Ordered {
         private final Config config;
+        private final IpSubnetMatcher matcher;
+        private final ClientAddressResolver resolver;
+
+        @SuppressWarnings("deprecation")
+        IpSubnetGatewayFilter(Config config) {
+            this.config = notNullOf(config, "config");
+            this.matcher = new IpSubnetMatcher(config, metricsFacade, feedManager);
+            // Compatible with the deprecated per-route forward header names.
+            this.resolver = isEmpty(config.getForwardHeaderNames()) ? clientAddressResolver
+                    : clientAddressResolver.withHeaderNames(config.getForwardHeaderNames());
+        }
 
         @Override
         public int getOrder() {
@@ -149,84 +163,24 @@ public class IpSubnetFilterFactory extends AbstractGatewayFilterFactory<IpSubnet
 
         @Override
         public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            String routeId = IamGatewayUtil.getRouteId(exchange);
             // Add metrics of total.
-            metricsFacade.counter(exchange, MetricsName.IPFILTER_TOTAL, 1, MetricsTag.ROUTE_ID,
-                    IamGatewayUtil.getRouteId(exchange));
+            metricsFacade.counter(exchange, MetricsName.IPFILTER_TOTAL, 1, MetricsTag.ROUTE_ID, routeId);
 
-            if (isAllowed(config, exchange)) {
+            // Determine remote client address.
+            // Note:This method does not send network resolutions
+            if (matcher.isAllowed(resolver.resolve(exchange), routeId)) {
                 return chain.filter(exchange);
             }
 
             // Add metrics of hits total.
-            metricsFacade.counter(exchange, MetricsName.IPFILTER_HITS_TOTAL, 1, MetricsTag.ROUTE_ID,
-                    IamGatewayUtil.getRouteId(exchange));
+            metricsFacade.counter(exchange, MetricsName.IPFILTER_HITS_TOTAL, 1, MetricsTag.ROUTE_ID, routeId);
 
             // Response of reject.
             ServerWebExchangeUtils.setResponseStatus(exchange, HttpStatusHolder.parse(config.getStatusCode()));
             return exchange.getResponse().setComplete();
         }
 
-        private boolean isAllowed(Config config, ServerWebExchange exchange) {
-            // Determine remote client address.
-            // Note:This method does not send network resolutions
-            InetSocketAddress remoteAddress = createInetSocketAddress(getClientAddress(config, exchange), 0, false);
-
-            // The local address is allowed to pass by default.
-            InetAddress address = remoteAddress.getAddress();
-            if (config.isAnyLocalAddressAllowed()
-                    && (address.isAnyLocalAddress() || address.isLinkLocalAddress() || address.isLoopbackAddress())) {
-                return true;
-            }
-
-            // Check if it is allowed to pass.
-            //
-            // matching white-list
-            boolean isAccept = safeList(config.getIPSubnets()).stream()
-                    .filter(s -> s.isAllow())
-                    .flatMap(s -> safeList(s.getCidrs()).stream())
-                    .anyMatch(cidr -> buildRule(cidr, IpFilterRuleType.ACCEPT).matches(remoteAddress));
-
-            // matching blacklist
-            boolean isReject = safeList(config.getIPSubnets()).stream()
-                    .filter(s -> !s.isAllow())
-                    .flatMap(s -> safeList(s.getCidrs()).stream())
-                    .anyMatch(cidr -> buildRule(cidr, IpFilterRuleType.REJECT).matches(remoteAddress));
-
-            // If none of the conditions are met, allow access.
-            boolean allowed = isAccept && !isReject;
-            if (!isAccept && isReject) {
-                allowed = false;
-            } else if (isAccept && isReject) {
-                // Whether to use the blacklist first in case of conflict?
-                allowed = !config.isPreferRejectOnCidrConflict();
-            } else if (!isAccept && !isReject) {
-                allowed = config.isAcceptNotMatchCidr();
-            }
-            return allowed;
-        }
-
-        private String getClientAddress(Config config, ServerWebExchange exchange) {
-            HttpHeaders headers = exchange.getRequest().getHeaders();
-            String host = null;
-            for (String header : config.getForwardHeaderNames()) {
-                host = headers.getFirst(header);
-                if (!isBlank(host) && !"Unknown".equalsIgnoreCase(host)) {
-                    return host;
-                }
-            }
-            // Fall-back
-            return exchange.getRequest().getRemoteAddress().getAddress().getHostAddress();
-        }
-
-        private IpSubnetFilterRule buildRule(String cidr, IpFilterRuleType ruleType) {
-            try {
-                CIDR _cidr = CIDR.newCIDR(cidr);
-                return new IpSubnetFilterRule(_cidr.getBaseAddress(), _cidr.getMask(), ruleType);
-            } catch (UnknownHostException e) {
-                throw new IllegalArgumentException(format("Failed to parse cidr for '%s'", cidr));
-            }
-        }
-
     }
 
     public static final String BEAN_NAME = "IpFilter";
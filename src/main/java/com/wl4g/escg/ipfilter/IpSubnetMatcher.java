@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.StrategyProperties;
+import com.wl4g.escg.ipfilter.feed.IpListFeed;
+import com.wl4g.escg.ipfilter.feed.IpListFeedManager;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.util.net.CidrTrie;
+
+/**
+ * The compiled matcher of the IP filter strategy, which is shared by the
+ * route filter ({@link IpSubnetFilterFactory}) and the connection-level filter
+ * ({@link IpFilterConnectionCustomizer}).
+ *
+ * <p>
+ * The CIDRs of allow and deny lists are compiled into the immutable tries
+ * once, the matching is a bit walk on the raw address, without parsing and
+ * allocation per request. The external feeds are referenced, whose matchers
+ * are swapped in the background without rebuilding the filter.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-14 v1.0.0
+ * @since v1.0.0
+ */
+public class IpSubnetMatcher {
+
+    private final StrategyProperties config;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final CidrTrie<Boolean> acceptTrie;
+    private final CidrTrie<Boolean> rejectTrie;
+    private final IpListFeed[] acceptFeeds;
+    private final IpListFeed[] rejectFeeds;
+
+    public IpSubnetMatcher(@NotNull StrategyProperties config, @NotNull IamGatewayMetricsFacade metricsFacade,
+            @NotNull IpListFeedManager feedManager) {
+        this.config = notNullOf(config, "config");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        notNullOf(feedManager, "feedManager");
+        this.acceptTrie = compileTrie(config, true);
+        this.rejectTrie = compileTrie(config, false);
+        this.acceptFeeds = getFeeds(config, feedManager, true);
+        this.rejectFeeds = getFeeds(config, feedManager, false);
+    }
+
+    /**
+     * Determine whether the client address is allowed.
+     *
+     * @param address
+     *            The client address, or null if unknown.
+     * @param routeId
+     *            The route ID of the metrics tag, or null if out of route
+     *            (e.g: connection level).
+     * @return
+     */
+    public boolean isAllowed(@Nullable InetAddress address, @Nullable String routeId) {
+        if (isNull(address)) {
+            return isAllowed(false, false);
+        }
+        if (address instanceof Inet4Address) {
+            // The hashCode of Inet4Address is the IPv4 address itself.
+            return isAllowed(address.hashCode(), routeId);
+        }
+        return isAllowed(address.getAddress(), routeId);
+    }
+
+    private boolean isAllowed(int ipv4, String routeId) {
+        // The local address is allowed to pass by default.
+        if (config.isAnyLocalAddressAllowed() && nonNull(LOCAL_ADDRESSES.getIPv4(ipv4))) {
+            return true;
+        }
+        boolean isAccept = nonNull(acceptTrie.getIPv4(ipv4));
+        for (int i = 0; !isAccept && i < acceptFeeds.length; i++) {
+            isAccept = acceptFeeds[i].contains(ipv4) && onFeedMatched(acceptFeeds[i], routeId);
+        }
+        boolean isReject = nonNull(rejectTrie.getIPv4(ipv4));
+        for (int i = 0; !isReject && i < rejectFeeds.length; i++) {
+            isReject = rejectFeeds[i].contains(ipv4) && onFeedMatched(rejectFeeds[i], routeId);
+        }
+        return isAllowed(isAccept, isReject);
+    }
+
+    private boolean isAllowed(byte[] address, String routeId) {
+        // The local address is allowed to pass by default.
+        if (config.isAnyLocalAddressAllowed() && nonNull(LOCAL_ADDRESSES.get(address))) {
+            return true;
+        }
+        boolean isAccept = nonNull(acceptTrie.get(address));
+        for (int i = 0; !isAccept && i < acceptFeeds.length; i++) {
+            isAccept = acceptFeeds[i].contains(address) && onFeedMatched(acceptFeeds[i], routeId);
+        }
+        boolean isReject = nonNull(rejectTrie.get(address));
+        for (int i = 0; !isReject && i < rejectFeeds.length; i++) {
+            isReject = rejectFeeds[i].contains(address) && onFeedMatched(rejectFeeds[i], routeId);
+        }
+        return isAllowed(isAccept, isReject);
+    }
+
+    private boolean onFeedMatched(IpListFeed feed, String routeId) {
+        if (nonNull(routeId)) {
+            metricsFacade.counter(MetricsName.IPFILTER_FEED_HITS_TOTAL, routeId, 1, MetricsTag.IPFILTER_FEED,
+                    feed.getConfig().getName());
+        } else {
+            metricsFacade.counter(MetricsName.IPFILTER_FEED_HITS_TOTAL, 1, MetricsTag.IPFILTER_FEED, feed.getConfig().getName());
+        }
+        return true;
+    }
+
+    private boolean isAllowed(boolean isAccept, boolean isReject) {
+        // If none of the conditions are met, allow access.
+        boolean allowed = isAccept && !isReject;
+        if (!isAccept && isReject) {
+            allowed = false;
+        } else if (isAccept && isReject) {
+            // Whether to use the blacklist first in case of conflict?
+            allowed = !config.isPreferRejectOnCidrConflict();
+        } else if (!isAccept && !isReject) {
+            allowed = config.isAcceptNotMatchCidr();
+        }
+        return allowed;
+    }
+
+    private static CidrTrie<Boolean> compileTrie(StrategyProperties config, boolean allow) {
+        CidrTrie<Boolean> trie = new CidrTrie<>();
+        safeList(config.getIPSubnets()).stream()
+                .filter(s -> s.isAllow() == allow)
+                .flatMap(s -> safeList(s.getCidrs()).stream())
+                .forEach(cidr -> {
+                    try {
+                        trie.put(cidr, true);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(format("Failed to parse cidr for '%s'", cidr), e);
+                    }
+                });
+        return trie;
+    }
+
+    private static IpListFeed[] getFeeds(StrategyProperties config, IpListFeedManager feedManager, boolean allow) {
+        return safeList(config.getFeedNames()).stream()
+                .map(name -> feedManager.getFeed(name))
+                .filter(feed -> feed.getConfig().isAllow() == allow)
+                .toArray(IpListFeed[]::new);
+    }
+
+    /**
+     * The any local, link local and loopback addresses, see:
+     * {@link InetAddress#isAnyLocalAddress()},
+     * {@link InetAddress#isLinkLocalAddress()} and
+     * {@link InetAddress#isLoopbackAddress()}
+     */
+    private static final CidrTrie<Boolean> LOCAL_ADDRESSES = new CidrTrie<Boolean>().put("0.0.0.0/32", true)
+            .put("169.254.0.0/16", true)
+            .put("127.0.0.0/8", true)
+            .put("::/128", true)
+            .put("fe80::/10", true)
+            .put("::1/128", true);
+
+}
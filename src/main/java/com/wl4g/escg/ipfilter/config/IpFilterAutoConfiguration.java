@@ -15,12 +15,18 @@
  */
 package com.wl4g.escg.ipfilter.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 import com.wl4g.escg.constant.EscgConstants;
+import com.wl4g.escg.ipfilter.IpFilterConnectionCustomizer;
 import com.wl4g.escg.ipfilter.IpSubnetFilterFactory;
+import com.wl4g.escg.ipfilter.feed.IpListFeedManager;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.server.ClientAddressResolver;
 
 /**
  * {@link IpFilterAutoConfiguration}
@@ -38,8 +44,29 @@ public class IpFilterAutoConfiguration {
     }
 
     @Bean
-    public IpSubnetFilterFactory ipSubnetFilterFactory(IpFilterProperties ipListConfig, IamGatewayMetricsFacade metricsFacade) {
-        return new IpSubnetFilterFactory(ipListConfig, metricsFacade);
+    public IpListFeedManager ipListFeedManager(
+            IpFilterProperties ipListConfig,
+            IamGatewayMetricsFacade metricsFacade,
+            ObjectProvider<StringRedisTemplate> redisTemplate) {
+        return new IpListFeedManager(ipListConfig, metricsFacade, redisTemplate.getIfAvailable());
+    }
+
+    @Bean
+    public IpSubnetFilterFactory ipSubnetFilterFactory(
+            IpFilterProperties ipListConfig,
+            IamGatewayMetricsFacade metricsFacade,
+            IpListFeedManager ipListFeedManager,
+            ClientAddressResolver clientAddressResolver) {
+        return new IpSubnetFilterFactory(ipListConfig, metricsFacade, ipListFeedManager, clientAddressResolver);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = EscgConstants.CONF_PREFIX_ESCG_IPFILTER + ".connection.enabled", havingValue = "true")
+    public IpFilterConnectionCustomizer ipFilterConnectionCustomizer(
+            IpFilterProperties ipListConfig,
+            IamGatewayMetricsFacade metricsFacade,
+            IpListFeedManager ipListFeedManager) {
+        return new IpFilterConnectionCustomizer(ipListConfig, metricsFacade, ipListFeedManager);
     }
 
 }
@@ -15,17 +15,16 @@
  */
 package com.wl4g.escg.ipfilter.config;
 
-import static java.util.Arrays.asList;
 import static java.util.Objects.nonNull;
 
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 
 import com.wl4g.infra.common.net.CIDR;
-import com.wl4g.infra.common.web.WebUtils;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -52,6 +51,24 @@ public class IpFilterProperties {
      */
     private StrategyProperties defaultStrategy = new StrategyProperties();
 
+    /**
+     * The external IP list feeds (e.g. threat intelligence blocklists), which
+     * are reloaded in the background and referenced by the strategies via
+     * {@link StrategyProperties#getFeedNames()}.
+     */
+    private List<IpListFeedProperties> feeds = new ArrayList<>(2);
+
+    /**
+     * The max entries of the incremental additions of a feed, beyond which
+     * (or any entry is removed) the whole matcher of the feed is rebuilt.
+     */
+    private int feedDeltaMaxEntries = 10_000;
+
+    /**
+     * The connection-level IP filter configuration.
+     */
+    private ConnectionFilterProperties connection = new ConnectionFilterProperties();
+
     @Getter
     @Setter
     @Validated
@@ -82,17 +99,90 @@ public class IpFilterProperties {
         private String statusCode = HttpStatus.FORBIDDEN.name();
 
         /**
-         * The according to the list of header names of the request header
-         * current limiter, it can usually be used to obtain the actual IP after
-         * being forwarded by the proxy to limit the current, or it can be
-         * flexibly used for other purposes.
+         * The names of the forwarded headers carrying the client address of
+         * the route, which are still only honored when the peer is a trusted
+         * proxy. Default by empty, i.e. the global header names are used.
+         * 
+         * @deprecated Use the global
+         *             'spring.escg.server.client-address.header-names' instead.
          */
-        private List<String> forwardHeaderNames = asList(WebUtils.HEADER_REAL_IP);
+        @Deprecated
+        private List<String> forwardHeaderNames;
 
         /**
          * The IP sub-net restriction strategy configuration.
          */
         private List<IPSubnet> iPSubnets;
+
+        /**
+         * The names of the external IP list feeds to match, see:
+         * {@link IpFilterProperties#getFeeds()}
+         */
+        private List<String> feedNames;
+    }
+
+    @Getter
+    @Setter
+    @Validated
+    @ToString
+    public static class ConnectionFilterProperties {
+
+        /**
+         * Whether to reject the connections of the denied peer addresses (by
+         * the default strategy) immediately on accepted, which should only be
+         * enabled when the clients connect to the gateway directly (not via
+         * the load balancers).
+         */
+        private boolean enabled = false;
+    }
+
+    @Getter
+    @Setter
+    @Validated
+    @ToString
+    public static class IpListFeedProperties {
+
+        /**
+         * The unique name of the feed.
+         */
+        private String name;
+
+        /**
+         * The type of the feed source.
+         */
+        private IpListFeedType type = IpListFeedType.FILE;
+
+        /**
+         * The location of the feed, i.e. the file path, the redis set key or
+         * the HTTP URL. The file and HTTP contents are one CIDR per line, the
+         * contents after '#' or ';' are comments.
+         */
+        private String location;
+
+        /**
+         * The feed is the allow list or the deny list.
+         */
+        private boolean allow = false;
+
+        /**
+         * The refresh interval of the redis and HTTP feeds, the file feeds
+         * are reloaded on modified.
+         */
+        private long refreshIntervalMs = 60_000L;
+
+        /**
+         * The connect timeout of the HTTP feeds.
+         */
+        private int connectTimeoutMs = 5_000;
+
+        /**
+         * The read timeout of the HTTP feeds.
+         */
+        private int readTimeoutMs = 30_000;
+    }
+
+    public static enum IpListFeedType {
+        FILE, REDIS, HTTP;
     }
 
     @Getter
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter.feed;
+
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.util.Collections.emptySet;
+import static java.util.Objects.nonNull;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IpListFeedProperties;
+import com.wl4g.escg.util.net.CidrTrie;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The compiled matcher of an external IP list feed, which is updated off the
+ * request path and swapped atomically via a volatile reference, so the
+ * requests always match against a consistent immutable snapshot.
+ *
+ * <p>
+ * For the large lists, the added entries are compiled into a small delta trie
+ * besides the base trie, and the base trie is rebuilt only when any entry is
+ * removed or the delta grows beyond the max entries.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-12 v1.0.0
+ * @since v1.0.0
+ */
+public class IpListFeed {
+
+    private final IpListFeedProperties config;
+    private final int deltaMaxEntries;
+    private volatile Snapshot snapshot = new Snapshot(emptySet(), new CidrTrie<>(), emptySet(), null);
+
+    public IpListFeed(@NotNull IpListFeedProperties config, int deltaMaxEntries) {
+        this.config = notNullOf(config, "config");
+        this.deltaMaxEntries = deltaMaxEntries;
+    }
+
+    public IpListFeedProperties getConfig() {
+        return config;
+    }
+
+    public int size() {
+        return snapshot.entries.size();
+    }
+
+    public boolean contains(int ipv4) {
+        Snapshot s = snapshot;
+        return nonNull(s.base.getIPv4(ipv4)) || (nonNull(s.delta) && nonNull(s.delta.getIPv4(ipv4)));
+    }
+
+    public boolean contains(byte[] address) {
+        Snapshot s = snapshot;
+        return nonNull(s.base.get(address)) || (nonNull(s.delta) && nonNull(s.delta.get(address)));
+    }
+
+    /**
+     * Update the matcher with the latest entries of the feed, it should be
+     * called by a single updater at a time.
+     *
+     * @param entries
+     *            The latest CIDR entries, which is held by the matcher and
+     *            should not be modified after.
+     * @return The result of the update, or null if nothing changed.
+     */
+    synchronized @Nullable UpdateResult update(@NotNull Set<String> entries) {
+        Snapshot current = snapshot;
+        Set<String> added = new HashSet<>(entries);
+        added.removeAll(current.entries);
+        boolean removed = current.entries.size() + added.size() != entries.size();
+        if (added.isEmpty() && !removed) {
+            return null;
+        }
+
+        if (removed || current.deltaEntries.size() + added.size() > deltaMaxEntries) {
+            // Rebuild the whole matcher.
+            CidrTrie<Boolean> base = new CidrTrie<>();
+            int invalid = putAll(base, entries);
+            this.snapshot = new Snapshot(entries, base, emptySet(), null);
+            return new UpdateResult(true, added.size(), removed, invalid);
+        }
+        // Rebuild the small delta only.
+        Set<String> deltaEntries = new HashSet<>(current.deltaEntries);
+        deltaEntries.addAll(added);
+        CidrTrie<Boolean> delta = new CidrTrie<>();
+        int invalid = putAll(delta, deltaEntries);
+        this.snapshot = new Snapshot(entries, current.base, deltaEntries, delta);
+        return new UpdateResult(false, added.size(), removed, invalid);
+    }
+
+    private int putAll(CidrTrie<Boolean> trie, Set<String> entries) {
+        int invalid = 0;
+        for (String entry : entries) {
+            try {
+                trie.put(entry, true);
+            } catch (IllegalArgumentException e) {
+                ++invalid;
+            }
+        }
+        return invalid;
+    }
+
+    @AllArgsConstructor
+    static class Snapshot {
+        private final Set<String> entries;
+        private final CidrTrie<Boolean> base;
+        private final Set<String> deltaEntries;
+        private final @Nullable CidrTrie<Boolean> delta;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    static class UpdateResult {
+        private final boolean rebuilt;
+        private final int added;
+        private final boolean removed;
+        private final int invalid;
+    }
+
+}
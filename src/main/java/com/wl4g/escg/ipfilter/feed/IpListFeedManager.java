@@ -0,0 +1,316 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter.feed;
+
+import static com.wl4g.infra.common.lang.Assert2.hasTextOf;
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.wl4g.escg.ipfilter.config.IpFilterProperties;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IpListFeedProperties;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IpListFeedType;
+import com.wl4g.escg.ipfilter.feed.IpListFeed.UpdateResult;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.infra.common.task.RunnerProperties;
+import com.wl4g.infra.common.task.RunnerProperties.StartupMode;
+import com.wl4g.infra.common.task.SafeScheduledTaskPoolExecutor;
+import com.wl4g.infra.context.task.ApplicationTaskRunner;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The manager of the external IP list feeds, the file feeds are reloaded when
+ * modified (watched by {@link WatchService}), and the redis set and HTTP feeds
+ * are reloaded periodically (the HTTP feeds with the conditional requests).
+ * All the loads and builds are performed by the background workers, off the
+ * request path.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-12 v1.0.0
+ * @since v1.0.0
+ */
+@Slf4j
+public class IpListFeedManager extends ApplicationTaskRunner<RunnerProperties> implements DisposableBean {
+
+    private static final long FILE_WATCH_POLL_MS = 1_000L;
+    private static final int REDIS_SCAN_COUNT = 1_000;
+
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final @Nullable StringRedisTemplate redisTemplate;
+    private final Map<String, IpListFeed> feeds = new LinkedHashMap<>(4);
+    private final Map<String, String[]> httpValidators = new ConcurrentHashMap<>(4);
+    private WatchService watchService;
+
+    public IpListFeedManager(@NotNull IpFilterProperties ipFilterConfig, @NotNull IamGatewayMetricsFacade metricsFacade,
+            @Nullable StringRedisTemplate redisTemplate) {
+        super(new RunnerProperties(StartupMode.ASYNC, 2));
+        notNullOf(ipFilterConfig, "ipFilterConfig");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        this.redisTemplate = redisTemplate;
+        for (IpListFeedProperties feedConfig : ipFilterConfig.getFeeds()) {
+            hasTextOf(feedConfig.getName(), "feed.name");
+            hasTextOf(feedConfig.getLocation(), "feed.location");
+            isTrue(feedConfig.getRefreshIntervalMs() > 0, "feed.refreshIntervalMs must be greater than 0");
+            isTrue(feedConfig.getType() != IpListFeedType.REDIS || nonNull(redisTemplate),
+                    "The redis feed '%s' requires the redis template", feedConfig.getName());
+            IpListFeed feed = new IpListFeed(feedConfig, ipFilterConfig.getFeedDeltaMaxEntries());
+            isTrue(isNull(feeds.putIfAbsent(feedConfig.getName(), feed)), "Duplicate feed name '%s'", feedConfig.getName());
+            metricsFacade.gauge(MetricsName.IPFILTER_FEED_SIZE, () -> feed.size(), MetricsTag.IPFILTER_FEED,
+                    feedConfig.getName());
+        }
+    }
+
+    /**
+     * Gets the feed by name.
+     *
+     * @param name
+     * @return
+     * @throws IllegalArgumentException
+     *             if the feed is not configured.
+     */
+    public IpListFeed getFeed(String name) {
+        IpListFeed feed = feeds.get(name);
+        if (isNull(feed)) {
+            throw new IllegalArgumentException(format("No such ip list feed '%s', the configured feeds: %s", name,
+                    feeds.keySet()));
+        }
+        return feed;
+    }
+
+    @Override
+    protected void onApplicationStarted(ApplicationArguments args, SafeScheduledTaskPoolExecutor worker) throws Exception {
+        for (IpListFeed feed : feeds.values()) {
+            IpListFeedProperties feedConfig = feed.getConfig();
+            if (feedConfig.getType() == IpListFeedType.FILE) {
+                Path path = Paths.get(feedConfig.getLocation()).toAbsolutePath();
+                if (isNull(watchService)) {
+                    watchService = FileSystems.getDefault().newWatchService();
+                    worker.scheduleWithFixedDelay(() -> pollFileChanges(), FILE_WATCH_POLL_MS, FILE_WATCH_POLL_MS,
+                            MILLISECONDS);
+                }
+                path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                worker.execute(() -> reload(feed));
+            } else {
+                worker.scheduleWithFixedDelay(() -> reload(feed), 0L, feedConfig.getRefreshIntervalMs(), MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        try {
+            if (nonNull(watchService)) {
+                watchService.close();
+            }
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * Reload the feed from the source, and update the matcher if changed.
+     */
+    void reload(IpListFeed feed) {
+        String name = feed.getConfig().getName();
+        try {
+            Set<String> entries = load(feed.getConfig());
+            if (isNull(entries)) { // Not modified
+                return;
+            }
+            long beginTime = nanoTime();
+            UpdateResult result = feed.update(entries);
+            if (nonNull(result)) {
+                metricsFacade.getTimer(MetricsName.IPFILTER_FEED_BUILD_TIME, MetricsTag.IPFILTER_FEED, name)
+                        .record(Duration.ofNanos(nanoTime() - beginTime));
+                log.info("Updated ip list feed '{}' of {} entries. - {}", name, feed.size(), result);
+                if (result.getInvalid() > 0) {
+                    log.warn("Skipped {} invalid entries of ip list feed '{}'", result.getInvalid(), name);
+                }
+            }
+        } catch (Exception e) {
+            log.error(format("Unable to reload ip list feed '%s' from %s", name, feed.getConfig().getLocation()), e);
+            metricsFacade.counter(MetricsName.IPFILTER_FEED_LOAD_FAIL_TOTAL, 1, MetricsTag.IPFILTER_FEED, name);
+        }
+    }
+
+    /**
+     * @return The entries, or null if not modified.
+     */
+    @Nullable
+    Set<String> load(IpListFeedProperties feedConfig) throws IOException {
+        switch (feedConfig.getType()) {
+        case FILE:
+            try (Reader reader = Files.newBufferedReader(Paths.get(feedConfig.getLocation()), UTF_8)) {
+                return parseEntries(reader);
+            }
+        case REDIS:
+            Set<String> entries = new HashSet<>();
+            try (Cursor<String> cursor = redisTemplate.opsForSet()
+                    .scan(feedConfig.getLocation(), ScanOptions.scanOptions().count(REDIS_SCAN_COUNT).build())) {
+                while (cursor.hasNext()) {
+                    String entry = parseEntry(cursor.next());
+                    if (nonNull(entry)) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            return entries;
+        case HTTP:
+            return loadHttp(feedConfig);
+        default:
+            throw new Error("Shouldn't be here");
+        }
+    }
+
+    private Set<String> loadHttp(IpListFeedProperties feedConfig) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(feedConfig.getLocation()).openConnection();
+        try {
+            connection.setConnectTimeout(feedConfig.getConnectTimeoutMs());
+            connection.setReadTimeout(feedConfig.getReadTimeoutMs());
+            // Conditional request, the unchanged list isn't downloaded again.
+            String[] validators = httpValidators.get(feedConfig.getName());
+            if (nonNull(validators)) {
+                if (nonNull(validators[0])) {
+                    connection.setRequestProperty("If-None-Match", validators[0]);
+                }
+                if (nonNull(validators[1])) {
+                    connection.setRequestProperty("If-Modified-Since", validators[1]);
+                }
+            }
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(format("Unexpected response status %s of %s", status, feedConfig.getLocation()));
+            }
+            Set<String> entries;
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), UTF_8)) {
+                entries = parseEntries(reader);
+            }
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            if (nonNull(etag) || nonNull(lastModified)) {
+                httpValidators.put(feedConfig.getName(), new String[] { etag, lastModified });
+            }
+            return entries;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void pollFileChanges() {
+        WatchKey key;
+        while (nonNull(key = watchService.poll())) {
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    reloadFiles(dir, null);
+                } else {
+                    reloadFiles(dir, (Path) event.context());
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private void reloadFiles(Path dir, @Nullable Path fileName) {
+        for (IpListFeed feed : feeds.values()) {
+            if (feed.getConfig().getType() == IpListFeedType.FILE) {
+                Path path = Paths.get(feed.getConfig().getLocation()).toAbsolutePath();
+                if (path.getParent().equals(dir) && (isNull(fileName) || path.getFileName().equals(fileName))) {
+                    reload(feed);
+                }
+            }
+        }
+    }
+
+    static Set<String> parseEntries(Reader reader) throws IOException {
+        Set<String> entries = new HashSet<>();
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        while (nonNull(line = lines.readLine())) {
+            String entry = parseEntry(line);
+            if (nonNull(entry)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Parse the entry of the line, e.g: '1.2.3.0/24 ; SBL123' or '# comments'
+     *
+     * @return The entry, or null if it's blank or comments.
+     */
+    static @Nullable String parseEntry(String line) {
+        int end = line.length();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '#' || c == ';') {
+                end = i;
+                break;
+            }
+        }
+        String entry = line.substring(0, end).trim();
+        int space = entry.indexOf(' ');
+        if (space > 0) {
+            entry = entry.substring(0, space);
+        }
+        return isBlank(entry) ? null : entry;
+    }
+
+}
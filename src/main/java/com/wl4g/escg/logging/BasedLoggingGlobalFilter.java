@@ -18,9 +18,10 @@ package com.wl4g.escg.logging;
 import static com.wl4g.infra.common.lang.Assert2.notNullOf;
 import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
 import static java.lang.String.format;
-import static java.util.Collections.singletonMap;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.SystemUtils.LINE_SEPARATOR;
 import static org.springframework.http.MediaType.APPLICATION_ATOM_XML;
 import static org.springframework.http.MediaType.APPLICATION_CBOR;
@@ -33,11 +34,9 @@ import static org.springframework.http.MediaType.TEXT_HTML;
 import static org.springframework.http.MediaType.TEXT_MARKDOWN;
 import static org.springframework.http.MediaType.TEXT_PLAIN;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
 
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
@@ -50,15 +49,16 @@ import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.server.ServerWebExchange;
 
-import com.google.common.base.Predicates;
+import com.wl4g.escg.logging.access.AccessLogRecord;
+import com.wl4g.escg.logging.access.AccessLogWriter;
 import com.wl4g.escg.logging.config.LoggingProperties;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.util.IamGatewayUtil;
 import com.wl4g.escg.util.IamGatewayUtil.SafeFilterOrdered;
 import com.wl4g.infra.common.lang.TypeConverts;
-import com.wl4g.infra.common.web.WebUtils.WebRequestExtractor;
 import com.wl4g.infra.core.constant.CoreInfraConstants;
 import com.wl4g.infra.context.logging.LoggingMessageUtil;
 import com.wl4g.infra.context.logging.reactive.BaseLoggingWebFilter;
-import com.wl4g.infra.context.utils.web.ReactiveRequestExtractor;
 import com.wl4g.infra.context.web.matcher.SpelRequestMatcher;
 
 import lombok.extern.slf4j.Slf4j;
@@ -76,9 +76,15 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
 
     protected final LoggingProperties loggingConfig;
     protected final SpelRequestMatcher requestMatcher;
+    protected final PrecompiledLoggingMatcher loggingMatcher;
+    protected final ClientAddressResolver clientAddressResolver;
+    protected final AccessLogWriter accessLogWriter;
 
-    public BasedLoggingGlobalFilter(LoggingProperties loggingConfig) {
+    public BasedLoggingGlobalFilter(LoggingProperties loggingConfig, ClientAddressResolver clientAddressResolver,
+            AccessLogWriter accessLogWriter) {
         this.loggingConfig = notNullOf(loggingConfig, "loggingConfig");
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
+        this.accessLogWriter = notNullOf(accessLogWriter, "accessLogWriter");
         // Build gray request matcher.
         this.requestMatcher = new SpelRequestMatcher(loggingConfig.getPreferMatchRuleDefinitions());
         // Check expression.
@@ -86,8 +92,7 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
             // Pre-compile and warm up to evaluate checks at service startup,
             // and avoid performance issues at runtime for unexpected errors,
             // such as throwing stack information when evaluating exceptions.
-            this.requestMatcher.matches(new WebRequestExtractor() {
-            }, loggingConfig.getPreferOpenMatchExpression());
+            this.loggingMatcher = new PrecompiledLoggingMatcher(requestMatcher, loggingConfig.getPreferOpenMatchExpression());
         } catch (EvaluationException e) {
             throw new EvaluationException(format("Invalid evaluation expression for reason: %s", e.getMessage()), e);
         }
@@ -130,6 +135,12 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
         // services to print the log for the current request.
         request.mutate().header(loggingConfig.getDyeingLogStateRequestHeader(), traceId).build();
 
+        // The record is shared by the request and response logging filters.
+        if (loggingConfig.getAccessLog().isEnabled()) {
+            exchange.getAttributes().computeIfAbsent(KEY_LOG_RECORD,
+                    key -> newAccessLogRecord(exchange, beginTime, verboseLevel, traceId, requestMethod));
+        }
+
         return doFilterInternal(exchange, chain, headers, traceId, requestMethod);
     }
 
@@ -140,8 +151,42 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
             String traceId,
             String requestMethod);
 
+    private AccessLogRecord newAccessLogRecord(
+            ServerWebExchange exchange,
+            long beginTime,
+            int verboseLevel,
+            String traceId,
+            String requestMethod) {
+        URI uri = exchange.getRequest().getURI();
+        AccessLogRecord record = new AccessLogRecord();
+        record.setTimestamp(beginTime);
+        record.setVerboseLevel(verboseLevel);
+        record.setRouteId(String.valueOf(IamGatewayUtil.getRouteId(exchange)));
+        record.setTraceId(traceId);
+        record.setMethod(requestMethod);
+        record.setPath(uri.getPath());
+        if (verboseLevel >= 3) {
+            record.setQuery(uri.getQuery());
+            record.setClientHost(clientAddressResolver.resolveHost(exchange));
+        }
+        return record;
+    }
+
+    /**
+     * Gets the access log record of the current exchange, only present if the
+     * access log is enabled.
+     * 
+     * @param exchange
+     * @return
+     */
+    protected AccessLogRecord getAccessLogRecord(ServerWebExchange exchange) {
+        return exchange.getRequiredAttribute(KEY_LOG_RECORD);
+    }
+
     /**
-     * Check if enable print logs needs to be filtered
+     * Check if enable print logs needs to be filtered, the decision is made
+     * once per exchange and shared by the request and response logging
+     * filters.
      * 
      * @param exchange
      * @return
@@ -150,24 +195,31 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
         if (!loggingConfig.isEnabled()) {
             return false;
         }
+        Boolean decision = exchange.getAttribute(KEY_LOGGING_DECISION);
+        if (isNull(decision)) {
+            decision = doLoggingRequest(exchange);
+            exchange.getAttributes().put(KEY_LOGGING_DECISION, decision);
+        }
+        return decision;
+    }
+
+    private boolean doLoggingRequest(ServerWebExchange exchange) {
         // Gets current request route.
         Route route = exchange.getRequiredAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
-
-        // Add routeId temporary predicates.
-        Map<String, Supplier<Predicate<String>>> routeIdPredicateSupplier = singletonMap(VAR_ROUTE_ID,
-                () -> (Predicate<String>) Predicates.equalTo(route.getId()));
-
         try {
-            // Check if printing the log of the current request is enabled based
-            // on the current request parameters.
-            return (requestMatcher.matches(new ReactiveRequestExtractor(exchange.getRequest()),
-                    loggingConfig.getPreferOpenMatchExpression(), routeIdPredicateSupplier))
-                    || (determineRequestVerboseLevel(exchange) > 10
-                            && requestMatcher.matches(new ReactiveRequestExtractor(exchange.getRequest()),
-                                    exchange.getRequest().getHeaders().getFirst(loggingConfig.getDyeingLogStateRequestHeader()),
-                                    routeIdPredicateSupplier));
+            // Check if printing the log of the current request is enabled,
+            // the constant or route-only expression is not evaluated per
+            // request.
+            if (loggingMatcher.matches(exchange, route.getId())) {
+                return true;
+            }
+            if (determineRequestVerboseLevel(exchange) <= 10) {
+                return false;
+            }
+            String dyeingExpression = exchange.getRequest().getHeaders().getFirst(loggingConfig.getDyeingLogStateRequestHeader());
+            return !isBlank(dyeingExpression) && loggingMatcher.matches(exchange, route.getId(), dyeingExpression);
         } catch (Exception e) {
-            log.warn("Evaluating failed, logging disabled by default, reason: %s", e.getMessage());
+            log.warn("Evaluating failed, logging disabled by default, reason: {}", e.getMessage());
             return false;
         }
     }
@@ -179,6 +231,10 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
      * @return
      */
     protected int determineRequestVerboseLevel(ServerWebExchange exchange) {
+        Integer determined = exchange.getAttribute(KEY_VERBOSE_LEVEL);
+        if (nonNull(determined)) {
+            return determined;
+        }
         Integer requestVerboseLevel = TypeConverts
                 .parseIntOrNull(exchange.getRequest().getHeaders().getFirst(loggingConfig.getVerboseLevelRequestHeader()));
         int verboseLevel = isNull(requestVerboseLevel) ? loggingConfig.getDefaultVerboseLevel() : requestVerboseLevel;
@@ -302,5 +358,7 @@ public abstract class BasedLoggingGlobalFilter implements GlobalFilter, Ordered
     public static final String KEY_START_TIME = BasedLoggingGlobalFilter.class.getName() + ".startTime";
     public static final String KEY_VERBOSE_LEVEL = BasedLoggingGlobalFilter.class.getName() + ".verboseLevel";
     public static final String KEY_LOG_RECORD = BasedLoggingGlobalFilter.class.getName() + ".logRecord";
+    public static final String KEY_LOGGING_DECISION = BasedLoggingGlobalFilter.class.getName() + ".loggingDecision";
+    public static final String KEY_REQUEST_BODY_CAPTURE = BasedLoggingGlobalFilter.class.getName() + ".requestBodyCapture";
 
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging;
+
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import com.wl4g.escg.util.http.BodyCapture;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The streaming capture of the body prefix for logging, only the first bytes
+ * (up to the max print length) of the chunks are copied, and all the chunks
+ * pass through untouched, so that the memory is O(max length) and the
+ * chunked or streaming bodies keep streaming.
+ *
+ * <p>
+ * The callback is invoked at most once, when the max length is reached, or
+ * the body is terminated, or {@link #complete()} is called (e.g. the body is
+ * never subscribed). The capturing and the callback are synchronized, so
+ * that the effects of the callback are visible once {@link #complete()} is
+ * returned on any thread (e.g. before the record is handed to the writer).
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-22 v1.0.0
+ * @since v1.0.0
+ */
+public class BodyPrefixCapture {
+
+    private final BodyCapture capture;
+    private final Consumer<byte[]> onCaptured;
+    private volatile boolean completed;
+
+    public BodyPrefixCapture(int maxLength, @NotNull Consumer<byte[]> onCaptured) {
+        this.capture = new BodyCapture(maxLength);
+        this.onCaptured = notNullOf(onCaptured, "onCaptured");
+    }
+
+    public <T extends DataBuffer> Flux<T> capture(Publisher<T> body) {
+        return Flux.from(body).doOnNext(buffer -> {
+            // Cheap check without the lock after completed.
+            if (!completed) {
+                append(buffer);
+            }
+        }).doFinally(signal -> complete());
+    }
+
+    private synchronized void append(DataBuffer buffer) {
+        if (!completed) {
+            capture.append(buffer);
+            if (capture.isFull()) {
+                complete();
+            }
+        }
+    }
+
+    public synchronized void complete() {
+        if (!completed) {
+            completed = true;
+            onCaptured.accept(capture.toByteArray());
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging;
+
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.util.Collections.singletonMap;
+import static java.util.Objects.isNull;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.BeanReference;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.ConstructorReference;
+import org.springframework.expression.spel.ast.FunctionReference;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.TypeReference;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.google.common.base.Predicates;
+import com.wl4g.infra.common.web.WebUtils.WebRequestExtractor;
+import com.wl4g.infra.context.utils.web.ReactiveRequestExtractor;
+import com.wl4g.infra.context.web.matcher.SpelRequestMatcher;
+
+/**
+ * The precompiled matcher of the logging expression, the expression is
+ * analyzed once at startup by its references:
+ * <ul>
+ * <li>{@link Kind#CONSTANT}: without any references (e.g. the default
+ * '#{true}'), which is folded into the constant.</li>
+ * <li>{@link Kind#ROUTE}: only references the route ID, which is evaluated
+ * once and cached per route.</li>
+ * <li>{@link Kind#REQUEST}: otherwise, which is evaluated per request, with
+ * the cached route predicates.</li>
+ * </ul>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-23 v1.0.0
+ * @since v1.0.0
+ */
+public class PrecompiledLoggingMatcher {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+    private static final WebRequestExtractor EMPTY_EXTRACTOR = new WebRequestExtractor() {
+    };
+
+    private final SpelRequestMatcher requestMatcher;
+    private final String expression;
+    private final Kind kind;
+    private final boolean constant;
+    private final Map<String, Boolean> routeMatches = new ConcurrentHashMap<>(16);
+    private final Map<String, Map<String, Supplier<Predicate<String>>>> routePredicates = new ConcurrentHashMap<>(16);
+
+    public PrecompiledLoggingMatcher(@NotNull SpelRequestMatcher requestMatcher, String expression) {
+        this.requestMatcher = notNullOf(requestMatcher, "requestMatcher");
+        this.expression = expression;
+        this.kind = analyze(expression);
+        // Pre-compile and warm up to evaluate checks at service startup.
+        this.constant = requestMatcher.matches(EMPTY_EXTRACTOR, expression);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean matches(ServerWebExchange exchange, String routeId) {
+        switch (kind) {
+        case CONSTANT:
+            return constant;
+        case ROUTE:
+            Boolean matched = routeMatches.get(routeId);
+            if (isNull(matched)) {
+                matched = routeMatches.computeIfAbsent(routeId,
+                        id -> evaluate(EMPTY_EXTRACTOR, expression, getRoutePredicates(id)));
+            }
+            return matched;
+        default:
+            return matches(exchange, routeId, expression);
+        }
+    }
+
+    /**
+     * Evaluate the specified expression (e.g. from the request header) per
+     * request.
+     */
+    public boolean matches(ServerWebExchange exchange, String routeId, String expression) {
+        return evaluate(new ReactiveRequestExtractor(exchange.getRequest()), expression, getRoutePredicates(routeId));
+    }
+
+    boolean evaluate(
+            WebRequestExtractor extractor,
+            String expression,
+            Map<String, Supplier<Predicate<String>>> routePredicates) {
+        return requestMatcher.matches(extractor, expression, routePredicates);
+    }
+
+    private Map<String, Supplier<Predicate<String>>> getRoutePredicates(String routeId) {
+        Map<String, Supplier<Predicate<String>>> predicates = routePredicates.get(routeId);
+        if (isNull(predicates)) {
+            predicates = routePredicates.computeIfAbsent(routeId, id -> {
+                Predicate<String> predicate = (Predicate<String>) Predicates.equalTo(id);
+                return singletonMap(BasedLoggingGlobalFilter.VAR_ROUTE_ID, () -> predicate);
+            });
+        }
+        return predicates;
+    }
+
+    /**
+     * Analyze the kind of expression by its references, any reference which
+     * may be request-dependent or non-deterministic (e.g. the types, beans or
+     * methods of the root object) is conservatively treated as
+     * {@link Kind#REQUEST}.
+     */
+    static Kind analyze(String expression) {
+        Expression parsed;
+        try {
+            parsed = PARSER.parseExpression(expression, ParserContext.TEMPLATE_EXPRESSION);
+        } catch (ParseException | IllegalStateException e) {
+            return Kind.REQUEST;
+        }
+        // The literal or composite templates are left as is.
+        if (!(parsed instanceof SpelExpression)) {
+            return Kind.REQUEST;
+        }
+        Set<String> references = new HashSet<>();
+        collectReferences(((SpelExpression) parsed).getAST(), true, references);
+        if (references.isEmpty()) {
+            return Kind.CONSTANT;
+        }
+        references.remove(BasedLoggingGlobalFilter.VAR_ROUTE_ID);
+        return references.isEmpty() ? Kind.ROUTE : Kind.REQUEST;
+    }
+
+    /**
+     * @param node
+     * @param head
+     *            Whether the node is evaluated against the root object or
+     *            the context (rather than the result of the previous node of
+     *            the compound expression).
+     * @param references
+     */
+    private static void collectReferences(SpelNode node, boolean head, Set<String> references) {
+        if (node instanceof CompoundExpression) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                collectReferences(node.getChild(i), i == 0, references);
+            }
+            return;
+        }
+        if (node instanceof TypeReference || node instanceof ConstructorReference || node instanceof BeanReference
+                || node instanceof FunctionReference) {
+            references.add(DYNAMIC_REFERENCE);
+        } else if (node instanceof VariableReference) {
+            // e.g: '#routeId', '#this', '#root'
+            references.add(node.toStringAST().substring(1));
+        } else if (head && node instanceof PropertyOrFieldReference) {
+            references.add(((PropertyOrFieldReference) node).getName());
+        } else if (head && node instanceof MethodReference) {
+            references.add(DYNAMIC_REFERENCE);
+        }
+        // The arguments or operands are evaluated against the root object.
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectReferences(node.getChild(i), true, references);
+        }
+    }
+
+    public static enum Kind {
+        CONSTANT, ROUTE, REQUEST;
+    }
+
+    private static final String DYNAMIC_REFERENCE = "";
+
+}
@@ -22,24 +22,19 @@ import static org.apache.commons.lang3.SystemUtils.LINE_SEPARATOR;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
+import java.util.function.Consumer;
 
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
-import org.springframework.cloud.gateway.filter.factory.rewrite.CachedBodyOutputMessage;
-import org.springframework.cloud.gateway.support.BodyInserterContext;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
-import org.springframework.web.reactive.function.BodyInserter;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.server.HandlerStrategies;
-import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.server.ServerWebExchange;
 
+import com.wl4g.escg.logging.access.AccessLogRecord;
+import com.wl4g.escg.logging.access.AccessLogWriter;
 import com.wl4g.escg.logging.config.LoggingProperties;
+import com.wl4g.escg.server.ClientAddressResolver;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -55,8 +50,9 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class RequestLoggingGlobalFilter extends BasedLoggingGlobalFilter {
 
-    public RequestLoggingGlobalFilter(LoggingProperties loggingConfig) {
-        super(loggingConfig);
+    public RequestLoggingGlobalFilter(LoggingProperties loggingConfig, ClientAddressResolver clientAddressResolver,
+            AccessLogWriter accessLogWriter) {
+        super(loggingConfig, clientAddressResolver, accessLogWriter);
     }
 
     @Override
@@ -66,9 +62,36 @@ public class RequestLoggingGlobalFilter extends BasedLoggingGlobalFilter {
             HttpHeaders headers,
             String traceId,
             String requestMethod) {
+        if (loggingConfig.getAccessLog().isEnabled()) {
+            return recordRequest(exchange, chain, headers);
+        }
         return logRequest(exchange, chain, headers, traceId, requestMethod);
     }
 
+    /**
+     * Fill the request part of the access log record, which is written by
+     * the response logging filter once the exchange is completed.
+     * 
+     * @param exchange
+     * @param chain
+     * @param headers
+     * @return
+     */
+    private Mono<Void> recordRequest(ServerWebExchange exchange, GatewayFilterChain chain, HttpHeaders headers) {
+        AccessLogRecord record = getAccessLogRecord(exchange);
+        if (isLoglevelRange(exchange, 5, 10)) {
+            record.setRequestHeaders(AccessLogWriter.copyLoggedHeaders(headers, isLoglevelRange(exchange, 6, 10)));
+        }
+        if (!isLoglevelRange(exchange, 8, 10)) {
+            return chain.filter(exchange);
+        }
+        if (!isCompatibleWithPlainBody(headers.getContentType())) {
+            record.setRequestBinary(isUploadStreamMedia(headers.getContentType()));
+            return chain.filter(exchange);
+        }
+        return decorateRequest(exchange, chain, requestBodyPrefix -> record.setRequestBody(requestBodyPrefix));
+    }
+
     /**
      * Request logging filtering.
      * see:https://docs.spring.io/spring-cloud-gateway/docs/current/reference/html/#the-cacherequestbody-gatewayfilter-factory
@@ -106,13 +129,14 @@ public class RequestLoggingGlobalFilter extends BasedLoggingGlobalFilter {
             requestLogArgs.add(requestPath);
         } else if (log3_10) {
             requestLog.append(LOG_REQUEST_BEGIN);
-            // Print HTTP URI. (E.g: 997ac7d2-2056-419b-883b-6969aae77e3e ::
-            // GET /example/foo/bar)
-            requestLog.append("{} {} :: {}");
+            // Print HTTP URI. (E.g: GET /example/foo/bar? ::
+            // 997ac7d2-2056-419b-883b-6969aae77e3e :: 1.2.3.4)
+            requestLog.append("{} {} :: {} :: {}");
             requestLog.append(LINE_SEPARATOR);
             requestLogArgs.add(requestMethod);
             requestLogArgs.add(requestPath.concat("?").concat(trimToEmpty(uri.getQuery())));
             requestLogArgs.add(traceId);
+            requestLogArgs.add(clientAddressResolver.resolveHost(exchange));
         }
         // Print request headers.
         if (log5_10) {
@@ -140,7 +164,6 @@ public class RequestLoggingGlobalFilter extends BasedLoggingGlobalFilter {
                 log.info(requestLog.toString(), requestLogArgs.toArray());
             }
         }
-        final boolean _processBodyIfNeed = processBodyIfNeed;
 
         // // Print request body.
         // // [problem]:https://www.codercto.com/a/52970.html
@@ -165,91 +188,52 @@ public class RequestLoggingGlobalFilter extends BasedLoggingGlobalFilter {
         // }
         // return chain.filter(exchange);
 
-        // Note: The following transform function may be executed multiple
-        // times. For the time being, we only print the first segment of data in
-        // the request body. We think that printing too much data may be
-        // meaningless and waste resources.
-        AtomicInteger transformCount = new AtomicInteger(0);
-        return decorateRequest(exchange, chain, requestBodySegment -> {
-            if (transformCount.incrementAndGet() <= 1) {
-                // Add request body.
-                if (_processBodyIfNeed) {
-                    if (log8_10) {
-                        requestLog.append(LOG_REQUEST_BODY);
-                        requestLog.append(LOG_REQUEST_END);
-                        // Note: Only get the first small part of the data of
-                        // the request body, which has prevented the amount of
-                        // data from being too large.
-                        int length = Math.min(requestBodySegment.length, loggingConfig.getMaxPrintRequestBodyLength());
-                        requestLogArgs.add(readToLogString(requestBodySegment, length));
-                        log.info(requestLog.toString(), requestLogArgs.toArray());
-                    } else if (log3_10) {
-                        requestLog.append(LOG_REQUEST_END);
-                        log.info(requestLog.toString(), requestLogArgs.toArray());
-                    }
-                }
+        if (!processBodyIfNeed) {
+            return chain.filter(exchange);
+        }
+        if (!log8_10) {
+            if (log3_10) {
+                requestLog.append(LOG_REQUEST_END);
+                log.info(requestLog.toString(), requestLogArgs.toArray());
             }
-            return Mono.just(requestBodySegment);
+            return chain.filter(exchange);
+        }
+        // Note: Only the first small part of the request body is captured
+        // (without aggregating the whole body), which has prevented the amount
+        // of data from being too large.
+        return decorateRequest(exchange, chain, requestBodyPrefix -> {
+            requestLog.append(LOG_REQUEST_BODY);
+            requestLog.append(LOG_REQUEST_END);
+            requestLogArgs.add(readToLogString(requestBodyPrefix, requestBodyPrefix.length));
+            log.info(requestLog.toString(), requestLogArgs.toArray());
         });
     }
 
     /**
-     * The request object decorated as an editable request body to solve the
-     * problem that the request body can only be read once.
+     * The request object decorated with the streaming capture of the body
+     * prefix, only the first bytes up to the max print length are copied, and
+     * the body chunks are passed through untouched, see
+     * {@link BodyPrefixCapture}
      * 
      * @param exchange
      * @param chain
-     * @param transformer
+     * @param onCaptured
      * @return
-     * @see {@link org.springframework.cloud.gateway.filter.factory.rewrite.ModifyRequestBodyGatewayFilterFactory#apply()}
-     * @see https://blog.csdn.net/kk380446/article/details/119537443
-     * @see https://www.cnblogs.com/hyf-huangyongfei/p/12849406.html
      */
-    private Mono<Void> decorateRequest(
-            ServerWebExchange exchange,
-            GatewayFilterChain chain,
-            Function<? super byte[], ? extends Mono<? extends byte[]>> transformer) {
-
-        // Tip: String type can also be used.
-        // Class<String> inClass = String.class;
-        // Class<String> outClass = String.class;
-        Class<byte[]> inClass = byte[].class;
-        Class<byte[]> outClass = byte[].class;
-
-        ServerRequest serverRequest = ServerRequest.create(exchange, HandlerStrategies.withDefaults().messageReaders());
-        // ServerRequest serverRequest = new
-        // org.springframework.cloud.gateway.support.DefaultServerRequest(exchange);
-        Mono<byte[]> modifiedBody = serverRequest.bodyToMono(inClass).flatMap(transformer);
-
-        BodyInserter<Mono<byte[]>, ReactiveHttpOutputMessage> bodyInserter = BodyInserters.fromPublisher(modifiedBody, outClass);
-        HttpHeaders newHeaders = new HttpHeaders();
-        newHeaders.putAll(exchange.getRequest().getHeaders());
-        newHeaders.remove(HttpHeaders.CONTENT_LENGTH);
-
-        CachedBodyOutputMessage outputMessage = new CachedBodyOutputMessage(exchange, newHeaders);
+    private Mono<Void> decorateRequest(ServerWebExchange exchange, GatewayFilterChain chain, Consumer<byte[]> onCaptured) {
+        BodyPrefixCapture capture = new BodyPrefixCapture(loggingConfig.getMaxPrintRequestBodyLength(), onCaptured);
+        // The response logging filter completes it before the access log
+        // record is handed to the writer, which is earlier than the doFinally
+        // of this filter.
+        exchange.getAttributes().put(KEY_REQUEST_BODY_CAPTURE, capture);
         ServerHttpRequestDecorator decorator = new ServerHttpRequestDecorator(exchange.getRequest()) {
-            @Override
-            public HttpHeaders getHeaders() {
-                long contentLength = newHeaders.getContentLength();
-                HttpHeaders _newHeaders = new HttpHeaders();
-                _newHeaders.putAll(newHeaders);
-                if (contentLength > 0) {
-                    _newHeaders.setContentLength(contentLength);
-                } else {
-                    _newHeaders.set(HttpHeaders.TRANSFER_ENCODING, "chunked");
-                }
-                return _newHeaders;
-            }
-
             @Override
             public Flux<DataBuffer> getBody() {
-                return outputMessage.getBody();
+                return capture.capture(super.getBody());
             }
         };
-
-        return bodyInserter.insert(outputMessage, new BodyInserterContext())
-                .then(Mono.defer(() -> chain.filter(exchange.mutate().request(decorator).build())))
-                .onErrorResume((Function<Throwable, Mono<Void>>) ex -> Mono.error(ex));
+        // Complete in case of the body is never subscribed.
+        return chain.filter(exchange.mutate().request(decorator).build()).doFinally(signal -> capture.complete());
     }
 
 }
@@ -15,6 +15,7 @@
  */
 package com.wl4g.escg.logging;
 
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
 import static org.apache.commons.lang3.StringUtils.trimToEmpty;
@@ -24,31 +25,27 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
+import java.util.function.Consumer;
 
 import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
-import org.springframework.cloud.gateway.filter.factory.rewrite.CachedBodyOutputMessage;
-import org.springframework.cloud.gateway.support.BodyInserterContext;
-import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.web.reactive.function.BodyInserter;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.server.ServerWebExchange;
 
+import com.wl4g.escg.logging.access.AccessLogRecord;
+import com.wl4g.escg.logging.access.AccessLogSampler;
+import com.wl4g.escg.logging.access.AccessLogWriter;
 import com.wl4g.escg.logging.config.LoggingProperties;
+import com.wl4g.escg.server.ClientAddressResolver;
 import com.wl4g.infra.common.lang.FastTimeClock;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 /**
  * {@link ResponseLoggingGlobalFilter}
@@ -60,8 +57,12 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class ResponseLoggingGlobalFilter extends BasedLoggingGlobalFilter {
 
-    public ResponseLoggingGlobalFilter(LoggingProperties loggingConfig) {
-        super(loggingConfig);
+    private final AccessLogSampler accessLogSampler;
+
+    public ResponseLoggingGlobalFilter(LoggingProperties loggingConfig, ClientAddressResolver clientAddressResolver,
+            AccessLogWriter accessLogWriter, AccessLogSampler accessLogSampler) {
+        super(loggingConfig, clientAddressResolver, accessLogWriter);
+        this.accessLogSampler = notNullOf(accessLogSampler, "accessLogSampler");
     }
 
     @Override
@@ -71,6 +72,9 @@ public class ResponseLoggingGlobalFilter extends BasedLoggingGlobalFilter {
             HttpHeaders headers,
             String traceId,
             String requestMethod) {
+        if (loggingConfig.getAccessLog().isEnabled()) {
+            return recordResponse(exchange, chain);
+        }
 
         URI uri = exchange.getRequest().getURI();
         String requestUri = uri.getPath();
@@ -110,45 +114,38 @@ public class ResponseLoggingGlobalFilter extends BasedLoggingGlobalFilter {
         }
 
         AtomicBoolean addedResponseHeaders = new AtomicBoolean(false);
-        // Note: The following transform function may be executed multiple
-        // times. For the time being, we only print the first segment of data in
-        // the response body. We think that printing too much data may be
-        // meaningless and waste resources.
-        AtomicInteger transformCount = new AtomicInteger(0);
-        ServerHttpResponse newRespnose = decorateResponse(exchange, chain, responseBodySegment -> {
-            if (transformCount.incrementAndGet() <= 1) {
-                // Print response headers.
-                if (log6_10) {
-                    addedResponseHeaders.set(true);
-                    HttpHeaders httpHeaders = exchange.getResponse().getHeaders();
-                    httpHeaders.forEach((headerName, headerValue) -> {
-                        if (log8_10 || LOG_GENERIC_HEADERS.stream().anyMatch(h -> containsIgnoreCase(h, headerName))) {
-                            responseLog.append("\n{}: {}");
-                            responseLogArgs.add(headerName);
-                            responseLogArgs.add(headerValue.toString());
-                        }
-                    });
-                }
+        // Note: Only the first small part of the response body is captured
+        // (without aggregating the whole body). We think that printing too
+        // much data may be meaningless and waste resources.
+        ServerHttpResponse newRespnose = decorateResponse(exchange, responseBodyPrefix -> {
+            // Print response headers.
+            if (log6_10) {
+                addedResponseHeaders.set(true);
+                HttpHeaders httpHeaders = exchange.getResponse().getHeaders();
+                httpHeaders.forEach((headerName, headerValue) -> {
+                    if (log8_10 || LOG_GENERIC_HEADERS.stream().anyMatch(h -> containsIgnoreCase(h, headerName))) {
+                        responseLog.append("\n{}: {}");
+                        responseLogArgs.add(headerName);
+                        responseLogArgs.add(headerValue.toString());
+                    }
+                });
+            }
 
-                // If it is a file download, direct printing does not display
-                // binary.
-                if (isDownloadStreamMedia(headers.getContentType())) {
+            // If it is a file download, direct printing does not display
+            // binary.
+            if (isDownloadStreamMedia(headers.getContentType())) {
+                responseLog.append(LOG_RESPONSE_BODY);
+                responseLogArgs.add("[Download Binary Data] ...");
+            } else {
+                // When the response has no body, print the end flag
+                // directly.
+                boolean processBodyIfNeed = log9_10 && isCompatibleWithPlainBody(response.getHeaders().getContentType());
+                // Print response body.
+                if (processBodyIfNeed) {
                     responseLog.append(LOG_RESPONSE_BODY);
-                    responseLogArgs.add("[Download Binary Data] ...");
-                } else {
-                    // When the response has no body, print the end flag
-                    // directly.
-                    boolean processBodyIfNeed = log9_10 && isCompatibleWithPlainBody(response.getHeaders().getContentType());
-                    // Print response body.
-                    if (processBodyIfNeed) {
-                        // Full print response body.
-                        responseLog.append(LOG_RESPONSE_BODY);
-                        int length = Math.min(responseBodySegment.length, loggingConfig.getMaxPrintResponseBodyLength());
-                        responseLogArgs.add(readToLogString(responseBodySegment, length));
-                    }
+                    responseLogArgs.add(readToLogString(responseBodyPrefix, responseBodyPrefix.length));
                 }
             }
-            return Mono.just(responseBodySegment);
         });
 
         return chain.filter(exchange.mutate().response(newRespnose).build()).doFinally(signal -> {
@@ -172,64 +169,91 @@ public class ResponseLoggingGlobalFilter extends BasedLoggingGlobalFilter {
     }
 
     /**
-     * The response object decorated as an editable response body to solve the
-     * problem that the response body can only be read once.
+     * Fill the response part of the access log record, and hand it to the
+     * asynchronous writer once the exchange is completed, without formatting
+     * on the event loop.
      * 
      * @param exchange
      * @param chain
-     * @param transformer
      * @return
-     * @see {@link org.springframework.cloud.gateway.filter.factory.rewrite.ModifyResponseBodyGatewayFilterFactory#apply()}
-     * @see https://www.cnblogs.com/hyf-huangyongfei/p/12849406.html
-     * @see https://blog.csdn.net/kk380446/article/details/119537443
      */
-    private ServerHttpResponse decorateResponse(
-            ServerWebExchange exchange,
-            GatewayFilterChain chain,
-            Function<? super byte[], ? extends Mono<? extends byte[]>> transformer) {
+    private Mono<Void> recordResponse(ServerWebExchange exchange, GatewayFilterChain chain) {
+        AccessLogRecord record = getAccessLogRecord(exchange);
+        ServerWebExchange filterExchange = exchange;
+        BodyPrefixCapture responseCapture = null;
+        if (isLoglevelRange(exchange, 9, 10)) {
+            // Only the first small part of the response body is recorded.
+            responseCapture = new BodyPrefixCapture(loggingConfig.getMaxPrintResponseBodyLength(), responseBodyPrefix -> {
+                HttpHeaders responseHeaders = exchange.getResponse().getHeaders();
+                if (isDownloadStreamMedia(responseHeaders.getContentType())) {
+                    record.setResponseBinary(true);
+                } else if (isCompatibleWithPlainBody(responseHeaders.getContentType())) {
+                    record.setResponseBody(responseBodyPrefix);
+                }
+            });
+            filterExchange = exchange.mutate().response(decorateResponse(exchange, responseCapture)).build();
+        }
+        boolean log6_10 = isLoglevelRange(exchange, 6, 10);
+        BodyPrefixCapture _responseCapture = responseCapture;
+        return chain.filter(filterExchange).doFinally(signal -> {
+            // The captures must be completed (i.e. the body prefixes are
+            // filled) before the record is handed to the writer thread.
+            BodyPrefixCapture requestCapture = exchange.getAttribute(KEY_REQUEST_BODY_CAPTURE);
+            if (nonNull(requestCapture)) {
+                requestCapture.complete();
+            }
+            if (nonNull(_responseCapture)) {
+                _responseCapture.complete();
+            }
+            ServerHttpResponse response = exchange.getResponse();
+            Integer status = response.getRawStatusCode();
+            record.setStatus(nonNull(status) ? status : 0);
+            record.setCostTime(FastTimeClock.currentTimeMillis() - record.getTimestamp());
+            record.setError(signal == SignalType.ON_ERROR);
+            if (log6_10) {
+                record.setResponseHeaders(
+                        AccessLogWriter.copyLoggedHeaders(response.getHeaders(), isLoglevelRange(exchange, 8, 10)));
+            }
+            // Decided when the exchange is completed, e.g. always retain
+            // the failed exchange.
+            if (accessLogSampler.sample(record)) {
+                accessLogWriter.offer(record);
+            }
+        });
+    }
+
+    /**
+     * The response object decorated with the streaming capture of the body
+     * prefix, only the first bytes up to the max print length are copied, and
+     * the body chunks are passed through untouched (the flushing of streaming
+     * responses is kept), see {@link BodyPrefixCapture}
+     * 
+     * @param exchange
+     * @param onCaptured
+     * @return
+     */
+    private ServerHttpResponse decorateResponse(ServerWebExchange exchange, Consumer<byte[]> onCaptured) {
+        return decorateResponse(exchange, new BodyPrefixCapture(loggingConfig.getMaxPrintResponseBodyLength(), onCaptured));
+    }
+
+    private ServerHttpResponse decorateResponse(ServerWebExchange exchange, BodyPrefixCapture capture) {
         return new ServerHttpResponseDecorator(exchange.getResponse()) {
             @Override
-            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) { // Mono<NettyDataBuffer>
-                // Tip: String type can also be used.
-                // Class<String> inClass = String.class;
-                // Class<String> outClass = String.class;
-                Class<byte[]> inClass = byte[].class;
-                Class<byte[]> outClass = byte[].class;
-
-                String responseContentType = exchange.getAttribute(ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR);
-                HttpHeaders newHeaders = new HttpHeaders();
-                newHeaders.add(HttpHeaders.CONTENT_TYPE, responseContentType);
-
-                ClientResponse clientResponse = ClientResponse.create(exchange.getResponse().getStatusCode())
-                        .headers(headers -> headers.putAll(newHeaders))
-                        .body(Flux.from(body))
-                        .build();
-
-                Mono<byte[]> modifiedBody = clientResponse.bodyToMono(inClass).flatMap(transformer);
-                BodyInserter<Mono<byte[]>, ReactiveHttpOutputMessage> bodyInserter = BodyInserters.fromPublisher(modifiedBody,
-                        outClass);
-
-                // [FIX]: If the order of this filter is set to be executed
-                // before, then the return header here is of type
-                // ReadOnlyHttpHeaders, but it will be abnormal when other
-                // filters need to modify the header. Is this due to the order
-                // of the filters ???
-                HttpHeaders editableHeaders = new HttpHeaders(new LinkedMultiValueMap<>(exchange.getResponse().getHeaders()));
-                CachedBodyOutputMessage outputMessage = new CachedBodyOutputMessage(exchange, editableHeaders);
-
-                return bodyInserter.insert(outputMessage, new BodyInserterContext()).then(Mono.defer(() -> {
-                    Flux<DataBuffer> messageBody = outputMessage.getBody();
-                    HttpHeaders headers = getDelegate().getHeaders();
-                    if (!headers.containsKey(HttpHeaders.TRANSFER_ENCODING)) {
-                        messageBody = messageBody.doOnNext(data -> headers.setContentLength(data.readableByteCount()));
-                    }
-                    return getDelegate().writeWith(messageBody);
-                }));
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return super.writeWith(capture.capture(body));
             }
 
             @Override
             public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
-                return writeWith(Flux.from(body).flatMapSequential(p -> p));
+                return super.writeAndFlushWith(Flux.from(body).map(chunks -> capture.capture(chunks))
+                        .doFinally(signal -> capture.complete()));
+            }
+
+            @Override
+            public Mono<Void> setComplete() {
+                // Complete in case of the response has no body.
+                capture.complete();
+                return super.setComplete();
             }
         };
     }
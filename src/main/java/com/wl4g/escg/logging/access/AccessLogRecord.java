@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging.access;
+
+import javax.annotation.Nullable;
+
+import org.springframework.http.HttpHeaders;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * The compact access log record of an exchange, which is filled by the
+ * request and response logging filters on the event loop, and only encoded by
+ * the writer thread, see {@link AccessLogWriter}
+ *
+ * <p>
+ * Note: Only the logged headers are copied into the record, the live headers
+ * of the exchange must not be referenced, see
+ * {@link AccessLogWriter#copyLoggedHeaders}
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-21 v1.0.0
+ * @since v1.0.0
+ */
+@Getter
+@Setter
+@ToString(exclude = { "requestHeaders", "requestBody", "responseHeaders", "responseBody" })
+public class AccessLogRecord {
+
+    /**
+     * The start time (epoch millis) of the request.
+     */
+    private long timestamp;
+
+    private int verboseLevel;
+
+    private String routeId;
+
+    private String traceId;
+
+    private String method;
+
+    private String path;
+
+    private @Nullable String query;
+
+    private @Nullable String clientHost;
+
+    private @Nullable HttpHeaders requestHeaders;
+
+    /**
+     * The prefix of the request body, which is truncated by the max print
+     * length.
+     */
+    private @Nullable byte[] requestBody;
+
+    /**
+     * Whether the request body is the binary (e.g. file upload), which is
+     * never printed.
+     */
+    private boolean requestBinary;
+
+    private int status;
+
+    private long costTime;
+
+    /**
+     * Whether the exchange is terminated with the error signal, e.g. the
+     * upstream connection failed before the response status is set.
+     */
+    private boolean error;
+
+    /**
+     * The reason why the record is retained by the tail sampling, see
+     * {@link AccessLogSampler}
+     */
+    private @Nullable String sampledBy;
+
+    private @Nullable HttpHeaders responseHeaders;
+
+    /**
+     * The prefix of the response body, which is truncated by the max print
+     * length.
+     */
+    private @Nullable byte[] responseBody;
+
+    /**
+     * Whether the response body is the binary (e.g. file download), which is
+     * never printed.
+     */
+    private boolean responseBinary;
+
+}
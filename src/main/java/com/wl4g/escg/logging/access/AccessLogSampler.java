@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging.access;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.isNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import com.wl4g.escg.logging.config.LoggingProperties.TailSamplingProperties;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+
+/**
+ * The tail-based sampler of the access log records, which is decided when
+ * the exchange is completed (rather than when it's received), so that:
+ * <ul>
+ * <li>The records of the failed exchanges are always retained.</li>
+ * <li>The records of the slow exchanges over the latency threshold are
+ * retained.</li>
+ * <li>The records of the rest are retained by the sampling percentage.</li>
+ * </ul>
+ * The slow and sampled records are also limited by the token bucket of each
+ * route, so that a hot route can't flood the log.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-24 v1.0.0
+ * @since v1.0.0
+ */
+public class AccessLogSampler {
+
+    private final TailSamplingProperties config;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final long slowThresholdMillis;
+    private final Map<String, TokenBucket> routeBuckets = new ConcurrentHashMap<>(16);
+
+    public AccessLogSampler(@NotNull TailSamplingProperties config, @NotNull IamGatewayMetricsFacade metricsFacade) {
+        this.config = notNullOf(config, "config");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        notNullOf(config.getSlowThreshold(), "slowThreshold");
+        isTrue(config.getPercentage() >= 0 && config.getPercentage() <= 1, "percentage must be between 0 and 1");
+        this.slowThresholdMillis = config.getSlowThreshold().toMillis();
+    }
+
+    /**
+     * Decide whether the record of the completed exchange is retained, and
+     * mark the reason of it, see {@link AccessLogRecord#getSampledBy()}
+     *
+     * @return false if the record should be discarded.
+     */
+    public boolean sample(@NotNull AccessLogRecord record) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        String decision = decide(record);
+        metricsFacade.counter(MetricsName.ACCESS_LOG_SAMPLING_TOTAL, record.getRouteId(), 1, MetricsTag.ACCESS_LOG_DECISION,
+                decision);
+        switch (decision) {
+        case DECISION_ERROR:
+        case DECISION_SLOW:
+        case DECISION_SAMPLED:
+            record.setSampledBy(decision);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private String decide(AccessLogRecord record) {
+        if (record.isError() || record.getStatus() >= config.getErrorStatusThreshold()) {
+            return DECISION_ERROR;
+        }
+        String decision;
+        if (record.getCostTime() >= slowThresholdMillis) {
+            decision = DECISION_SLOW;
+        } else if (ThreadLocalRandom.current().nextDouble() < config.getPercentage()) {
+            decision = DECISION_SAMPLED;
+        } else {
+            return DECISION_DISCARDED;
+        }
+        return getRouteBucket(record.getRouteId()).tryAcquire() ? decision : DECISION_LIMITED;
+    }
+
+    private TokenBucket getRouteBucket(String routeId) {
+        TokenBucket bucket = routeBuckets.get(routeId);
+        if (isNull(bucket)) {
+            bucket = routeBuckets.computeIfAbsent(routeId, id -> new TokenBucket(config.getMaxRecordsPerRoutePerSecond()));
+        }
+        return bucket;
+    }
+
+    /**
+     * The lock-free token bucket, which is refilled continuously at the rate
+     * of the capacity per second. The state is the theoretical time when the
+     * bucket is full again, each token taken advances it by the refill
+     * interval, and the token is available as long as it's not ahead of now
+     * by more than the capacity.
+     */
+    static class TokenBucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong fullTime;
+
+        TokenBucket(int permitsPerSecond) {
+            if (permitsPerSecond > 0) {
+                this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+                this.toleranceNanos = intervalNanos * (permitsPerSecond - 1);
+            } else { // unlimited
+                this.intervalNanos = 0;
+                this.toleranceNanos = 0;
+            }
+            this.fullTime = new AtomicLong(nanoTime());
+        }
+
+        boolean tryAcquire() {
+            if (intervalNanos == 0) {
+                return true;
+            }
+            long now = nanoTime();
+            for (;;) {
+                long current = fullTime.get();
+                // Note: The nano time may be negative, compare by difference.
+                long base = current - now > 0 ? current : now;
+                if (base - now > toleranceNanos) {
+                    return false;
+                }
+                if (fullTime.compareAndSet(current, base + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    public static final String DECISION_ERROR = "error";
+    public static final String DECISION_SLOW = "slow";
+    public static final String DECISION_SAMPLED = "sampled";
+    public static final String DECISION_LIMITED = "limited";
+    public static final String DECISION_DISCARDED = "discarded";
+
+}
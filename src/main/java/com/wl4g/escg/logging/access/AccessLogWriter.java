@@ -0,0 +1,321 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging.access;
+
+import static com.wl4g.infra.common.lang.Assert2.hasTextOf;
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.http.HttpHeaders;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.wl4g.escg.logging.BasedLoggingGlobalFilter;
+import com.wl4g.escg.logging.config.LoggingProperties.AccessLogProperties;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.util.concurrent.MpscRingBuffer;
+import com.wl4g.infra.common.task.RunnerProperties;
+import com.wl4g.infra.common.task.RunnerProperties.StartupMode;
+import com.wl4g.infra.common.task.SafeScheduledTaskPoolExecutor;
+import com.wl4g.infra.context.logging.reactive.BaseLoggingWebFilter;
+import com.wl4g.infra.context.task.ApplicationTaskRunner;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The asynchronous writer of the structured access log, the event loop only
+ * offers the records to the lock-free ring buffer, which are dropped when
+ * it's full, and the dedicated writer thread encodes them as the JSON lines
+ * into the current file, which is rotated by the max size.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-21 v1.0.0
+ * @since v1.0.0
+ */
+@Slf4j
+public class AccessLogWriter extends ApplicationTaskRunner<RunnerProperties> implements DisposableBean {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final AccessLogProperties config;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final MpscRingBuffer<AccessLogRecord> buffer;
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(1024);
+    private volatile boolean running = true;
+    private OutputStream output;
+    private long fileSize;
+    private long unflushedRecords;
+    private long unflushedBytes;
+
+    public AccessLogWriter(@NotNull AccessLogProperties config, @NotNull IamGatewayMetricsFacade metricsFacade) {
+        super(new RunnerProperties(StartupMode.ASYNC, 1));
+        this.config = notNullOf(config, "config");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        hasTextOf(config.getDirectory(), "directory");
+        isTrue(config.getMaxFileSize().toBytes() > 0, "maxFileSize must be greater than 0");
+        isTrue(config.getMaxFiles() > 0, "maxFiles must be greater than 0");
+        this.buffer = new MpscRingBuffer<>(config.getBufferSize());
+        metricsFacade.gauge(MetricsName.ACCESS_LOG_QUEUED, () -> buffer.size());
+    }
+
+    @Override
+    protected void onApplicationStarted(ApplicationArguments args, SafeScheduledTaskPoolExecutor worker) throws Exception {
+        if (config.isEnabled()) {
+            worker.execute(() -> writeLoop());
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.running = false;
+        super.close();
+    }
+
+    /**
+     * Offer the record to be written asynchronously, which never blocks.
+     *
+     * @return false if dropped since the buffer is full.
+     */
+    public boolean offer(@NotNull AccessLogRecord record) {
+        if (running && buffer.offer(record)) {
+            return true;
+        }
+        metricsFacade.counter(MetricsName.ACCESS_LOG_DROPPED_TOTAL, record.getRouteId(), 1);
+        return false;
+    }
+
+    void writeLoop() {
+        try {
+            while (running || !buffer.isEmpty()) {
+                AccessLogRecord record = buffer.poll();
+                if (nonNull(record)) {
+                    write(record);
+                } else {
+                    flush();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } finally {
+            flush();
+            closeFile();
+        }
+    }
+
+    void write(AccessLogRecord record) {
+        try {
+            lineBuffer.reset();
+            encode(record, lineBuffer);
+            lineBuffer.write('\n');
+            if (isNull(output) || fileSize + lineBuffer.size() > config.getMaxFileSize().toBytes()) {
+                rotateFile();
+            }
+            lineBuffer.writeTo(output);
+            fileSize += lineBuffer.size();
+            ++unflushedRecords;
+            unflushedBytes += lineBuffer.size();
+        } catch (Exception e) {
+            log.warn(format("Failed to write the access log record: %s", record), e);
+        }
+    }
+
+    void flush() {
+        if (isNull(output) || unflushedRecords <= 0) {
+            return;
+        }
+        try {
+            output.flush();
+        } catch (IOException e) {
+            log.warn("Failed to flush the access log.", e);
+        }
+        metricsFacade.counter(MetricsName.ACCESS_LOG_WRITTEN_TOTAL, unflushedRecords);
+        metricsFacade.counter(MetricsName.ACCESS_LOG_WRITTEN_BYTES_TOTAL, unflushedBytes);
+        this.unflushedRecords = 0;
+        this.unflushedBytes = 0;
+    }
+
+    static void encode(AccessLogRecord record, OutputStream out) throws IOException {
+        int level = record.getVerboseLevel();
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.writeStartObject();
+            gen.writeNumberField("timestamp", record.getTimestamp());
+            gen.writeStringField("routeId", record.getRouteId());
+            gen.writeStringField("method", record.getMethod());
+            gen.writeStringField("path", record.getPath());
+            gen.writeNumberField("status", record.getStatus());
+            gen.writeNumberField("costTime", record.getCostTime());
+            if (record.isError()) {
+                gen.writeBooleanField("error", true);
+            }
+            if (nonNull(record.getSampledBy())) {
+                gen.writeStringField("sampledBy", record.getSampledBy());
+            }
+            if (level >= 3) {
+                gen.writeStringField("query", record.getQuery());
+                gen.writeStringField("traceId", record.getTraceId());
+                gen.writeStringField("clientHost", record.getClientHost());
+            }
+            if (level >= 5) {
+                writeHeaders(gen, "requestHeaders", record.getRequestHeaders(), level >= 6);
+            }
+            if (record.isRequestBinary()) {
+                gen.writeStringField("requestBody", "[Upload Binary Data] ...");
+            } else if (nonNull(record.getRequestBody())) {
+                byte[] body = record.getRequestBody();
+                gen.writeStringField("requestBody", BaseLoggingWebFilter.readToLogString(body, body.length));
+            }
+            if (level >= 6) {
+                writeHeaders(gen, "responseHeaders", record.getResponseHeaders(), level >= 8);
+            }
+            if (record.isResponseBinary()) {
+                gen.writeStringField("responseBody", "[Download Binary Data] ...");
+            } else if (nonNull(record.getResponseBody())) {
+                byte[] body = record.getResponseBody();
+                gen.writeStringField("responseBody", BaseLoggingWebFilter.readToLogString(body, body.length));
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeHeaders(JsonGenerator gen, String fieldName, HttpHeaders headers, boolean all)
+            throws IOException {
+        if (isNull(headers)) {
+            return;
+        }
+        gen.writeObjectFieldStart(fieldName);
+        for (Entry<String, List<String>> header : headers.entrySet()) {
+            String headerName = header.getKey();
+            if (isLoggedHeader(headerName, all)) {
+                List<String> values = header.getValue();
+                if (values.size() == 1) {
+                    gen.writeStringField(headerName, values.get(0));
+                } else {
+                    gen.writeArrayFieldStart(headerName);
+                    for (String value : values) {
+                        gen.writeString(value);
+                    }
+                    gen.writeEndArray();
+                }
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Copy the headers that will be logged into the record, since the live
+     * headers of the exchange (e.g. the Netty headers) may be mutated or
+     * recycled after the exchange is completed, and copying only the logged
+     * ones keeps the record compact.
+     *
+     * @param headers
+     *            The headers of the request or response.
+     * @param all
+     *            Whether all headers are logged, otherwise only the generic
+     *            headers, see {@link BasedLoggingGlobalFilter#LOG_GENERIC_HEADERS}
+     * @return
+     */
+    public static HttpHeaders copyLoggedHeaders(@NotNull HttpHeaders headers, boolean all) {
+        HttpHeaders copied = new HttpHeaders();
+        for (Entry<String, List<String>> header : headers.entrySet()) {
+            if (isLoggedHeader(header.getKey(), all)) {
+                copied.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+        }
+        return copied;
+    }
+
+    private static boolean isLoggedHeader(String headerName, boolean all) {
+        return all || BasedLoggingGlobalFilter.LOG_GENERIC_HEADERS.stream().anyMatch(h -> containsIgnoreCase(h, headerName));
+    }
+
+    private void rotateFile() throws IOException {
+        closeFile();
+        Path directory = Paths.get(config.getDirectory());
+        Files.createDirectories(directory);
+        Path current = directory.resolve(FILE_NAME);
+        if (Files.exists(current)) {
+            Path rotated = directory.resolve(format("%s%013d%s", ROTATED_FILE_PREFIX, currentTimeMillis(), ROTATED_FILE_SUFFIX));
+            Files.move(current, rotated, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Rotated the access log file: {}", rotated);
+            deleteExpiredFiles(directory);
+        }
+        this.output = new BufferedOutputStream(
+                Files.newOutputStream(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+                64 * 1024);
+        this.fileSize = Files.size(current);
+    }
+
+    private void closeFile() {
+        if (isNull(output)) {
+            return;
+        }
+        try {
+            output.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the access log file.", e);
+        } finally {
+            this.output = null;
+        }
+    }
+
+    private void deleteExpiredFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                ROTATED_FILE_PREFIX + "*" + ROTATED_FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        // The names contain the fixed-length timestamp, the oldest first.
+        Collections.sort(files);
+        for (int i = 0; i < files.size() - config.getMaxFiles(); i++) {
+            Files.deleteIfExists(files.get(i));
+            log.info("Deleted the expired access log file: {}", files.get(i));
+        }
+    }
+
+    public static final String FILE_NAME = "access.log";
+    public static final String ROTATED_FILE_PREFIX = "access-";
+    public static final String ROTATED_FILE_SUFFIX = ".log";
+
+}
@@ -22,6 +22,10 @@ import org.springframework.context.annotation.Bean;
 
 import com.wl4g.escg.logging.RequestLoggingGlobalFilter;
 import com.wl4g.escg.logging.ResponseLoggingGlobalFilter;
+import com.wl4g.escg.logging.access.AccessLogSampler;
+import com.wl4g.escg.logging.access.AccessLogWriter;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.server.ClientAddressResolver;
 
 /**
  * {@link LoggingMessageAutoConfiguration}
@@ -39,13 +43,30 @@ public class LoggingAutoConfiguration {
     }
 
     @Bean
-    public RequestLoggingGlobalFilter requestLoggingGlobalFilter(LoggingProperties loggingConfig) {
-        return new RequestLoggingGlobalFilter(loggingConfig);
+    public AccessLogWriter accessLogWriter(LoggingProperties loggingConfig, IamGatewayMetricsFacade metricsFacade) {
+        return new AccessLogWriter(loggingConfig.getAccessLog(), metricsFacade);
     }
 
     @Bean
-    public ResponseLoggingGlobalFilter responseLoggingGlobalFilter(LoggingProperties loggingConfig) {
-        return new ResponseLoggingGlobalFilter(loggingConfig);
+    public AccessLogSampler accessLogSampler(LoggingProperties loggingConfig, IamGatewayMetricsFacade metricsFacade) {
+        return new AccessLogSampler(loggingConfig.getAccessLog().getSampling(), metricsFacade);
+    }
+
+    @Bean
+    public RequestLoggingGlobalFilter requestLoggingGlobalFilter(
+            LoggingProperties loggingConfig,
+            ClientAddressResolver clientAddressResolver,
+            AccessLogWriter accessLogWriter) {
+        return new RequestLoggingGlobalFilter(loggingConfig, clientAddressResolver, accessLogWriter);
+    }
+
+    @Bean
+    public ResponseLoggingGlobalFilter responseLoggingGlobalFilter(
+            LoggingProperties loggingConfig,
+            ClientAddressResolver clientAddressResolver,
+            AccessLogWriter accessLogWriter,
+            AccessLogSampler accessLogSampler) {
+        return new ResponseLoggingGlobalFilter(loggingConfig, clientAddressResolver, accessLogWriter, accessLogSampler);
     }
 
 }
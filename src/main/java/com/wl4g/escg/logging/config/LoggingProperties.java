@@ -15,9 +15,12 @@
  */
 package com.wl4g.escg.logging.config;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.util.unit.DataSize;
+
 import com.wl4g.infra.context.web.matcher.SpelRequestMatcher.MatchHttpRequestRule;
 
 import lombok.Getter;
@@ -93,4 +96,88 @@ public class LoggingProperties {
      */
     private List<MatchHttpRequestRule> preferMatchRuleDefinitions = new ArrayList<>();
 
+    /**
+     * The structured access log, which replaces the synchronous printing of
+     * flight logs on the event loop when enabled.
+     */
+    private AccessLogProperties accessLog = new AccessLogProperties();
+
+    @Getter
+    @Setter
+    @ToString
+    public static class AccessLogProperties {
+
+        /**
+         * If enabled, each exchange produces one structured record, which is
+         * handed to the lock-free ring buffer and encoded as the JSON lines
+         * by the dedicated writer thread into the rotated files.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The directory of the access log files.
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/escg/accesslog";
+
+        /**
+         * The max size of the current access log file, beyond which it's
+         * rotated.
+         */
+        private DataSize maxFileSize = DataSize.ofMegabytes(100);
+
+        /**
+         * The max number of rotated files to retain, the oldest are deleted.
+         */
+        private int maxFiles = 10;
+
+        /**
+         * The capacity of the ring buffer (rounded up to the power of 2),
+         * beyond which the new records are dropped rather than blocking the
+         * event loop.
+         */
+        private int bufferSize = 16384;
+
+        /**
+         * The tail-based sampling of the access log records, which is decided
+         * when the exchange is completed.
+         */
+        private TailSamplingProperties sampling = new TailSamplingProperties();
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    public static class TailSamplingProperties {
+
+        /**
+         * If enabled, only the records of the failed or slow exchanges and the
+         * sample of the rest are written, otherwise all records are written.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The min status code of the response that is treated as failed, the
+         * records of failed exchanges are always written.
+         */
+        private int errorStatusThreshold = 500;
+
+        /**
+         * The min latency of the exchange that is treated as slow.
+         */
+        private Duration slowThreshold = Duration.ofMillis(1000);
+
+        /**
+         * The sampling percentage rate of the records of the normal exchanges.
+         */
+        private double percentage = 0.01d;
+
+        /**
+         * The max number of slow or sampled records written per second of
+         * each route (the capacity of the token bucket), the records of
+         * failed exchanges are not limited. Less than or equal to 0 means
+         * unlimited.
+         */
+        private int maxRecordsPerRoutePerSecond = 100;
+    }
+
 }
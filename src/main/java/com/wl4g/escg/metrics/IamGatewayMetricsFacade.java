@@ -288,6 +288,9 @@ public class IamGatewayMetricsFacade implements InitializingBean {
         SIMPLE_SIGN_BLOOM_FAIL_TOTAL("iscg_simple_sign_bloom_fail_total",
                 "The total number of failed bloom validate for simple signature authenticator"),
 
+        SIMPLE_SIGN_BLOOM_LATE_FAIL_TOTAL("iscg_simple_sign_bloom_late_fail_total",
+                "The total number of replayed signatures detected after passed the local bloom for simple signature authenticator"),
+
         SIMPLE_SIGN_SUCCCESS_TOTAL("iscg_simple_sign_success_total",
                 "The total number of successful authentication by the simple signature authenticator"),
 
@@ -371,6 +374,27 @@ public class IamGatewayMetricsFacade implements InitializingBean {
 
         REDIS_QUOTALIMIT_TIME("iscg_redis_quotalimit_time", "The number of redis quota limit cost time"),
 
+        ADAPTIVE_CONCURRENCYLIMIT_TOTAL("iscg_adaptive_concurrencylimit_total",
+                "The number of total processing in the adaptive concurrency limiter"),
+
+        ADAPTIVE_CONCURRENCYLIMIT_HITS_TOTAL("iscg_adaptive_concurrencylimit_hits_total",
+                "The number of total hits in the adaptive concurrency limiter"),
+
+        ADAPTIVE_CONCURRENCYLIMIT_LIMIT("iscg_adaptive_concurrencylimit_limit",
+                "The current concurrency limit of the adaptive concurrency limiter"),
+
+        ADAPTIVE_CONCURRENCYLIMIT_INFLIGHT("iscg_adaptive_concurrencylimit_inflight",
+                "The number of inflight requests of the adaptive concurrency limiter"),
+
+        ADAPTIVE_CONCURRENCYLIMIT_RTT("iscg_adaptive_concurrencylimit_rtt",
+                "The last sampled round trip time (ms) of the adaptive concurrency limiter"),
+
+        REQUESTLIMIT_EVENT_FLUSHED_TOTAL("iscg_requestlimit_event_flushed_total",
+                "The number of total aggregated limit hits keys flushed to redis"),
+
+        REQUESTLIMIT_EVENT_DROPPED_TOTAL("iscg_requestlimit_event_dropped_total",
+                "The number of total limit hits events dropped by the aggregating recorder under pressure"),
+
         //
         // Response cache.
         //
@@ -387,6 +411,18 @@ public class IamGatewayMetricsFacade implements InitializingBean {
 
         IPFILTER_HITS_TOTAL("iscg_ipfilter_hits_total", "The number of total hits in the ipfilter"),
 
+        IPFILTER_FEED_SIZE("iscg_ipfilter_feed_size", "The number of entries of the ipfilter feed"),
+
+        IPFILTER_FEED_BUILD_TIME("iscg_ipfilter_feed_build_time", "The time of building the matcher of the ipfilter feed"),
+
+        IPFILTER_FEED_LOAD_FAIL_TOTAL("iscg_ipfilter_feed_load_fail_total",
+                "The number of total failures of loading the ipfilter feed"),
+
+        IPFILTER_FEED_HITS_TOTAL("iscg_ipfilter_feed_hits_total", "The number of total matched of the ipfilter feed"),
+
+        IPFILTER_CONNECTION_REJECTED_TOTAL("iscg_ipfilter_connection_rejected_total",
+                "The number of total rejected connections in the connection-level ipfilter"),
+
         //
         // Fault.
         //
@@ -397,7 +433,63 @@ public class IamGatewayMetricsFacade implements InitializingBean {
         // Traffic.
         //
 
-        TRAFFIC_REPLICATION_TOTAL("iscg_traffic_replication_total", "The number of total processing in the traffic replication");
+        TRAFFIC_REPLICATION_TOTAL("iscg_traffic_replication_total", "The number of total processing in the traffic replication"),
+
+        TRAFFIC_REPLICATION_DROPPED_TOTAL("iscg_traffic_replication_dropped_total",
+                "The number of total dropped mirrors of the slow or overflowed targets in the traffic replication"),
+
+        TRAFFIC_REPLICATION_ENQUEUED_TOTAL("iscg_traffic_replication_enqueued_total",
+                "The number of total dispatched mirrors in the traffic replication"),
+
+        TRAFFIC_REPLICATION_INFLIGHT("iscg_traffic_replication_inflight",
+                "The number of in-flight mirrors of the target in the traffic replication"),
+
+        TRAFFIC_REPLICATION_QUEUED("iscg_traffic_replication_queued",
+                "The number of queued mirrors of the target in the traffic replication"),
+
+        TRAFFIC_REPLICATION_LATENCY("iscg_traffic_replication_latency", "The latency of mirrors in the traffic replication"),
+
+        TRAFFIC_REPLICATION_POOL_ACQUIRED("iscg_traffic_replication_pool_acquired",
+                "The number of acquired pool connections of the target in the traffic replication"),
+
+        TRAFFIC_REPLICATION_POOL_UTILIZATION("iscg_traffic_replication_pool_utilization",
+                "The ratio of acquired to max pool connections of the target in the traffic replication"),
+
+        TRAFFIC_DIFF_TOTAL("iscg_traffic_diff_total", "The number of total compared mirror responses in the traffic diffing"),
+
+        TRAFFIC_DIFF_MISMATCH_TOTAL("iscg_traffic_diff_mismatch_total",
+                "The number of total mismatched mirror responses in the traffic diffing"),
+
+        TRAFFIC_DIFF_FIELD_MISMATCH_TOTAL("iscg_traffic_diff_field_mismatch_total",
+                "The number of total mismatched fields (status, headers or body) in the traffic diffing"),
+
+        TRAFFIC_DIFF_DROPPED_TOTAL("iscg_traffic_diff_dropped_total",
+                "The number of total dropped comparisons beyond the max pending in the traffic diffing"),
+
+        TRAFFIC_DIFF_PENDING("iscg_traffic_diff_pending", "The number of pending comparisons in the traffic diffing"),
+
+        TRAFFIC_CAPTURE_TOTAL("iscg_traffic_capture_total", "The number of total captured requests in the traffic capture"),
+
+        TRAFFIC_CAPTURE_DROPPED_TOTAL("iscg_traffic_capture_dropped_total",
+                "The number of total dropped records since the queue is full in the traffic capture"),
+
+        TRAFFIC_CAPTURE_QUEUED("iscg_traffic_capture_queued", "The number of queued records to be written in the traffic capture"),
+
+        TRAFFIC_CAPTURE_WRITTEN_BYTES_TOTAL("iscg_traffic_capture_written_bytes_total",
+                "The number of total written bytes of segments in the traffic capture"),
+
+        ACCESS_LOG_WRITTEN_TOTAL("iscg_access_log_written_total", "The number of total written records in the access log"),
+
+        ACCESS_LOG_DROPPED_TOTAL("iscg_access_log_dropped_total",
+                "The number of total dropped records since the buffer is full in the access log"),
+
+        ACCESS_LOG_QUEUED("iscg_access_log_queued", "The number of buffered records to be written in the access log"),
+
+        ACCESS_LOG_WRITTEN_BYTES_TOTAL("iscg_access_log_written_bytes_total",
+                "The number of total written bytes of files in the access log"),
+
+        ACCESS_LOG_SAMPLING_TOTAL("iscg_access_log_sampling_total",
+                "The number of total sampling decisions of the records in the access log");
 
         private final String name;
         private final String help;
@@ -416,6 +508,10 @@ public class IamGatewayMetricsFacade implements InitializingBean {
         public static final String SIGN_ALG = "alg";
         public static final String SIGN_HASH = "hash";
 
+        // for Request limiter tags.
+
+        public static final String LIMIT_KEY = "limitKey";
+
         // for LoadBalancer tags.
 
         public static final String LB = "lb";
@@ -429,6 +525,20 @@ public class IamGatewayMetricsFacade implements InitializingBean {
 
         public static final String FAULT_INJECTOR = "injector";
 
+        // for IpFilter tags.
+
+        public static final String IPFILTER_FEED = "feed";
+
+        // for Traffic tags.
+
+        public static final String TRAFFIC_TARGET = "target";
+        public static final String TRAFFIC_DROP_REASON = "reason";
+        public static final String TRAFFIC_DIFF_FIELD = "field";
+
+        // for Logging tags.
+
+        public static final String ACCESS_LOG_DECISION = "decision";
+
     }
 
 }
@@ -19,6 +19,7 @@ package com.wl4g.escg.requestlimit;
 import static com.wl4g.infra.common.collection.CollectionUtils2.safeMap;
 import static com.wl4g.infra.common.lang.Assert2.notNullOf;
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setResponseStatus;
 
@@ -215,6 +216,9 @@ public class IamRequestLimiterFilterFactory extends AbstractGatewayFilterFactory
                     if (result.isAllowed()) {
                         log.debug("Allowed of keyResolver: {}, limiter: {}, path: {}", keyResolver.kind(), requestLimiter.kind(),
                                 exchange.getRequest().getURI().getPath());
+                        if (nonNull(result.getCompletion())) {
+                            return chain.filter(exchange).doFinally(result.getCompletion());
+                        }
                         return chain.filter(exchange);
                     }
 
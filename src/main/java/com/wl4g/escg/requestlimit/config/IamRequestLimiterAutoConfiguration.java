@@ -15,31 +15,39 @@
  */
 package com.wl4g.escg.requestlimit.config;
 
+import static com.wl4g.escg.constant.EscgConstants.CONF_PREFIX_ESCG_REQUESTLIMIT;
 import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
 
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.support.ConfigurationService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 
 import com.wl4g.escg.constant.EscgConstants;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
 import com.wl4g.escg.requestlimit.IamRequestLimiterFilterFactory;
 import com.wl4g.escg.requestlimit.configurer.LimiterStrategyConfigurer;
 import com.wl4g.escg.requestlimit.configurer.RedisLimiterStrategyConfigurer;
+import com.wl4g.escg.requestlimit.event.AggregatingRedisRequestLimitEventRecorder;
 import com.wl4g.escg.requestlimit.event.DefaultRedisRequestLimitEventRecorder;
+import com.wl4g.escg.requestlimit.key.CompositeIamKeyResolver;
 import com.wl4g.escg.requestlimit.key.HeaderIamKeyResolver;
 import com.wl4g.escg.requestlimit.key.HostIamKeyResolver;
 import com.wl4g.escg.requestlimit.key.IamKeyResolver;
@@ -51,8 +59,10 @@ import com.wl4g.escg.requestlimit.key.PathIamKeyResolver;
 import com.wl4g.escg.requestlimit.key.PrincipalIamKeyResolver;
 import com.wl4g.escg.requestlimit.limiter.IamRequestLimiter;
 import com.wl4g.escg.requestlimit.limiter.IamRequestLimiter.RequestLimiterPrivoder;
+import com.wl4g.escg.requestlimit.limiter.adaptive.AdaptiveConcurrencyIamRequestLimiter;
 import com.wl4g.escg.requestlimit.limiter.quota.RedisQuotaIamRequestLimiter;
 import com.wl4g.escg.requestlimit.limiter.rate.RedisRateIamRequestLimiter;
+import com.wl4g.escg.server.ClientAddressResolver;
 import com.wl4g.infra.common.eventbus.EventBusSupport;
 import com.wl4g.infra.common.framework.operator.GenericOperatorAdapter;
 
@@ -90,18 +100,18 @@ public class IamRequestLimiterAutoConfiguration {
     //
 
     @Bean
-    public IamKeyResolver<? extends KeyResolverStrategy> hostIamKeyResolver() {
-        return new HostIamKeyResolver();
+    public IamKeyResolver<? extends KeyResolverStrategy> hostIamKeyResolver(ClientAddressResolver clientAddressResolver) {
+        return new HostIamKeyResolver(clientAddressResolver);
     }
 
     @Bean
-    public IamKeyResolver<? extends KeyResolverStrategy> ipRangeIamKeyResolver() {
-        return new IpRangeIamKeyResolver();
+    public IamKeyResolver<? extends KeyResolverStrategy> ipRangeIamKeyResolver(ClientAddressResolver clientAddressResolver) {
+        return new IpRangeIamKeyResolver(clientAddressResolver);
     }
 
     @Bean
-    public IamKeyResolver<? extends KeyResolverStrategy> headerIamKeyResolver() {
-        return new HeaderIamKeyResolver();
+    public IamKeyResolver<? extends KeyResolverStrategy> headerIamKeyResolver(ClientAddressResolver clientAddressResolver) {
+        return new HeaderIamKeyResolver(clientAddressResolver);
     }
 
     @Bean
@@ -119,6 +129,12 @@ public class IamRequestLimiterAutoConfiguration {
         return new IntervalIamKeyResolver();
     }
 
+    @Bean
+    public IamKeyResolver<? extends KeyResolverStrategy> compositeIamKeyResolver(
+            ObjectProvider<GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>>> keyResolverAdapterProvider) {
+        return new CompositeIamKeyResolver(keyResolverAdapterProvider::getObject);
+    }
+
     @Bean
     public GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>> iamKeyResolverAdapter(
             List<IamKeyResolver<? extends KeyResolverStrategy>> resolvers) {
@@ -146,7 +162,7 @@ public class IamRequestLimiterAutoConfiguration {
      */
     @Bean
     public IamRequestLimiter redisRateIamRequestLimiter(
-            RedisScript<List<Long>> redisScript,
+            @Qualifier(RedisRateLimiter.REDIS_SCRIPT_NAME) RedisScript<List<Long>> redisScript,
             IamRequestLimiterProperties requestLimiterConfig,
             LimiterStrategyConfigurer configurer,
             ReactiveStringRedisTemplate redisTemplate,
@@ -156,14 +172,35 @@ public class IamRequestLimiterAutoConfiguration {
                 metricsFacade);
     }
 
+    /**
+     * {@link org.springframework.cloud.gateway.config.GatewayRedisAutoConfiguration#redisRequestRateLimiterScript}
+     */
+    @Bean(BEAN_REDIS_QUOTALIMITE_SCRIPT)
+    public RedisScript<Long> redisQuotaLimiterScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(REDIS_QUOTALIMITE_SCRIPT_LOCATION)));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
     @Bean
     public IamRequestLimiter redisQuotaIamRequestLimiter(
+            @Qualifier(BEAN_REDIS_QUOTALIMITE_SCRIPT) RedisScript<Long> redisScript,
             IamRequestLimiterProperties requestLimiterConfig,
             LimiterStrategyConfigurer configurer,
             ReactiveStringRedisTemplate redisTemplate,
             @Qualifier(BEAN_REDIS_RATELIMITE_EVENTBUS) EventBusSupport eventBus,
             IamGatewayMetricsFacade metricsFacade) {
-        return new RedisQuotaIamRequestLimiter(requestLimiterConfig, configurer, redisTemplate, eventBus, metricsFacade);
+        return new RedisQuotaIamRequestLimiter(redisScript, requestLimiterConfig, configurer, redisTemplate, eventBus,
+                metricsFacade);
+    }
+
+    @Bean
+    public IamRequestLimiter adaptiveConcurrencyIamRequestLimiter(
+            IamRequestLimiterProperties requestLimiterConfig,
+            LimiterStrategyConfigurer configurer,
+            IamGatewayMetricsFacade metricsFacade) {
+        return new AdaptiveConcurrencyIamRequestLimiter(requestLimiterConfig, configurer, metricsFacade);
     }
 
     @Bean
@@ -194,6 +231,8 @@ public class IamRequestLimiterAutoConfiguration {
     }
 
     @Bean
+    @ConditionalOnProperty(name = CONF_PREFIX_ESCG_REQUESTLIMIT
+            + ".eventRecorder.aggregation.enabled", havingValue = "false")
     public DefaultRedisRequestLimitEventRecorder redisRateLimiteEventRecoder(
             @Qualifier(BEAN_REDIS_RATELIMITE_EVENTBUS) EventBusSupport eventBus) {
         DefaultRedisRequestLimitEventRecorder recorder = new DefaultRedisRequestLimitEventRecorder();
@@ -201,6 +240,17 @@ public class IamRequestLimiterAutoConfiguration {
         return recorder;
     }
 
+    @Bean
+    @ConditionalOnProperty(name = CONF_PREFIX_ESCG_REQUESTLIMIT
+            + ".eventRecorder.aggregation.enabled", havingValue = "true", matchIfMissing = true)
+    public AggregatingRedisRequestLimitEventRecorder aggregatingRedisRateLimiteEventRecoder(
+            IamRequestLimiterProperties requestLimiteConfig,
+            @Qualifier(BEAN_REDIS_RATELIMITE_EVENTBUS) EventBusSupport eventBus) {
+        AggregatingRedisRequestLimitEventRecorder recorder = new AggregatingRedisRequestLimitEventRecorder(requestLimiteConfig);
+        eventBus.register(recorder);
+        return recorder;
+    }
+
     class WarningDeprecatedRedisRateLimiter extends RedisRateLimiter implements ApplicationRunner {
         private @Lazy @Autowired RouteDefinitionLocator routeLocator;
 
@@ -226,6 +276,8 @@ public class IamRequestLimiterAutoConfiguration {
     }
 
     public static final String BEAN_REDIS_RATELIMITE_EVENTBUS = "redisRateLimiteEventBusSupport";
+    public static final String BEAN_REDIS_QUOTALIMITE_SCRIPT = "redisQuotaLimiterScript";
+    public static final String REDIS_QUOTALIMITE_SCRIPT_LOCATION = "META-INF/scripts/escg_quota_limiter.lua";
     public static final String LOG_MESSAGE_WARNING_REDIS_RATE_LIMITER = "\n[WARNING]: The default redisRateLimiter is deprecated, please use the IAM rate limiter with the configuration key prefix: 'spring.iam.gateway.ratelimit'\n";
 
 }
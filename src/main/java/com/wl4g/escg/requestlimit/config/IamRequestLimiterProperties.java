@@ -15,6 +15,7 @@
  */
 package com.wl4g.escg.requestlimit.config;
 
+import static com.wl4g.escg.constant.EscgConstants.CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_ADAPTIVE;
 import static com.wl4g.escg.constant.EscgConstants.CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_QUOTA;
 import static com.wl4g.escg.constant.EscgConstants.CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_RATE;
 import static com.wl4g.escg.constant.EscgConstants.CACHE_PREFIX_ESCG_REQUESTLIMIT_EVENT_HITS_QUOTA;
@@ -23,15 +24,19 @@ import static com.wl4g.escg.constant.EscgConstants.CACHE_PREFIX_ESCG_REQUESTLIMI
 import static com.wl4g.escg.constant.EscgConstants.CACHE_PREFIX_ESCG_REQUESTLIMIT_TOKEN_RATE;
 import static com.wl4g.escg.constant.EscgConstants.CACHE_SUFFIX_IAM_GATEWAY_EVENT_YYMMDD;
 
+import javax.validation.constraints.Min;
+
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 
+import com.wl4g.escg.requestlimit.key.CompositeIamKeyResolver.CompositeKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.HeaderIamKeyResolver.HeaderKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.HostIamKeyResolver.HostKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.IntervalIamKeyResolver.IntervalKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.IpRangeIamKeyResolver.IpRangeKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.PathIamKeyResolver.PathKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.PrincipalIamKeyResolver.PrincipalKeyResolverStrategy;
+import com.wl4g.escg.requestlimit.limiter.adaptive.AdaptiveConcurrencyRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.quota.RedisQuotaRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.rate.RedisRateRequestLimiterStrategy;
 
@@ -126,6 +131,11 @@ public class IamRequestLimiterProperties {
          */
         private IpRangeKeyResolverStrategy ipRange = new IpRangeKeyResolverStrategy();
 
+        /**
+         * The key resolver based on the composite of several key resolvers.
+         */
+        private CompositeKeyResolverStrategy composite = new CompositeKeyResolverStrategy();
+
     }
 
     /**
@@ -149,6 +159,11 @@ public class IamRequestLimiterProperties {
          */
         private RedisQuotaLimiterProperties quota = new RedisQuotaLimiterProperties();
 
+        /**
+         * The default adaptive concurrency limiting configuration.
+         */
+        private AdaptiveConcurrencyLimiterProperties adaptive = new AdaptiveConcurrencyLimiterProperties();
+
         @Getter
         @Setter
         @ToString
@@ -326,6 +341,86 @@ public class IamRequestLimiterProperties {
             public static final String QUOTA_DENY_EMPTYKEY_HEADER = "X-Escg-QuotaLimit-Deny-EmptyKey";
         }
 
+        /**
+         * The adaptive concurrency limiter properties.
+         */
+        @Getter
+        @Setter
+        @ToString
+        @Validated
+        @AllArgsConstructor
+        public static class AdaptiveConcurrencyLimiterProperties extends AbstractLimiterProperties {
+
+            /**
+             * The name of the header that returns the current concurrency
+             * limit.
+             */
+            private String limitHeader = ADAPTIVE_LIMIT_HEADER;
+
+            /**
+             * Redis adaptive concurrency limiter user-level configuration key
+             * prefix.
+             */
+            private String configPrefix = CACHE_PREFIX_ESCG_REQUESTLIMIT_CONF_ADAPTIVE;
+
+            /**
+             * The seconds of caching the loaded user-level strategy locally,
+             * so that the local limiter doesn't need a redis round trip per
+             * request.
+             */
+            private @Min(1) int strategyCacheSeconds = 10;
+
+            /**
+             * The seconds of caching the default strategy locally when failed
+             * to load the user-level strategy, so that an unavailable redis
+             * isn't hit by every request.
+             */
+            private @Min(1) int strategyErrorCacheSeconds = 2;
+
+            /**
+             * The max number of the limiters (per route, or per limit key if
+             * partitioned), beyond which the least recently used are evicted.
+             */
+            private @Min(1) int maxLimiters = 10_000;
+
+            /**
+             * The seconds of the limiter being idle before evicted.
+             */
+            private @Min(1) int limiterExpireSeconds = 600;
+
+            /**
+             * The default strategy configuration of the adaptive concurrency
+             * limiter.
+             */
+            private AdaptiveConcurrencyRequestLimiterStrategy defaultStrategy = new AdaptiveConcurrencyRequestLimiterStrategy();
+
+            public AdaptiveConcurrencyLimiterProperties() {
+                setRemainingHeader(ADAPTIVE_REMAINING_HEADER);
+                setLimitKeyHeader(ADAPTIVE_LIMITKEY_HEADER);
+                setDenyEmptyKeyHeader(ADAPTIVE_DENY_EMPTYKEY_HEADER);
+            }
+
+            /**
+             * The current concurrency limit header name.
+             */
+            public static final String ADAPTIVE_LIMIT_HEADER = "X-Escg-AdaptiveLimit-Limit";
+
+            /**
+             * Remaining concurrency header name.
+             */
+            public static final String ADAPTIVE_REMAINING_HEADER = "X-Escg-AdaptiveLimit-Remaining";
+
+            /**
+             * The limit key header name.
+             */
+            public static final String ADAPTIVE_LIMITKEY_HEADER = "X-Escg-AdaptiveLimit-LimitKey";
+
+            /**
+             * The name of the deny header that empty key got obtained.
+             */
+            public static final String ADAPTIVE_DENY_EMPTYKEY_HEADER = "X-Escg-AdaptiveLimit-Deny-EmptyKey";
+        }
+
     }
 
     /**
@@ -357,6 +452,11 @@ public class IamRequestLimiterProperties {
          */
         private RedisLimitEventRecorderProperties redis = new RedisLimitEventRecorderProperties();
 
+        /**
+         * The in-memory aggregation of limited events properties.
+         */
+        private AggregationEventRecorderProperties aggregation = new AggregationEventRecorderProperties();
+
         @Getter
         @Setter
         @ToString
@@ -382,6 +482,34 @@ public class IamRequestLimiterProperties {
             private String cumulatorSuffixOfDatePattern = CACHE_SUFFIX_IAM_GATEWAY_EVENT_YYMMDD;
         }
 
+        @Getter
+        @Setter
+        @ToString
+        @Validated
+        @AllArgsConstructor
+        @NoArgsConstructor
+        public static class AggregationEventRecorderProperties {
+
+            /**
+             * Whether to enable coalescing the hits counts in memory and
+             * flushing to redis in batches, otherwise each event will be
+             * recorded to redis synchronously.
+             */
+            private boolean enabled = true;
+
+            /**
+             * The interval of flushing the aggregated hits counts to redis.
+             */
+            private @Min(10) long flushIntervalMs = 1000L;
+
+            /**
+             * The maximum number of pending (routeId, limitKey, day) keys
+             * between two flushes, the events of new keys exceeding it will be
+             * dropped.
+             */
+            private @Min(1) int maxPendingKeys = 100_000;
+        }
+
     }
 
 }
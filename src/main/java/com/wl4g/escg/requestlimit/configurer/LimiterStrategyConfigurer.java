@@ -19,6 +19,7 @@ import static java.lang.String.valueOf;
 
 import javax.validation.constraints.NotBlank;
 
+import com.wl4g.escg.requestlimit.limiter.adaptive.AdaptiveConcurrencyRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.quota.RedisQuotaRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.rate.RedisRateRequestLimiterStrategy;
 
@@ -39,6 +40,8 @@ public interface LimiterStrategyConfigurer {
 
     Mono<RedisQuotaRequestLimiterStrategy> loadQuotaStrategy(@NotBlank String routeId, @NotBlank String limitKey);
 
+    Mono<AdaptiveConcurrencyRequestLimiterStrategy> loadAdaptiveStrategy(@NotBlank String routeId, @NotBlank String limitKey);
+
     public static String getConfigKey(String routeId, String limitKey) {
         return valueOf(routeId).concat(":").concat(limitKey);
     }
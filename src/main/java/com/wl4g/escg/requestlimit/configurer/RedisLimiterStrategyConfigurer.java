@@ -24,6 +24,7 @@ import org.springframework.data.redis.core.ReactiveHashOperations;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 
 import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.requestlimit.limiter.adaptive.AdaptiveConcurrencyRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.quota.RedisQuotaRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.rate.RedisRateRequestLimiterStrategy;
 
@@ -55,6 +56,16 @@ public class RedisLimiterStrategyConfigurer implements LimiterStrategyConfigurer
         return getOperation().get(prefix, configKey).map(json -> parseJSON(json, RedisQuotaRequestLimiterStrategy.class));
     }
 
+    @Override
+    public Mono<AdaptiveConcurrencyRequestLimiterStrategy> loadAdaptiveStrategy(
+            @NotBlank String routeId,
+            @NotBlank String limitKey) {
+        String prefix = requestLimitConfig.getLimiter().getAdaptive().getConfigPrefix();
+        String configKey = LimiterStrategyConfigurer.getConfigKey(routeId, limitKey);
+        return getOperation().get(prefix, configKey)
+                .map(json -> parseJSON(json, AdaptiveConcurrencyRequestLimiterStrategy.class));
+    }
+
     private ReactiveHashOperations<String, String, String> getOperation() {
         return redisTemplate.opsForHash();
     }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.event;
+
+import static com.wl4g.escg.requestlimit.event.DefaultRedisRequestLimitEventRecorder.LOG_QUOTALIMIT_HITS_EVENT;
+import static com.wl4g.escg.requestlimit.event.DefaultRedisRequestLimitEventRecorder.LOG_RATELIMIT_HITS_EVENT;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+import static java.lang.String.valueOf;
+import static java.util.Objects.isNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties.EventRecorderProperties.AggregationEventRecorderProperties;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties.EventRecorderProperties.RedisLimitEventRecorderProperties;
+import com.wl4g.escg.util.CycleClock;
+import com.wl4g.infra.common.task.RunnerProperties;
+import com.wl4g.infra.common.task.RunnerProperties.StartupMode;
+import com.wl4g.infra.common.task.SafeScheduledTaskPoolExecutor;
+import com.wl4g.infra.context.task.ApplicationTaskRunner;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The limit hits event recorder that coalesces the hits counts in memory per
+ * (routeId, limitKey, day), and flushes them to redis as one pipelined batch
+ * of {@code HINCRBY} every interval, so that a rejection storm never blocks
+ * the event bus threads on redis round trips.
+ *
+ * <p>
+ * Note: The hits are accumulated lock-free on the adders of the current
+ * generation, the flush swaps in a fresh generation, and waits for the few
+ * in-flight recordings of the retired generation before summing it, so that
+ * an increment never lands on the adder that has been summed.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-03 v1.0.0
+ * @since v1.0.0
+ * @see {@link DefaultRedisRequestLimitEventRecorder}
+ */
+@Slf4j
+public class AggregatingRedisRequestLimitEventRecorder extends ApplicationTaskRunner<RunnerProperties>
+        implements DisposableBean {
+
+    private final IamRequestLimiterProperties requestLimitConfig;
+    private volatile Generation pendingHits = new Generation(64);
+    private final LongAdder droppedEvents = new LongAdder();
+    private long lastDroppedEvents;
+    private @Autowired StringRedisTemplate redisTemplate;
+    private @Autowired IamGatewayMetricsFacade metricsFacade;
+
+    public AggregatingRedisRequestLimitEventRecorder(IamRequestLimiterProperties requestLimitConfig) {
+        super(new RunnerProperties(StartupMode.ASYNC, 1));
+        this.requestLimitConfig = notNullOf(requestLimitConfig, "requestLimitConfig");
+    }
+
+    @Override
+    protected void onApplicationStarted(ApplicationArguments args, SafeScheduledTaskPoolExecutor worker) throws Exception {
+        long flushIntervalMs = requestLimitConfig.getEventRecorder().getAggregation().getFlushIntervalMs();
+        worker.scheduleWithFixedDelay(() -> flush(), flushIntervalMs, flushIntervalMs, MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        try {
+            flush();
+        } finally {
+            super.close();
+        }
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onRateLimitHit(RateLimitHitEvent event) {
+        RedisLimitEventRecorderProperties redis = requestLimitConfig.getEventRecorder().getRedis();
+        record(LOG_RATELIMIT_HITS_EVENT, redis.getRateHitsCumulatorPrefix(), event);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onQuotaLimitHit(QuotaLimitHitEvent event) {
+        RedisLimitEventRecorderProperties redis = requestLimitConfig.getEventRecorder().getRedis();
+        record(LOG_QUOTALIMIT_HITS_EVENT, redis.getQuotaHitsCumulatorPrefix(), event);
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    public int getPendingKeys() {
+        return pendingHits.hits.size();
+    }
+
+    private void record(String logPrefix, String cumulatorPrefix, BaseLimitHitEvent event) {
+        String suffix = requestLimitConfig.getEventRecorder().getRedis().getCumulatorSuffixOfDatePattern();
+        String day = CycleClock.forPattern(suffix).current(currentTimeMillis()).getCycleKey();
+        HitsKey key = new HitsKey(logPrefix, cumulatorPrefix.concat(":").concat(event.getRouteId()).concat(":").concat(day),
+                valueOf(event.getSource()));
+
+        addPendingHits(key, 1, true);
+    }
+
+    private void addPendingHits(HitsKey key, long delta, boolean bounded) {
+        for (;;) {
+            Generation generation = pendingHits;
+            generation.writers.increment();
+            try {
+                if (generation.retired) {
+                    // Swapped by the flush, retry on the new generation.
+                    continue;
+                }
+                LongAdder hits = generation.hits.get(key);
+                if (isNull(hits)) {
+                    // Under pressure (e.g. attacks with random limit keys),
+                    // the new keys are dropped so that the memory is always
+                    // bounded.
+                    AggregationEventRecorderProperties aggregation = requestLimitConfig.getEventRecorder().getAggregation();
+                    if (bounded && generation.hits.size() >= aggregation.getMaxPendingKeys()) {
+                        droppedEvents.increment();
+                        return;
+                    }
+                    hits = generation.hits.computeIfAbsent(key, k -> new LongAdder());
+                }
+                hits.add(delta);
+                return;
+            } finally {
+                generation.writers.decrement();
+            }
+        }
+    }
+
+    /**
+     * Detach the pending hits of all keys, the subsequent hits are
+     * accumulated by the new generation.
+     */
+    synchronized Map<HitsKey, Long> drainPendingHits() {
+        Generation retired = pendingHits;
+        pendingHits = new Generation(retired.hits.size());
+        retired.retired = true;
+        // The recordings that have read the retired generation are only a few
+        // instructions, and the later ones will see it retired.
+        while (retired.writers.sum() != 0) {
+            Thread.yield();
+        }
+
+        Map<HitsKey, Long> drained = new LinkedHashMap<>(retired.hits.size());
+        retired.hits.forEach((key, hits) -> {
+            long delta = hits.sum();
+            if (delta > 0) {
+                drained.put(key, delta);
+            }
+        });
+        return drained;
+    }
+
+    /**
+     * Flush the coalesced hits counts to redis with one pipelined batch.
+     */
+    public synchronized void flush() {
+        // The detached keys are also evicted, so the idle keys never stay.
+        Map<HitsKey, Long> drained = drainPendingHits();
+        List<HitsKey> keys = new ArrayList<>(drained.keySet());
+        List<Long> deltas = new ArrayList<>(drained.values());
+
+        long totalDropped = droppedEvents.sum();
+        long dropped = totalDropped - lastDroppedEvents;
+        lastDroppedEvents = totalDropped;
+        if (dropped > 0) {
+            metricsFacade.counter(MetricsName.REQUESTLIMIT_EVENT_DROPPED_TOTAL, dropped);
+            log.warn("Dropped {} limit hits events, because the pending keys exceeded the maximum: {}", dropped,
+                    requestLimitConfig.getEventRecorder().getAggregation().getMaxPendingKeys());
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (int i = 0; i < keys.size(); i++) {
+                    HitsKey key = keys.get(i);
+                    stringConnection.hIncrBy(key.getCumulatorKey(), key.getLimitKey(), deltas.get(i));
+                }
+                return null;
+            });
+            metricsFacade.counter(MetricsName.REQUESTLIMIT_EVENT_FLUSHED_TOTAL, keys.size());
+
+            if (requestLimitConfig.getEventRecorder().isLocalLogEnabled() && log.isInfoEnabled()) {
+                for (int i = 0; i < keys.size(); i++) {
+                    HitsKey key = keys.get(i);
+                    log.info("{} {}->{} (+{})", key.getLogPrefix(), key.getLimitKey(), results.get(i), deltas.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to flush limit hits events to redis.", e);
+            // Put back it to retry on next flush.
+            for (int i = 0; i < keys.size(); i++) {
+                addPendingHits(keys.get(i), deltas.get(i), false);
+            }
+        }
+    }
+
+    static class Generation {
+        private final Map<HitsKey, LongAdder> hits;
+        private final LongAdder writers = new LongAdder();
+        private volatile boolean retired;
+
+        Generation(int initialCapacity) {
+            this.hits = new ConcurrentHashMap<>(Math.max(initialCapacity, 64));
+        }
+    }
+
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    static class HitsKey {
+        private final String logPrefix;
+        private final String cumulatorKey;
+        private final String limitKey;
+    }
+
+}
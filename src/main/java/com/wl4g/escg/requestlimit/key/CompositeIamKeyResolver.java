@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.key;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.hash.Hashing;
+import com.wl4g.escg.requestlimit.IamRequestLimiterFilterFactory.Config.KeyResolverStrategyConfig;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.infra.common.framework.operator.GenericOperatorAdapter;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The key resolver that concatenates the keys of several resolvers, e.g:
+ * per-tenant-per-endpoint limiting with the Header and Path (templated)
+ * resolvers, and emits the fixed-length hashed key, so that the redis key
+ * sizes are bounded no matter how long the header or path values get. Each
+ * key is prefixed by its length, so that the keys containing the delimiter
+ * can't collide, e.g: 'a:b' + 'c' is '3#a:b:1#c' and 'a' + 'b:c' is
+ * '1#a:3#b:c'.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-05 v1.0.0
+ * @since v1.0.0
+ */
+public class CompositeIamKeyResolver extends AbstractIamKeyResolver<CompositeIamKeyResolver.CompositeKeyResolverStrategy> {
+    private static final String EMPTY_KEY = "";
+
+    private final Supplier<GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>>> keyResolverAdapterProvider;
+
+    /**
+     * @param keyResolverAdapterProvider
+     *            The adapter of all the key resolvers, it's supplied lazily as
+     *            this resolver is one of them.
+     */
+    public CompositeIamKeyResolver(
+            Supplier<GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>>> keyResolverAdapterProvider) {
+        this.keyResolverAdapterProvider = notNullOf(keyResolverAdapterProvider, "keyResolverAdapterProvider");
+    }
+
+    @Override
+    public KeyResolverProvider kind() {
+        return KeyResolverProvider.Composite;
+    }
+
+    @Override
+    public Mono<String> resolve(CompositeKeyResolverStrategy strategy, ServerWebExchange exchange) {
+        GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>> adapter = keyResolverAdapterProvider
+                .get();
+        return Flux.fromIterable(strategy.getDelegates())
+                .concatMap(delegate -> getKeyResolver(adapter, delegate).resolve(delegate.getStrategy(), exchange)
+                        .defaultIfEmpty(EMPTY_KEY))
+                .collectList()
+                .flatMap(keys -> {
+                    // Any empty dimension will cause the whole key to be
+                    // empty, so as to follow the 'denyEmptyKey' config.
+                    if (keys.isEmpty() || keys.contains(EMPTY_KEY)) {
+                        return Mono.empty();
+                    }
+                    String joinedKey = joinKeys(strategy.getDelimiter(), keys);
+                    if (strategy.isHashed()) {
+                        return Mono.just(Hashing.murmur3_128().hashString(joinedKey, UTF_8).toString());
+                    }
+                    return Mono.just(joinedKey);
+                });
+    }
+
+    static String joinKeys(String delimiter, List<String> keys) {
+        StringBuilder joinedKey = new StringBuilder();
+        for (String key : keys) {
+            if (joinedKey.length() > 0) {
+                joinedKey.append(delimiter);
+            }
+            joinedKey.append(key.length()).append('#').append(key);
+        }
+        return joinedKey.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private IamKeyResolver<KeyResolverStrategy> getKeyResolver(
+            GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>> adapter,
+            Delegate delegate) {
+        return (IamKeyResolver<KeyResolverStrategy>) adapter.forOperator(delegate.getProvider());
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    @NoArgsConstructor
+    public static class CompositeKeyResolverStrategy extends IamKeyResolver.KeyResolverStrategy {
+
+        /**
+         * The delegate key resolvers whose keys are concatenated in order.
+         */
+        private List<KeyResolverStrategyConfig> resolvers = new ArrayList<>();
+
+        /**
+         * The delimiter of concatenating the length prefixed keys of delegate
+         * resolvers.
+         */
+        private @NotNull String delimiter = ":";
+
+        /**
+         * Whether to emit the fixed-length (32 hex chars) hashed key of the
+         * concatenated keys, otherwise the concatenated keys are emitted as is.
+         */
+        private boolean hashed = true;
+
+        @JsonIgnore
+        @ToString.Exclude
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private transient List<Delegate> delegates;
+
+        @Override
+        public void applyDefaultIfNecessary(IamRequestLimiterProperties config) {
+            if (safeList(getResolvers()).isEmpty()) {
+                setResolvers(config.getDefaultKeyResolver().getComposite().getResolvers());
+            }
+            this.delegates = safeList(getResolvers()).stream().map(resolver -> {
+                if (resolver.getProvider() == KeyResolverProvider.Composite) {
+                    throw new IllegalArgumentException("The composite key resolver cannot be nested.");
+                }
+                KeyResolverStrategy strategy = resolver.parseStrategy();
+                strategy.applyDefaultIfNecessary(config);
+                return new Delegate(resolver.getProvider(), strategy);
+            }).collect(toList());
+        }
+
+        @JsonIgnore
+        public List<Delegate> getDelegates() {
+            if (isNull(delegates)) {
+                throw new IllegalStateException("The composite key resolver strategy has not been applied.");
+            }
+            return delegates;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Delegate {
+        private final KeyResolverProvider provider;
+        private final KeyResolverStrategy strategy;
+    }
+
+}
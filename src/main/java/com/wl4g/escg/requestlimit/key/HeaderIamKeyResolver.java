@@ -15,10 +15,15 @@
  */
 package com.wl4g.escg.requestlimit.key;
 
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
 import static java.util.Arrays.asList;
+import static java.util.Objects.isNull;
 import static org.apache.commons.collections.CollectionUtils.isEqualCollection;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.http.HttpHeaders;
@@ -26,6 +31,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ServerWebExchange;
 
 import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.server.ClientAddressResolver;
 import com.wl4g.infra.common.web.WebUtils;
 
 import lombok.AllArgsConstructor;
@@ -44,6 +50,12 @@ import reactor.core.publisher.Mono;
  */
 public class HeaderIamKeyResolver extends AbstractIamKeyResolver<HeaderIamKeyResolver.HeaderKeyResolverStrategy> {
 
+    private final ClientAddressResolver clientAddressResolver;
+
+    public HeaderIamKeyResolver(ClientAddressResolver clientAddressResolver) {
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
+    }
+
     @Override
     public KeyResolverProvider kind() {
         return KeyResolverProvider.Header;
@@ -52,15 +64,22 @@ public class HeaderIamKeyResolver extends AbstractIamKeyResolver<HeaderIamKeyRes
     @Override
     public Mono<String> resolve(HeaderKeyResolverStrategy strategy, ServerWebExchange exchange) {
         HttpHeaders headers = exchange.getRequest().getHeaders();
-        String host = null;
-        for (String header : strategy.getHeaderNames()) {
-            host = headers.getFirst(header);
-            if (!isBlank(host) && !"Unknown".equalsIgnoreCase(host)) {
-                return Mono.just(host);
+        for (String header : safeList(strategy.getHeaderNames())) {
+            String value = headers.getFirst(header);
+            if (!isBlank(value) && !"Unknown".equalsIgnoreCase(value)) {
+                return Mono.just(value);
             }
         }
-        // Fall-back
-        return Mono.just(exchange.getRequest().getRemoteAddress().getAddress().getHostAddress());
+        if (strategy.isClientAddressFallback()) {
+            // Fall-back to the shared resolved client address.
+            return Mono.justOrEmpty(clientAddressResolver.resolveHost(exchange));
+        }
+        // Fall-back to the peer address.
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (isNull(remoteAddress) || isNull(remoteAddress.getAddress())) {
+            return Mono.empty();
+        }
+        return Mono.just(remoteAddress.getAddress().getHostAddress());
     }
 
     @Getter
@@ -75,16 +94,32 @@ public class HeaderIamKeyResolver extends AbstractIamKeyResolver<HeaderIamKeyRes
          * The according to the list of header names of the request header
          * current limiter, it can usually be used to obtain the actual IP after
          * being forwarded by the proxy to limit the current, or it can be
-         * flexibly used for other purposes.
+         * flexibly used for other purposes (e.g: tenant ID).
          */
-        private List<String> headerNames = asList(WebUtils.HEADER_REAL_IP);
+        private List<String> headerNames = new ArrayList<>(asList(WebUtils.HEADER_REAL_IP));
+
+        /**
+         * Whether to fall back to the client address resolved via the trusted
+         * proxies if none of the headers is present, see:
+         * {@link com.wl4g.escg.server.ClientAddressResolver}, otherwise the
+         * peer address is used.
+         */
+        private boolean clientAddressFallback = false;
+
+        public HeaderKeyResolverStrategy(List<String> headerNames) {
+            this.headerNames = headerNames;
+        }
 
         @Override
         public void applyDefaultIfNecessary(IamRequestLimiterProperties config) {
-            List<String> defaultHeaderNames = config.getDefaultKeyResolver().getHeader().getHeaderNames();
+            HeaderKeyResolverStrategy defaultStrategy = config.getDefaultKeyResolver().getHeader();
+            List<String> defaultHeaderNames = defaultStrategy.getHeaderNames();
             if (!isEqualCollection(defaultHeaderNames, getHeaderNames())) {
                 setHeaderNames(defaultHeaderNames);
             }
+            if (!isClientAddressFallback()) {
+                setClientAddressFallback(defaultStrategy.isClientAddressFallback());
+            }
         }
     }
 
@@ -15,8 +15,12 @@
  */
 package com.wl4g.escg.requestlimit.key;
 
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+
 import org.springframework.web.server.ServerWebExchange;
 
+import com.wl4g.escg.server.ClientAddressResolver;
+
 import reactor.core.publisher.Mono;
 
 /**
@@ -28,6 +32,12 @@ import reactor.core.publisher.Mono;
  */
 public class HostIamKeyResolver extends AbstractIamKeyResolver<HostIamKeyResolver.HostKeyResolverStrategy> {
 
+    private final ClientAddressResolver clientAddressResolver;
+
+    public HostIamKeyResolver(ClientAddressResolver clientAddressResolver) {
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
+    }
+
     @Override
     public KeyResolverProvider kind() {
         return KeyResolverProvider.Host;
@@ -35,7 +45,7 @@ public class HostIamKeyResolver extends AbstractIamKeyResolver<HostIamKeyResolve
 
     @Override
     public Mono<String> resolve(HostKeyResolverStrategy strategy, ServerWebExchange exchange) {
-        return Mono.just(exchange.getRequest().getRemoteAddress().getAddress().getHostAddress());
+        return Mono.justOrEmpty(clientAddressResolver.resolveHost(exchange));
     }
 
     public static class HostKeyResolverStrategy extends IamKeyResolver.KeyResolverStrategy {
@@ -18,6 +18,7 @@ package com.wl4g.escg.requestlimit.key;
 import org.springframework.web.server.ServerWebExchange;
 
 import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.requestlimit.key.CompositeIamKeyResolver.CompositeKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.HeaderIamKeyResolver.HeaderKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.HostIamKeyResolver.HostKeyResolverStrategy;
 import com.wl4g.escg.requestlimit.key.IamKeyResolver.KeyResolverStrategy;
@@ -55,7 +56,9 @@ public interface IamKeyResolver<C extends KeyResolverStrategy> extends Operator<
 
         Header(HeaderKeyResolverStrategy.class),
 
-        Interval(IntervalKeyResolverStrategy.class);
+        Interval(IntervalKeyResolverStrategy.class),
+
+        Composite(CompositeKeyResolverStrategy.class);
 
         private final Class<? extends KeyResolverStrategy> strategyClass;
     }
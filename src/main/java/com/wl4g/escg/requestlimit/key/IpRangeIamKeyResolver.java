@@ -15,10 +15,33 @@
  */
 package com.wl4g.escg.requestlimit.key;
 
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ServerWebExchange;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.util.net.CidrTrie;
+
+import io.netty.util.NetUtil;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import reactor.core.publisher.Mono;
@@ -32,21 +55,135 @@ import reactor.core.publisher.Mono;
  */
 public class IpRangeIamKeyResolver extends AbstractIamKeyResolver<IpRangeIamKeyResolver.IpRangeKeyResolverStrategy> {
 
+    private final ClientAddressResolver clientAddressResolver;
+
+    public IpRangeIamKeyResolver(ClientAddressResolver clientAddressResolver) {
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
+    }
+
     @Override
     public KeyResolverProvider kind() {
         return KeyResolverProvider.IpRange;
     }
 
+    /**
+     * Resolve the name of the longest matching CIDR range of the client
+     * address, or the network address with the fallback prefix length if
+     * none is matched, e.g: '192.168.1.0/24'
+     */
     @Override
     public Mono<String> resolve(IpRangeKeyResolverStrategy strategy, ServerWebExchange exchange) {
-        return Mono.just(exchange.getRequest().getRemoteAddress().getAddress().getHostAddress());
+        InetAddress address = clientAddressResolver.resolve(exchange);
+        if (isNull(address)) {
+            return Mono.empty();
+        }
+        return Mono.just(strategy.resolveRange(address));
     }
 
     @Getter
     @Setter
     @ToString
     @Validated
+    @NoArgsConstructor
     public static class IpRangeKeyResolverStrategy extends IamKeyResolver.KeyResolverStrategy {
+
+        /**
+         * The named CIDR ranges (IPv4 or IPv6), the client addresses in the
+         * same range will share a limit bucket named the range name, e.g: the
+         * whole subnets of an ASN.
+         */
+        private List<IpRange> ranges = new ArrayList<>();
+
+        /**
+         * The prefix length of the IPv4 network address as the limit key when
+         * none of the ranges is matched.
+         */
+        private @Min(0) @Max(32) int ipv4FallbackPrefixLength = 24;
+
+        /**
+         * The prefix length of the IPv6 network address as the limit key when
+         * none of the ranges is matched.
+         */
+        private @Min(0) @Max(128) int ipv6FallbackPrefixLength = 64;
+
+        @JsonIgnore
+        @ToString.Exclude
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private transient CidrTrie<String> compiledRanges;
+
+        @Override
+        public void applyDefaultIfNecessary(IamRequestLimiterProperties config) {
+            if (safeList(getRanges()).isEmpty()) {
+                setRanges(config.getDefaultKeyResolver().getIpRange().getRanges());
+            }
+            compile();
+        }
+
+        /**
+         * Compile the ranges to the prefix trie at once.
+         */
+        public synchronized CidrTrie<String> compile() {
+            CidrTrie<String> trie = new CidrTrie<>();
+            safeList(getRanges()).forEach(range -> safeList(range.getCidrs()).forEach(cidr -> trie.put(cidr, range.getName())));
+            return (this.compiledRanges = trie);
+        }
+
+        public String resolveRange(InetAddress address) {
+            CidrTrie<String> trie = compiledRanges;
+            if (isNull(trie)) {
+                trie = compile();
+            }
+            String name = trie.get(address);
+            if (nonNull(name)) {
+                return name;
+            }
+            // Fall-back to the network address.
+            if (address instanceof Inet4Address) {
+                int prefixLength = ipv4FallbackPrefixLength;
+                int network = prefixLength == 0 ? 0 : address.hashCode() & (-1 << (32 - prefixLength));
+                return new StringBuilder(18).append((network >>> 24) & 0xFF)
+                        .append('.')
+                        .append((network >>> 16) & 0xFF)
+                        .append('.')
+                        .append((network >>> 8) & 0xFF)
+                        .append('.')
+                        .append(network & 0xFF)
+                        .append('/')
+                        .append(prefixLength)
+                        .toString();
+            }
+            int prefixLength = ipv6FallbackPrefixLength;
+            byte[] network = address.getAddress();
+            for (int i = 0; i < network.length; i++) {
+                int remaining = prefixLength - i * 8;
+                if (remaining <= 0) {
+                    network[i] = 0;
+                } else if (remaining < 8) {
+                    network[i] &= (byte) (0xFF << (8 - remaining));
+                }
+            }
+            return NetUtil.bytesToIpAddress(network).concat("/").concat(String.valueOf(prefixLength));
+        }
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IpRange {
+
+        /**
+         * The name of range, which is used as the limit key.
+         */
+        private @NotBlank String name;
+
+        /**
+         * The CIDRs of range, e.g: 10.0.0.0/8, 2001:db8::/32
+         */
+        private List<String> cidrs = new ArrayList<>();
     }
 
-}
\ No newline at end of file
+}
@@ -15,6 +15,9 @@
  */
 package com.wl4g.escg.requestlimit.key;
 
+import static java.util.Objects.nonNull;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_MATCHED_PATH_ATTR;
+
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -39,6 +42,13 @@ public class PathIamKeyResolver extends AbstractIamKeyResolver<PathIamKeyResolve
 
     @Override
     public Mono<String> resolve(PathKeyResolverStrategy strategy, ServerWebExchange exchange) {
+        if (strategy.isTemplated()) {
+            // see:org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory#apply()
+            String matchedPattern = exchange.getAttribute(GATEWAY_PREDICATE_MATCHED_PATH_ATTR);
+            if (nonNull(matchedPattern)) {
+                return Mono.just(matchedPattern);
+            }
+        }
         return Mono.just(exchange.getRequest().getURI().getPath());
     }
 
@@ -47,6 +57,14 @@ public class PathIamKeyResolver extends AbstractIamKeyResolver<PathIamKeyResolve
     @ToString
     @Validated
     public static class PathKeyResolverStrategy extends IamKeyResolver.KeyResolverStrategy {
+
+        /**
+         * Whether to use the path pattern matched by the route predicates as
+         * the key instead of the actual request path, e.g: '/orders/{id}'
+         * instead of '/orders/1001', if the route has no path predicate, the
+         * actual request path will still be used.
+         */
+        private boolean templated = false;
     }
 
 }
\ No newline at end of file
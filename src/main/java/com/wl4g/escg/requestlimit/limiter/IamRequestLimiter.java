@@ -16,12 +16,16 @@
 package com.wl4g.escg.requestlimit.limiter;
 
 import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
 
 import org.springframework.web.server.ServerWebExchange;
 
 import com.wl4g.escg.requestlimit.IamRequestLimiterFilterFactory;
 import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties.LimiterProperties.AbstractLimiterProperties;
 import com.wl4g.escg.requestlimit.limiter.IamRequestLimiter.RequestLimiterPrivoder;
+import com.wl4g.escg.requestlimit.limiter.adaptive.AdaptiveConcurrencyRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.quota.RedisQuotaRequestLimiterStrategy;
 import com.wl4g.escg.requestlimit.limiter.rate.RedisRateRequestLimiterStrategy;
 import com.wl4g.infra.common.framework.operator.Operator;
@@ -30,6 +34,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 /**
  * {@link IamRequestLimiter}
@@ -55,6 +60,16 @@ public interface IamRequestLimiter extends Operator<RequestLimiterPrivoder> {
         private final boolean allowed;
         private final long tokensLeft;
         private final Map<String, String> headers;
+
+        /**
+         * The callback when the allowed request is completed, e.g. releasing
+         * the concurrency of the adaptive concurrency limiter.
+         */
+        private final @Nullable Consumer<SignalType> completion;
+
+        public LimitedResult(boolean allowed, long tokensLeft, Map<String, String> headers) {
+            this(allowed, tokensLeft, headers, null);
+        }
     }
 
     @Getter
@@ -62,7 +77,9 @@ public interface IamRequestLimiter extends Operator<RequestLimiterPrivoder> {
     public static enum RequestLimiterPrivoder {
         RedisRateLimiter(RedisRateRequestLimiterStrategy.class),
 
-        RedisQuotaLimiter(RedisQuotaRequestLimiterStrategy.class);
+        RedisQuotaLimiter(RedisQuotaRequestLimiterStrategy.class),
+
+        AdaptiveConcurrencyLimiter(AdaptiveConcurrencyRequestLimiterStrategy.class);
 
         private final Class<? extends RequestLimiterStrategy> strategyClass;
     }
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.limiter.adaptive;
+
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.log.SmartLoggerFactory.getLogger;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.web.server.ServerWebExchange;
+
+import com.google.common.cache.Cache;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.requestlimit.IamRequestLimiterFilterFactory;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties.LimiterProperties.AbstractLimiterProperties;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties.LimiterProperties.AdaptiveConcurrencyLimiterProperties;
+import com.wl4g.escg.requestlimit.configurer.LimiterStrategyConfigurer;
+import com.wl4g.escg.requestlimit.limiter.IamRequestLimiter;
+import com.wl4g.infra.common.log.SmartLogger;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+
+/**
+ * The adaptive concurrency limiter, which tracks the inflight requests and the
+ * latency with lock-free counters, and adjusts the concurrency limit with the
+ * Gradient2 or Vegas algorithm, the requests beyond the limit are rejected or
+ * queued for a short time. The limit is local to each gateway instance, only
+ * the user-level strategy is loaded by the {@link LimiterStrategyConfigurer}
+ * and cached locally.
+ *
+ * <p>
+ * Note: If not partitioned by the limit key, the limiter is shared by all
+ * limit keys of the route, so the user-level strategy should be configured
+ * per route (i.e. the same for all limit keys).
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-06 v1.0.0
+ * @since v1.0.0
+ */
+public class AdaptiveConcurrencyIamRequestLimiter implements IamRequestLimiter {
+    protected final SmartLogger log = getLogger(getClass());
+
+    private final IamRequestLimiterProperties requestLimiterConfig;
+    private final LimiterStrategyConfigurer configurer;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final Cache<String, AdaptiveConcurrencyRequestLimiterStrategy> strategyCache;
+    private final Cache<String, AdaptiveConcurrencyRequestLimiterStrategy> errorStrategyCache;
+    private final Cache<String, ConcurrencyLimiter> limiters;
+    private final Set<String> gaugedRouteIds = ConcurrentHashMap.newKeySet();
+
+    public AdaptiveConcurrencyIamRequestLimiter(IamRequestLimiterProperties requestLimiterConfig,
+            LimiterStrategyConfigurer configurer, IamGatewayMetricsFacade metricsFacade) {
+        this.requestLimiterConfig = notNullOf(requestLimiterConfig, "requestLimiterConfig");
+        this.configurer = notNullOf(configurer, "configurer");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        AdaptiveConcurrencyLimiterProperties config = requestLimiterConfig.getLimiter().getAdaptive();
+        // Both are bounded and expired, so that the random limit keys (e.g.
+        // attacks) can't grow the memory without limit.
+        this.strategyCache = newBuilder().maximumSize(config.getMaxLimiters())
+                .expireAfterWrite(config.getStrategyCacheSeconds(), SECONDS)
+                .build();
+        this.errorStrategyCache = newBuilder().maximumSize(config.getMaxLimiters())
+                .expireAfterWrite(config.getStrategyErrorCacheSeconds(), SECONDS)
+                .build();
+        this.limiters = newBuilder().maximumSize(config.getMaxLimiters())
+                .expireAfterAccess(config.getLimiterExpireSeconds(), SECONDS)
+                .build();
+    }
+
+    @Override
+    public RequestLimiterPrivoder kind() {
+        return RequestLimiterPrivoder.AdaptiveConcurrencyLimiter;
+    }
+
+    @Override
+    public Mono<LimitedResult> isAllowed(
+            IamRequestLimiterFilterFactory.Config config,
+            ServerWebExchange exchange,
+            String routeId,
+            String limitKey) {
+        metricsFacade.counter(MetricsName.ADAPTIVE_CONCURRENCYLIMIT_TOTAL, routeId, 1);
+
+        String configKey = LimiterStrategyConfigurer.getConfigKey(routeId, limitKey);
+        AdaptiveConcurrencyRequestLimiterStrategy cached = strategyCache.getIfPresent(configKey);
+        if (isNull(cached)) {
+            cached = errorStrategyCache.getIfPresent(configKey);
+        }
+        if (nonNull(cached)) {
+            return doIsAllowed(cached, routeId, limitKey);
+        }
+        AdaptiveConcurrencyRequestLimiterStrategy defaultStrategy = ((AdaptiveConcurrencyLimiterProperties) getDefaultLimiter())
+                .getDefaultStrategy();
+        return configurer.loadAdaptiveStrategy(routeId, limitKey)
+                .defaultIfEmpty(defaultStrategy)
+                .doOnNext(strategy -> strategyCache.put(configKey, strategy))
+                .onErrorResume(ex -> {
+                    // The local limiter should not be unavailable due to the
+                    // failure of loading the strategy.
+                    log.warn("Failed to load adaptive strategy of '{}', fallback to default. reason: {}", configKey,
+                            ex.getMessage());
+                    // Cached for a short time, so that the failing loads
+                    // aren't retried by every request.
+                    errorStrategyCache.put(configKey, defaultStrategy);
+                    return Mono.just(defaultStrategy);
+                })
+                .flatMap(strategy -> doIsAllowed(strategy, routeId, limitKey));
+    }
+
+    private Mono<LimitedResult> doIsAllowed(AdaptiveConcurrencyRequestLimiterStrategy strategy, String routeId, String limitKey) {
+        ConcurrencyLimiter limiter = getLimiter(strategy, routeId, limitKey);
+
+        if (limiter.tryAcquire()) {
+            return Mono.just(limiter.newAllowedResult(strategy, limitKey));
+        }
+        if (limiter.waiting.get() >= strategy.getMaxQueueSize()) {
+            return Mono.just(limiter.newRejectedResult(strategy, limitKey));
+        }
+        // Wait in the queue until a release or timeout.
+        Waiter waiter = new Waiter();
+        return Mono.<Boolean> create(sink -> limiter.enqueue(waiter, sink))
+                .timeout(Duration.ofMillis(strategy.getMaxQueueWaitMs()), Mono.just(false))
+                .map(acquired -> {
+                    if (acquired) {
+                        waiter.delivered = true;
+                        return limiter.newAllowedResult(strategy, limitKey);
+                    }
+                    return limiter.newRejectedResult(strategy, limitKey);
+                });
+    }
+
+    @Override
+    public AbstractLimiterProperties getDefaultLimiter() {
+        return requestLimiterConfig.getLimiter().getAdaptive();
+    }
+
+    private ConcurrencyLimiter getLimiter(AdaptiveConcurrencyRequestLimiterStrategy strategy, String routeId, String limitKey) {
+        String key = strategy.isPartitionByLimitKey() ? LimiterStrategyConfigurer.getConfigKey(routeId, limitKey) : routeId;
+        ConcurrencyLimiter limiter = limiters.getIfPresent(key);
+        if (isNull(limiter) || !limiter.strategy.equals(strategy)) {
+            // Create it or rebuild it since the strategy has been changed.
+            limiter = limiters.asMap()
+                    .compute(key, (k, v) -> (nonNull(v) && v.strategy.equals(strategy)) ? v
+                            : new ConcurrencyLimiter(strategy, routeId));
+        }
+        // Only the route level limiters are reported, the gauges are
+        // registered once per route and read the current limiter, since the
+        // limiter may be evicted or rebuilt.
+        if (!strategy.isPartitionByLimitKey() && gaugedRouteIds.add(routeId)) {
+            String[] tags = { MetricsTag.ROUTE_ID, routeId };
+            metricsFacade.gauge(MetricsName.ADAPTIVE_CONCURRENCYLIMIT_LIMIT, () -> getRouteGauge(routeId, l -> l.limit.getLimit()),
+                    tags);
+            metricsFacade.gauge(MetricsName.ADAPTIVE_CONCURRENCYLIMIT_INFLIGHT,
+                    () -> getRouteGauge(routeId, l -> l.inflight.get()), tags);
+            metricsFacade.gauge(MetricsName.ADAPTIVE_CONCURRENCYLIMIT_RTT,
+                    () -> getRouteGauge(routeId, l -> l.limit.getLastRttNanos() / 1_000_000d), tags);
+        }
+        return limiter;
+    }
+
+    private double getRouteGauge(String routeId, ToDoubleFunction<ConcurrencyLimiter> getter) {
+        // Read through the map view, the scrapes aren't the limiter lookups,
+        // so they're not recorded as the cache hits or misses.
+        ConcurrencyLimiter limiter = limiters.asMap().get(routeId);
+        return isNull(limiter) ? 0d : getter.applyAsDouble(limiter);
+    }
+
+    class ConcurrencyLimiter {
+        private final AdaptiveConcurrencyRequestLimiterStrategy strategy;
+        private final String routeId;
+        private final AdaptiveLimit limit;
+        private final AtomicInteger inflight = new AtomicInteger(0);
+        private final AtomicInteger waiting = new AtomicInteger(0);
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+        ConcurrencyLimiter(AdaptiveConcurrencyRequestLimiterStrategy strategy, String routeId) {
+            this.strategy = strategy;
+            this.routeId = routeId;
+            this.limit = AdaptiveLimit.newLimit(strategy);
+        }
+
+        boolean tryAcquire() {
+            for (;;) {
+                int current = inflight.get();
+                if (current >= limit.getLimit()) {
+                    return false;
+                }
+                if (inflight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inflight.decrementAndGet();
+            drainWaiters();
+        }
+
+        void enqueue(Waiter waiter, MonoSink<Boolean> sink) {
+            waiter.sink = sink;
+            waiting.incrementAndGet();
+            waiters.offer(waiter);
+            sink.onDispose(() -> {
+                if (waiter.done.compareAndSet(false, true)) {
+                    // Timeout or cancelled before acquired.
+                    waiters.remove(waiter);
+                    waiting.decrementAndGet();
+                } else if (!waiter.delivered) {
+                    // Acquired, but the signal was lost due to the timeout
+                    // or cancelled concurrently, give back the concurrency.
+                    release();
+                }
+            });
+            // The concurrency may have been released before enqueued.
+            drainWaiters();
+        }
+
+        private void drainWaiters() {
+            while (!waiters.isEmpty() && tryAcquire()) {
+                Waiter waiter = waiters.poll();
+                if (isNull(waiter)) {
+                    inflight.decrementAndGet();
+                    return;
+                }
+                if (waiter.done.compareAndSet(false, true)) {
+                    waiting.decrementAndGet();
+                    waiter.sink.success(true);
+                } else {
+                    inflight.decrementAndGet();
+                }
+            }
+        }
+
+        LimitedResult newAllowedResult(AdaptiveConcurrencyRequestLimiterStrategy requestStrategy, String limitKey) {
+            final long beginTime = nanoTime();
+            final int startInflight = inflight.get();
+            final AtomicBoolean released = new AtomicBoolean(false);
+            Consumer<SignalType> completion = signal -> {
+                if (!released.compareAndSet(false, true)) {
+                    return;
+                }
+                release();
+                // The cancelled requests (e.g. client disconnected) have no
+                // meaningful latency.
+                if (signal != SignalType.CANCEL) {
+                    limit.onSample(nanoTime() - beginTime, startInflight, signal == SignalType.ON_ERROR);
+                }
+            };
+            int currentLimit = limit.getLimit();
+            return new LimitedResult(true, currentLimit - startInflight,
+                    createHeaders(requestStrategy, currentLimit, startInflight, limitKey), completion);
+        }
+
+        LimitedResult newRejectedResult(AdaptiveConcurrencyRequestLimiterStrategy requestStrategy, String limitKey) {
+            metricsFacade.counter(MetricsName.ADAPTIVE_CONCURRENCYLIMIT_HITS_TOTAL, routeId, 1);
+            int currentLimit = limit.getLimit();
+            int currentInflight = inflight.get();
+            return new LimitedResult(false, currentLimit - currentInflight,
+                    createHeaders(requestStrategy, currentLimit, currentInflight, limitKey));
+        }
+
+        private Map<String, String> createHeaders(
+                AdaptiveConcurrencyRequestLimiterStrategy requestStrategy,
+                int currentLimit,
+                int currentInflight,
+                String limitKey) {
+            Map<String, String> headers = new HashMap<>();
+            if (requestStrategy.isIncludeHeaders()) {
+                AdaptiveConcurrencyLimiterProperties config = requestLimiterConfig.getLimiter().getAdaptive();
+                headers.put(config.getLimitHeader(), String.valueOf(currentLimit));
+                headers.put(config.getRemainingHeader(), String.valueOf(Math.max(0, currentLimit - currentInflight)));
+                headers.put(config.getLimitKeyHeader(), String.valueOf(limitKey));
+            }
+            return headers;
+        }
+    }
+
+    static class Waiter {
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile MonoSink<Boolean> sink;
+        private volatile boolean delivered;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.limiter.adaptive;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.validation.annotation.Validated;
+
+import com.wl4g.escg.requestlimit.limiter.RequestLimiterStrategy;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * {@link AdaptiveConcurrencyRequestLimiterStrategy}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-06 v1.0.0
+ * @since v1.0.0
+ * @see https://github.com/Netflix/concurrency-limits
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode(callSuper = false)
+@Validated
+@NoArgsConstructor
+public class AdaptiveConcurrencyRequestLimiterStrategy extends RequestLimiterStrategy {
+
+    /**
+     * The algorithm of adjusting the concurrency limit.
+     */
+    private @NotNull AdaptiveAlgorithm algorithm = AdaptiveAlgorithm.Gradient2;
+
+    /**
+     * Whether to limit the concurrency of each limit key separately,
+     * otherwise the concurrency of the whole route is limited (the limit key
+     * is only used for the response headers). Note: It should be used with a
+     * low cardinality key resolver.
+     */
+    private boolean partitionByLimitKey = false;
+
+    /**
+     * The initial concurrency limit before any samples.
+     */
+    private @Min(1) int initialLimit = 20;
+
+    /**
+     * The minimum concurrency limit.
+     */
+    private @Min(1) int minLimit = 1;
+
+    /**
+     * The maximum concurrency limit.
+     */
+    private @Min(1) int maxLimit = 1000;
+
+    /**
+     * The smoothing factor of limit changes, 1 means no smoothing.
+     */
+    private @DecimalMin("0.01") @DecimalMax("1.0") double smoothing = 0.2d;
+
+    /**
+     * (Gradient2) The tolerance of the short RTT exceeding the long RTT before
+     * reducing the limit, e.g: 1.5 means the latency can increase by 50%.
+     */
+    private @DecimalMin("1.0") double rttTolerance = 1.5d;
+
+    /**
+     * (Gradient2) The number of samples of the long RTT exponential average
+     * window.
+     */
+    private @Min(10) int longWindow = 600;
+
+    /**
+     * (Gradient2) The queue size headroom added to the limit, which allows
+     * the limit to grow while the latency is stable.
+     */
+    private @Min(0) int queueSize = 4;
+
+    /**
+     * (Vegas) Reset the no-load RTT every (probeMultiplier * limit) samples,
+     * so as to adapt to the baseline latency changes of the backend.
+     */
+    private @Min(1) int probeMultiplier = 30;
+
+    /**
+     * The maximum number of requests waiting for the concurrency when the
+     * limit is reached, 0 means reject immediately.
+     */
+    private @Min(0) int maxQueueSize = 0;
+
+    /**
+     * The maximum milliseconds of the requests waiting in the queue before
+     * being rejected.
+     */
+    private @Min(1) long maxQueueWaitMs = 100L;
+
+    public static enum AdaptiveAlgorithm {
+        Gradient2, Vegas;
+    }
+
+}
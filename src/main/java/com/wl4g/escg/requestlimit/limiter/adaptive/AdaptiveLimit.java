@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.limiter.adaptive;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The adaptive concurrency limit that is adjusted according to the RTT samples
+ * of the completed requests. The limit is read lock-free, and the samples are
+ * applied by whichever thread gets the update lock, the samples arriving while
+ * another thread is updating are skipped instead of waiting.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-06 v1.0.0
+ * @since v1.0.0
+ * @see https://github.com/Netflix/concurrency-limits
+ */
+public abstract class AdaptiveLimit {
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+    protected final int minLimit;
+    protected final int maxLimit;
+    protected final double smoothing;
+    protected volatile double estimatedLimit;
+    protected volatile long lastRttNanos;
+
+    protected AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.smoothing = smoothing;
+        this.estimatedLimit = clamp(initialLimit);
+    }
+
+    public static AdaptiveLimit newLimit(AdaptiveConcurrencyRequestLimiterStrategy strategy) {
+        switch (strategy.getAlgorithm()) {
+        case Vegas:
+            return new VegasLimit(strategy.getInitialLimit(), strategy.getMinLimit(), strategy.getMaxLimit(),
+                    strategy.getSmoothing(), strategy.getProbeMultiplier());
+        default:
+            return new Gradient2Limit(strategy.getInitialLimit(), strategy.getMinLimit(), strategy.getMaxLimit(),
+                    strategy.getSmoothing(), strategy.getRttTolerance(), strategy.getLongWindow(), strategy.getQueueSize());
+        }
+    }
+
+    public int getLimit() {
+        return (int) estimatedLimit;
+    }
+
+    public long getLastRttNanos() {
+        return lastRttNanos;
+    }
+
+    /**
+     * Apply the sample of a completed request.
+     *
+     * @param rttNanos
+     *            The round trip time of the request.
+     * @param inflight
+     *            The number of inflight requests when the request started.
+     * @param didDrop
+     *            Whether the request was failed (e.g. timeout or error).
+     */
+    public void onSample(long rttNanos, int inflight, boolean didDrop) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        this.lastRttNanos = rttNanos;
+        if (updateLock.tryLock()) {
+            try {
+                double newLimit = update(estimatedLimit, rttNanos, inflight, didDrop);
+                this.estimatedLimit = clamp(newLimit);
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    protected abstract double update(double limit, long rttNanos, int inflight, boolean didDrop);
+
+    protected double smooth(double limit, double newLimit) {
+        return limit * (1 - smoothing) + newLimit * smoothing;
+    }
+
+    private double clamp(double limit) {
+        return Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    /**
+     * The limit that is adjusted by the gradient between the long-term
+     * (exponential average) RTT and the short-term (sampled) RTT.
+     */
+    public static class Gradient2Limit extends AdaptiveLimit {
+        private final double rttTolerance;
+        private final int longWindow;
+        private final int queueSize;
+        private double longRtt;
+        private int warmupCount;
+
+        public Gradient2Limit(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance,
+                int longWindow, int queueSize) {
+            super(initialLimit, minLimit, maxLimit, smoothing);
+            this.rttTolerance = rttTolerance;
+            this.longWindow = longWindow;
+            this.queueSize = queueSize;
+        }
+
+        @Override
+        protected double update(double limit, long rttNanos, int inflight, boolean didDrop) {
+            double shortRtt = rttNanos;
+            // Simple average during the warm-up, and then exponential average.
+            if (warmupCount < WARMUP_SAMPLES) {
+                longRtt = (longRtt * warmupCount + shortRtt) / (++warmupCount);
+            } else {
+                double factor = 2.0d / (longWindow + 1);
+                longRtt = longRtt * (1 - factor) + shortRtt * factor;
+            }
+            // Speed up the return to the baseline after the long RTT was
+            // increased by a long period of high latency.
+            if (longRtt / shortRtt > 2) {
+                longRtt = longRtt * 0.95d;
+            }
+            // Don't grow the limit while the requests are application limited.
+            if (inflight < limit / 2) {
+                return limit;
+            }
+            double gradient = Math.max(0.5d, Math.min(1.0d, rttTolerance * longRtt / shortRtt));
+            double newLimit = limit * gradient + queueSize;
+            return smooth(limit, newLimit);
+        }
+
+        public double getLongRttNanos() {
+            return longRtt;
+        }
+    }
+
+    /**
+     * The limit that estimates the queue size by the difference between the
+     * no-load RTT and the sampled RTT, the same as TCP Vegas.
+     */
+    public static class VegasLimit extends AdaptiveLimit {
+        private final int probeMultiplier;
+        private long rttNoLoad;
+        private long probeCount;
+
+        public VegasLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier) {
+            super(initialLimit, minLimit, maxLimit, smoothing);
+            this.probeMultiplier = probeMultiplier;
+        }
+
+        @Override
+        protected double update(double limit, long rttNanos, int inflight, boolean didDrop) {
+            if (++probeCount >= (long) probeMultiplier * (long) limit) {
+                probeCount = 0;
+                rttNoLoad = rttNanos;
+                return limit;
+            }
+            if (rttNoLoad == 0 || rttNanos < rttNoLoad) {
+                rttNoLoad = rttNanos;
+                return limit;
+            }
+            double log10 = Math.max(1, Math.log10(limit));
+            double newLimit;
+            if (didDrop) {
+                newLimit = limit - log10;
+            } else if (inflight * 2 < limit) {
+                // Application limited.
+                return limit;
+            } else {
+                int queue = (int) Math.ceil(limit * (1 - (double) rttNoLoad / rttNanos));
+                double alpha = 3 * log10, beta = 6 * log10;
+                if (queue <= log10) {
+                    newLimit = limit + beta;
+                } else if (queue < alpha) {
+                    newLimit = limit + log10;
+                } else if (queue > beta) {
+                    newLimit = limit - log10;
+                } else {
+                    return limit;
+                }
+            }
+            return smooth(limit, newLimit);
+        }
+    }
+
+    public static final int WARMUP_SAMPLES = 10;
+
+}
@@ -15,13 +15,18 @@
  */
 package com.wl4g.escg.requestlimit.limiter.quota;
 
-import static com.wl4g.infra.common.lang.DateUtils2.getDate;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
 import static java.lang.System.nanoTime;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.web.server.ServerWebExchange;
 
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
@@ -33,6 +38,8 @@ import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties.LimiterProp
 import com.wl4g.escg.requestlimit.configurer.LimiterStrategyConfigurer;
 import com.wl4g.escg.requestlimit.event.QuotaLimitHitEvent;
 import com.wl4g.escg.requestlimit.limiter.AbstractRedisIamRequestLimiter;
+import com.wl4g.escg.util.CycleClock;
+import com.wl4g.escg.util.CycleClock.Cycle;
 import com.wl4g.infra.common.eventbus.EventBusSupport;
 
 import reactor.core.publisher.Mono;
@@ -46,9 +53,13 @@ import reactor.core.publisher.Mono;
  */
 public class RedisQuotaIamRequestLimiter extends AbstractRedisIamRequestLimiter<RedisQuotaRequestLimiterStrategy> {
 
-    public RedisQuotaIamRequestLimiter(IamRequestLimiterProperties requestLimiterConfig, LimiterStrategyConfigurer configurer,
-            ReactiveStringRedisTemplate redisTemplate, EventBusSupport eventBus, IamGatewayMetricsFacade metricsFacade) {
+    private final RedisScript<Long> redisScript;
+
+    public RedisQuotaIamRequestLimiter(RedisScript<Long> redisScript, IamRequestLimiterProperties requestLimiterConfig,
+            LimiterStrategyConfigurer configurer, ReactiveStringRedisTemplate redisTemplate, EventBusSupport eventBus,
+            IamGatewayMetricsFacade metricsFacade) {
         super(requestLimiterConfig, configurer, redisTemplate, eventBus, metricsFacade);
+        this.redisScript = notNullOf(redisScript, "redisScript");
     }
 
     @Override
@@ -56,6 +67,12 @@ public class RedisQuotaIamRequestLimiter extends AbstractRedisIamRequestLimiter<
         return RequestLimiterPrivoder.RedisQuotaLimiter;
     }
 
+    /**
+     * Each quota counter is an independent redis key per route, limit key and
+     * cycle, so that the counters are distributed across the cluster slots,
+     * and it is created with expiration aligned to the end of the cycle in the
+     * same script, so that the expired cycles will be cleaned up naturally.
+     */
     @Override
     public Mono<LimitedResult> isAllowed(
             IamRequestLimiterFilterFactory.Config config,
@@ -69,12 +86,14 @@ public class RedisQuotaIamRequestLimiter extends AbstractRedisIamRequestLimiter<
                 .defaultIfEmpty(((RedisQuotaLimiterProperties) getDefaultLimiter()).getDefaultStrategy())
                 .flatMap(strategy -> {
                     try {
-                        String cyclePattern = getDate(strategy.getCycleDatePattern());
-                        String prefix = getPrefixKey(strategy, cyclePattern);
-                        String hashKey = getHashKey(routeId, limitKey);
-                        return redisTemplate.opsForHash().increment(prefix, hashKey, 1).onErrorResume(ex -> {
+                        Cycle cycle = CycleClock.forPattern(strategy.getCycleDatePattern()).current(currentTimeMillis());
+                        String cyclePattern = cycle.getCycleKey();
+                        List<String> keys = singletonList(getCounterKey(routeId, limitKey, cyclePattern));
+                        List<String> scriptArgs = asList(String.valueOf(cycle.getEndMillis()), "1");
+
+                        return redisTemplate.execute(redisScript, keys, scriptArgs).next().onErrorResume(ex -> {
                             if (log.isDebugEnabled()) {
-                                log.debug("Error calling quota limiter redis", ex);
+                                log.debug("Error calling quota limiter lua", ex);
                             }
                             return Mono.empty();
                         }).map(accumulated -> {
@@ -118,12 +137,19 @@ public class RedisQuotaIamRequestLimiter extends AbstractRedisIamRequestLimiter<
         return requestLimiterConfig.getLimiter().getQuota();
     }
 
-    protected String getPrefixKey(RedisQuotaRequestLimiterStrategy strategy, String cyclePattern) {
-        return requestLimiterConfig.getLimiter().getQuota().getTokenPrefix().concat(":").concat(cyclePattern);
-    }
-
-    protected String getHashKey(String routeId, String limitKey) {
-        return routeId.concat(":").concat(limitKey);
+    protected String getCounterKey(String routeId, String limitKey, String cyclePattern) {
+        // use `{}` around keys to use Redis Key hash tags
+        // this allows for using redis cluster, all cycles of the same limit
+        // key are in the same slot, and different limit keys are spread.
+        return requestLimiterConfig.getLimiter()
+                .getQuota()
+                .getTokenPrefix()
+                .concat(":{")
+                .concat(routeId)
+                .concat(":")
+                .concat(limitKey)
+                .concat("}:")
+                .concat(cyclePattern);
     }
 
     protected Map<String, String> createHeaders(
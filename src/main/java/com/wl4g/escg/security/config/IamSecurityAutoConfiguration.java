@@ -18,7 +18,11 @@ package com.wl4g.escg.security.config;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 
 import com.wl4g.escg.constant.EscgConstants;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
@@ -48,13 +52,23 @@ public class IamSecurityAutoConfiguration {
         return new EventBusSupport(authingConfig.getSimpleSign().getEventRecorder().getPublishEventBusThreads());
     }
 
+    @Bean(BEAN_SIMPLE_SIGN_BLOOM_SCRIPT)
+    public RedisScript<Long> simpleSignBloomCheckAndSetScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(SIMPLE_SIGN_BLOOM_SCRIPT_LOCATION)));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
     @Bean
     public SimpleSignAuthingFilterFactory simpleSignAuthingFilterFactory(
             IamSecurityProperties authingConfig,
-            StringRedisTemplate stringTemplate,
+            ReactiveStringRedisTemplate stringTemplate,
+            @Qualifier(BEAN_SIMPLE_SIGN_BLOOM_SCRIPT) RedisScript<Long> bloomCheckAndSetScript,
             IamGatewayMetricsFacade metricsFacade,
             @Qualifier(BEAN_SIMPLE_SIGN_EVENTBUS) EventBusSupport eventBus) {
-        return new SimpleSignAuthingFilterFactory(authingConfig, stringTemplate, metricsFacade, eventBus);
+        return new SimpleSignAuthingFilterFactory(authingConfig, stringTemplate, bloomCheckAndSetScript, metricsFacade,
+                eventBus);
     }
 
     // Simple signature authorizer event recorder
@@ -80,5 +94,7 @@ public class IamSecurityAutoConfiguration {
     // }
 
     public static final String BEAN_SIMPLE_SIGN_EVENTBUS = "simpleSignAuthingEventBusSupport";
+    public static final String BEAN_SIMPLE_SIGN_BLOOM_SCRIPT = "simpleSignBloomCheckAndSetScript";
+    public static final String SIMPLE_SIGN_BLOOM_SCRIPT_LOCATION = "META-INF/scripts/escg_bloom_check_and_set.lua";
 
 }
@@ -48,6 +48,26 @@ public class IamSecurityProperties {
          */
         private long secretLocalCacheSeconds = 6L;
 
+        /**
+         * The time after which the cached signing keys are refreshed in the
+         * background on access, it should be less than the
+         * secretLocalCacheSeconds, so that the hot clients never wait for
+         * loading.
+         */
+        private long secretLocalRefreshSeconds = 4L;
+
+        /**
+         * Local cache expiration time for the clients without signing keys,
+         * so as to blunt the enumeration attacks.
+         */
+        private long secretNegativeCacheSeconds = 10L;
+
+        /**
+         * The maximum number of locally cached signing keys (including the
+         * clients without signing keys).
+         */
+        private long secretLocalCacheMaxSize = 100_000L;
+
         /**
          * Ignore authentication in JVM debug mode, often used for rapid
          * development and testing environments.
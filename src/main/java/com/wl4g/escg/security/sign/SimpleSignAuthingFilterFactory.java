@@ -16,7 +16,6 @@
 package com.wl4g.escg.security.sign;
 
 import static com.google.common.base.Charsets.UTF_8;
-import static com.google.common.cache.CacheBuilder.newBuilder;
 import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
 import static com.wl4g.infra.common.lang.Assert2.hasText;
 import static com.wl4g.infra.common.lang.Assert2.notNullOf;
@@ -24,26 +23,20 @@ import static com.wl4g.infra.common.lang.StringUtils2.eqIgnCase;
 import static com.wl4g.infra.common.log.SmartLoggerFactory.getLogger;
 import static java.lang.String.format;
 import static java.lang.System.nanoTime;
-import static java.security.MessageDigest.isEqual;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.concurrent.TimeUnit.SECONDS;
-import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static reactor.core.publisher.Flux.just;
 
 import java.security.Principal;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
 import java.util.function.Function;
 
 import javax.validation.constraints.NotNull;
 
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
@@ -51,26 +44,26 @@ import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.server.ServerWebExchange;
 
-import com.google.common.cache.Cache;
 import com.google.common.hash.Funnel;
-import com.google.common.hash.Hashing;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
 import com.wl4g.escg.security.config.IamSecurityProperties;
-import com.wl4g.escg.security.config.IamSecurityProperties.SecretStore;
+import com.wl4g.escg.security.sign.SimpleSignBodyVerifyingRequest.BodySignRejectedException;
+import com.wl4g.escg.security.sign.SimpleSignEngine.BodySigner;
 import com.wl4g.escg.security.sign.event.SignAuthingFailureEvent;
 import com.wl4g.escg.security.sign.event.SignAuthingSuccessEvent;
 import com.wl4g.escg.util.IamGatewayUtil;
 import com.wl4g.escg.util.IamGatewayUtil.SafeFilterOrdered;
-import com.wl4g.escg.util.bloom.RedisBloomFilter;
-import com.wl4g.escg.util.bloom.RedisBloomFilter.BloomConfig;
+import com.wl4g.escg.util.bloom.LocalRotatingBloomFilter;
+import com.wl4g.escg.util.bloom.RotatingRedisBloomFilter;
 import com.wl4g.infra.common.eventbus.EventBusSupport;
 import com.wl4g.infra.common.log.SmartLogger;
 import com.wl4g.infra.common.runtime.JvmRuntimeTool;
@@ -117,22 +110,22 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
 
     private final SmartLogger log = getLogger(getClass());
     private final IamSecurityProperties authingConfig;
-    private final StringRedisTemplate redisTemplate;
-    private final Cache<String, String> secretCacheStore;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final RedisScript<Long> bloomCheckAndSetScript;
+    private final SimpleSignSecretStore secretStore;
     private final IamGatewayMetricsFacade metricsFacade;
     private final EventBusSupport eventBus;
-    private final Map<String, RedisBloomFilter<String>> cachedBloomFilters = new ConcurrentHashMap<>(8);
 
     public SimpleSignAuthingFilterFactory(@NotNull IamSecurityProperties authingConfig,
-            @NotNull StringRedisTemplate redisTemplate, @NotNull IamGatewayMetricsFacade metricsFacade,
-            EventBusSupport eventBus) {
+            @NotNull ReactiveStringRedisTemplate redisTemplate, @NotNull RedisScript<Long> bloomCheckAndSetScript,
+            @NotNull IamGatewayMetricsFacade metricsFacade, EventBusSupport eventBus) {
         super(SimpleSignAuthingFilterFactory.Config.class);
         this.authingConfig = notNullOf(authingConfig, "authingConfig");
         this.redisTemplate = notNullOf(redisTemplate, "redisTemplate");
+        this.bloomCheckAndSetScript = notNullOf(bloomCheckAndSetScript, "bloomCheckAndSetScript");
         this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
         this.eventBus = notNullOf(eventBus, "eventBus");
-        this.secretCacheStore = newBuilder().expireAfterWrite(authingConfig.getSimpleSign().getSecretLocalCacheSeconds(), SECONDS)
-                .build();
+        this.secretStore = new SimpleSignSecretStore(authingConfig.getSimpleSign(), redisTemplate);
     }
 
     @Override
@@ -164,26 +157,6 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
         return new SimpleSignAuthingGatewayFilter(config);
     }
 
-    private RedisBloomFilter<String> obtainBloomFilter(ServerWebExchange exchange, SimpleSignAuthingFilterFactory.Config config) {
-        String routeId = ((Route) exchange.getAttributes().get(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR)).getId();
-        if (isBlank(routeId)) {
-            throw new Error(format("Should't be here, cannot to get routeId"));
-        }
-        RedisBloomFilter<String> bloomFilter = cachedBloomFilters.get(routeId);
-        if (isNull(bloomFilter)) {
-            synchronized (this) {
-                if (isNull(bloomFilter = cachedBloomFilters.get(routeId))) {
-                    // Initial bloom filter.
-                    bloomFilter = new RedisBloomFilter<String>(redisTemplate, new BloomConfig<>(
-                            (Funnel<String>) (from, into) -> into.putString(from, UTF_8), Integer.MAX_VALUE, 0.01));
-                    bloomFilter.bloomExpire(getBloomKey(exchange), config.getSignReplayVerifyBloomExpireSeconds());
-                    cachedBloomFilters.put(routeId, bloomFilter);
-                }
-            }
-        }
-        return bloomFilter;
-    }
-
     private String getBloomKey(ServerWebExchange exchange) {
         String routeId = ((Route) exchange.getAttributes().get(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR)).getId();
         if (isBlank(routeId)) {
@@ -192,58 +165,20 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
         return authingConfig.getSimpleSign().getSignReplayVerifyBloomLoadPrefix().concat(":").concat(routeId);
     }
 
-    private byte[] doSignature(SimpleSignAuthingFilterFactory.Config config, ServerWebExchange exchange, String appId) {
-        // Load stored secret.
-        byte[] storedAppSecret = loadStoredSecret(config, appId);
-
+    private boolean doVerifySignature(
+            SimpleSignAuthingFilterFactory.Config config,
+            ServerWebExchange exchange,
+            byte[] storedAppSecret,
+            String sign) {
         long beginTime = nanoTime();
         try {
-            // Make signature plain text.
-            byte[] signPlainBytes = config.getSignHashingMode().getFunction().apply(
-                    new Object[] { config, storedAppSecret, exchange.getRequest() });
-            // Hashing signature.
-            return config.getSignAlgorithm().getFunction().apply(new byte[][] { storedAppSecret, signPlainBytes });
+            return SimpleSignEngine.verify(config, storedAppSecret, exchange.getRequest().getQueryParams(), sign);
         } finally {
             // Add time metrics.
             addTimerMetrics(exchange, MetricsName.SIMPLE_SIGN_TIME, config, beginTime);
         }
     }
 
-    private byte[] loadStoredSecret(SimpleSignAuthingFilterFactory.Config config, String appId) {
-        String loadKey = authingConfig.getSimpleSign().getSecretStorePrefix().concat(":").concat(appId);
-        switch (authingConfig.getSimpleSign().getSecretStore()) {
-        case ENV:
-            String storedSecret = System.getenv(loadKey);
-            // Downgrade acquisition, for example, during integration testing,
-            // process environment variables cannot be modified.
-            storedSecret = isBlank(storedSecret) ? System.getProperty(loadKey) : null;
-            if (isBlank(storedSecret)) {
-                log.warn("No found client secret from {} via '{}'", SecretStore.ENV, loadKey);
-                throw new IllegalArgumentException(format("No enables client secret?"));
-            }
-            return storedSecret.getBytes(UTF_8);
-        case REDIS:
-            storedSecret = secretCacheStore.asMap().get(loadKey);
-            if (isBlank(storedSecret)) {
-                synchronized (loadKey) {
-                    storedSecret = secretCacheStore.asMap().get(loadKey);
-                    if (isBlank(storedSecret)) {
-                        storedSecret = redisTemplate.opsForValue().get(loadKey);
-                        if (isBlank(storedSecret)) {
-                            log.warn("No found client secret from {} via '{}'", SecretStore.REDIS, loadKey);
-                            throw new IllegalArgumentException(format("No enables client secret?"));
-                        }
-                        secretCacheStore.asMap().put(loadKey, storedSecret);
-                        return storedSecret.getBytes(UTF_8);
-                    }
-                }
-            }
-            return storedSecret.getBytes(UTF_8);
-        default:
-            throw new Error("Shouldn't be here");
-        }
-    }
-
     private String getRequestAppId(SimpleSignAuthingFilterFactory.Config config, ServerWebExchange exchange) {
         // Note: In some special business platform
         // scenarios, the signature authentication protocol may not define
@@ -339,10 +274,50 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
         private boolean signReplayVerifyEnabled = true;
 
         /**
-         * Bloom filter sign cache expiration for replay attacks verification.
+         * Bloom filter sign cache expiration for replay attacks verification,
+         * that is, the time window of the replay signatures can be detected.
          */
         private Integer signReplayVerifyBloomExpireSeconds = 7 * 24 * 60 * 60;
 
+        /**
+         * The time span of each bloom filter bucket, the signatures are added
+         * to the bucket of current time, and checked against all the buckets
+         * of the expiration window, the old buckets are expired one by one.
+         */
+        private Integer signReplayVerifyBloomBucketSeconds = 6 * 60 * 60;
+
+        /**
+         * The expected signatures of each bloom filter bucket, i.e. the
+         * estimated requests of the route in a bucket time span.
+         */
+        private Integer signReplayVerifyBloomBucketExpectedInsertions = 500_000;
+
+        /**
+         * The false positive probability of bloom filter, i.e. the probability
+         * of the new signatures being misjudged as replayed.
+         */
+        private Double signReplayVerifyBloomFpp = 0.01d;
+
+        /**
+         * Whether to enable the local bloom filter tier in front of the redis
+         * bloom filter, the signatures are checked locally first and written
+         * through to redis asynchronously. Note: The replay signatures across
+         * gateway nodes within the asynchronous writing are only detected
+         * afterwards (logged and counted), not rejected.
+         */
+        private boolean signReplayVerifyLocalEnabled = false;
+
+        /**
+         * The time window of the local bloom filter tier.
+         */
+        private Integer signReplayVerifyLocalWindowSeconds = 5 * 60;
+
+        /**
+         * The expected signatures of each generation of the local bloom filter
+         * tier, the window is divided into 3 generations.
+         */
+        private Integer signReplayVerifyLocalExpectedInsertions = 100_000;
+
         /*
          * Signature parameters configuration.
          */
@@ -353,6 +328,13 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
         private List<String> signHashingExcludeParams = new ArrayList<>(4);
         private List<String> signHashingRequiredIncludeParams = new ArrayList<>(4);
 
+        /**
+         * The max bytes of the request body chunks to held back until the
+         * signature is verified, only valid when the signature hashing mode is
+         * {@link SignHashingMode#UriParamsKeySortedBodyHashing}.
+         */
+        private Integer signHashingBodyMaxHeldBytes = 64 * 1024;
+
         /**
          * Add the current authenticated client ID to the request header, this
          * will allow the back-end resource services to recognize the current
@@ -402,92 +384,58 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
         private final Function<Object[], String> function;
     }
 
-    @SuppressWarnings("deprecation")
     @Getter
     @AllArgsConstructor
     public static enum SignAlgorithm {
-        MD5(input -> Hashing.md5().hashBytes(input[1]).asBytes()),
+        MD5("MD5", false),
 
-        S1(input -> Hashing.sha1().hashBytes(input[1]).asBytes()),
+        S1("SHA-1", false),
 
-        S256(input -> Hashing.sha256().hashBytes(input[1]).asBytes()),
+        S256("SHA-256", false),
 
-        S384(input -> Hashing.sha384().hashBytes(input[1]).asBytes()),
+        S384("SHA-384", false),
 
-        S512(input -> Hashing.sha512().hashBytes(input[1]).asBytes()),
+        S512("SHA-512", false),
 
-        HMD5(input -> Hashing.hmacMd5(input[0]).hashBytes(input[1]).asBytes()),
+        HMD5("HmacMD5", true),
 
-        HS1(input -> Hashing.hmacSha1(input[0]).hashBytes(input[1]).asBytes()),
+        HS1("HmacSHA1", true),
 
-        HS256(input -> Hashing.hmacSha256(input[0]).hashBytes(input[1]).asBytes()),
+        HS256("HmacSHA256", true),
 
-        HS512(input -> Hashing.hmacSha512(input[0]).hashBytes(input[1]).asBytes());
+        HS512("HmacSHA512", true);
 
-        private final Function<byte[][], byte[]> function;
+        /**
+         * The JCA standard algorithm name.
+         */
+        private final String algorithmName;
+        private final boolean hmac;
     }
 
-    @Getter
-    @AllArgsConstructor
+    /**
+     * The modes of making the signature plain text, see:
+     * {@link SimpleSignEngine}
+     */
     public static enum SignHashingMode {
 
-        SimpleParamsBytesSortedHashing(args -> {
-            Config config = (Config) args[0];
-            byte[] storedAppSecret = (byte[]) args[1];
-            ServerHttpRequest request = (ServerHttpRequest) args[2];
-            Map<String, String> queryParams = request.getQueryParams().toSingleValueMap();
-            String[] params = getEffectiveHashingParamNames(config, queryParams);
-            StringBuffer signPlaintext = new StringBuffer();
-            for (Object key : params) {
-                if (!config.getSignParam().equals(key)) {
-                    signPlaintext.append(queryParams.get(key));
-                }
-            }
-            // Add stored secret.
-            signPlaintext.append(new String(storedAppSecret, UTF_8));
-            // ASCII sort characters.
-            byte[] signPlainBytes = signPlaintext.toString().getBytes(UTF_8);
-            Arrays.sort(signPlainBytes);
-            return signPlainBytes;
-        }),
+        /**
+         * The bytes of the parameter values and the stored secret are sorted
+         * in ASCII order.
+         */
+        SimpleParamsBytesSortedHashing,
 
-        UriParamsKeySortedHashing(args -> {
-            Config config = (Config) args[0];
-            byte[] storedAppSecret = (byte[]) args[1];
-            ServerHttpRequest request = (ServerHttpRequest) args[2];
-            Map<String, String> queryParams = request.getQueryParams().toSingleValueMap();
-            String[] params = getEffectiveHashingParamNames(config, queryParams);
-            // ASCII sort by parameters key.
-            Arrays.sort(params);
-            StringBuffer signPlaintext = new StringBuffer();
-            for (Object name : params) {
-                if (!config.getSignParam().equals(name)) {
-                    signPlaintext.append(name).append("=").append(queryParams.get(name)).append("&");
-                }
-            }
-            // Add stored secret.
-            signPlaintext.append(config.getSecretParam()).append("=").append(new String(storedAppSecret, UTF_8));
-            return signPlaintext.toString().getBytes(UTF_8);
-        });
+        /**
+         * The parameters are sorted by name in ASCII order and concatenated
+         * as 'name1=value1&name2=value2&...&{secretParam}={secret}'.
+         */
+        UriParamsKeySortedHashing,
 
-        private final Function<Object[], byte[]> function;
-
-        private static String[] getEffectiveHashingParamNames(Config config, Map<String, String> queryParams) {
-            List<String> hashingParamNames = queryParams.keySet()
-                    .stream()
-                    .filter(n -> config.isIncludeAll() || safeList(config.getSignHashingIncludeParams()).contains(n))
-                    .filter(n -> !safeList(config.getSignHashingExcludeParams()).contains(n))
-                    .collect(toList());
-
-            // Validation required parameters.
-            boolean allMatch = safeList(config.getSignHashingRequiredIncludeParams()).stream()
-                    .allMatch(p -> hashingParamNames.contains(p));
-            if (!allMatch) {
-                throw new IllegalArgumentException(format("Parameters missing, These parameters are required: %s",
-                        config.getSignHashingRequiredIncludeParams()));
-            }
-            return hashingParamNames.toArray(new String[0]);
-        }
+        /**
+         * The same as {@link #UriParamsKeySortedHashing}, followed by the raw
+         * bytes of the request body, the body is digested as it streams to
+         * the upstream, and the verification is deferred until the last chunk.
+         */
+        UriParamsKeySortedBodyHashing;
     }
 
     @AllArgsConstructor
@@ -500,9 +448,23 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
         }
     }
 
-    @AllArgsConstructor
     class SimpleSignAuthingGatewayFilter implements GatewayFilter, Ordered {
         private final Config config;
+        private final RotatingRedisBloomFilter<String> bloomFilter;
+        private final LocalRotatingBloomFilter<String> localBloomFilter;
+
+        SimpleSignAuthingGatewayFilter(Config config) {
+            this.config = notNullOf(config, "config");
+            Funnel<String> funnel = (from, into) -> into.putString(from, UTF_8);
+            this.bloomFilter = new RotatingRedisBloomFilter<>(redisTemplate, bloomCheckAndSetScript, funnel,
+                    SECONDS.toMillis(config.getSignReplayVerifyBloomExpireSeconds()),
+                    SECONDS.toMillis(config.getSignReplayVerifyBloomBucketSeconds()),
+                    config.getSignReplayVerifyBloomBucketExpectedInsertions(), config.getSignReplayVerifyBloomFpp());
+            this.localBloomFilter = config.isSignReplayVerifyLocalEnabled()
+                    ? new LocalRotatingBloomFilter<>(funnel, SECONDS.toMillis(config.getSignReplayVerifyLocalWindowSeconds()), 4,
+                            config.getSignReplayVerifyLocalExpectedInsertions(), config.getSignReplayVerifyBloomFpp())
+                    : null;
+        }
 
         @Override
         public int getOrder() {
@@ -535,46 +497,192 @@ public class SimpleSignAuthingFilterFactory extends AbstractGatewayFilterFactory
                 return writeResponse(HttpStatus.BAD_REQUEST, exchange, "bad_request - hint '%s'", e.getMessage());
             }
 
-            // Check replay attacks.
-            if (config.isSignReplayVerifyEnabled()) {
-                if (obtainBloomFilter(exchange, config).bloomExist(getBloomKey(exchange), sign)) {
-                    log.warn("Illegal signature locked. - sign={}, appId={}", sign, appId);
-                    addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_BLOOM_FAIL_TOTAL, config);
-
-                    publishFailureEvent(appId, config, exchange, "illegal_signature");
-                    return writeResponse(HttpStatus.LOCKED, exchange, "illegal_signature");
-                }
-            }
+            // Load stored secret and verify signature.
+            final String _appId = appId, _sign = sign;
+            return secretStore.loadSecret(appId)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .onErrorResume(ex -> {
+                        log.error(format("Unable to load client secret of appId: %s", _appId), ex);
+                        publishFailureEvent(_appId, config, exchange, "unavailable");
+                        return writeResponse(HttpStatus.INTERNAL_SERVER_ERROR, exchange, "unavailable")
+                                .then(Mono.<Optional<byte[]>> empty());
+                    })
+                    .flatMap(storedSecret -> {
+                        if (!storedSecret.isPresent()) {
+                            publishFailureEvent(_appId, config, exchange, "bad_request");
+                            return writeResponse(HttpStatus.BAD_REQUEST, exchange, "bad_request - hint '%s'",
+                                    "No enables client secret?");
+                        }
+                        // The empty body is digested the same as the params.
+                        if (config.getSignHashingMode() == SignHashingMode.UriParamsKeySortedBodyHashing) {
+                            return verifySignatureWithBody(exchange, chain, storedSecret.get(), _sign, _appId);
+                        }
+                        return verifySignature(exchange, chain, storedSecret.get(), _sign, _appId);
+                    });
+        }
 
-            // Verify signature.
+        private Mono<Void> verifySignature(
+                ServerWebExchange exchange,
+                GatewayFilterChain chain,
+                byte[] storedSecret,
+                String sign,
+                String appId) {
             try {
-                byte[] _sign = doSignature(config, exchange, appId);
-                if (!isEqual(_sign, Hex.decodeHex(sign.toCharArray()))) {
-                    log.warn("Invalid request sign='{}', sign='{}'", sign, Hex.encodeHexString(_sign));
+                if (!doVerifySignature(config, exchange, storedSecret, sign)) {
+                    log.warn("Invalid request sign='{}', appId='{}'", sign, appId);
                     addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_FAIL_TOTAL, config);
                     // Publish failure event.
                     publishFailureEvent(appId, config, exchange, "invalid_signature");
                     return writeResponse(HttpStatus.UNAUTHORIZED, exchange, "invalid_signature");
                 }
-                log.info("Verified request of path: '{}', appId='{}', sign='{}'", exchange.getRequest().getURI().getPath(), appId,
-                        sign);
+            } catch (IllegalArgumentException e) {
+                publishFailureEvent(appId, config, exchange, "bad_request");
+                return writeResponse(HttpStatus.BAD_REQUEST, exchange, "bad_request - hint '%s'", e.getMessage());
+            }
 
-                metricsFacade.counter(exchange, MetricsName.SIMPLE_SIGN_SUCCCESS_TOTAL, 1);
-                if (config.isSignReplayVerifyEnabled()) {
-                    obtainBloomFilter(exchange, config).bloomAdd(getBloomKey(exchange), sign);
-                    addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_BLOOM_SUCCESS_TOTAL, config);
+            return checkReplayed(exchange, sign, appId).onErrorResume(ex -> {
+                log.error(format("Unable to check replay signature of appId: %s", appId), ex);
+                publishFailureEvent(appId, config, exchange, "unavailable");
+                return writeResponse(HttpStatus.INTERNAL_SERVER_ERROR, exchange, "unavailable").then(Mono.<Boolean> empty());
+            }).flatMap(replayed -> {
+                if (replayed) {
+                    onReplayed(exchange, sign, appId);
+                    return writeResponse(HttpStatus.LOCKED, exchange, "illegal_signature");
                 }
+                onVerified(exchange, sign, appId);
+                return bindSignedToContext(exchange, chain, config, appId);
+            });
+        }
 
-                publishSuccessEvent(appId, config, exchange);
-            } catch (DecoderException e) {
-                publishFailureEvent(appId, config, exchange, "unavailable");
-                return writeResponse(HttpStatus.INTERNAL_SERVER_ERROR, exchange, "unavailable");
+        /**
+         * Verify the signature including the request body, the request is
+         * routed before the verification, and the body is digested as it
+         * streams to the upstream, the upstream write is aborted if the
+         * signature of the last chunk is rejected. The principal is bound
+         * upfront, since the key resolvers (e.g. of the request limiter) run
+         * before the body is read, but it fails closed: the upstream never
+         * receives the last chunk, and the response is only written after
+         * verified, and the body that nothing reads is still read and
+         * verified after the chain.
+         */
+        private Mono<Void> verifySignatureWithBody(
+                ServerWebExchange exchange,
+                GatewayFilterChain chain,
+                byte[] storedSecret,
+                String sign,
+                String appId) {
+            BodySigner signer = null;
+            try {
+                long beginTime = nanoTime();
+                signer = SimpleSignEngine.beginBody(config, storedSecret, exchange.getRequest().getQueryParams());
+                addTimerMetrics(exchange, MetricsName.SIMPLE_SIGN_TIME, config, beginTime);
             } catch (IllegalArgumentException e) {
                 publishFailureEvent(appId, config, exchange, "bad_request");
                 return writeResponse(HttpStatus.BAD_REQUEST, exchange, "bad_request - hint '%s'", e.getMessage());
             }
 
-            return bindSignedToContext(exchange, chain, config, appId);
+            SimpleSignBodyVerifyingRequest request = new SimpleSignBodyVerifyingRequest(exchange.getRequest(), signer,
+                    config.getSignHashingBodyMaxHeldBytes(),
+                    (bodySigner, first) -> verifyLastChunk(exchange, bodySigner, sign, appId, first));
+            ServerWebExchange verifyingExchange = exchange.mutate()
+                    .request(request)
+                    .response(request.decorateResponse(exchange.getResponse()))
+                    .build();
+            return bindSignedToContext(verifyingExchange, chain, config, appId)
+                    // e.g. the short-circuited route that never reads the body.
+                    .then(Mono.defer(request::awaitVerified))
+                    .onErrorResume(ex -> {
+                        BodySignRejectedException rejected = SimpleSignBodyVerifyingRequest.findRejected(ex);
+                        if (isNull(rejected) || exchange.getResponse().isCommitted()) {
+                            return Mono.error(ex);
+                        }
+                        return writeResponse(rejected.getStatus(), exchange, rejected.getReason());
+                    });
+        }
+
+        /**
+         * @param first
+         *            Whether it's the first subscription of the body, the
+         *            replay is only checked once, the later subscriptions (e.g.
+         *            the retries) of the same request are only verified the
+         *            signature.
+         */
+        private Mono<Void> verifyLastChunk(ServerWebExchange exchange, BodySigner signer, String sign, String appId, boolean first) {
+            if (!signer.verify(sign)) {
+                log.warn("Invalid request body sign='{}', appId='{}'", sign, appId);
+                addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_FAIL_TOTAL, config);
+                publishFailureEvent(appId, config, exchange, "invalid_signature");
+                return Mono.error(new BodySignRejectedException(HttpStatus.UNAUTHORIZED, "invalid_signature"));
+            }
+            if (!first) {
+                return Mono.empty();
+            }
+            return checkReplayed(exchange, sign, appId).onErrorResume(ex -> {
+                log.error(format("Unable to check replay signature of appId: %s", appId), ex);
+                publishFailureEvent(appId, config, exchange, "unavailable");
+                return Mono.error(new BodySignRejectedException(HttpStatus.INTERNAL_SERVER_ERROR, "unavailable"));
+            }).flatMap(replayed -> {
+                if (replayed) {
+                    onReplayed(exchange, sign, appId);
+                    return Mono.error(new BodySignRejectedException(HttpStatus.LOCKED, "illegal_signature"));
+                }
+                onVerified(exchange, sign, appId);
+                return Mono.empty();
+            });
+        }
+
+        /**
+         * Check replay attacks, only the verified signatures are added, so
+         * that the invalid requests can't fill up the bloom filter.
+         *
+         * @return true if the signature has been replayed.
+         */
+        private Mono<Boolean> checkReplayed(ServerWebExchange exchange, String sign, String appId) {
+            if (!config.isSignReplayVerifyEnabled()) {
+                return Mono.just(false);
+            }
+            if (nonNull(localBloomFilter)) {
+                return Mono.just(checkReplayedWithLocal(exchange, sign, appId));
+            }
+            return bloomFilter.bloomCheckAndAdd(getBloomKey(exchange), sign).defaultIfEmpty(false).doOnNext(existed -> {
+                if (!existed) {
+                    addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_BLOOM_SUCCESS_TOTAL, config);
+                }
+            });
+        }
+
+        /**
+         * The replay signatures hitting the same gateway node are rejected
+         * locally, and the new signatures are written through to redis
+         * asynchronously without waiting.
+         */
+        private boolean checkReplayedWithLocal(ServerWebExchange exchange, String sign, String appId) {
+            if (localBloomFilter.checkAndAdd(sign)) {
+                return true;
+            }
+            bloomFilter.bloomCheckAndAdd(getBloomKey(exchange), sign).subscribe(existed -> {
+                if (existed) {
+                    log.warn("Illegal signature replayed across nodes. - sign={}, appId={}", sign, appId);
+                    addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_BLOOM_LATE_FAIL_TOTAL, config);
+                }
+            }, ex -> log.warn(format("Unable to write through replay signature of appId: %s", appId), ex));
+
+            addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_BLOOM_SUCCESS_TOTAL, config);
+            return false;
+        }
+
+        private void onReplayed(ServerWebExchange exchange, String sign, String appId) {
+            log.warn("Illegal signature locked. - sign={}, appId={}", sign, appId);
+            addCounterMetrics(exchange, MetricsName.SIMPLE_SIGN_BLOOM_FAIL_TOTAL, config);
+            publishFailureEvent(appId, config, exchange, "illegal_signature");
+        }
+
+        private void onVerified(ServerWebExchange exchange, String sign, String appId) {
+            log.info("Verified request of path: '{}', appId='{}', sign='{}'", exchange.getRequest().getURI().getPath(), appId,
+                    sign);
+            metricsFacade.counter(exchange, MetricsName.SIMPLE_SIGN_SUCCCESS_TOTAL, 1);
+            publishSuccessEvent(appId, config, exchange);
         }
     }
 
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.util.Collections.emptyList;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+import javax.validation.constraints.NotNull;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.wl4g.escg.security.sign.SimpleSignEngine.BodySigner;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The request decorator of the signature including the request body, the body
+ * chunks are digested as they stream through, without aggregating the whole
+ * body. The latest chunks (at least one, and up to the max held bytes) are
+ * held back until the last chunk is verified, so that the upstream never
+ * receives the complete body of the invalid requests, i.e. the upstream write
+ * is aborted with {@link BodySignRejectedException}.
+ *
+ * <p>
+ * The verification fails closed: the response (see
+ * {@link #decorateResponse(ServerHttpResponse)}) is only written after the
+ * body is verified, if nothing reads the body (e.g. the short-circuited or
+ * cached response), it's read and verified before the response, and the
+ * aborted body (e.g. the upstream replied early) is rejected.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-11 v1.0.0
+ * @since v1.0.0
+ */
+public class SimpleSignBodyVerifyingRequest extends ServerHttpRequestDecorator {
+
+    private final BodySigner signer;
+    private final int maxHeldBytes;
+    private final BiFunction<BodySigner, Boolean, Mono<Void>> verifier;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+    private final Sinks.Empty<Void> verification = Sinks.empty();
+    private volatile boolean verified;
+
+    /**
+     * @param delegate
+     * @param signer
+     *            The signer in the state before the body, which is copied for
+     *            each subscription of the body (e.g. the retries).
+     * @param maxHeldBytes
+     *            The max bytes of the chunks to held back until verified.
+     * @param verifier
+     *            The verification of the last chunk with whether it's the
+     *            first subscription, it should be failed with
+     *            {@link BodySignRejectedException} if rejected.
+     */
+    public SimpleSignBodyVerifyingRequest(@NotNull ServerHttpRequest delegate, @NotNull BodySigner signer, int maxHeldBytes,
+            @NotNull BiFunction<BodySigner, Boolean, Mono<Void>> verifier) {
+        super(delegate);
+        isTrue(maxHeldBytes > 0, "maxHeldBytes must be greater than 0");
+        this.signer = notNullOf(signer, "signer");
+        this.maxHeldBytes = maxHeldBytes;
+        this.verifier = notNullOf(verifier, "verifier");
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return Flux.defer(() -> {
+            boolean first = subscribed.compareAndSet(false, true);
+            BodySigner bodySigner = signer.copy();
+            HeldChunks held = new HeldChunks();
+            Flux<DataBuffer> body = super.getBody().concatMapIterable(chunk -> {
+                bodySigner.update(chunk.asByteBuffer());
+                return held.offer(chunk);
+            }).concatWith(Flux.defer(() -> verifier.apply(bodySigner, first).doOnSuccess(v -> {
+                if (first) {
+                    verified = true;
+                    verification.tryEmitEmpty();
+                }
+            }).thenMany(Flux.fromIterable(held.drain()))))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doOnError(ex -> held.release())
+                    .doOnCancel(() -> held.release());
+            if (!first) {
+                return body;
+            }
+            // The no-op if it has been verified.
+            return body.doOnError(ex -> verification.tryEmitError(ex))
+                    .doOnCancel(() -> verification
+                            .tryEmitError(new BodySignRejectedException(HttpStatus.BAD_REQUEST, "incomplete_body")));
+        });
+    }
+
+    /**
+     * Whether the body of the first subscription has been verified.
+     */
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * Wait until the body is verified, if the body has not been subscribed
+     * (i.e. nothing reads it), it's read and verified.
+     *
+     * @return The error of {@link BodySignRejectedException} if rejected.
+     */
+    public Mono<Void> awaitVerified() {
+        return Mono.defer(() -> {
+            if (verified) {
+                return Mono.empty();
+            }
+            if (!subscribed.get()) {
+                return getBody().doOnNext(DataBufferUtils::release).then(verification.asMono());
+            }
+            return verification.asMono();
+        });
+    }
+
+    /**
+     * Decorate the response which is only written after the body is
+     * verified, so that the response of the unverified request is never
+     * committed.
+     */
+    public ServerHttpResponse decorateResponse(@NotNull ServerHttpResponse response) {
+        return new ServerHttpResponseDecorator(response) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return awaitVerified().then(Mono.defer(() -> super.writeWith(body)));
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return awaitVerified().then(Mono.defer(() -> super.writeAndFlushWith(body)));
+            }
+
+            @Override
+            public Mono<Void> setComplete() {
+                return awaitVerified().then(Mono.defer(() -> super.setComplete()));
+            }
+        };
+    }
+
+    /**
+     * Find the rejection in the causes of the routing error.
+     */
+    public static BodySignRejectedException findRejected(Throwable ex) {
+        for (Throwable cause = ex; nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof BodySignRejectedException) {
+                return (BodySignRejectedException) cause;
+            }
+        }
+        return null;
+    }
+
+    class HeldChunks {
+        private final Deque<DataBuffer> chunks = new ArrayDeque<>(4);
+        private long heldBytes;
+
+        /**
+         * Hold the chunk, and release the oldest chunks beyond the max held
+         * bytes, the latest chunk is always held.
+         */
+        synchronized List<DataBuffer> offer(DataBuffer chunk) {
+            chunks.offerLast(chunk);
+            heldBytes += chunk.readableByteCount();
+            List<DataBuffer> released = null;
+            while (heldBytes > maxHeldBytes && chunks.size() > 1) {
+                DataBuffer oldest = chunks.pollFirst();
+                heldBytes -= oldest.readableByteCount();
+                if (isNull(released)) {
+                    released = new ArrayList<>(2);
+                }
+                released.add(oldest);
+            }
+            return isNull(released) ? emptyList() : released;
+        }
+
+        synchronized List<DataBuffer> drain() {
+            List<DataBuffer> drained = new ArrayList<>(chunks);
+            chunks.clear();
+            heldBytes = 0;
+            return drained;
+        }
+
+        synchronized void release() {
+            for (DataBuffer chunk : chunks) {
+                DataBufferUtils.release(chunk);
+            }
+            chunks.clear();
+            heldBytes = 0;
+        }
+    }
+
+    /**
+     * The rejection of the signature including the request body.
+     */
+    public static class BodySignRejectedException extends ResponseStatusException {
+        private static final long serialVersionUID = 1L;
+
+        public BodySignRejectedException(HttpStatus status, String reason) {
+            super(status, reason);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.util.MultiValueMap;
+
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.Config;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignAlgorithm;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignHashingMode;
+
+/**
+ * The signature engine of simple signature authenticator, the initialized
+ * {@link MessageDigest} and {@link Mac} (per secret) instances are cached per
+ * thread, and the canonical plain text is streamed into them directly, without
+ * building the intermediate strings. The bytes sorting of
+ * {@link SignHashingMode#SimpleParamsBytesSortedHashing} is done by counting
+ * sort, and the signatures are compared with the hex string in constant time.
+ * The request body of {@link SignHashingMode#UriParamsKeySortedBodyHashing} is
+ * digested incrementally by the detached {@link BodySigner}.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-10 v1.0.0
+ * @since v1.0.0
+ */
+public abstract class SimpleSignEngine {
+
+    private static final ThreadLocal<SignHasher> LOCAL_HASHER = ThreadLocal.withInitial(SignHasher::new);
+
+    /**
+     * Verify the request signature.
+     *
+     * @param config
+     * @param storedSecret
+     * @param queryParams
+     * @param hexSign
+     *            The request signature of hex string.
+     * @return
+     * @throws IllegalArgumentException
+     *             if the required parameters are missing.
+     */
+    public static boolean verify(Config config, byte[] storedSecret, MultiValueMap<String, String> queryParams, String hexSign) {
+        SignHasher hasher = LOCAL_HASHER.get();
+        int length = hasher.sign(config, storedSecret, queryParams);
+        return constantTimeEqualsHex(hasher.output, length, hexSign);
+    }
+
+    /**
+     * Generate the signature.
+     *
+     * @param config
+     * @param storedSecret
+     * @param queryParams
+     * @return
+     * @throws IllegalArgumentException
+     *             if the required parameters are missing.
+     */
+    public static byte[] sign(Config config, byte[] storedSecret, MultiValueMap<String, String> queryParams) {
+        SignHasher hasher = LOCAL_HASHER.get();
+        int length = hasher.sign(config, storedSecret, queryParams);
+        return Arrays.copyOf(hasher.output, length);
+    }
+
+    /**
+     * Begin the signature including the request body, the plain text of the
+     * parameters and the secret is hashed first, and then the body chunks are
+     * to be hashed via {@link BodySigner#update(ByteBuffer)} as they arrive.
+     *
+     * @param config
+     * @param storedSecret
+     * @param queryParams
+     * @return
+     * @throws IllegalArgumentException
+     *             if the required parameters are missing.
+     */
+    public static BodySigner beginBody(Config config, byte[] storedSecret, MultiValueMap<String, String> queryParams) {
+        SignHasher hasher = LOCAL_HASHER.get();
+        hasher.write(config, storedSecret, queryParams);
+        return hasher.detach();
+    }
+
+    /**
+     * Compare the bytes and the hex string in constant time, i.e. the time
+     * only depends on the length, the invalid hex chars are treated as
+     * mismatched.
+     */
+    static boolean constantTimeEqualsHex(byte[] bytes, int length, String hex) {
+        if (isNull(hex) || hex.length() != length * 2) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            // The negative digit (invalid) has the high bits set.
+            diff |= (high | low) & 0x80000000;
+            diff |= (bytes[i] & 0xFF) ^ ((high << 4) | low);
+        }
+        return diff == 0;
+    }
+
+    static class SignHasher {
+        private static final int CHUNK_SIZE = 256;
+        private static final int MAX_CACHED_MACS = 256;
+
+        private final MessageDigest[] digests = new MessageDigest[SignAlgorithm.values().length];
+        private final Map<MacKey, Mac> macs = new LinkedHashMap<MacKey, Mac>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MacKey, Mac> eldest) {
+                return size() > MAX_CACHED_MACS;
+            }
+        };
+        private final MacKey probeKey = new MacKey();
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final int[] counts = new int[256];
+        private final byte[] output = new byte[64];
+        private int position;
+        private boolean counting;
+        private MessageDigest digest;
+        private Mac mac;
+
+        int sign(Config config, byte[] storedSecret, MultiValueMap<String, String> queryParams) {
+            write(config, storedSecret, queryParams);
+            return finish();
+        }
+
+        void write(Config config, byte[] storedSecret, MultiValueMap<String, String> queryParams) {
+            begin(config.getSignAlgorithm(), storedSecret);
+            String[] params = getEffectiveHashingParamNames(config, queryParams);
+            switch (config.getSignHashingMode()) {
+            case SimpleParamsBytesSortedHashing:
+                // ASCII sort characters by counting sort.
+                counting = true;
+                for (String name : params) {
+                    if (!config.getSignParam().equals(name)) {
+                        appendUtf8(String.valueOf(queryParams.getFirst(name)));
+                    }
+                }
+                // Add stored secret.
+                append(storedSecret);
+                flushChunk();
+                counting = false;
+                appendCounts();
+                break;
+            case UriParamsKeySortedHashing:
+            case UriParamsKeySortedBodyHashing:
+                // ASCII sort by parameters key.
+                Arrays.sort(params);
+                for (String name : params) {
+                    if (!config.getSignParam().equals(name)) {
+                        appendUtf8(name);
+                        append((byte) '=');
+                        appendUtf8(String.valueOf(queryParams.getFirst(name)));
+                        append((byte) '&');
+                    }
+                }
+                // Add stored secret.
+                appendUtf8(config.getSecretParam());
+                append((byte) '=');
+                append(storedSecret);
+                break;
+            default:
+                throw new Error("Shouldn't be here");
+            }
+            flushChunk();
+        }
+
+        /**
+         * Detach the copy of the digest (or mac) in the current state, so the
+         * cached one can be reused by the other requests of the thread.
+         */
+        BodySigner detach() {
+            try {
+                return isNull(mac) ? new BodySigner((MessageDigest) digest.clone(), null) : new BodySigner(null, (Mac) mac.clone());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void begin(SignAlgorithm algorithm, byte[] secret) {
+            position = 0;
+            counting = false;
+            Arrays.fill(counts, 0);
+            if (algorithm.isHmac()) {
+                digest = null;
+                mac = obtainMac(algorithm, secret);
+            } else {
+                mac = null;
+                digest = obtainDigest(algorithm);
+                digest.reset();
+            }
+        }
+
+        private int finish() {
+            try {
+                if (isNull(mac)) {
+                    return digest.digest(output, 0, output.length);
+                }
+                int length = mac.getMacLength();
+                mac.doFinal(output, 0);
+                return length;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private MessageDigest obtainDigest(SignAlgorithm algorithm) {
+            MessageDigest digest = digests[algorithm.ordinal()];
+            if (isNull(digest)) {
+                try {
+                    digests[algorithm.ordinal()] = digest = MessageDigest.getInstance(algorithm.getAlgorithmName());
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return digest;
+        }
+
+        private Mac obtainMac(SignAlgorithm algorithm, byte[] secret) {
+            Mac mac = macs.get(probeKey.wrap(algorithm, secret));
+            if (isNull(mac)) {
+                try {
+                    mac = Mac.getInstance(algorithm.getAlgorithmName());
+                    mac.init(new SecretKeySpec(secret, algorithm.getAlgorithmName()));
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                } catch (InvalidKeyException | IllegalArgumentException e) {
+                    throw new IllegalArgumentException(format("Invalid client secret of %s", algorithm), e);
+                }
+                macs.put(new MacKey().wrap(algorithm, secret.clone()), mac);
+            } else {
+                mac.reset();
+            }
+            return mac;
+        }
+
+        private void appendUtf8(String s) {
+            for (int i = 0, len = s.length(); i < len; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    append((byte) c);
+                } else if (c < 0x800) {
+                    append((byte) (0xC0 | (c >> 6)));
+                    append((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    append((byte) (0xF0 | (cp >> 18)));
+                    append((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    append((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    append((byte) (0x80 | (cp & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    // The same as String.getBytes(UTF_8) of unpaired surrogate.
+                    append((byte) '?');
+                } else {
+                    append((byte) (0xE0 | (c >> 12)));
+                    append((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    append((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        private void append(byte[] bytes) {
+            for (byte b : bytes) {
+                append(b);
+            }
+        }
+
+        private void append(byte b) {
+            if (position == CHUNK_SIZE) {
+                flushChunk();
+            }
+            chunk[position++] = b;
+        }
+
+        private void flushChunk() {
+            if (counting) {
+                for (int i = 0; i < position; i++) {
+                    ++counts[chunk[i] & 0xFF];
+                }
+            } else if (isNull(mac)) {
+                digest.update(chunk, 0, position);
+            } else {
+                mac.update(chunk, 0, position);
+            }
+            position = 0;
+        }
+
+        /**
+         * Append the counted bytes in the order of signed bytes, the same as
+         * {@link Arrays#sort(byte[])}.
+         */
+        private void appendCounts() {
+            for (int v = Byte.MIN_VALUE; v <= Byte.MAX_VALUE; v++) {
+                for (int n = counts[v & 0xFF]; n > 0; n--) {
+                    append((byte) v);
+                }
+            }
+        }
+    }
+
+    /**
+     * The signer of the request body, it's not thread-safe, the body chunks
+     * should be updated sequentially.
+     */
+    public static class BodySigner {
+        private final MessageDigest digest;
+        private final Mac mac;
+
+        BodySigner(MessageDigest digest, Mac mac) {
+            this.digest = digest;
+            this.mac = mac;
+        }
+
+        public void update(ByteBuffer chunk) {
+            if (isNull(mac)) {
+                digest.update(chunk);
+            } else {
+                mac.update(chunk);
+            }
+        }
+
+        public boolean verify(String hexSign) {
+            byte[] signed = isNull(mac) ? digest.digest() : mac.doFinal();
+            return constantTimeEqualsHex(signed, signed.length, hexSign);
+        }
+
+        /**
+         * Copy the signer in the current state, e.g. for each subscription of
+         * the request body.
+         */
+        public BodySigner copy() {
+            try {
+                return isNull(mac) ? new BodySigner((MessageDigest) digest.clone(), null) : new BodySigner(null, (Mac) mac.clone());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static String[] getEffectiveHashingParamNames(Config config, MultiValueMap<String, String> queryParams) {
+        List<String> includeParams = safeList(config.getSignHashingIncludeParams());
+        List<String> excludeParams = safeList(config.getSignHashingExcludeParams());
+        List<String> hashingParamNames = new ArrayList<>(queryParams.size());
+        for (String name : queryParams.keySet()) {
+            if ((config.isIncludeAll() || includeParams.contains(name)) && !excludeParams.contains(name)) {
+                hashingParamNames.add(name);
+            }
+        }
+        // Validation required parameters.
+        for (String required : safeList(config.getSignHashingRequiredIncludeParams())) {
+            if (!hashingParamNames.contains(required)) {
+                throw new IllegalArgumentException(format("Parameters missing, These parameters are required: %s",
+                        config.getSignHashingRequiredIncludeParams()));
+            }
+        }
+        return hashingParamNames.toArray(new String[0]);
+    }
+
+    static class MacKey {
+        private SignAlgorithm algorithm;
+        private byte[] secret;
+        private int hash;
+
+        MacKey wrap(SignAlgorithm algorithm, byte[] secret) {
+            this.algorithm = algorithm;
+            this.secret = secret;
+            this.hash = 31 * algorithm.hashCode() + Arrays.hashCode(secret);
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MacKey)) {
+                return false;
+            }
+            MacKey that = (MacKey) obj;
+            return algorithm == that.algorithm && (secret == that.secret || Arrays.equals(secret, that.secret));
+        }
+    }
+
+}
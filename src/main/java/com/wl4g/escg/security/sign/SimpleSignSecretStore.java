@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+import static com.wl4g.infra.common.log.SmartLoggerFactory.getLogger;
+import static java.lang.String.format;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import com.google.common.cache.Cache;
+import com.wl4g.escg.security.config.IamSecurityProperties.SecretStore;
+import com.wl4g.escg.security.config.IamSecurityProperties.SimpleSignAuthingProperties;
+import com.wl4g.infra.common.log.SmartLogger;
+
+import lombok.AllArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non-blocking loader of the stored client secrets for simple signature
+ * authenticator, which caches the secrets locally and refreshes the hot
+ * entries in the background before expiration (refresh-ahead), the concurrent
+ * loads of the same appId are merged into one (single-flight), and the unknown
+ * appIds are also cached for a while (negative cache), so as to blunt the
+ * enumeration attacks.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-09 v1.0.0
+ * @since v1.0.0
+ */
+public class SimpleSignSecretStore {
+
+    private final SmartLogger log = getLogger(getClass());
+    private final SimpleSignAuthingProperties config;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Cache<String, CachedSecret> secretCache;
+    private final Map<String, Mono<CachedSecret>> inflightLoads = new ConcurrentHashMap<>(16);
+
+    public SimpleSignSecretStore(@NotNull SimpleSignAuthingProperties config,
+            @NotNull ReactiveStringRedisTemplate redisTemplate) {
+        this.config = notNullOf(config, "config");
+        this.redisTemplate = notNullOf(redisTemplate, "redisTemplate");
+        this.secretCache = newBuilder().maximumSize(config.getSecretLocalCacheMaxSize())
+                .expireAfterWrite(Math.max(config.getSecretLocalCacheSeconds(), config.getSecretNegativeCacheSeconds()), SECONDS)
+                .build();
+    }
+
+    /**
+     * Load the stored secret of the client.
+     *
+     * @param appId
+     * @return The stored secret, or empty if the client has no secret.
+     */
+    public Mono<byte[]> loadSecret(String appId) {
+        String loadKey = config.getSecretStorePrefix().concat(":").concat(appId);
+        switch (config.getSecretStore()) {
+        case ENV:
+            return Mono.justOrEmpty(loadEnvSecret(loadKey));
+        case REDIS:
+            long now = currentTimeMillis();
+            CachedSecret cached = secretCache.getIfPresent(loadKey);
+            if (nonNull(cached) && now < cached.expireAt) {
+                if (nonNull(cached.secret) && now >= cached.refreshAt) {
+                    // Refresh ahead in the background, the stale secret is
+                    // still used until expiration.
+                    load(loadKey).subscribe(null, ex -> log.warn(format("Unable to refresh client secret via '%s'", loadKey), ex));
+                }
+                return Mono.justOrEmpty(cached.secret);
+            }
+            return load(loadKey).flatMap(loaded -> Mono.justOrEmpty(loaded.secret));
+        default:
+            throw new Error("Shouldn't be here");
+        }
+    }
+
+    private Mono<CachedSecret> load(String loadKey) {
+        // Merge the concurrent loads of the same key.
+        return inflightLoads.computeIfAbsent(loadKey,
+                key -> redisTemplate.opsForValue()
+                        .get(key)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .map(storedSecret -> {
+                            CachedSecret loaded = newCachedSecret(key, storedSecret.orElse(null));
+                            secretCache.put(key, loaded);
+                            return loaded;
+                        })
+                        .doFinally(signal -> inflightLoads.remove(key))
+                        .cache());
+    }
+
+    private CachedSecret newCachedSecret(String loadKey, @Nullable String storedSecret) {
+        long now = currentTimeMillis();
+        if (isBlank(storedSecret)) {
+            log.warn("No found client secret from {} via '{}'", SecretStore.REDIS, loadKey);
+            return new CachedSecret(null, now + SECONDS.toMillis(config.getSecretNegativeCacheSeconds()), Long.MAX_VALUE);
+        }
+        return new CachedSecret(storedSecret.getBytes(UTF_8), now + SECONDS.toMillis(config.getSecretLocalCacheSeconds()),
+                now + SECONDS.toMillis(config.getSecretLocalRefreshSeconds()));
+    }
+
+    private @Nullable byte[] loadEnvSecret(String loadKey) {
+        String storedSecret = System.getenv(loadKey);
+        // Downgrade acquisition, for example, during integration testing,
+        // process environment variables cannot be modified.
+        if (isBlank(storedSecret)) {
+            storedSecret = System.getProperty(loadKey);
+        }
+        if (isBlank(storedSecret)) {
+            log.warn("No found client secret from {} via '{}'", SecretStore.ENV, loadKey);
+            return null;
+        }
+        return storedSecret.getBytes(UTF_8);
+    }
+
+    @AllArgsConstructor
+    static class CachedSecret {
+        private final @Nullable byte[] secret;
+        private final long expireAt;
+        private final long refreshAt;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.server;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+import com.wl4g.escg.util.net.CidrTrie;
+
+import io.netty.util.NetUtil;
+
+/**
+ * The shared resolver of the real client address, which is used by the IP
+ * filter, the limiter key resolvers and the logging, and computed at most
+ * once per request (memoized in the exchange attributes).
+ *
+ * <p>
+ * The forwarded headers are only honored when the peer is a trusted proxy, and
+ * the hops chain (e.g: {@code X-Forwarded-For: client, proxy1, proxy2}) is
+ * walked from right to left, the first hop that is not a trusted proxy is the
+ * client address, so the hops forged by the client on the left are ignored.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-13 v1.0.0
+ * @since v1.0.0
+ */
+public class ClientAddressResolver {
+
+    private final String[] headerNames;
+    private final CidrTrie<Boolean> trustedProxies;
+    private final boolean memoized;
+
+    public ClientAddressResolver(@NotNull ClientAddressProperties config) {
+        notNullOf(config, "config");
+        this.headerNames = normalizeHeaderNames(config.getHeaderNames());
+        this.trustedProxies = new CidrTrie<>();
+        safeList(config.getTrustedProxies()).forEach(cidr -> {
+            try {
+                trustedProxies.put(cidr, true);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(format("Failed to parse trusted proxy cidr for '%s'", cidr), e);
+            }
+        });
+        this.memoized = true;
+    }
+
+    private ClientAddressResolver(String[] headerNames, CidrTrie<Boolean> trustedProxies) {
+        this.headerNames = headerNames;
+        this.trustedProxies = trustedProxies;
+        this.memoized = false;
+    }
+
+    /**
+     * Derive the resolver with the other header names and the same trusted
+     * proxies, e.g: for the deprecated per-route IP filter
+     * 'forwardHeaderNames'. The derived resolver is not memoized in the
+     * exchange attributes, so that the shared client address is not affected.
+     */
+    public ClientAddressResolver withHeaderNames(List<String> headerNames) {
+        return new ClientAddressResolver(normalizeHeaderNames(headerNames), trustedProxies);
+    }
+
+    /**
+     * Resolve the client address of the request.
+     *
+     * @param exchange
+     * @return The client address, or null if the request has no remote address
+     *         (e.g: unix domain socket).
+     */
+    public @Nullable InetAddress resolve(ServerWebExchange exchange) {
+        if (!this.memoized) {
+            return doResolve(exchange);
+        }
+        Object memoized = exchange.getAttributes().get(CLIENT_ADDRESS_ATTR);
+        if (nonNull(memoized)) {
+            return memoized == NONE ? null : (InetAddress) memoized;
+        }
+        InetAddress address = doResolve(exchange);
+        exchange.getAttributes().put(CLIENT_ADDRESS_ATTR, isNull(address) ? NONE : address);
+        return address;
+    }
+
+    /**
+     * Resolve the client host address (e.g: '1.2.3.4', '2001:db8:0:0:0:0:0:1')
+     * of the request.
+     *
+     * @param exchange
+     * @return The client host address, or null if the request has no remote
+     *         address.
+     */
+    public @Nullable String resolveHost(ServerWebExchange exchange) {
+        if (!memoized) {
+            InetAddress address = doResolve(exchange);
+            return isNull(address) ? null : address.getHostAddress();
+        }
+        String host = exchange.getAttribute(CLIENT_HOST_ATTR);
+        if (isNull(host)) {
+            InetAddress address = resolve(exchange);
+            if (isNull(address)) {
+                return null;
+            }
+            exchange.getAttributes().put(CLIENT_HOST_ATTR, host = address.getHostAddress());
+        }
+        return host;
+    }
+
+    private InetAddress doResolve(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (isNull(remoteAddress) || isNull(remoteAddress.getAddress())) {
+            return null;
+        }
+        InetAddress peer = remoteAddress.getAddress();
+        if (headerNames.length == 0 || isNull(trustedProxies.get(peer))) {
+            return peer;
+        }
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        for (String name : headerNames) {
+            // Cheap presence check first, the multiple header lines are only
+            // collected for the present one.
+            String first = headers.getFirst(name);
+            if (isBlank(first)) {
+                continue;
+            }
+            InetAddress address = parseHops(headers.get(name));
+            if (nonNull(address)) {
+                return address;
+            }
+        }
+        return peer;
+    }
+
+    /**
+     * Walk the hops of the header lines from right to left, and return the
+     * first hop which is not a trusted proxy, or the leftmost valid hop if all
+     * are trusted. The walk stops at the invalid hop (e.g: 'unknown' or the
+     * obfuscated identifier) and returns the last trusted hop on its right.
+     *
+     * @return The client address, or null if the rightmost hop is invalid.
+     */
+    @Nullable
+    InetAddress parseHops(List<String> lines) {
+        byte[] lastTrusted = null;
+        for (int i = safeList(lines).size() - 1; i >= 0; i--) {
+            String line = lines.get(i);
+            if (isNull(line)) {
+                continue;
+            }
+            int end = line.length();
+            while (end >= 0) {
+                int start = line.lastIndexOf(',', end - 1);
+                String hop = line.substring(start + 1, end);
+                end = start;
+                if (isBlank(hop)) {
+                    continue;
+                }
+                byte[] address = parseHop(hop);
+                if (isNull(address)) {
+                    return toInetAddress(lastTrusted);
+                }
+                if (isNull(trustedProxies.get(address))) {
+                    return toInetAddress(address);
+                }
+                lastTrusted = address;
+            }
+        }
+        return toInetAddress(lastTrusted);
+    }
+
+    /**
+     * Parse the hop of IPv4 or IPv6 address, which may be with the port or
+     * quoted, e.g: '1.2.3.4', '1.2.3.4:8080', '[2001:db8::1]:8080',
+     * '"[2001:db8::1]"'
+     *
+     * @return The raw address, or null if invalid.
+     */
+    static @Nullable byte[] parseHop(String hop) {
+        String ip = hop.trim();
+        if (ip.length() > 1 && ip.charAt(0) == '"' && ip.charAt(ip.length() - 1) == '"') {
+            ip = ip.substring(1, ip.length() - 1);
+        }
+        if (ip.startsWith("[")) {
+            int bracket = ip.indexOf(']');
+            if (bracket < 0) {
+                return null;
+            }
+            ip = ip.substring(1, bracket);
+        } else {
+            int colon = ip.indexOf(':');
+            if (colon > 0 && colon == ip.lastIndexOf(':')) {
+                // The IPv4 with port.
+                ip = ip.substring(0, colon);
+            }
+        }
+        long ipv4 = CidrTrie.parseIPv4(ip);
+        if (ipv4 >= 0) {
+            return new byte[] { (byte) (ipv4 >>> 24), (byte) (ipv4 >>> 16), (byte) (ipv4 >>> 8), (byte) ipv4 };
+        }
+        return NetUtil.createByteArrayFromIpAddressString(ip);
+    }
+
+    private static String[] normalizeHeaderNames(List<String> headerNames) {
+        // The header names are case-insensitive, the duplicates in different
+        // cases are looked up only once.
+        Set<String> names = new LinkedHashSet<>();
+        safeList(headerNames).stream()
+                .filter(name -> !isBlank(name))
+                .forEach(name -> names.add(name.trim().toLowerCase(Locale.US)));
+        return names.toArray(new String[0]);
+    }
+
+    private static InetAddress toInetAddress(@Nullable byte[] address) {
+        if (isNull(address)) {
+            return null;
+        }
+        try {
+            // No name service lookup for the raw address.
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e); // Should never happen
+        }
+    }
+
+    public static final String CLIENT_ADDRESS_ATTR = ClientAddressResolver.class.getName() + ".clientAddress";
+    public static final String CLIENT_HOST_ATTR = ClientAddressResolver.class.getName() + ".clientHost";
+    private static final Object NONE = new Object();
+
+}
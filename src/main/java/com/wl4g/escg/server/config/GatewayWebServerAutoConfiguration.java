@@ -16,13 +16,17 @@
 package com.wl4g.escg.server.config;
 
 import static com.wl4g.escg.constant.EscgConstants.CONF_PREFIX_ESCG_SERVER;
+import static java.util.stream.Collectors.toList;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.client.reactive.ReactorResourceFactory;
 import org.springframework.http.codec.ServerCodecConfigurer;
 
+import com.wl4g.escg.server.ClientAddressResolver;
 import com.wl4g.escg.server.SecureNettyReactiveWebServerFactory;
 
 /**
@@ -41,12 +45,20 @@ public class GatewayWebServerAutoConfiguration {
         return new GatewayWebServerProperties();
     }
 
+    @Bean
+    public ClientAddressResolver clientAddressResolver(GatewayWebServerProperties serverConfig) {
+        return new ClientAddressResolver(serverConfig.getClientAddress());
+    }
+
     /**
      * @see {@link org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext#createWebServer()}
      */
     @Bean
-    public SecureNettyReactiveWebServerFactory secureNettyReactiveWebServerFactory() {
-        return new SecureNettyReactiveWebServerFactory();
+    public SecureNettyReactiveWebServerFactory secureNettyReactiveWebServerFactory(
+            ObjectProvider<NettyServerCustomizer> serverCustomizers) {
+        SecureNettyReactiveWebServerFactory factory = new SecureNettyReactiveWebServerFactory();
+        factory.getServerCustomizers().addAll(serverCustomizers.orderedStream().collect(toList()));
+        return factory;
     }
 
     /**
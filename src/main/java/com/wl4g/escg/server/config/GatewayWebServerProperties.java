@@ -50,6 +50,8 @@ public class GatewayWebServerProperties {
 
     private SslServerVerifier sslVerifier = new SslServerVerifier();
 
+    private ClientAddressProperties clientAddress = new ClientAddressProperties();
+
     @Getter
     @Setter
     @ToString
@@ -58,6 +60,31 @@ public class GatewayWebServerProperties {
         private PeerVerifier peer = new PeerVerifier();
     }
 
+    @Getter
+    @Setter
+    @ToString
+    public static class ClientAddressProperties {
+
+        /**
+         * The names of the forwarded headers carrying the client address in
+         * order of priority (case-insensitive), which are only honored when
+         * the peer is a trusted proxy.
+         */
+        private List<String> headerNames = new ArrayList<>(
+                asList("X-Forwarded-For", "Proxy-Client-IP", "WL-Proxy-Client-IP", "X-Real-IP"));
+
+        /**
+         * The CIDRs of the trusted proxies (e.g: the load balancers), the hops
+         * of the forwarded chain are skipped from right to left while they are
+         * trusted. By default only the loopback and private networks are
+         * trusted, trusting all (i.e: '0.0.0.0/0', '::/0') must be configured
+         * explicitly, otherwise the client address can be forged by the
+         * clients.
+         */
+        private List<String> trustedProxies = new ArrayList<>(asList("127.0.0.0/8", "10.0.0.0/8", "172.16.0.0/12",
+                "192.168.0.0/16", "::1/128", "fc00::/7"));
+    }
+
     @Getter
     @Setter
     @ToString
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.log.SmartLoggerFactory.getLogger;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.config.HttpClientProperties.Pool;
+import org.springframework.cloud.gateway.config.HttpClientProperties.Pool.PoolType;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.traffic.config.TrafficProperties.MirrorOverflowPolicy;
+import com.wl4g.escg.traffic.config.TrafficProperties.ReplicationProperties;
+import com.wl4g.infra.common.log.SmartLogger;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The per-route dispatcher of the mirror requests, each target has a max
+ * in-flight limit and a bounded queue, the mirrors beyond them are dropped
+ * by the overflow policy, so that a slow shadow environment can never
+ * accumulate the unbounded in-flight requests and pooled connections on the
+ * gateway.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-16 v1.0.0
+ * @since v1.0.0
+ */
+public class MirrorDispatcher {
+    protected final SmartLogger log = getLogger(getClass());
+
+    private final String routeId;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final Map<String, TargetQueue> targetQueues;
+
+    /**
+     * Note: The gauges are not registered by the dispatcher itself, since it's
+     * re-created on every refreshing of the routes, see {@link Gauges}
+     */
+    public MirrorDispatcher(@NotNull String routeId, @NotNull ReplicationProperties config,
+            @NotNull IamGatewayMetricsFacade metricsFacade) {
+        this.routeId = notNullOf(routeId, "routeId");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        notNullOf(config, "config");
+        isTrue(config.getMaxInFlightPerTarget() > 0, "maxInFlightPerTarget must be greater than 0");
+        isTrue(config.getMaxQueueSizePerTarget() >= 0, "maxQueueSizePerTarget must be greater than or equal to 0");
+        notNullOf(config.getOverflowPolicy(), "overflowPolicy");
+
+        this.targetQueues = new HashMap<>(4);
+        for (String targetUri : safeList(config.getTargetUris())) {
+            targetQueues.put(targetUri, new TargetQueue(targetUri, config));
+        }
+    }
+
+    public String getRouteId() {
+        return routeId;
+    }
+
+    /**
+     * Dispatch the mirror request to the target, which is executed immediately
+     * if the in-flight mirrors of target is under the limit, otherwise it's
+     * queued or dropped.
+     *
+     * @param targetUri
+     *            The target URI of the mirror.
+     * @param mirror
+     *            The cold publisher of the mirror request, which is subscribed
+     *            when executing.
+     * @param onDropped
+     *            The callback of the mirror is dropped before executed, e.g.
+     *            to release the teed body.
+     */
+    public void dispatch(@NotNull String targetUri, @NotNull Publisher<?> mirror, @Nullable Runnable onDropped) {
+        getTargetQueue(targetUri).dispatch(new MirrorTask(mirror, onDropped));
+    }
+
+    /**
+     * Called when the pooled connection to the target is acquired by the
+     * mirror request.
+     */
+    public void connectionAcquired(@NotNull String targetUri) {
+        getTargetQueue(targetUri).acquired.incrementAndGet();
+    }
+
+    /**
+     * Called when the mirror request is terminated, and the acquired
+     * connection is released (returned to the pool or closed).
+     */
+    public void connectionReleased(@NotNull String targetUri) {
+        getTargetQueue(targetUri).acquired.decrementAndGet();
+    }
+
+    private TargetQueue getTargetQueue(String targetUri) {
+        TargetQueue queue = targetQueues.get(targetUri);
+        if (isNull(queue)) {
+            throw new IllegalArgumentException(String.format("Unknown mirror target uri: '%s'", targetUri));
+        }
+        return queue;
+    }
+
+    class TargetQueue {
+        private final String targetUri;
+        private final int maxInFlight;
+        private final int maxQueueSize;
+        private final MirrorOverflowPolicy overflowPolicy;
+        private final double maxConnections;
+        private final AtomicInteger inflight = new AtomicInteger(0);
+        private final AtomicInteger queued = new AtomicInteger(0);
+        private final AtomicInteger acquired = new AtomicInteger(0);
+        private final Deque<MirrorTask> queue = new ConcurrentLinkedDeque<>();
+
+        TargetQueue(String targetUri, ReplicationProperties config) {
+            this.targetUri = targetUri;
+            this.maxInFlight = config.getMaxInFlightPerTarget();
+            this.maxQueueSize = config.getMaxQueueSizePerTarget();
+            this.overflowPolicy = config.getOverflowPolicy();
+            // Only the fixed pool is bounded, the connections of elastic pool
+            // are unlimited.
+            Pool pool = config.getPool();
+            this.maxConnections = (nonNull(pool) && pool.getType() == PoolType.FIXED && nonNull(pool.getMaxConnections()))
+                    ? pool.getMaxConnections()
+                    : Double.NaN;
+        }
+
+        void dispatch(MirrorTask task) {
+            metricsFacade.counter(MetricsName.TRAFFIC_REPLICATION_ENQUEUED_TOTAL, routeId, 1, MetricsTag.TRAFFIC_TARGET,
+                    targetUri);
+            if (tryAcquire()) {
+                execute(task);
+                return;
+            }
+            if (offer(task)) {
+                // Drain in case of the in-flight mirrors completed during
+                // the offer.
+                drain();
+            }
+        }
+
+        private boolean offer(MirrorTask task) {
+            for (;;) {
+                int size = queued.get();
+                if (size < maxQueueSize) {
+                    if (overflowPolicy == MirrorOverflowPolicy.SAMPLE_DOWN && isSampledOut(size)) {
+                        drop(task);
+                        return false;
+                    }
+                    if (queued.compareAndSet(size, size + 1)) {
+                        queue.offerLast(task);
+                        return true;
+                    }
+                    continue;
+                }
+                if (overflowPolicy == MirrorOverflowPolicy.DROP_OLDEST) {
+                    MirrorTask oldest = queue.pollFirst();
+                    if (nonNull(oldest)) {
+                        queued.decrementAndGet();
+                        drop(oldest);
+                        continue;
+                    }
+                }
+                drop(task);
+                return false;
+            }
+        }
+
+        /**
+         * Once the queue is over half full, the new mirrors are admitted with
+         * the probability that decreases linearly to zero when it's full.
+         */
+        private boolean isSampledOut(int size) {
+            int threshold = maxQueueSize / 2;
+            return size >= threshold && ThreadLocalRandom.current().nextInt(maxQueueSize - threshold + 1) <= size - threshold;
+        }
+
+        private void drain() {
+            while (!queue.isEmpty() && tryAcquire()) {
+                MirrorTask task = queue.pollFirst();
+                if (isNull(task)) {
+                    inflight.decrementAndGet();
+                    return;
+                }
+                queued.decrementAndGet();
+                execute(task);
+            }
+        }
+
+        private boolean tryAcquire() {
+            for (;;) {
+                int current = inflight.get();
+                if (current >= maxInFlight) {
+                    return false;
+                }
+                if (inflight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void execute(MirrorTask task) {
+            long beginNanoTime = nanoTime();
+            Flux.from(task.mirror).doFinally(signal -> {
+                metricsFacade
+                        .getTimer(MetricsName.TRAFFIC_REPLICATION_LATENCY, MetricsTag.ROUTE_ID, routeId, MetricsTag.TRAFFIC_TARGET,
+                                targetUri)
+                        .record(Duration.ofNanos(nanoTime() - beginNanoTime));
+                inflight.decrementAndGet();
+                drain();
+            }).subscribe(null, ex -> log.debug("Mirror request error to target uri: '{}'. reason: {}", targetUri,
+                    ex.getMessage()));
+        }
+
+        private void drop(MirrorTask task) {
+            metricsFacade.counter(MetricsName.TRAFFIC_REPLICATION_DROPPED_TOTAL, routeId, 1, MetricsTag.TRAFFIC_TARGET,
+                    targetUri, MetricsTag.TRAFFIC_DROP_REASON, DROP_REASON_OVERFLOW);
+            if (nonNull(task.onDropped)) {
+                try {
+                    task.onDropped.run();
+                } catch (Exception e) {
+                    log.warn("Failed to callback of the dropped mirror to target uri: '{}'. reason: {}", targetUri,
+                            e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * The gauges of the dispatchers, which are registered only once per
+     * route/target and read from the current dispatcher of the route. The
+     * first registration of the meter wins, so the gauges registered by the
+     * re-created dispatcher would be shadowed by (and the replaced dispatcher
+     * retained by) the ones of the first dispatcher.
+     */
+    public static class Gauges {
+        private final IamGatewayMetricsFacade metricsFacade;
+        private final Map<String, MirrorDispatcher> currentDispatchers = new ConcurrentHashMap<>(4);
+        private final Set<String> registeredTargets = ConcurrentHashMap.newKeySet();
+
+        public Gauges(@NotNull IamGatewayMetricsFacade metricsFacade) {
+            this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        }
+
+        /**
+         * Bind the dispatcher as the current one of its route, which replaces
+         * the previous one.
+         */
+        public void bind(@NotNull MirrorDispatcher dispatcher) {
+            notNullOf(dispatcher, "dispatcher");
+            String routeId = dispatcher.getRouteId();
+            currentDispatchers.put(routeId, dispatcher);
+            dispatcher.targetQueues.forEach((targetUri, queue) -> {
+                // The route ID and target URI can't contain the line break.
+                if (!registeredTargets.add(routeId.concat("\n").concat(targetUri))) {
+                    return;
+                }
+                String[] tags = { MetricsTag.ROUTE_ID, routeId, MetricsTag.TRAFFIC_TARGET, targetUri };
+                metricsFacade.gauge(MetricsName.TRAFFIC_REPLICATION_INFLIGHT, () -> get(routeId, targetUri, q -> q.inflight.get()),
+                        tags);
+                metricsFacade.gauge(MetricsName.TRAFFIC_REPLICATION_QUEUED, () -> get(routeId, targetUri, q -> q.queued.get()),
+                        tags);
+                metricsFacade.gauge(MetricsName.TRAFFIC_REPLICATION_POOL_ACQUIRED,
+                        () -> get(routeId, targetUri, q -> q.acquired.get()), tags);
+                if (!Double.isNaN(queue.maxConnections)) {
+                    metricsFacade.gauge(MetricsName.TRAFFIC_REPLICATION_POOL_UTILIZATION,
+                            () -> get(routeId, targetUri, q -> q.acquired.get() / q.maxConnections), tags);
+                }
+            });
+        }
+
+        private Number get(String routeId, String targetUri, Function<TargetQueue, Number> getter) {
+            MirrorDispatcher dispatcher = currentDispatchers.get(routeId);
+            TargetQueue queue = isNull(dispatcher) ? null : dispatcher.targetQueues.get(targetUri);
+            return isNull(queue) ? 0 : getter.apply(queue);
+        }
+    }
+
+    static class MirrorTask {
+        private final Publisher<?> mirror;
+        private final @Nullable Runnable onDropped;
+
+        MirrorTask(Publisher<?> mirror, @Nullable Runnable onDropped) {
+            this.mirror = mirror;
+            this.onDropped = onDropped;
+        }
+    }
+
+    public static final String DROP_REASON_OVERFLOW = "overflow";
+    public static final String DROP_REASON_SLOW = "slow";
+
+}
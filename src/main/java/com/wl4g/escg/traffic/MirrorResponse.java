@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import javax.annotation.Nullable;
+
+import org.springframework.http.HttpHeaders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The drained response of the mirror request, which is passed to the
+ * {@link MirrorResponseHandler}s.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-17 v1.0.0
+ * @since v1.0.0
+ */
+@Getter
+@ToString(exclude = "body")
+@AllArgsConstructor
+public class MirrorResponse {
+
+    /**
+     * The target URI of the mirror.
+     */
+    private final String targetUri;
+
+    /**
+     * The status code of the mirror response.
+     */
+    private final int statusCode;
+
+    /**
+     * The filtered headers of the mirror response.
+     */
+    private final HttpHeaders headers;
+
+    /**
+     * The captured body of the mirror response, which is null if no handler
+     * requires the body.
+     */
+    private final @Nullable byte[] body;
+
+    /**
+     * Whether the captured body is truncated by the max capture size.
+     */
+    private final boolean truncated;
+
+    /**
+     * The latency from the mirror request is sent to the response is drained.
+     */
+    private final long latencyNanos;
+
+}
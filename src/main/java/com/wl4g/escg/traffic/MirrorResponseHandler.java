@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * The hook of the drained mirror responses, e.g. to diff with the primary
+ * response. It's called on the event loop of the mirror connection, so it
+ * should not block.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-17 v1.0.0
+ * @since v1.0.0
+ */
+public interface MirrorResponseHandler {
+
+    /**
+     * Whether to capture the response body of the mirror, otherwise the body
+     * is discarded without copying.
+     *
+     * @param exchange
+     *            The primary exchange.
+     * @return
+     */
+    default boolean isBodyRequired(ServerWebExchange exchange) {
+        return false;
+    }
+
+    /**
+     * Called after the mirror response is fully drained.
+     *
+     * @param exchange
+     *            The primary exchange.
+     * @param response
+     *            The drained mirror response.
+     */
+    void onResponse(ServerWebExchange exchange, MirrorResponse response);
+
+}
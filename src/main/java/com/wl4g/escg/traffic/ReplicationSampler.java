@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeMap;
+import static com.wl4g.infra.common.lang.Assert2.hasTextOf;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.web.server.ServerWebExchange;
+
+import com.google.common.hash.Hashing;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.traffic.config.TrafficProperties.ReplicationProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.SamplingKey;
+import com.wl4g.escg.traffic.config.TrafficProperties.SamplingProperties;
+import com.wl4g.infra.core.constant.CoreInfraConstants;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The sampler of the traffic replication, the request is mapped to a point in
+ * [0,1) by the hash of the configured key (e.g. principal), and is mirrored to
+ * the targets whose percentage is greater than the point, so that the
+ * multi-step flows of a user are mirrored entirely or not at all.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-20 v1.0.0
+ * @since v1.0.0
+ */
+public class ReplicationSampler {
+
+    private final ReplicationProperties config;
+    private final ClientAddressResolver clientAddressResolver;
+
+    public ReplicationSampler(@NotNull ReplicationProperties config, @NotNull ClientAddressResolver clientAddressResolver) {
+        this.config = notNullOf(config, "config");
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
+        SamplingProperties sampling = notNullOf(config.getSampling(), "sampling");
+        notNullOf(sampling.getKey(), "samplingKey");
+        if (sampling.getKey() == SamplingKey.HEADER) {
+            hasTextOf(sampling.getHeaderName(), "samplingHeaderName");
+        }
+    }
+
+    /**
+     * Sampling the targets of the request to be mirrored.
+     *
+     * @return The sampled target URIs, which is empty if none.
+     */
+    public Mono<List<String>> sample(ServerWebExchange exchange) {
+        return resolveKey(exchange).map(key -> hash(key))
+                .switchIfEmpty(Mono.fromSupplier(() -> ThreadLocalRandom.current().nextDouble()))
+                .map(point -> safeList(config.getTargetUris()).stream()
+                        .filter(targetUri -> point < getPercentage(targetUri))
+                        .collect(toList()));
+    }
+
+    double getPercentage(String targetUri) {
+        Double percentage = safeMap(config.getSampling().getTargetPercentages()).get(targetUri);
+        return nonNull(percentage) ? percentage : config.getPercentage();
+    }
+
+    Mono<String> resolveKey(ServerWebExchange exchange) {
+        SamplingProperties sampling = config.getSampling();
+        switch (sampling.getKey()) {
+        case PRINCIPAL:
+            return exchange.getPrincipal().flatMap(p -> Mono.justOrEmpty(p.getName()));
+        case HEADER:
+            return justOrEmpty(exchange.getRequest().getHeaders().getFirst(sampling.getHeaderName()));
+        case CLIENT_IP:
+            return justOrEmpty(clientAddressResolver.resolveHost(exchange));
+        case TRACE_ID:
+            return justOrEmpty(exchange.getRequest().getHeaders().getFirst(CoreInfraConstants.TRACE_REQUEST_ID_HEADER));
+        default:
+            return Mono.empty();
+        }
+    }
+
+    private Mono<String> justOrEmpty(String key) {
+        return isBlank(key) ? Mono.empty() : Mono.just(key);
+    }
+
+    /**
+     * Hash the key into the uniformly distributed point in [0,1).
+     */
+    static double hash(String key) {
+        long hash = Hashing.murmur3_128().hashString(key, UTF_8).asLong();
+        // The high 53 bits are exactly representable by the double.
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+}
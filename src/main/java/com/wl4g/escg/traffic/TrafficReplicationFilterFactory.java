@@ -15,9 +15,11 @@
  */
 package com.wl4g.escg.traffic;
 
-import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
 import static com.wl4g.infra.common.lang.Assert2.notNullOf;
 import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.equalsAnyIgnoreCase;
 import static org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter.filterRequest;
 import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
@@ -29,9 +31,15 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.P
 import java.net.URI;
 import java.time.Duration;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import javax.annotation.Nullable;
+
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cloud.gateway.config.HttpClientCustomizer;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
@@ -44,6 +52,7 @@ import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.BodyInserterContext;
 import org.springframework.cloud.gateway.support.TimeoutException;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ReactiveHttpOutputMessage;
@@ -60,12 +69,18 @@ import org.springframework.web.server.ServerWebExchange;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.server.ClientAddressResolver;
 import com.wl4g.escg.traffic.config.TrafficProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.BodyReplicationMode;
 import com.wl4g.escg.traffic.config.TrafficProperties.ReplicationProperties;
+import com.wl4g.escg.traffic.diff.ShadowResponseDiffer;
 import com.wl4g.escg.util.IamGatewayUtil;
+import com.wl4g.escg.util.http.BodyCapture;
 import com.wl4g.escg.util.http.ReactiveHttpClientBuilder;
 import com.wl4g.infra.common.bean.ConfigBeanUtils;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
@@ -94,16 +109,25 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
     private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
     private final List<HttpClientCustomizer> customizers;
     private final IamGatewayMetricsFacade metricsFacade;
+    private final List<MirrorResponseHandler> responseHandlers;
+    private final ShadowResponseDiffer responseDiffer;
+    private final ClientAddressResolver clientAddressResolver;
+    private final MirrorDispatcher.Gauges dispatcherGauges;
     private volatile List<HttpHeadersFilter> headersFilters;
 
     public TrafficReplicationFilterFactory(TrafficProperties trafficConfig,
             ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider, List<HttpClientCustomizer> customizers,
-            IamGatewayMetricsFacade metricsFacade) {
+            IamGatewayMetricsFacade metricsFacade, List<MirrorResponseHandler> responseHandlers,
+            ShadowResponseDiffer responseDiffer, ClientAddressResolver clientAddressResolver) {
         super(TrafficReplicationFilterFactory.Config.class);
         this.trafficConfig = notNullOf(trafficConfig, "trafficConfig");
         this.headersFiltersProvider = notNullOf(headersFiltersProvider, "headersFiltersProvider");
         this.customizers = notNullOf(customizers, "customizers");
         this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        this.responseHandlers = notNullOf(responseHandlers, "responseHandlers");
+        this.responseDiffer = notNullOf(responseDiffer, "responseDiffer");
+        this.clientAddressResolver = notNullOf(clientAddressResolver, "clientAddressResolver");
+        this.dispatcherGauges = new MirrorDispatcher.Gauges(metricsFacade);
     }
 
     @Override
@@ -114,8 +138,12 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
     @Override
     public GatewayFilter apply(Config config) {
         applyDefaultToConfig(config);
+        // The teed body branch can only be subscribed once, so the mirror
+        // request is never resent on the stale pooled connection, see
+        // TrafficTee.Branch#asFlux()
         return new TrafficReplicationGatewayFilter(config,
-                ReactiveHttpClientBuilder.build(config.toHttpClientProperties(), customizers));
+                ReactiveHttpClientBuilder.build(config.toHttpClientProperties(), customizers).disableRetry(true),
+                new ReplicationSampler(config, clientAddressResolver));
     }
 
     private void applyDefaultToConfig(Config config) {
@@ -137,32 +165,49 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
     class TrafficReplicationGatewayFilter implements GatewayFilter {
         private final Config config;
         private final HttpClient customizedRouteBasedHttpClient;
+        private final ReplicationSampler sampler;
+        private final Map<String, MirrorDispatcher> dispatchers = new ConcurrentHashMap<>(4);
 
         @Override
         public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
             URI requestUrl = exchange.getAttributeOrDefault(GATEWAY_REQUEST_URL_ATTR, exchange.getRequest().getURI());
             String scheme = requestUrl.getScheme();
 
-            // Check if request traffic needs to be replicated.
-            if (!equalsAnyIgnoreCase(scheme, "http", "https") || !isReplicationWithPercentage(config)) {
+            if (!equalsAnyIgnoreCase(scheme, "http", "https")) {
                 return chain.filter(exchange);
             }
+            // Check if request traffic needs to be replicated.
+            return sampler.sample(exchange).flatMap(targetUris -> {
+                if (targetUris.isEmpty()) {
+                    return chain.filter(exchange);
+                }
+                // Add metrics of total.
+                metricsFacade.counter(exchange, MetricsName.TRAFFIC_REPLICATION_TOTAL, 1, MetricsTag.ROUTE_ID,
+                        IamGatewayUtil.getRouteId(exchange));
+
+                // Capture the primary response to compare with the mirrors.
+                ServerWebExchange primaryExchange = exchange;
+                if (config.getResponseDiff().isEnabled()) {
+                    primaryExchange = responseDiffer.capture(exchange, String.valueOf(IamGatewayUtil.getRouteId(exchange)),
+                            config.getResponseDiff(), (int) config.getMaxResponseCaptureSize().toBytes());
+                }
 
-            // Add metrics of total.
-            metricsFacade.counter(exchange, MetricsName.TRAFFIC_REPLICATION_TOTAL, 1, MetricsTag.ROUTE_ID,
-                    IamGatewayUtil.getRouteId(exchange));
+                if (config.getBodyMode() == BodyReplicationMode.STREAMING) {
+                    return teeRequest(primaryExchange, chain, targetUris);
+                }
+                return aggregateRequest(primaryExchange, chain, targetUris);
+            });
+        }
 
+        /**
+         * Replicate the request with the aggregated body.
+         */
+        private Mono<Void> aggregateRequest(ServerWebExchange exchange, GatewayFilterChain chain, List<String> targetUris) {
             return decorateRequest(exchange, chain, body -> {
                 // Replication image requests.
                 try {
-                    safeList(config.getTargetUris()).forEach(targetUri -> {
-                        try {
-                            doAsyncReplicationRequest(exchange, body, targetUri);
-                        } catch (Exception e) {
-                            log.warn(format("Failed to replication traffic mirror for request uri: '{}' to target uri: '{}'",
-                                    exchange.getRequest().getURI(), targetUri), e);
-                        }
-                    });
+                    targetUris.forEach(targetUri -> dispatchReplicationRequest(exchange,
+                            Mono.fromSupplier(() -> Unpooled.wrappedBuffer(body)), targetUri, null));
                 } catch (Exception e) {
                     log.warn(format("Failed to replication traffic mirror for request uri: '%s'", exchange.getRequest().getURI()),
                             e);
@@ -171,10 +216,75 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
             });
         }
 
-        private boolean isReplicationWithPercentage(Config config) {
-            // if fault injection is required based on random percentage.
-            double per = ThreadLocalRandom.current().nextDouble();
-            return per < config.getPercentage();
+        /**
+         * Replicate the request with the streaming tee of the body, the body
+         * chunks flow to the primary upstream immediately and are fed to the
+         * mirrors concurrently, see {@link TrafficTee}
+         */
+        private Mono<Void> teeRequest(ServerWebExchange exchange, GatewayFilterChain chain, List<String> targetUris) {
+            ServerHttpRequest request = exchange.getRequest();
+            if (!IamGatewayUtil.isBodyAllowed(request)) {
+                targetUris.forEach(targetUri -> dispatchReplicationRequest(exchange, Mono.empty(), targetUri, null));
+                return chain.filter(exchange);
+            }
+
+            TrafficTee tee = new TrafficTee(targetUris.size(), config.getMirrorMaxPendingSize().toBytes(), index -> {
+                // Add metrics of dropped.
+                metricsFacade.counter(exchange, MetricsName.TRAFFIC_REPLICATION_DROPPED_TOTAL, 1, MetricsTag.TRAFFIC_TARGET,
+                        targetUris.get(index), MetricsTag.TRAFFIC_DROP_REASON, MirrorDispatcher.DROP_REASON_SLOW);
+                log.debug("Dropped the slow replication of request uri: '{}' to target uri: '{}'", request.getURI(),
+                        targetUris.get(index));
+            });
+            for (int i = 0; i < targetUris.size(); i++) {
+                TrafficTee.Branch branch = tee.branch(i);
+                dispatchReplicationRequest(exchange, branch.asFlux().map(NettyDataBufferFactory::toByteBuf), targetUris.get(i),
+                        branch);
+            }
+
+            ServerHttpRequestDecorator decorator = new ServerHttpRequestDecorator(request) {
+                @Override
+                public Flux<DataBuffer> getBody() {
+                    return tee.tee(super.getBody());
+                }
+            };
+            // Abort the mirrors whose body is incomplete, e.g. the primary
+            // request failed before the body is consumed.
+            return chain.filter(exchange.mutate().request(decorator).build()).doFinally(signal -> tee.abort());
+        }
+
+        /**
+         * Dispatch the mirror request to the bounded dispatcher of the route,
+         * see {@link MirrorDispatcher}
+         */
+        private void dispatchReplicationRequest(
+                ServerWebExchange exchange,
+                Publisher<? extends ByteBuf> body,
+                String targetUri,
+                @Nullable TrafficTee.Branch branch) {
+            try {
+                MirrorDispatcher dispatcher = getDispatcher(exchange);
+                Flux<MirrorResponse> mirror = newReplicationRequest(exchange, dispatcher, body, targetUri, branch);
+                dispatcher.dispatch(targetUri, mirror, nonNull(branch) ? branch::dispose : null);
+            } catch (Exception e) {
+                if (nonNull(branch)) {
+                    branch.dispose();
+                }
+                log.warn(format("Failed to replication traffic mirror for request uri: '%s' to target uri: '%s'",
+                        exchange.getRequest().getURI(), targetUri), e);
+            }
+        }
+
+        private MirrorDispatcher getDispatcher(ServerWebExchange exchange) {
+            String routeId = String.valueOf(IamGatewayUtil.getRouteId(exchange));
+            MirrorDispatcher dispatcher = dispatchers.get(routeId);
+            if (isNull(dispatcher)) {
+                dispatcher = dispatchers.computeIfAbsent(routeId, k -> {
+                    MirrorDispatcher created = new MirrorDispatcher(routeId, config, metricsFacade);
+                    dispatcherGauges.bind(created);
+                    return created;
+                });
+            }
+            return dispatcher;
         }
 
         /**
@@ -183,7 +293,12 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
          * the request forwarding logic of mirror traffic should be consistent
          * with it.
          */
-        private void doAsyncReplicationRequest(ServerWebExchange exchange, byte[] body, String targetUri) {
+        private Flux<MirrorResponse> newReplicationRequest(
+                ServerWebExchange exchange,
+                MirrorDispatcher dispatcher,
+                Publisher<? extends ByteBuf> body,
+                String targetUri,
+                @Nullable TrafficTee.Branch branch) {
             ServerHttpRequest request = exchange.getRequest();
             HttpMethod method = HttpMethod.valueOf(request.getMethodValue());
 
@@ -194,7 +309,9 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
             boolean preserveHost = exchange.getAttributeOrDefault(PRESERVE_HOST_HEADER_ATTRIBUTE, false);
             Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
 
-            Flux<HttpClientResponse> responseFlux = getCustomizedRouteBasedHttpClient(route, exchange).headers(headers -> {
+            AtomicBoolean acquired = new AtomicBoolean(false);
+            AtomicLong sentNanoTime = new AtomicLong(0);
+            Flux<MirrorResponse> responseFlux = getCustomizedRouteBasedHttpClient(route, exchange).headers(headers -> {
                 headers.add(httpHeaders);
                 // Will either be set below, or later by Netty
                 headers.remove(HttpHeaders.HOST);
@@ -203,17 +320,21 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
                     headers.add(HttpHeaders.HOST, host);
                 }
             }).request(method).uri(targetUri).send((req, nettyOutbound) -> {
+                // The connection is acquired from pool when sending.
+                if (acquired.compareAndSet(false, true)) {
+                    dispatcher.connectionAcquired(targetUri);
+                }
+                sentNanoTime.set(nanoTime());
                 if (log.isTraceEnabled()) {
                     nettyOutbound.withConnection(connection -> log.trace("Image request outbound route: {}, inbound: {}",
                             connection.channel().id().asShortText(), exchange.getLogPrefix()));
                 }
                 //
                 // Note: Solve the problem that the byte stream data of the
-                // request body can only be read once.
+                // request body can only be read once, the body is the
+                // aggregated bytes or the teed branch of the streaming body.
                 //
-                // return
-                // nettyOutbound.send(request.getBody().map(this::getByteBuf));
-                return nettyOutbound.sendByteArray(Mono.just(body));
+                return nettyOutbound.send(body);
             }).responseConnection((res, connection) -> {
                 //
                 // Note: Non actual forwarding requests, no need to set response
@@ -264,7 +385,23 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
                 // exchange.getAttributes().put(CLIENT_RESPONSE_HEADER_NAMES,filteredResponseHeaders.keySet());
                 // // response.getHeaders().putAll(filteredResponseHeaders);
 
-                return Mono.just(res);
+                //
+                // Note: The response body must be fully consumed, otherwise the
+                // pooled connection is occupied until the timeout. The body is
+                // discarded without copying, unless any handler requires it.
+                //
+                if (!isResponseBodyRequired(exchange)) {
+                    return connection.inbound()
+                            .receive()
+                            .then(Mono.fromSupplier(() -> new MirrorResponse(targetUri, statusCode, filteredResponseHeaders,
+                                    null, false, nanoTime() - sentNanoTime.get())));
+                }
+                return connection.inbound()
+                        .receive()
+                        .collect(() -> new BodyCapture((int) config.getMaxResponseCaptureSize().toBytes()),
+                                BodyCapture::append)
+                        .map(capture -> new MirrorResponse(targetUri, statusCode, filteredResponseHeaders, capture.toByteArray(),
+                                capture.isTruncated(), nanoTime() - sentNanoTime.get()));
             });
 
             Duration responseTimeout = getResponseTimeout(route);
@@ -277,15 +414,43 @@ public class TrafficReplicationFilterFactory extends AbstractGatewayFilterFactor
                                 th -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, th.getMessage(), th));
             }
 
-            responseFlux.subscribe(response -> {
+            return responseFlux.doOnNext(response -> {
                 log.debug("Replication request success for URI: {}, response: {}", request.getURI(), response);
-            }, ex -> {
+                notifyResponseHandlers(exchange, response);
+            }).doOnError(ex -> {
                 log.debug("Replication request error for URI: {}", request.getURI());
-            }, () -> {
+            }).doOnComplete(() -> {
                 log.debug("Replication request completion for URI: {}", request.getURI());
+            }).doFinally(signal -> {
+                if (acquired.get()) {
+                    dispatcher.connectionReleased(targetUri);
+                }
+                if (nonNull(branch)) {
+                    branch.dispose();
+                }
             });
         }
 
+        private boolean isResponseBodyRequired(ServerWebExchange exchange) {
+            for (MirrorResponseHandler handler : responseHandlers) {
+                if (handler.isBodyRequired(exchange)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void notifyResponseHandlers(ServerWebExchange exchange, MirrorResponse response) {
+            for (MirrorResponseHandler handler : responseHandlers) {
+                try {
+                    handler.onResponse(exchange, response);
+                } catch (Exception e) {
+                    log.warn(format("Failed to handle the mirror response of request uri: '%s' to target uri: '%s'",
+                            exchange.getRequest().getURI(), response.getTargetUri()), e);
+                }
+            }
+        }
+
         /**
          * The request object decorated as an editable request body to solve the
          * problem that the request body can only be read once.
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The streaming tee of the request body, the chunks flow to the primary
+ * upstream immediately, and the retained slices of them are fed to each
+ * mirror branch concurrently, without aggregating the whole body.
+ *
+ * <p>
+ * Each branch is bounded by the max pending (not yet consumed by the mirror)
+ * bytes, beyond which the branch is dropped (the mirror request is aborted),
+ * so a slow mirror never backpressures the primary request.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-15 v1.0.0
+ * @since v1.0.0
+ */
+public class TrafficTee {
+
+    private final Branch[] branches;
+    private final long maxPendingBytes;
+    private final IntConsumer onDropped;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    /**
+     * @param branchCount
+     *            The number of mirror branches.
+     * @param maxPendingBytes
+     *            The max pending bytes of each branch.
+     * @param onDropped
+     *            The callback with the index of the dropped branch.
+     */
+    public TrafficTee(int branchCount, long maxPendingBytes, @NotNull IntConsumer onDropped) {
+        isTrue(maxPendingBytes > 0, "maxPendingBytes must be greater than 0");
+        this.maxPendingBytes = maxPendingBytes;
+        this.onDropped = notNullOf(onDropped, "onDropped");
+        this.branches = new Branch[branchCount];
+        for (int i = 0; i < branchCount; i++) {
+            branches[i] = new Branch(i);
+        }
+    }
+
+    public Branch branch(int index) {
+        return branches[index];
+    }
+
+    /**
+     * Tee the primary request body, only the first subscription (e.g. not the
+     * retries) is teed to the branches.
+     */
+    public Flux<DataBuffer> tee(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            if (!subscribed.compareAndSet(false, true)) {
+                return body;
+            }
+            return body.doOnNext(chunk -> {
+                for (Branch branch : branches) {
+                    branch.offer(chunk);
+                }
+            }).doOnComplete(() -> {
+                for (Branch branch : branches) {
+                    branch.sink.tryEmitComplete();
+                }
+            }).doOnError(ex -> abort()).doOnCancel(() -> abort());
+        });
+    }
+
+    /**
+     * Abort the branches that are not completed, e.g. the primary request
+     * failed before the body is fully consumed.
+     */
+    public void abort() {
+        for (Branch branch : branches) {
+            branch.sink.tryEmitError(new MirrorAbortedException("Primary request body is incomplete"));
+        }
+    }
+
+    public class Branch {
+        private final int index;
+        private final Sinks.Many<DataBuffer> sink = Sinks.many().unicast().onBackpressureBuffer();
+        private final AtomicLong pendingBytes = new AtomicLong(0);
+        private volatile boolean dropped;
+
+        Branch(int index) {
+            this.index = index;
+        }
+
+        /**
+         * The body of the mirror request, which can be subscribed at most
+         * once, the later subscriptions (e.g. the retries of the http client)
+         * are rejected, so the retries of the mirror client are disabled.
+         */
+        public Flux<DataBuffer> asFlux() {
+            return sink.asFlux()
+                    .doOnNext(chunk -> pendingBytes.addAndGet(-chunk.readableByteCount()))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        }
+
+        /**
+         * Release the pending chunks after the mirror request is terminated,
+         * including the case where the body was never subscribed (e.g.
+         * failed to connect).
+         */
+        public void dispose() {
+            dropped = true;
+            sink.tryEmitError(new MirrorAbortedException("Mirror request is terminated"));
+            // If it has been subscribed, the draining subscriber is rejected
+            // and the pending chunks are discarded by the cancellation.
+            sink.asFlux().subscribe(DataBufferUtils::release, ex -> {
+            });
+        }
+
+        void offer(DataBuffer chunk) {
+            if (dropped) {
+                return;
+            }
+            int size = chunk.readableByteCount();
+            if (pendingBytes.addAndGet(size) > maxPendingBytes) {
+                drop();
+                return;
+            }
+            DataBuffer slice = chunk.retainedSlice(chunk.readPosition(), size);
+            if (sink.tryEmitNext(slice).isFailure()) {
+                DataBufferUtils.release(slice);
+            }
+        }
+
+        private void drop() {
+            dropped = true;
+            sink.tryEmitError(new MirrorAbortedException("Mirror is too slow, the pending bytes exceeds " + maxPendingBytes));
+            onDropped.accept(index);
+        }
+    }
+
+    /**
+     * The abortion of the mirror request body.
+     */
+    public static class MirrorAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public MirrorAbortedException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
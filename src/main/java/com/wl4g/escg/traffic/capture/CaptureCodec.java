@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.http.HttpHeaders;
+
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureCompression;
+
+/**
+ * The binary codec of the capture segments, the layout of the segment is:
+ *
+ * <pre>
+ * segment := MAGIC(int) VERSION(short) frame* 0(int)
+ * frame   := length(int, of payload) flags(byte) crc32(int, of payload) payload
+ * </pre>
+ *
+ * The strings of the payload are the UTF-8 bytes prefixed with the int
+ * length, rather than the modified UTF-8 of {@link DataOutputStream#writeUTF},
+ * which is limited to 64KB (e.g. the long query or cookie header) and encodes
+ * the supplementary characters differently.
+ *
+ * The segment is pre-allocated (zero filled) by the memory mapping, so the
+ * zero length terminates the frames, and a torn frame (e.g. crashed while
+ * writing) is detected by the length and checksum.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+public abstract class CaptureCodec {
+
+    public static final int MAGIC = 0x45534347; // 'ESCG'
+    public static final short VERSION = 2;
+    public static final int SEGMENT_HEADER_SIZE = 6;
+    public static final int FRAME_HEADER_SIZE = 9;
+
+    static final byte FLAG_DEFLATED = 0x01;
+    static final int MIN_DEFLATE_SIZE = 256;
+
+    /**
+     * Encode the record as the frame.
+     */
+    public static byte[] encodeFrame(CaptureRecord record, CaptureCompression compression) throws IOException {
+        byte[] payload = encodePayload(record);
+        byte flags = 0;
+        if (compression == CaptureCompression.DEFLATE && payload.length >= MIN_DEFLATE_SIZE) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) {
+                payload = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .put(flags)
+                .putInt((int) crc32.getValue())
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Decode the next frame from the buffer.
+     *
+     * @return The record, or null if no more complete frames.
+     */
+    public static CaptureRecord decodeFrame(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < FRAME_HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length <= 0 || buffer.remaining() < length + FRAME_HEADER_SIZE - 4) {
+            return null;
+        }
+        byte flags = buffer.get();
+        int checksum = buffer.getInt();
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        if ((int) crc32.getValue() != checksum) {
+            return null;
+        }
+        if ((flags & FLAG_DEFLATED) != 0) {
+            payload = inflate(payload);
+        }
+        return decodePayload(payload);
+    }
+
+    static byte[] encodePayload(CaptureRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + record.getBody().length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(record.getTimestamp());
+        out.writeLong(record.getLatencyNanos());
+        writeString(out, record.getMethod());
+        writeString(out, record.getUri());
+        out.writeInt(record.getStatus());
+        out.writeInt(record.getHeaders().size());
+        for (Map.Entry<String, List<String>> header : record.getHeaders().entrySet()) {
+            writeString(out, header.getKey());
+            out.writeInt(header.getValue().size());
+            for (String value : header.getValue()) {
+                writeString(out, value);
+            }
+        }
+        out.writeInt(record.getBody().length);
+        out.write(record.getBody());
+        out.writeBoolean(record.isBodyTruncated());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static CaptureRecord decodePayload(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long timestamp = in.readLong();
+        long latencyNanos = in.readLong();
+        String method = readString(in);
+        String uri = readString(in);
+        int status = in.readInt();
+        int headerCount = in.readInt();
+        HttpHeaders headers = new HttpHeaders();
+        for (int i = 0; i < headerCount; i++) {
+            String name = readString(in);
+            int valueCount = in.readInt();
+            List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(readString(in));
+            }
+            headers.put(name, values);
+        }
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        boolean bodyTruncated = in.readBoolean();
+        return new CaptureRecord(timestamp, latencyNanos, method, uri, status, headers, body, bodyTruncated);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException(String.format("Invalid string length: %s", length));
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] buf = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+            byte[] buf = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated deflated payload");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
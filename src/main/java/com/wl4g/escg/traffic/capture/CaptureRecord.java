@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import org.springframework.http.HttpHeaders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The captured request of the traffic.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+@Getter
+@ToString(exclude = "body")
+@AllArgsConstructor
+public class CaptureRecord {
+
+    /**
+     * The start time (epoch millis) of the request.
+     */
+    private final long timestamp;
+
+    /**
+     * The latency of the primary request (until the response is written).
+     */
+    private final long latencyNanos;
+
+    private final String method;
+
+    /**
+     * The raw path and query of the request, e.g. {@code /foo/bar?a=1}
+     */
+    private final String uri;
+
+    /**
+     * The status code of the primary response.
+     */
+    private final int status;
+
+    private final HttpHeaders headers;
+
+    private final byte[] body;
+
+    /**
+     * Whether the body is truncated by the max capture size.
+     */
+    private final boolean bodyTruncated;
+
+}
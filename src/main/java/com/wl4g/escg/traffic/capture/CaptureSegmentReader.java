@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The reader of the capture segment, which iterates the records of the
+ * memory-mapped segment, and stops at the end of frames or the first torn
+ * frame.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+public class CaptureSegmentReader implements Iterator<CaptureRecord>, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private CaptureRecord next;
+
+    public CaptureSegmentReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < CaptureCodec.SEGMENT_HEADER_SIZE || buffer.getInt() != CaptureCodec.MAGIC) {
+                throw new IOException(format("Invalid capture segment '%s'", path));
+            }
+            short version = buffer.getShort();
+            if (version != CaptureCodec.VERSION) {
+                throw new IOException(format("Unsupported capture segment version %s of '%s'", version, path));
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (isNull(next)) {
+            try {
+                next = CaptureCodec.decodeFrame(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return nonNull(next);
+    }
+
+    @Override
+    public CaptureRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CaptureRecord record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
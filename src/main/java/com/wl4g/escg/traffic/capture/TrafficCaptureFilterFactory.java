@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.nonNull;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.traffic.config.TrafficProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureProperties;
+import com.wl4g.escg.util.IamGatewayUtil;
+import com.wl4g.escg.util.http.BodyCapture;
+import com.wl4g.infra.common.bean.ConfigBeanUtils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link TrafficCaptureFilterFactory}, which captures the sampled requests
+ * (method, URI, headers, bounded body and timing) for the load testing, the
+ * records are written asynchronously by {@link TrafficCaptureWriter}, and can
+ * be replayed by {@link TrafficReplayer}.
+ *
+ * <p>
+ * Note: The captured URI is the request as seen by this filter, i.e. after
+ * the preceding filters (e.g. RewritePath) are applied.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+public class TrafficCaptureFilterFactory extends AbstractGatewayFilterFactory<TrafficCaptureFilterFactory.Config> {
+
+    private final TrafficProperties trafficConfig;
+    private final TrafficCaptureWriter captureWriter;
+    private final IamGatewayMetricsFacade metricsFacade;
+
+    public TrafficCaptureFilterFactory(TrafficProperties trafficConfig, TrafficCaptureWriter captureWriter,
+            IamGatewayMetricsFacade metricsFacade) {
+        super(TrafficCaptureFilterFactory.Config.class);
+        this.trafficConfig = notNullOf(trafficConfig, "trafficConfig");
+        this.captureWriter = notNullOf(captureWriter, "captureWriter");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+    }
+
+    @Override
+    public String name() {
+        return BEAN_NAME;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        applyDefaultToConfig(config);
+        return new TrafficCaptureGatewayFilter(config);
+    }
+
+    private void applyDefaultToConfig(Config config) {
+        try {
+            ConfigBeanUtils.configureWithDefault(new TrafficCaptureFilterFactory.Config(), config,
+                    trafficConfig.getDefaultCapture());
+        } catch (IllegalArgumentException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable apply defaults to traffic capture gateway config", e);
+        }
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    public static class Config extends CaptureProperties {
+    }
+
+    @AllArgsConstructor
+    class TrafficCaptureGatewayFilter implements GatewayFilter {
+        private final Config config;
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            if (!isCaptureWithPercentage(config)) {
+                return chain.filter(exchange);
+            }
+            String routeId = String.valueOf(IamGatewayUtil.getRouteId(exchange));
+            metricsFacade.counter(MetricsName.TRAFFIC_CAPTURE_TOTAL, routeId, 1);
+
+            long beginTime = currentTimeMillis();
+            long beginNanoTime = nanoTime();
+            ServerHttpRequest request = exchange.getRequest();
+            HttpHeaders headers = getCapturedHeaders(request.getHeaders());
+            BodyCapture bodyCapture = new BodyCapture((int) config.getMaxBodySize().toBytes());
+            ServerHttpRequestDecorator decorator = new ServerHttpRequestDecorator(request) {
+                @Override
+                public Flux<DataBuffer> getBody() {
+                    return super.getBody().doOnNext(buffer -> bodyCapture.append(buffer));
+                }
+            };
+
+            return chain.filter(exchange.mutate().request(decorator).build()).doOnSuccess(v -> {
+                Integer status = exchange.getResponse().getRawStatusCode();
+                captureWriter.offer(routeId,
+                        new CaptureRecord(beginTime, nanoTime() - beginNanoTime, request.getMethodValue(),
+                                getCapturedUri(request.getURI()), nonNull(status) ? status : 200, headers,
+                                bodyCapture.toByteArray(), bodyCapture.isTruncated()));
+            });
+        }
+
+        private HttpHeaders getCapturedHeaders(HttpHeaders requestHeaders) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(requestHeaders);
+            List<String> excludeHeaderNames = safeList(config.getExcludeHeaderNames());
+            excludeHeaderNames.forEach(headers::remove);
+            return headers;
+        }
+
+        private String getCapturedUri(URI uri) {
+            String path = uri.getRawPath();
+            return nonNull(uri.getRawQuery()) ? path.concat("?").concat(uri.getRawQuery()) : path;
+        }
+
+        private boolean isCaptureWithPercentage(Config config) {
+            double per = ThreadLocalRandom.current().nextDouble();
+            return per < config.getPercentage();
+        }
+    }
+
+    public static final String BEAN_NAME = "TrafficCapture";
+}
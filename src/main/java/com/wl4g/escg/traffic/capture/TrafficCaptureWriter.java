@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static com.wl4g.infra.common.lang.Assert2.hasTextOf;
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureStoreProperties;
+import com.wl4g.infra.common.task.RunnerProperties;
+import com.wl4g.infra.common.task.RunnerProperties.StartupMode;
+import com.wl4g.infra.common.task.SafeScheduledTaskPoolExecutor;
+import com.wl4g.infra.context.task.ApplicationTaskRunner;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The writer of the captured traffic, which appends the records to the
+ * rotating memory-mapped segments by the background writer thread, the
+ * request path only offers the records to the bounded queue, and the records
+ * are dropped when it's full.
+ *
+ * <p>
+ * The segment is rotated when it's full, the completed segment is truncated
+ * to the written size, and the oldest segments beyond the max are deleted.
+ * The segments can be read by {@link CaptureSegmentReader} and replayed by
+ * {@link TrafficReplayer}.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+@Slf4j
+public class TrafficCaptureWriter extends ApplicationTaskRunner<RunnerProperties> implements DisposableBean {
+
+    private static final long POLL_TIMEOUT_MS = 500L;
+
+    private final CaptureStoreProperties storeConfig;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final BlockingQueue<CaptureRecord> queue;
+    private volatile boolean running = true;
+    private int segmentSequence;
+    private Path segmentPath;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segmentBuffer;
+
+    public TrafficCaptureWriter(@NotNull CaptureStoreProperties storeConfig, @NotNull IamGatewayMetricsFacade metricsFacade) {
+        super(new RunnerProperties(StartupMode.ASYNC, 1));
+        this.storeConfig = notNullOf(storeConfig, "storeConfig");
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        hasTextOf(storeConfig.getDirectory(), "directory");
+        isTrue(storeConfig.getSegmentSize().toBytes() > CaptureCodec.SEGMENT_HEADER_SIZE
+                && storeConfig.getSegmentSize().toBytes() <= Integer.MAX_VALUE, "segmentSize must be less than 2GB");
+        isTrue(storeConfig.getMaxSegments() > 0, "maxSegments must be greater than 0");
+        this.queue = new ArrayBlockingQueue<>(storeConfig.getQueueCapacity());
+        metricsFacade.gauge(MetricsName.TRAFFIC_CAPTURE_QUEUED, () -> queue.size());
+    }
+
+    @Override
+    protected void onApplicationStarted(ApplicationArguments args, SafeScheduledTaskPoolExecutor worker) throws Exception {
+        worker.execute(() -> writeLoop());
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.running = false;
+        super.close();
+    }
+
+    /**
+     * Offer the record to be written asynchronously.
+     *
+     * @return false if dropped since the queue is full.
+     */
+    public boolean offer(@NotNull String routeId, @NotNull CaptureRecord record) {
+        if (running && queue.offer(record)) {
+            return true;
+        }
+        metricsFacade.counter(MetricsName.TRAFFIC_CAPTURE_DROPPED_TOTAL, routeId, 1);
+        return false;
+    }
+
+    void writeLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                CaptureRecord record = queue.poll(POLL_TIMEOUT_MS, MILLISECONDS);
+                if (nonNull(record)) {
+                    write(record);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    void write(CaptureRecord record) {
+        try {
+            byte[] frame = CaptureCodec.encodeFrame(record, storeConfig.getCompression());
+            if (frame.length > storeConfig.getSegmentSize().toBytes() - CaptureCodec.SEGMENT_HEADER_SIZE) {
+                log.warn("Dropped the capture record larger than the segment size, record: {}", record);
+                return;
+            }
+            if (isNull(segmentBuffer) || segmentBuffer.remaining() < frame.length) {
+                rotateSegment();
+            }
+            segmentBuffer.put(frame);
+            metricsFacade.counter(MetricsName.TRAFFIC_CAPTURE_WRITTEN_BYTES_TOTAL, frame.length);
+        } catch (Exception e) {
+            log.warn(format("Failed to write the capture record: %s", record), e);
+        }
+    }
+
+    private void rotateSegment() throws IOException {
+        closeSegment();
+        Path directory = Paths.get(storeConfig.getDirectory());
+        Files.createDirectories(directory);
+        this.segmentPath = directory.resolve(format("%s%013d-%06d%s", SEGMENT_PREFIX, currentTimeMillis(), segmentSequence++,
+                SEGMENT_SUFFIX));
+        this.segmentChannel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.segmentBuffer = segmentChannel.map(MapMode.READ_WRITE, 0, storeConfig.getSegmentSize().toBytes());
+        segmentBuffer.putInt(CaptureCodec.MAGIC).putShort(CaptureCodec.VERSION);
+        log.info("Rotated the capture segment: {}", segmentPath);
+        deleteExpiredSegments(directory);
+    }
+
+    void closeSegment() {
+        if (isNull(segmentChannel)) {
+            return;
+        }
+        try {
+            segmentBuffer.force();
+            // Trim the pre-allocated and unused tail of the segment.
+            segmentChannel.truncate(segmentBuffer.position());
+            segmentChannel.close();
+        } catch (IOException e) {
+            log.warn(format("Failed to close the capture segment: %s", segmentPath), e);
+        } finally {
+            this.segmentChannel = null;
+            this.segmentBuffer = null;
+        }
+    }
+
+    private void deleteExpiredSegments(Path directory) throws IOException {
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size() - storeConfig.getMaxSegments(); i++) {
+            Files.deleteIfExists(segments.get(i));
+            log.info("Deleted the expired capture segment: {}", segments.get(i));
+        }
+    }
+
+    /**
+     * Lists the capture segments of the directory, the oldest first.
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    public static final String SEGMENT_PREFIX = "capture-";
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static com.wl4g.infra.common.lang.Assert2.hasTextOf;
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.lang.System.nanoTime;
+import static org.apache.commons.lang3.StringUtils.removeEnd;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.http.HttpHeaders;
+
+import io.netty.handler.codec.http.HttpMethod;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * The replayer of the captured traffic, which reads the segments written by
+ * {@link TrafficCaptureWriter}, and re-issues the requests against the target
+ * URI through the pooled reactor netty client, keeping the original intervals
+ * of the requests scaled by the speed (e.g. 1x, or 10x faster). The records
+ * whose body is truncated by the max capture size are skipped (and counted),
+ * since they can't be replayed as the original requests.
+ *
+ * <p>
+ * Usage (e.g. in the standalone load testing):
+ *
+ * <pre>
+ * java -cp escg.jar -Dloader.main=com.wl4g.escg.traffic.capture.TrafficReplayer \
+ *   org.springframework.boot.loader.PropertiesLauncher &lt;directory&gt; &lt;targetUri&gt; [speed] [maxConcurrency]
+ * </pre>
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+@Slf4j
+public class TrafficReplayer {
+
+    private final HttpClient httpClient;
+    private final String targetUri;
+    private final double speed;
+    private final int maxConcurrency;
+
+    /**
+     * @param httpClient
+     *            The pooled http client.
+     * @param targetUri
+     *            The target URI, e.g. {@code http://localhost:18085}
+     * @param speed
+     *            The speed of replaying, e.g. 1 means the original rate, 10
+     *            means 10x faster.
+     * @param maxConcurrency
+     *            The max concurrent in-flight requests.
+     */
+    public TrafficReplayer(@NotNull HttpClient httpClient, @NotNull String targetUri, double speed, int maxConcurrency) {
+        this.httpClient = notNullOf(httpClient, "httpClient");
+        this.targetUri = removeEnd(hasTextOf(targetUri, "targetUri"), "/");
+        isTrue(speed > 0, "speed must be greater than 0");
+        isTrue(maxConcurrency > 0, "maxConcurrency must be greater than 0");
+        this.speed = speed;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Replay the records of the segments in order, except the truncated.
+     */
+    public Mono<ReplayResult> replay(@NotNull List<Path> segments) {
+        return Mono.defer(() -> {
+            long beginNanoTime = nanoTime();
+            AtomicLong firstTimestamp = new AtomicLong(-1L);
+            AtomicLong sent = new AtomicLong(0);
+            AtomicLong errors = new AtomicLong(0);
+            AtomicLong statusMismatches = new AtomicLong(0);
+            AtomicLong truncated = new AtomicLong(0);
+
+            return readRecords(segments).filter(record -> {
+                if (record.isBodyTruncated()) {
+                    truncated.incrementAndGet();
+                    log.debug("Skipped to replay the truncated request: {}", record);
+                    return false;
+                }
+                return true;
+            }).concatMap(record -> {
+                firstTimestamp.compareAndSet(-1L, record.getTimestamp());
+                // The due time of the record relative to the beginning.
+                long dueNanos = (long) (Math.max(record.getTimestamp() - firstTimestamp.get(), 0) * 1_000_000L / speed);
+                long delayNanos = dueNanos - (nanoTime() - beginNanoTime);
+                return delayNanos > 0 ? Mono.delay(Duration.ofNanos(delayNanos)).thenReturn(record) : Mono.just(record);
+            }).flatMap(record -> send(record).doOnNext(status -> {
+                sent.incrementAndGet();
+                if (status != record.getStatus()) {
+                    statusMismatches.incrementAndGet();
+                }
+            }).onErrorResume(ex -> {
+                errors.incrementAndGet();
+                log.debug("Failed to replay the request: {}. reason: {}", record, ex.getMessage());
+                return Mono.empty();
+            }), maxConcurrency)
+                    .then(Mono.fromSupplier(() -> new ReplayResult(sent.get(), errors.get(), statusMismatches.get(),
+                            truncated.get(), nanoTime() - beginNanoTime)));
+        });
+    }
+
+    private Flux<CaptureRecord> readRecords(List<Path> segments) {
+        return Flux.fromIterable(segments)
+                .concatMap(path -> Flux.using(() -> new CaptureSegmentReader(path), reader -> Flux.fromIterable(() -> reader),
+                        CaptureSegmentReader::close));
+    }
+
+    private Mono<Integer> send(CaptureRecord record) {
+        return httpClient.headers(headers -> {
+            record.getHeaders().forEach((name, values) -> values.forEach(value -> headers.add(name, value)));
+            // Will be set by netty for the target.
+            headers.remove(HttpHeaders.HOST);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        })
+                .request(HttpMethod.valueOf(record.getMethod()))
+                .uri(targetUri.concat(record.getUri()))
+                .send((req, nettyOutbound) -> record.getBody().length > 0
+                        ? nettyOutbound.sendByteArray(Mono.just(record.getBody())) : nettyOutbound)
+                // Drain the response to release the pooled connection.
+                .responseConnection((res, connection) -> connection.inbound().receive().then(Mono.just(res.status().code())))
+                .next();
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class ReplayResult {
+        private final long sent;
+        private final long errors;
+
+        /**
+         * The number of responses whose status differs from the captured.
+         */
+        private final long statusMismatches;
+
+        /**
+         * The number of skipped records whose body is truncated.
+         */
+        private final long truncated;
+        private final long elapsedNanos;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TrafficReplayer <directory> <targetUri> [speed] [maxConcurrency]");
+            System.exit(1);
+        }
+        double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1d;
+        int maxConcurrency = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        List<Path> segments = TrafficCaptureWriter.listSegments(Paths.get(args[0]));
+
+        ConnectionProvider provider = ConnectionProvider.builder("traffic-replayer").maxConnections(maxConcurrency).build();
+        try {
+            ReplayResult result = new TrafficReplayer(HttpClient.create(provider), args[1], speed, maxConcurrency)
+                    .replay(segments)
+                    .block();
+            log.info("Replayed {} segments, result: {}", segments.size(), result);
+        } finally {
+            provider.dispose();
+        }
+    }
+
+}
@@ -15,9 +15,12 @@
  */
 package com.wl4g.escg.traffic.config;
 
+import static java.util.stream.Collectors.toList;
+
 import java.util.List;
 
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.gateway.config.HttpClientCustomizer;
 import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
@@ -25,7 +28,13 @@ import org.springframework.context.annotation.Bean;
 
 import com.wl4g.escg.constant.EscgConstants;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.traffic.MirrorResponseHandler;
 import com.wl4g.escg.traffic.TrafficReplicationFilterFactory;
+import com.wl4g.escg.traffic.capture.TrafficCaptureFilterFactory;
+import com.wl4g.escg.traffic.capture.TrafficCaptureWriter;
+import com.wl4g.escg.traffic.diff.ShadowDiffEndpoint;
+import com.wl4g.escg.traffic.diff.ShadowResponseDiffer;
 
 /**
  * {@link TrafficAutoConfiguration}
@@ -47,8 +56,36 @@ public class TrafficAutoConfiguration {
             TrafficProperties trafficConfig,
             ObjectProvider<List<HttpHeadersFilter>> headersFilters,
             List<HttpClientCustomizer> customizers,
+            IamGatewayMetricsFacade metricsFacade,
+            ObjectProvider<MirrorResponseHandler> responseHandlers,
+            ShadowResponseDiffer responseDiffer,
+            ClientAddressResolver clientAddressResolver) {
+        return new TrafficReplicationFilterFactory(trafficConfig, headersFilters, customizers, metricsFacade,
+                responseHandlers.orderedStream().collect(toList()), responseDiffer, clientAddressResolver);
+    }
+
+    @Bean
+    public ShadowResponseDiffer shadowResponseDiffer(TrafficProperties trafficConfig, IamGatewayMetricsFacade metricsFacade) {
+        return new ShadowResponseDiffer(trafficConfig, metricsFacade);
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint
+    public ShadowDiffEndpoint shadowDiffEndpoint(ShadowResponseDiffer responseDiffer) {
+        return new ShadowDiffEndpoint(responseDiffer);
+    }
+
+    @Bean
+    public TrafficCaptureWriter trafficCaptureWriter(TrafficProperties trafficConfig, IamGatewayMetricsFacade metricsFacade) {
+        return new TrafficCaptureWriter(trafficConfig.getCaptureStore(), metricsFacade);
+    }
+
+    @Bean
+    public TrafficCaptureFilterFactory trafficCaptureFilterFactory(
+            TrafficProperties trafficConfig,
+            TrafficCaptureWriter captureWriter,
             IamGatewayMetricsFacade metricsFacade) {
-        return new TrafficReplicationFilterFactory(trafficConfig, headersFilters, customizers, metricsFacade);
+        return new TrafficCaptureFilterFactory(trafficConfig, captureWriter, metricsFacade);
     }
 
 }
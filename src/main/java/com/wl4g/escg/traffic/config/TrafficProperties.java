@@ -18,7 +18,10 @@ package com.wl4g.escg.traffic.config;
 import static java.util.Arrays.asList;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.cloud.gateway.config.HttpClientProperties;
 import org.springframework.cloud.gateway.config.HttpClientProperties.Pool;
@@ -46,6 +49,12 @@ public class TrafficProperties {
 
     private ReplicationProperties defaultReplication = new ReplicationProperties();
 
+    private DiffEngineProperties diffEngine = new DiffEngineProperties();
+
+    private CaptureProperties defaultCapture = new CaptureProperties();
+
+    private CaptureStoreProperties captureStore = new CaptureStoreProperties();
+
     @Getter
     @Setter
     @ToString
@@ -62,6 +71,55 @@ public class TrafficProperties {
          */
         private double percentage = 1d;
 
+        /**
+         * The sampling of replication, e.g. the consistent sampling by the
+         * principal and the percentages of each target.
+         */
+        private SamplingProperties sampling = new SamplingProperties();
+
+        /**
+         * The replication mode of the request body, the default is streaming
+         * tee, the body chunks flow to the primary upstream immediately and
+         * are fed to the mirrors concurrently, without aggregating the whole
+         * body in memory.
+         */
+        private BodyReplicationMode bodyMode = BodyReplicationMode.STREAMING;
+
+        /**
+         * The max pending (not yet sent) body size of each mirror in the
+         * streaming mode, beyond which the mirror of the slow target is
+         * dropped, so as to never backpressure the primary request.
+         */
+        private DataSize mirrorMaxPendingSize = DataSize.ofKilobytes(512);
+
+        /**
+         * The max in-flight mirror requests of each target per route.
+         */
+        private int maxInFlightPerTarget = 64;
+
+        /**
+         * The max queued mirror requests of each target per route, when the
+         * in-flight mirrors reach the limit.
+         */
+        private int maxQueueSizePerTarget = 256;
+
+        /**
+         * The policy of the mirror requests when the queue of target is full.
+         */
+        private MirrorOverflowPolicy overflowPolicy = MirrorOverflowPolicy.DROP_NEWEST;
+
+        /**
+         * The max captured response body size of the mirror for the response
+         * handlers (e.g. diffing), beyond which the body is truncated but still
+         * drained.
+         */
+        private DataSize maxResponseCaptureSize = DataSize.ofKilobytes(64);
+
+        /**
+         * The diffing of the primary and mirror responses.
+         */
+        private ResponseDiffProperties responseDiff = new ResponseDiffProperties();
+
         /** Enables wiretap debugging for Netty HttpClient. */
         private boolean wiretap = false;
 
@@ -100,4 +158,214 @@ public class TrafficProperties {
         }
     }
 
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    public static class ResponseDiffProperties {
+
+        /**
+         * Whether to compare the mirror responses with the primary response
+         * asynchronously, off the event loop.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The names of the response headers to be compared.
+         */
+        private List<String> headerNames = new ArrayList<>(asList("Content-Type"));
+
+        /**
+         * The comparison mode of the response body, the bodies are captured
+         * up to the max response capture size.
+         */
+        private DiffBodyMode bodyMode = DiffBodyMode.DIGEST;
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    public static class SamplingProperties {
+
+        /**
+         * The key of sampling, the same key is hashed into the same point in
+         * [0,1), so that e.g. all the requests of a user are either mirrored
+         * or not. Falls back to the random if the key isn't present.
+         */
+        private SamplingKey key = SamplingKey.RANDOM;
+
+        /**
+         * The request header name of the key, only used for
+         * {@link SamplingKey#HEADER}
+         */
+        private String headerName;
+
+        /**
+         * The sampling percentages of the targets, the target that isn't
+         * present uses the global percentage. Since the point of a key is the
+         * same for all targets, the keys mirrored to the target with the
+         * lower percentage are also mirrored to the higher ones.
+         */
+        private Map<String, Double> targetPercentages = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    public static class DiffEngineProperties {
+
+        /**
+         * The capacity of the local ring buffer, which keeps the latest
+         * samples of the mismatched diffs for inspection.
+         */
+        private int storeCapacity = 256;
+
+        /**
+         * The max pending comparisons, beyond which the new comparisons are
+         * dropped, so that the diffing never accumulates unbounded backlog.
+         */
+        private int maxPendingDiffs = 1024;
+
+        /**
+         * The number of the worker threads of comparison.
+         */
+        private int concurrency = 1;
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    public static class CaptureProperties {
+
+        /**
+         * The sampling percentage rate of traffic that needs to be captured.
+         */
+        private double percentage = 0.01d;
+
+        /**
+         * The max captured request body size, beyond which the body is
+         * truncated.
+         */
+        private DataSize maxBodySize = DataSize.ofKilobytes(64);
+
+        /**
+         * The names of the request headers that are not captured, e.g. the
+         * credentials.
+         */
+        private List<String> excludeHeaderNames = new ArrayList<>(
+                asList("Authorization", "Proxy-Authorization", "Cookie"));
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @Validated
+    public static class CaptureStoreProperties {
+
+        /**
+         * The directory of the capture segments.
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/escg/capture";
+
+        /**
+         * The pre-allocated (memory-mapped) size of each segment.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * The max number of segments to retain, the oldest are deleted.
+         */
+        private int maxSegments = 16;
+
+        /**
+         * The compression of the records.
+         */
+        private CaptureCompression compression = CaptureCompression.DEFLATE;
+
+        /**
+         * The capacity of the queue of the records to be written, beyond
+         * which the records are dropped.
+         */
+        private int queueCapacity = 4096;
+    }
+
+    public static enum SamplingKey {
+
+        /**
+         * Sampling each request randomly.
+         */
+        RANDOM,
+
+        /**
+         * Sampling by the name of the authenticated principal.
+         */
+        PRINCIPAL,
+
+        /**
+         * Sampling by the value of the request header, e.g. the tenant or
+         * session ID.
+         */
+        HEADER,
+
+        /**
+         * Sampling by the client address resolved via the trusted proxies.
+         */
+        CLIENT_IP,
+
+        /**
+         * Sampling by the trace ID of the request.
+         */
+        TRACE_ID;
+    }
+
+    public static enum CaptureCompression {
+        NONE, DEFLATE;
+    }
+
+    public static enum BodyReplicationMode {
+        AGGREGATING, STREAMING;
+    }
+
+    public static enum DiffBodyMode {
+
+        /**
+         * Ignore the response body.
+         */
+        NONE,
+
+        /**
+         * Compare the SHA-256 digests of the response bodies.
+         */
+        DIGEST,
+
+        /**
+         * Compare the structural fingerprints (the field names and value
+         * types, not the values) of the JSON response bodies, falls back to
+         * the digest if the body isn't a complete JSON.
+         */
+        JSON_STRUCTURE;
+    }
+
+    public static enum MirrorOverflowPolicy {
+
+        /**
+         * Drop the new mirror when the queue is full.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drop the oldest queued mirror to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Admit the new mirrors with a decreasing probability once the queue
+         * is over half full, and drop the new mirror when it's full.
+         */
+        SAMPLE_DOWN;
+    }
+
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.diff;
+
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The actuator endpoint of the latest mismatched diff samples of the shadow
+ * responses in the local ring buffer {@link ShadowDiffStore}, e.g:
+ * {@code GET /actuator/shadowdiffs?routeId=my-route}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-18 v1.0.0
+ * @since v1.0.0
+ */
+@Endpoint(id = "shadowdiffs")
+public class ShadowDiffEndpoint {
+
+    private final ShadowResponseDiffer responseDiffer;
+
+    public ShadowDiffEndpoint(@NotNull ShadowResponseDiffer responseDiffer) {
+        this.responseDiffer = notNullOf(responseDiffer, "responseDiffer");
+    }
+
+    /**
+     * Gets the latest samples (the newest first) and the total number of
+     * samples ever added.
+     *
+     * @param routeId
+     *            The optional route ID to filter the samples.
+     */
+    @ReadOperation
+    public ShadowDiffs shadowDiffs(@Nullable String routeId) {
+        ShadowDiffStore store = responseDiffer.getStore();
+        List<ShadowDiffRecord> recent = store.getRecent();
+        if (!isBlank(routeId)) {
+            recent = recent.stream().filter(record -> routeId.equals(record.getRouteId())).collect(toList());
+        }
+        return new ShadowDiffs(store.getTotal(), recent);
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class ShadowDiffs {
+        private final long total;
+        private final List<ShadowDiffRecord> recent;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.diff;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The sample of the mismatched diff of the primary and mirror responses.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-18 v1.0.0
+ * @since v1.0.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ShadowDiffRecord {
+    private final long timestamp;
+    private final String routeId;
+    private final String method;
+
+    /**
+     * The raw path of the primary request, without the query.
+     */
+    private final String requestPath;
+
+    private final String targetUri;
+    private final int primaryStatus;
+    private final int mirrorStatus;
+
+    /**
+     * The differences, e.g. {@code status: 200 != 500}
+     */
+    private final List<String> differences;
+}
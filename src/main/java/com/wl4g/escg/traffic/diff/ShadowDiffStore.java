@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.diff;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The local ring buffer of the latest mismatched diffs for inspection, the
+ * oldest samples are overwritten, so the memory is always bounded.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-18 v1.0.0
+ * @since v1.0.0
+ */
+public class ShadowDiffStore {
+
+    private final AtomicReferenceArray<ShadowDiffRecord> records;
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    public ShadowDiffStore(int capacity) {
+        isTrue(capacity > 0, "capacity must be greater than 0");
+        this.records = new AtomicReferenceArray<>(capacity);
+    }
+
+    public void add(ShadowDiffRecord record) {
+        long seq = sequence.getAndIncrement();
+        records.set((int) (seq % records.length()), record);
+    }
+
+    /**
+     * Gets the latest samples, the newest first.
+     */
+    public List<ShadowDiffRecord> getRecent() {
+        long end = sequence.get();
+        int count = (int) Math.min(end, records.length());
+        List<ShadowDiffRecord> recent = new ArrayList<>(count);
+        for (long seq = end - 1; seq >= end - count; seq--) {
+            ShadowDiffRecord record = records.get((int) (seq % records.length()));
+            if (nonNull(record)) {
+                recent.add(record);
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * Gets the total number of samples ever added.
+     */
+    public long getTotal() {
+        return sequence.get();
+    }
+
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.diff;
+
+import static com.wl4g.infra.common.collection.CollectionUtils2.safeList;
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.traffic.MirrorResponse;
+import com.wl4g.escg.traffic.MirrorResponseHandler;
+import com.wl4g.escg.traffic.config.TrafficProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.DiffBodyMode;
+import com.wl4g.escg.traffic.config.TrafficProperties.DiffEngineProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.ResponseDiffProperties;
+import com.wl4g.escg.util.http.BodyCapture;
+import com.wl4g.infra.common.task.RunnerProperties;
+import com.wl4g.infra.common.task.RunnerProperties.StartupMode;
+import com.wl4g.infra.common.task.SafeScheduledTaskPoolExecutor;
+import com.wl4g.infra.context.task.ApplicationTaskRunner;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The diffing engine of the shadow traffic, which captures the primary
+ * response (status, selected headers and bounded body), and compares it with
+ * each mirror response on the background workers, off the event loop. The
+ * mismatches are counted per route and target, and the samples are kept in
+ * the local ring buffer {@link ShadowDiffStore}.
+ *
+ * <p>
+ * The primary path only copies the bounded prefix of the response body, the
+ * fingerprints and comparisons are performed by the workers, and the
+ * comparisons beyond the max pending are dropped instead of queued.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-18 v1.0.0
+ * @since v1.0.0
+ */
+@Slf4j
+public class ShadowResponseDiffer extends ApplicationTaskRunner<RunnerProperties>
+        implements MirrorResponseHandler, DisposableBean {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final DiffEngineProperties diffConfig;
+    private final IamGatewayMetricsFacade metricsFacade;
+    private final ShadowDiffStore store;
+    private final AtomicInteger pendingDiffs = new AtomicInteger(0);
+    private volatile SafeScheduledTaskPoolExecutor worker;
+
+    public ShadowResponseDiffer(@NotNull TrafficProperties trafficConfig, @NotNull IamGatewayMetricsFacade metricsFacade) {
+        super(new RunnerProperties(StartupMode.ASYNC, notNullOf(trafficConfig, "trafficConfig").getDiffEngine().getConcurrency()));
+        this.diffConfig = trafficConfig.getDiffEngine();
+        this.metricsFacade = notNullOf(metricsFacade, "metricsFacade");
+        isTrue(diffConfig.getMaxPendingDiffs() > 0, "maxPendingDiffs must be greater than 0");
+        this.store = new ShadowDiffStore(diffConfig.getStoreCapacity());
+        metricsFacade.gauge(MetricsName.TRAFFIC_DIFF_PENDING, () -> pendingDiffs.get());
+    }
+
+    @Override
+    protected void onApplicationStarted(ApplicationArguments args, SafeScheduledTaskPoolExecutor worker) throws Exception {
+        this.worker = worker;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        super.close();
+    }
+
+    public ShadowDiffStore getStore() {
+        return store;
+    }
+
+    /**
+     * Capture the primary response of the exchange to be compared with the
+     * mirror responses.
+     *
+     * @param exchange
+     *            The primary exchange.
+     * @param routeId
+     *            The route ID.
+     * @param config
+     *            The diff configuration of the route.
+     * @param maxCaptureSize
+     *            The max captured size of the response body.
+     * @return The exchange with the decorated response.
+     */
+    public ServerWebExchange capture(
+            @NotNull ServerWebExchange exchange,
+            @NotNull String routeId,
+            @NotNull ResponseDiffProperties config,
+            int maxCaptureSize) {
+        DiffContext context = new DiffContext(exchange, routeId, config,
+                config.getBodyMode() == DiffBodyMode.NONE ? null : new BodyCapture(maxCaptureSize));
+        exchange.getAttributes().put(DIFF_CONTEXT_ATTR, context);
+        return exchange.mutate().response(new CapturingResponse(exchange.getResponse(), context)).build();
+    }
+
+    @Override
+    public boolean isBodyRequired(ServerWebExchange exchange) {
+        DiffContext context = exchange.getAttribute(DIFF_CONTEXT_ATTR);
+        return nonNull(context) && nonNull(context.bodyCapture);
+    }
+
+    @Override
+    public void onResponse(ServerWebExchange exchange, MirrorResponse response) {
+        DiffContext context = exchange.getAttribute(DIFF_CONTEXT_ATTR);
+        if (nonNull(context)) {
+            context.mirrorCompleted(response);
+        }
+    }
+
+    private void submit(DiffContext context, MirrorResponse mirror) {
+        SafeScheduledTaskPoolExecutor worker = this.worker;
+        if (isNull(worker) || pendingDiffs.incrementAndGet() > diffConfig.getMaxPendingDiffs()) {
+            if (nonNull(worker)) {
+                pendingDiffs.decrementAndGet();
+            }
+            metricsFacade.counter(MetricsName.TRAFFIC_DIFF_DROPPED_TOTAL, context.routeId, 1, MetricsTag.TRAFFIC_TARGET,
+                    mirror.getTargetUri());
+            return;
+        }
+        try {
+            worker.execute(() -> {
+                try {
+                    compare(context, mirror);
+                } catch (Exception e) {
+                    log.warn(format("Failed to compare the mirror response of target uri: '%s'", mirror.getTargetUri()), e);
+                } finally {
+                    pendingDiffs.decrementAndGet();
+                }
+            });
+        } catch (Exception e) { // e.g. Rejected after shutdown
+            pendingDiffs.decrementAndGet();
+            log.warn("Failed to submit the comparison of mirror response. reason: {}", e.getMessage());
+        }
+    }
+
+    void compare(DiffContext context, MirrorResponse mirror) {
+        List<String> differences = new ArrayList<>(2);
+        String target = mirror.getTargetUri();
+        if (context.primaryStatus != mirror.getStatusCode()) {
+            differences.add(format("status: %s != %s", context.primaryStatus, mirror.getStatusCode()));
+            onMismatch(context, target, DIFF_FIELD_STATUS);
+        }
+        boolean headerMismatched = false;
+        for (String name : safeList(context.config.getHeaderNames())) {
+            List<String> primaryValues = context.primaryHeaders.getOrEmpty(name);
+            List<String> mirrorValues = mirror.getHeaders().getOrEmpty(name);
+            if (!primaryValues.equals(mirrorValues)) {
+                differences.add(format("header[%s]: %s != %s", name, primaryValues, mirrorValues));
+                headerMismatched = true;
+            }
+        }
+        if (headerMismatched) {
+            onMismatch(context, target, DIFF_FIELD_HEADERS);
+        }
+        if (nonNull(context.bodyCapture) && nonNull(mirror.getBody())) {
+            String primaryFingerprint = context.getBodyFingerprint();
+            String mirrorFingerprint = fingerprint(context.config.getBodyMode(), mirror.getBody(), mirror.isTruncated());
+            if (!primaryFingerprint.equals(mirrorFingerprint)) {
+                differences.add(format("body: %s != %s", primaryFingerprint, mirrorFingerprint));
+                onMismatch(context, target, DIFF_FIELD_BODY);
+            }
+        }
+
+        metricsFacade.counter(MetricsName.TRAFFIC_DIFF_TOTAL, context.routeId, 1, MetricsTag.TRAFFIC_TARGET, target);
+        if (!differences.isEmpty()) {
+            metricsFacade.counter(MetricsName.TRAFFIC_DIFF_MISMATCH_TOTAL, context.routeId, 1, MetricsTag.TRAFFIC_TARGET,
+                    target);
+            store.add(new ShadowDiffRecord(currentTimeMillis(), context.routeId, context.method, context.requestPath, target,
+                    context.primaryStatus, mirror.getStatusCode(), differences));
+            log.debug("Mismatched the mirror response of request path: '{}' to target uri: '{}', differences: {}",
+                    context.requestPath, target, differences);
+        }
+    }
+
+    private void onMismatch(DiffContext context, String targetUri, String field) {
+        metricsFacade.counter(MetricsName.TRAFFIC_DIFF_FIELD_MISMATCH_TOTAL, context.routeId, 1, MetricsTag.TRAFFIC_TARGET,
+                targetUri, MetricsTag.TRAFFIC_DIFF_FIELD, field);
+    }
+
+    /**
+     * Gets the fingerprint of the body, the truncated body can only be
+     * compared by the digest of its prefix.
+     */
+    static String fingerprint(DiffBodyMode mode, byte[] body, boolean truncated) {
+        if (mode == DiffBodyMode.JSON_STRUCTURE && !truncated && body.length > 0) {
+            try {
+                StringBuilder structure = new StringBuilder(64);
+                appendStructure(MAPPER.readTree(body), structure);
+                return "json:".concat(Hashing.sha256().hashUnencodedChars(structure).toString());
+            } catch (Exception e) { // Not a JSON
+            }
+        }
+        String digest = "sha256:".concat(Hashing.sha256().hashBytes(body).toString());
+        return truncated ? digest.concat("(truncated)") : digest;
+    }
+
+    /**
+     * Appends the structure of the JSON node, i.e. the sorted field names and
+     * the value types, the elements of array are merged as the distinct
+     * structures.
+     */
+    static void appendStructure(JsonNode node, StringBuilder structure) {
+        if (node.isObject()) {
+            Map<String, JsonNode> fields = new TreeMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+                Map.Entry<String, JsonNode> field = it.next();
+                fields.put(field.getKey(), field.getValue());
+            }
+            structure.append('{');
+            fields.forEach((name, value) -> {
+                structure.append(name).append(':');
+                appendStructure(value, structure);
+                structure.append(',');
+            });
+            structure.append('}');
+        } else if (node.isArray()) {
+            TreeSet<String> elements = new TreeSet<>();
+            for (JsonNode element : node) {
+                StringBuilder elementStructure = new StringBuilder(16);
+                appendStructure(element, elementStructure);
+                elements.add(elementStructure.toString());
+            }
+            structure.append('[').append(String.join("|", elements)).append(']');
+        } else {
+            structure.append(node.getNodeType().name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The diff context of the primary exchange, the mirror responses which
+     * arrive before the primary response are pending until it's completed.
+     */
+    class DiffContext {
+        private final String routeId;
+        private final String method;
+        private final String requestPath;
+        private final ResponseDiffProperties config;
+        private final @Nullable BodyCapture bodyCapture;
+        private List<MirrorResponse> pendingMirrors;
+        private boolean primaryCompleted;
+        private int primaryStatus;
+        private HttpHeaders primaryHeaders;
+        private volatile String bodyFingerprint;
+
+        DiffContext(ServerWebExchange exchange, String routeId, ResponseDiffProperties config,
+                @Nullable BodyCapture bodyCapture) {
+            this.routeId = routeId;
+            this.method = exchange.getRequest().getMethodValue();
+            // Only the path is kept, the query may carry the credentials
+            // (e.g. the access token or signature) which are retained by the
+            // diff store and exposed via the endpoint.
+            this.requestPath = exchange.getRequest().getURI().getRawPath();
+            this.config = config;
+            this.bodyCapture = bodyCapture;
+        }
+
+        void primaryCompleted(ServerHttpResponse response) {
+            // Only copy the selected headers, the response headers may be
+            // read-only or mutated after committed.
+            HttpHeaders headers = new HttpHeaders();
+            for (String name : safeList(config.getHeaderNames())) {
+                List<String> values = response.getHeaders().get(name);
+                if (nonNull(values)) {
+                    headers.put(name, new ArrayList<>(values));
+                }
+            }
+            List<MirrorResponse> mirrors;
+            synchronized (this) {
+                if (primaryCompleted) {
+                    return;
+                }
+                this.primaryCompleted = true;
+                this.primaryStatus = nonNull(response.getRawStatusCode()) ? response.getRawStatusCode() : 200;
+                this.primaryHeaders = headers;
+                mirrors = pendingMirrors;
+                this.pendingMirrors = null;
+            }
+            if (nonNull(mirrors)) {
+                mirrors.forEach(mirror -> submit(this, mirror));
+            }
+        }
+
+        void mirrorCompleted(MirrorResponse mirror) {
+            synchronized (this) {
+                if (!primaryCompleted) {
+                    if (isNull(pendingMirrors)) {
+                        pendingMirrors = new ArrayList<>(2);
+                    }
+                    pendingMirrors.add(mirror);
+                    return;
+                }
+            }
+            submit(this, mirror);
+        }
+
+        /**
+         * Gets the fingerprint of the primary body, which is computed once by
+         * the worker.
+         */
+        String getBodyFingerprint() {
+            String fingerprint = bodyFingerprint;
+            if (isNull(fingerprint)) {
+                synchronized (this) {
+                    fingerprint = bodyFingerprint;
+                    if (isNull(fingerprint)) {
+                        bodyFingerprint = fingerprint = fingerprint(config.getBodyMode(), bodyCapture.toByteArray(),
+                                bodyCapture.isTruncated());
+                    }
+                }
+            }
+            return fingerprint;
+        }
+    }
+
+    static class CapturingResponse extends ServerHttpResponseDecorator {
+        private final DiffContext context;
+
+        CapturingResponse(ServerHttpResponse delegate, DiffContext context) {
+            super(delegate);
+            this.context = context;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(capture(Flux.from(body))).doOnSuccess(v -> context.primaryCompleted(getDelegate()));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map(p -> capture(Flux.from(p))))
+                    .doOnSuccess(v -> context.primaryCompleted(getDelegate()));
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return super.setComplete().doOnSuccess(v -> context.primaryCompleted(getDelegate()));
+        }
+
+        private Flux<? extends DataBuffer> capture(Flux<? extends DataBuffer> body) {
+            BodyCapture bodyCapture = context.bodyCapture;
+            return isNull(bodyCapture) ? body : body.doOnNext(buffer -> bodyCapture.append(buffer));
+        }
+    }
+
+    public static final String DIFF_CONTEXT_ATTR = ShadowResponseDiffer.class.getName() + ".diffContext";
+
+    public static final String DIFF_FIELD_STATUS = "status";
+    public static final String DIFF_FIELD_HEADERS = "headers";
+    public static final String DIFF_FIELD_BODY = "body";
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util;
+
+import static java.util.Objects.isNull;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The epoch boundary clock of the date pattern cycles, e.g: the quota limiting
+ * cycles and the daily limit hits cumulators. The cycle key and the cycle end
+ * time are computed only once when crossing the boundary of a cycle, all other
+ * requests of the same cycle just read the cached {@link Cycle}.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-02 v1.0.0
+ * @since v1.0.0
+ */
+public class CycleClock {
+    private static final Map<String, CycleClock> CLOCKS = new ConcurrentHashMap<>(4);
+
+    private final String cycleDatePattern;
+    private final DateTimeFormatter formatter;
+    private final ChronoUnit cycleUnit;
+    private final ZoneId zone;
+    private volatile Cycle current;
+
+    CycleClock(String cycleDatePattern, ZoneId zone) {
+        this.cycleDatePattern = cycleDatePattern;
+        this.formatter = DateTimeFormatter.ofPattern(cycleDatePattern);
+        this.cycleUnit = parseCycleUnit(cycleDatePattern);
+        this.zone = zone;
+    }
+
+    public static CycleClock forPattern(String cycleDatePattern) {
+        return CLOCKS.computeIfAbsent(cycleDatePattern, pattern -> new CycleClock(pattern, ZoneId.systemDefault()));
+    }
+
+    public String getCycleDatePattern() {
+        return cycleDatePattern;
+    }
+
+    /**
+     * Gets the cycle to which the current time belongs.
+     *
+     * @param nowMillis
+     * @return
+     */
+    public Cycle current(long nowMillis) {
+        Cycle cycle = current;
+        if (isNull(cycle) || nowMillis >= cycle.getEndMillis() || nowMillis < cycle.getBeginMillis()) {
+            current = cycle = computeCycle(nowMillis);
+        }
+        return cycle;
+    }
+
+    Cycle computeCycle(long nowMillis) {
+        LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), zone);
+        LocalDateTime begin;
+        switch (cycleUnit) {
+        case YEARS:
+            begin = now.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.firstDayOfYear());
+            break;
+        case MONTHS:
+            begin = now.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.firstDayOfMonth());
+            break;
+        case WEEKS:
+            begin = now.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            break;
+        default:
+            begin = now.truncatedTo(cycleUnit);
+        }
+        LocalDateTime end = begin.plus(1, cycleUnit);
+        return new Cycle(formatter.format(begin), begin.atZone(zone).toInstant().toEpochMilli(),
+                end.atZone(zone).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Parse the cycle length according to the finest-grained field of the date
+     * pattern, e.g: 'yyMMdd' is daily cycle, 'yyyyMMddHH' is hourly cycle.
+     *
+     * @param pattern
+     * @return
+     */
+    static ChronoUnit parseCycleUnit(String pattern) {
+        ChronoUnit unit = null;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted) {
+                continue;
+            }
+            ChronoUnit u = null;
+            switch (c) {
+            case 'y':
+            case 'u':
+                u = ChronoUnit.YEARS;
+                break;
+            case 'M':
+            case 'L':
+                u = ChronoUnit.MONTHS;
+                break;
+            case 'w':
+                u = ChronoUnit.WEEKS;
+                break;
+            case 'd':
+            case 'D':
+            case 'E':
+            case 'e':
+                u = ChronoUnit.DAYS;
+                break;
+            case 'H':
+            case 'h':
+            case 'k':
+            case 'K':
+                u = ChronoUnit.HOURS;
+                break;
+            case 'm':
+                u = ChronoUnit.MINUTES;
+                break;
+            case 's':
+                u = ChronoUnit.SECONDS;
+                break;
+            default:
+                break;
+            }
+            if (!isNull(u) && (isNull(unit) || u.getDuration().compareTo(unit.getDuration()) < 0)) {
+                unit = u;
+            }
+        }
+        if (isNull(unit)) {
+            throw new IllegalArgumentException(String.format("Invalid cycle date pattern: '%s'", pattern));
+        }
+        return unit;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Cycle {
+        private final String cycleKey;
+        private final long beginMillis;
+        private final long endMillis;
+    }
+
+}
@@ -25,6 +25,8 @@ import javax.annotation.Nullable;
 import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.server.ServerWebExchange;
 
 import com.wl4g.infra.common.lang.EnvironmentUtil;
@@ -55,6 +57,16 @@ public abstract class IamGatewayUtil {
         return null;
     }
 
+    /**
+     * Whether the request method can carry a body. The body can't be
+     * determined by the headers, e.g. the HTTP/2 requests have neither the
+     * content-length nor the transfer-encoding header.
+     */
+    public static boolean isBodyAllowed(ServerHttpRequest request) {
+        HttpMethod method = request.getMethod();
+        return method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.TRACE;
+    }
+
     /**
      * <p>
      * Spring Cloud Gateway VS Zuul filter orders and Pit records:
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.bloom;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Objects.nonNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.validation.constraints.NotNull;
+
+import com.google.common.hash.Funnel;
+import com.wl4g.escg.util.bloom.RedisBloomFilter.BloomConfig;
+
+/**
+ * The lock-free in-process time windowed bloom filter, which consists of a
+ * ring of generations, the values are added to the generation of current time,
+ * and checked against all the generations of the window. The expired
+ * generation is replaced by a new one with CAS on rotation, so the readers and
+ * writers never block.
+ *
+ * <p>
+ * Note: The values being added concurrently with the rotation may be lost
+ * (i.e. written to the replaced generation), and the same value being added
+ * concurrently by multiple threads may be all treated as absent, which are
+ * acceptable as a local tier in front of the distributed bloom filter.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-08 v1.0.0
+ * @since v1.0.0
+ */
+public class LocalRotatingBloomFilter<T> {
+
+    private final BloomConfig<T> bloomConfig;
+    private final long generationMillis;
+    private final AtomicReferenceArray<Generation> generations;
+
+    /**
+     * @param funnel
+     * @param windowMillis
+     *            The time window of the values that can be checked.
+     * @param generationCount
+     *            The number of generations of the window (at least 2).
+     * @param generationExpectedInsertions
+     *            The expected insertions of each generation.
+     * @param fpp
+     *            The combined false positive probability of all generations.
+     */
+    public LocalRotatingBloomFilter(@NotNull Funnel<T> funnel, long windowMillis, int generationCount,
+            int generationExpectedInsertions, double fpp) {
+        notNullOf(funnel, "funnel");
+        isTrue(windowMillis > 0, "windowMillis must be greater than 0");
+        isTrue(generationCount >= 2, "generationCount must be greater than or equal to 2");
+        isTrue(generationExpectedInsertions > 0, "generationExpectedInsertions must be greater than 0");
+        // The oldest generation is partially in the window.
+        this.generationMillis = Math.max(1L, windowMillis / (generationCount - 1));
+        this.generations = new AtomicReferenceArray<>(generationCount);
+        this.bloomConfig = new BloomConfig<>(funnel, generationExpectedInsertions, fpp / generationCount);
+    }
+
+    /**
+     * Add the value to the current generation and determines whether it might
+     * have been added to any generation of the window before.
+     *
+     * @param value
+     * @return true if the value might have been added before.
+     */
+    public boolean checkAndAdd(T value) {
+        return checkAndAdd(value, currentTimeMillis());
+    }
+
+    boolean checkAndAdd(T value, long nowMillis) {
+        int[] offsets = bloomConfig.murmurHashOffset(value);
+        long epoch = nowMillis / generationMillis;
+        int count = generations.length();
+
+        // Check the previous generations of the window.
+        for (int i = 1; i < count; i++) {
+            Generation generation = generations.get(slot(epoch - i));
+            if (nonNull(generation) && generation.epoch == epoch - i && generation.containsAll(offsets)) {
+                addTo(current(epoch), offsets);
+                return true;
+            }
+        }
+        // Check and add to the current generation.
+        return !addTo(current(epoch), offsets);
+    }
+
+    private Generation current(long epoch) {
+        int slot = slot(epoch);
+        for (;;) {
+            Generation generation = generations.get(slot);
+            // The later generation is used directly when the thread with the
+            // stale time arrives after the rotation.
+            if (nonNull(generation) && generation.epoch >= epoch) {
+                return generation;
+            }
+            // The expired generation is replaced by the new one.
+            Generation newGeneration = new Generation(epoch, bloomConfig.getBitSize());
+            if (generations.compareAndSet(slot, generation, newGeneration)) {
+                return newGeneration;
+            }
+        }
+    }
+
+    /**
+     * @return true if any bit was newly set.
+     */
+    private boolean addTo(Generation generation, int[] offsets) {
+        boolean added = false;
+        for (int offset : offsets) {
+            added |= generation.set(offset);
+        }
+        return added;
+    }
+
+    private int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) generations.length());
+    }
+
+    static class Generation {
+        private final long epoch;
+        private final AtomicLongArray bits;
+
+        Generation(long epoch, int bitSize) {
+            this.epoch = epoch;
+            this.bits = new AtomicLongArray((int) ((bitSize + 63L) >>> 6));
+        }
+
+        boolean containsAll(int[] offsets) {
+            for (int offset : offsets) {
+                if ((bits.get(offset >>> 6) & (1L << offset)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the bit was newly set.
+         */
+        boolean set(int offset) {
+            int index = offset >>> 6;
+            long mask = 1L << offset;
+            for (;;) {
+                long current = bits.get(index);
+                if ((current & mask) != 0) {
+                    return false;
+                }
+                if (bits.compareAndSet(index, current, current | mask)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+}
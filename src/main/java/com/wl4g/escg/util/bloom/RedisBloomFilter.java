@@ -17,17 +17,22 @@ package com.wl4g.escg.util.bloom;
 
 import static com.wl4g.infra.common.lang.Assert2.notNullOf;
 import static com.wl4g.infra.common.log.SmartLoggerFactory.getLogger;
+import static java.util.Collections.singletonList;
 
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.validation.constraints.NotNull;
 
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import com.google.common.hash.Funnel;
 import com.google.common.hash.Hashing;
 import com.wl4g.infra.common.log.SmartLogger;
 
+import reactor.core.publisher.Mono;
+
 /**
  * {@link RedisBloomFilter}
  * 
@@ -85,75 +90,68 @@ import com.wl4g.infra.common.log.SmartLogger;
 public class RedisBloomFilter<T> {
 
     private final SmartLogger log = getLogger(getClass());
-    // TODO use ReactiveStringRedisTemplate
-    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final RedisScript<Long> checkAndSetScript;
     private final BloomConfig<T> bloomConfig;
 
-    public RedisBloomFilter(@NotNull StringRedisTemplate redisTemplate, @NotNull BloomConfig<T> bloomConfig) {
+    public RedisBloomFilter(@NotNull ReactiveStringRedisTemplate redisTemplate, @NotNull RedisScript<Long> checkAndSetScript,
+            @NotNull BloomConfig<T> bloomConfig) {
         this.redisTemplate = notNullOf(redisTemplate, "redisTemplate");
+        this.checkAndSetScript = notNullOf(checkAndSetScript, "checkAndSetScript");
         this.bloomConfig = notNullOf(bloomConfig, "bloomConfig");
     }
 
     /**
-     * Add value based on given bloom filter configuration.
+     * Add the value and determines whether it might have been added before,
+     * all the offsets are tested and set atomically in a single round trip by
+     * the lua script, so that the concurrent requests of the same value will
+     * never be both treated as absent.
      * 
      * @param key
      * @param value
+     * @param expireAtMillis
+     *            The expiration timestamp of the bloom key when it's created,
+     *            less than or equal to 0 means never expire.
+     * @return true if the value might have been added before.
      */
-    public void bloomAdd(String key, T value) {
-        log.debug("bloomAdd {}: {}", key, value);
-
-        int[] offset = bloomConfig.murmurHashOffset(value);
-        for (int i : offset) {
-            redisTemplate.opsForValue().setBit(key, i, true);
-        }
+    public Mono<Boolean> bloomCheckAndAdd(String key, T value, long expireAtMillis) {
+        return bloomCheckAndAdd(singletonList(key), value, expireAtMillis);
     }
 
     /**
-     * Determines whether a value exists based on the given bloom filter
-     * configuration.
+     * Add the value to the first bloom key and determines whether it might
+     * have been added to any of the bloom keys before, e.g. the time bucketed
+     * bloom filters. Note: In the redis cluster, the keys must be in the same
+     * slot (e.g. with the same hash tag).
      * 
-     * @param key
+     * @param keys
+     *            The bloom keys, the value is only added to the first.
      * @param value
+     * @param expireAtMillis
+     *            The expiration timestamp of the first bloom key when it's
+     *            created, less than or equal to 0 means never expire.
+     * @return true if the value might have been added before.
      */
-    public boolean bloomExist(String key, T value) {
-        log.debug("bloomExist {}: {}", key, value);
+    public Mono<Boolean> bloomCheckAndAdd(List<String> keys, T value, long expireAtMillis) {
+        log.debug("bloomCheckAndAdd {}: {}", keys, value);
 
         int[] offset = bloomConfig.murmurHashOffset(value);
+        List<String> args = new ArrayList<>(offset.length + 1);
+        args.add(String.valueOf(expireAtMillis));
         for (int i : offset) {
-            if (!redisTemplate.opsForValue().getBit(key, i)) {
-                return false;
-            }
+            args.add(String.valueOf(i));
         }
-
-        return true;
-    }
-
-    /**
-     * Expiration bloom filter elements.
-     * 
-     * @param key
-     * @param value
-     */
-    public void bloomExpire(String key, long expireMs) {
-        log.debug("bloomExpire {}", key);
-        // In order to allow setting the expiration time, the key needs to be
-        // initialized when it does not exist.
-        if (!redisTemplate.hasKey(key)) {
-            redisTemplate.opsForValue().setBit(key, 0, true);
-        }
-        redisTemplate.opsForValue().getOperations().expire(key, expireMs, TimeUnit.SECONDS);
+        return redisTemplate.execute(checkAndSetScript, keys, args).next().map(existed -> existed == 1L);
     }
 
     /**
      * Remove bloom filter elements.
      * 
      * @param key
-     * @param value
      */
-    public void bloomRemove(String key) {
+    public Mono<Boolean> bloomRemove(String key) {
         log.debug("bloomRemove {}", key);
-        redisTemplate.opsForValue().getOperations().delete(key);
+        return redisTemplate.delete(key).map(deleted -> deleted > 0);
     }
 
     /**
@@ -228,6 +226,14 @@ public class RedisBloomFilter<T> {
             this.numHashFunctions = optimalNumOfHashFunctions(expectedInsertions, bitSize);
         }
 
+        public int getNumHashFunctions() {
+            return numHashFunctions;
+        }
+
+        public int getBitSize() {
+            return bitSize;
+        }
+
         public int[] murmurHashOffset(T value) {
             int[] offset = new int[numHashFunctions];
             long hash64 = Hashing.murmur3_128().hashObject(value, funnel).asLong();
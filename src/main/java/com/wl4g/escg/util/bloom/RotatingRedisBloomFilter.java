@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.bloom;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+import static com.wl4g.infra.common.lang.FastTimeClock.currentTimeMillis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.google.common.hash.Funnel;
+import com.wl4g.escg.util.bloom.RedisBloomFilter.BloomConfig;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The ring of time bucketed redis bloom filters, the values are added to the
+ * bloom filter of the current bucket, and checked against all the buckets of
+ * the window. Each bucket key expires at the end of the window after the
+ * bucket, so the old buckets are cleaned up naturally one by one, instead of
+ * the whole history vanishes at once.
+ *
+ * <p>
+ * Each bucket is sized for the expected insertions of a bucket, with the false
+ * positive probability of (fpp / bucketCount), so that the combined false
+ * positive probability of checking all the buckets is still about the fpp.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-07 v1.0.0
+ * @since v1.0.0
+ */
+public class RotatingRedisBloomFilter<T> {
+
+    private final RedisBloomFilter<T> bloomFilter;
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final double bucketFpp;
+
+    /**
+     * @param redisTemplate
+     * @param checkAndSetScript
+     * @param funnel
+     * @param windowMillis
+     *            The time window of the values that can be checked.
+     * @param bucketMillis
+     *            The time span of each bucket.
+     * @param bucketExpectedInsertions
+     *            The expected insertions of each bucket.
+     * @param fpp
+     *            The combined false positive probability of all buckets.
+     */
+    public RotatingRedisBloomFilter(@NotNull ReactiveStringRedisTemplate redisTemplate,
+            @NotNull RedisScript<Long> checkAndSetScript, @NotNull Funnel<T> funnel, long windowMillis, long bucketMillis,
+            int bucketExpectedInsertions, double fpp) {
+        notNullOf(funnel, "funnel");
+        isTrue(windowMillis > 0, "windowMillis must be greater than 0");
+        isTrue(bucketMillis > 0, "bucketMillis must be greater than 0");
+        isTrue(bucketExpectedInsertions > 0, "bucketExpectedInsertions must be greater than 0");
+        this.windowMillis = windowMillis;
+        this.bucketMillis = bucketMillis;
+        // The window may span one more partial bucket.
+        this.bucketCount = (int) ((windowMillis + bucketMillis - 1) / bucketMillis) + 1;
+        this.bucketFpp = fpp / bucketCount;
+        this.bloomFilter = new RedisBloomFilter<>(redisTemplate, checkAndSetScript,
+                new BloomConfig<>(funnel, bucketExpectedInsertions, bucketFpp));
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public double getBucketFpp() {
+        return bucketFpp;
+    }
+
+    /**
+     * Add the value to the current bucket and determines whether it might have
+     * been added to any bucket of the window before.
+     *
+     * @param keyPrefix
+     * @param value
+     * @return true if the value might have been added before.
+     */
+    public Mono<Boolean> bloomCheckAndAdd(String keyPrefix, T value) {
+        return bloomCheckAndAdd(keyPrefix, value, currentTimeMillis());
+    }
+
+    Mono<Boolean> bloomCheckAndAdd(String keyPrefix, T value, long nowMillis) {
+        long currentBucket = getBucket(nowMillis);
+        return bloomFilter.bloomCheckAndAdd(getBucketKeys(keyPrefix, currentBucket), value, getExpireAtMillis(currentBucket));
+    }
+
+    long getBucket(long nowMillis) {
+        return nowMillis / bucketMillis;
+    }
+
+    /**
+     * Gets the expiration of the bucket key, i.e. the end of the window after
+     * the bucket, so that the values added at the end of the bucket can still
+     * be checked for the whole window.
+     */
+    long getExpireAtMillis(long bucket) {
+        return (bucket + 1) * bucketMillis + windowMillis;
+    }
+
+    /**
+     * Gets the bucket keys of the window, the current bucket is the first.
+     * All the keys are with the same hash tag of the prefix, so that they are
+     * in the same slot of the redis cluster.
+     */
+    List<String> getBucketKeys(String keyPrefix, long currentBucket) {
+        String hashTagPrefix = "{".concat(keyPrefix).concat("}:");
+        List<String> keys = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            keys.add(hashTagPrefix.concat(String.valueOf(currentBucket - i)));
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.concurrent;
+
+import static com.wl4g.infra.common.lang.Assert2.isTrue;
+import static com.wl4g.infra.common.lang.Assert2.notNullOf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * The bounded lock-free multi-producer single-consumer ring buffer, each slot
+ * has a sequence which tells whether it's writable for the producer at the
+ * index or readable for the consumer (the variant of Dmitry Vyukov's bounded
+ * queue), the producers never block and fail fast when it's full.
+ *
+ * <p>
+ * Note: The {@link #poll()} must be called by only one thread at a time.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-21 v1.0.0
+ * @since v1.0.0
+ */
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong(0);
+    private final AtomicLong consumerIndex = new AtomicLong(0);
+
+    /**
+     * @param capacity
+     *            The capacity, which is rounded up to the power of 2.
+     */
+    public MpscRingBuffer(int capacity) {
+        isTrue(capacity > 0 && capacity <= (1 << 30), "capacity must be between 1 and 2^30");
+        int size = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Offer the element by any producer thread.
+     *
+     * @return false if it's full.
+     */
+    public boolean offer(E element) {
+        notNullOf(element, "element");
+        for (;;) {
+            long index = producerIndex.get();
+            int slot = (int) (index & mask);
+            long diff = sequences.get(slot) - index;
+            if (diff == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    elements.lazySet(slot, element);
+                    // Publish the slot to the consumer.
+                    sequences.lazySet(slot, index + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The slot isn't consumed yet by the last round.
+                return false;
+            }
+            // Otherwise the slot was claimed by another producer, retry.
+        }
+    }
+
+    /**
+     * Poll the element by the only consumer thread.
+     *
+     * @return The element, or null if it's empty.
+     */
+    public @Nullable E poll() {
+        long index = consumerIndex.get();
+        int slot = (int) (index & mask);
+        if (sequences.get(slot) != index + 1) {
+            return null;
+        }
+        E element = elements.get(slot);
+        elements.lazySet(slot, null);
+        // Release the slot to the producers of the next round.
+        sequences.lazySet(slot, index + mask + 1);
+        consumerIndex.lazySet(index + 1);
+        return element;
+    }
+
+    /**
+     * Gets the approximate number of elements.
+     */
+    public int size() {
+        long size = producerIndex.get() - consumerIndex.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.http;
+
+import java.io.ByteArrayOutputStream;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The bounded capture of the body, the bytes beyond the max size are
+ * discarded (the body is still consumed by the caller), and it's marked as
+ * truncated. The buffers are only read, never released.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-17 v1.0.0
+ * @since v1.0.0
+ */
+public class BodyCapture {
+    private final int maxSize;
+    private final ByteArrayOutputStream out;
+    private boolean truncated;
+
+    public BodyCapture(int maxSize) {
+        this.maxSize = maxSize;
+        this.out = new ByteArrayOutputStream(Math.max(Math.min(maxSize, 4096), 0));
+    }
+
+    public void append(ByteBuf buf) {
+        int length = getCaptureLength(buf.readableBytes());
+        if (length > 0) {
+            byte[] bytes = new byte[length];
+            buf.getBytes(buf.readerIndex(), bytes);
+            out.write(bytes, 0, length);
+        }
+    }
+
+    public void append(DataBuffer buffer) {
+        int length = getCaptureLength(buffer.readableByteCount());
+        if (length > 0) {
+            byte[] bytes = new byte[length];
+            buffer.asByteBuffer(buffer.readPosition(), length).get(bytes);
+            out.write(bytes, 0, length);
+        }
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Whether the max size is reached, i.e. the subsequent bytes are all
+     * discarded.
+     */
+    public boolean isFull() {
+        return out.size() >= maxSize;
+    }
+
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private int getCaptureLength(int readable) {
+        int length = Math.max(Math.min(readable, maxSize - out.size()), 0);
+        if (length < readable) {
+            truncated = true;
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.net;
+
+import static java.lang.String.format;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+import javax.annotation.Nullable;
+
+import io.netty.util.NetUtil;
+
+/**
+ * The compressed binary radix (patricia) trie of IPv4/IPv6 CIDR blocks, which
+ * supports the longest prefix matching with an O(32)/O(128) bit walk. The keys
+ * are stored as two primitive longs per node, so lookups never allocate.
+ *
+ * <p>
+ * Note: Instances are not thread safe while building, after building is
+ * completed and safely published (e.g. via final or volatile field), lookups
+ * can be performed concurrently.
+ * </p>
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-04 v1.0.0
+ * @since v1.0.0
+ */
+public class CidrTrie<V> {
+
+    private Node<V> ipv4Root;
+    private Node<V> ipv6Root;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Put the CIDR block (e.g: 10.0.0.0/8, 2001:db8::/32) or single IP address
+     * with the associated value, The value of the same block will be replaced.
+     *
+     * @param cidr
+     * @param value
+     * @return
+     */
+    public CidrTrie<V> put(String cidr, V value) {
+        if (isNull(value)) {
+            throw new IllegalArgumentException("The value of cidr must not be null");
+        }
+        String ip = cidr.trim();
+        int prefixLength = -1;
+        int slash = ip.indexOf('/');
+        if (slash > 0) {
+            try {
+                prefixLength = Integer.parseInt(ip.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(format("Invalid cidr prefix length of '%s'", cidr));
+            }
+            ip = ip.substring(0, slash).trim();
+        }
+        byte[] address = NetUtil.createByteArrayFromIpAddressString(ip);
+        if (isNull(address)) {
+            throw new IllegalArgumentException(format("Invalid cidr address of '%s'", cidr));
+        }
+        int maxBits = address.length * 8;
+        if (prefixLength < 0) {
+            prefixLength = maxBits;
+        }
+        if (prefixLength > maxBits) {
+            throw new IllegalArgumentException(format("Invalid cidr prefix length of '%s'", cidr));
+        }
+        return put(address, prefixLength, value);
+    }
+
+    public CidrTrie<V> put(byte[] address, int prefixLength, V value) {
+        long hi = high(address), lo = low(address);
+        hi &= maskHigh(prefixLength);
+        lo &= maskLow(prefixLength);
+        if (address.length == 4) {
+            ipv4Root = insert(ipv4Root, hi, lo, prefixLength, value);
+        } else {
+            ipv6Root = insert(ipv6Root, hi, lo, prefixLength, value);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the value of the longest matching prefix of the address.
+     *
+     * @param address
+     * @return
+     */
+    public @Nullable V get(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            // The hashCode of Inet4Address is the IPv4 address itself, which
+            // avoids the clone allocation of getAddress().
+            return getIPv4(address.hashCode());
+        }
+        return get(address.getAddress());
+    }
+
+    public @Nullable V get(byte[] address) {
+        if (address.length == 4) {
+            return lookup(ipv4Root, high(address), 0L);
+        }
+        return lookup(ipv6Root, high(address), low(address));
+    }
+
+    public @Nullable V getIPv4(int address) {
+        return lookup(ipv4Root, (address & 0xFFFFFFFFL) << 32, 0L);
+    }
+
+    public boolean contains(InetAddress address) {
+        return nonNull(get(address));
+    }
+
+    /**
+     * Parse the dotted decimal IPv4 address without allocation.
+     *
+     * @param ip
+     * @return The unsigned IPv4 address, or -1 if it's not a valid IPv4
+     *         address.
+     */
+    public static long parseIPv4(CharSequence ip) {
+        long address = 0L;
+        int octets = 0, octet = -1;
+        for (int i = 0, len = ip.length(); i <= len; i++) {
+            char c = i < len ? ip.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                // The leading zeros are ambiguous (octal), e.g: 010
+                if (octet == 0 || (octet = (octet < 0 ? 0 : octet * 10) + (c - '0')) > 255) {
+                    return -1L;
+                }
+            } else if (c == '.' && octet >= 0 && octets < 4) {
+                address = (address << 8) | octet;
+                ++octets;
+                octet = -1;
+            } else {
+                return -1L;
+            }
+        }
+        return octets == 4 ? address : -1L;
+    }
+
+    private Node<V> insert(Node<V> root, long hi, long lo, int length, V value) {
+        if (isNull(root)) {
+            ++size;
+            return new Node<>(hi, lo, length, value);
+        }
+        Node<V> parent = null;
+        Node<V> node = root;
+        while (true) {
+            int common = Math.min(commonPrefixLength(hi, lo, node.hi, node.lo), Math.min(length, node.length));
+            Node<V> replacement;
+            if (common == node.length) {
+                if (length == node.length) { // Same block
+                    if (isNull(node.value)) {
+                        ++size;
+                    }
+                    node.value = value;
+                    return root;
+                }
+                // The node is the prefix of the new key, descend.
+                boolean right = bitAt(hi, lo, node.length);
+                Node<V> child = right ? node.right : node.left;
+                if (isNull(child)) {
+                    ++size;
+                    node.setChild(right, new Node<>(hi, lo, length, value));
+                    return root;
+                }
+                parent = node;
+                node = child;
+                continue;
+            } else if (common == length) {
+                // The new key is the prefix of the node, insert above.
+                replacement = new Node<>(hi, lo, length, value);
+                replacement.setChild(bitAt(node.hi, node.lo, length), node);
+            } else {
+                // Diverged, split with the glue node.
+                replacement = new Node<>(hi & maskHigh(common), lo & maskLow(common), common, null);
+                boolean right = bitAt(hi, lo, common);
+                replacement.setChild(right, new Node<>(hi, lo, length, value));
+                replacement.setChild(!right, node);
+            }
+            ++size;
+            if (isNull(parent)) {
+                return replacement;
+            }
+            parent.setChild(parent.right == node, replacement);
+            return root;
+        }
+    }
+
+    private static <V> V lookup(Node<V> node, long hi, long lo) {
+        V matched = null;
+        while (nonNull(node)) {
+            if (((hi ^ node.hi) & maskHigh(node.length)) != 0 || ((lo ^ node.lo) & maskLow(node.length)) != 0) {
+                break;
+            }
+            if (nonNull(node.value)) {
+                matched = node.value;
+            }
+            if (node.length >= 128) {
+                break;
+            }
+            node = bitAt(hi, lo, node.length) ? node.right : node.left;
+        }
+        return matched;
+    }
+
+    private static int commonPrefixLength(long hi1, long lo1, long hi2, long lo2) {
+        long x = hi1 ^ hi2;
+        if (x != 0) {
+            return Long.numberOfLeadingZeros(x);
+        }
+        return 64 + Long.numberOfLeadingZeros(lo1 ^ lo2);
+    }
+
+    private static boolean bitAt(long hi, long lo, int index) {
+        if (index < 64) {
+            return (hi & (1L << (63 - index))) != 0;
+        }
+        return (lo & (1L << (127 - index))) != 0;
+    }
+
+    static long maskHigh(int length) {
+        if (length <= 0) {
+            return 0L;
+        }
+        return length >= 64 ? -1L : -1L << (64 - length);
+    }
+
+    static long maskLow(int length) {
+        if (length <= 64) {
+            return 0L;
+        }
+        return length >= 128 ? -1L : -1L << (128 - length);
+    }
+
+    private static long high(byte[] address) {
+        long v = 0L;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (i < address.length ? (address[i] & 0xFFL) : 0L);
+        }
+        return v;
+    }
+
+    private static long low(byte[] address) {
+        long v = 0L;
+        for (int i = 8; i < 16; i++) {
+            v = (v << 8) | (i < address.length ? (address[i] & 0xFFL) : 0L);
+        }
+        return v;
+    }
+
+    private static class Node<V> {
+        private final long hi;
+        private final long lo;
+        private final int length;
+        private V value;
+        private Node<V> left;
+        private Node<V> right;
+
+        Node(long hi, long lo, int length, V value) {
+            this.hi = hi;
+            this.lo = lo;
+            this.length = length;
+            this.value = value;
+        }
+
+        void setChild(boolean right, Node<V> child) {
+            if (right) {
+                this.right = child;
+            } else {
+                this.left = child;
+            }
+        }
+    }
+
+}
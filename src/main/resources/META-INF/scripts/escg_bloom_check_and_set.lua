@@ -0,0 +1,40 @@
+-- The bloom filter check-and-set in a single round trip. KEYS[1] is the bloom
+-- key to be added (e.g. the current time bucket), the others are only checked
+-- (e.g. the previous time buckets). Returns 1 if the value might have been
+-- added to any of the keys, otherwise returns 0.
+local expire_at = tonumber(ARGV[1])
+
+local function all_set(bloom_key)
+  for i = 2, #ARGV do
+    if redis.call("getbit", bloom_key, ARGV[i]) == 0 then
+      return false
+    end
+  end
+  return true
+end
+
+local existed = 0
+for k = 2, #KEYS do
+  if all_set(KEYS[k]) then
+    existed = 1
+    break
+  end
+end
+
+local bloom_key = KEYS[1]
+local added = 0
+for i = 2, #ARGV do
+  if redis.call("setbit", bloom_key, ARGV[i], 1) == 0 then
+    added = 1
+  end
+end
+if added == 0 then
+  existed = 1
+end
+
+-- Sets the expiration only when the bloom key has been created.
+if expire_at > 0 and redis.call("pttl", bloom_key) == -1 then
+  redis.call("pexpireat", bloom_key, expire_at)
+end
+
+return existed
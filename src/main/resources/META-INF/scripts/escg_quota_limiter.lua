@@ -0,0 +1,13 @@
+-- The quota limiter counter of the current cycle, the expiration is aligned
+-- to the end of the cycle on first creation, so expired cycles never pile up.
+local counter_key = KEYS[1]
+
+local expire_at = tonumber(ARGV[1])
+local requested = tonumber(ARGV[2])
+
+local accumulated = redis.call("incrby", counter_key, requested)
+if accumulated == requested then
+  redis.call("pexpireat", counter_key, expire_at)
+end
+
+return accumulated
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.wl4g.escg.ipfilter.IpFilterConnectionCustomizer.IpFilterChannelHandler;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IPSubnet;
+import com.wl4g.escg.ipfilter.feed.IpListFeedManager;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * {@link IpFilterConnectionCustomizerTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-14 v1.0.0
+ * @since v1.0.0
+ */
+public class IpFilterConnectionCustomizerTests {
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+    private IpFilterChannelHandler handler;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+
+        IpFilterProperties ipFilterConfig = new IpFilterProperties();
+        ipFilterConfig.getDefaultStrategy().setIPSubnets(singletonList(new IPSubnet(false, asList("1.2.3.0/24", "2001:db8::/32"))));
+        this.handler = new IpFilterChannelHandler(new IpSubnetMatcher(ipFilterConfig.getDefaultStrategy(), mockMetricsFacade,
+                new IpListFeedManager(ipFilterConfig, mockMetricsFacade, null)), mockMetricsFacade);
+    }
+
+    @Test
+    public void testRejectDeniedConnection() throws Exception {
+        AtomicBoolean activated = new AtomicBoolean(false);
+        EmbeddedChannel channel = newChannel("1.2.3.4", activated);
+        assertFalse(channel.isOpen());
+        assertFalse(activated.get());
+
+        channel = newChannel("2001:db8::1", activated);
+        assertFalse(channel.isOpen());
+        assertFalse(activated.get());
+    }
+
+    @Test
+    public void testPassAllowedConnection() throws Exception {
+        AtomicBoolean activated = new AtomicBoolean(false);
+        EmbeddedChannel channel = newChannel("8.8.8.8", activated);
+        assertTrue(channel.isOpen());
+        assertTrue(activated.get());
+        // The handler is removed after checked.
+        assertNull(channel.pipeline().get(IpFilterConnectionCustomizer.HANDLER_NAME));
+    }
+
+    EmbeddedChannel newChannel(String remoteIp, AtomicBoolean activated) throws Exception {
+        InetSocketAddress remoteAddress = new InetSocketAddress(remoteIp, 12345);
+        EmbeddedChannel channel = new EmbeddedChannel(false, false) {
+            @Override
+            protected SocketAddress remoteAddress0() {
+                return remoteAddress;
+            }
+        };
+        channel.pipeline().addLast(IpFilterConnectionCustomizer.HANDLER_NAME, handler);
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelActive(ChannelHandlerContext ctx) throws Exception {
+                activated.set(true);
+                super.channelActive(ctx);
+            }
+        });
+        channel.register();
+        return channel;
+    }
+
+}
@@ -37,8 +37,11 @@ import org.springframework.mock.web.server.MockServerWebExchange;
 
 import com.wl4g.escg.ipfilter.config.IpFilterProperties;
 import com.wl4g.escg.ipfilter.config.IpFilterProperties.IPSubnet;
+import com.wl4g.escg.ipfilter.feed.IpListFeedManager;
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
 import com.wl4g.escg.mock.MockGatewayFilterChain;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
 
 import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
@@ -117,12 +120,86 @@ public class IpSubnetFilterFactoryTests {
         Assertions.assertFalse(allowed);
     }
 
+    @Test
+    public void testNotAllowedWithIPv6Reject() {
+        List<IPSubnet> subnets = new ArrayList<>();
+        subnets.add(new IPSubnet(false, asList("2001:db8::/32")));
+
+        IpSubnetFilterFactory.Config config = new IpSubnetFilterFactory.Config();
+        config.setIPSubnets(subnets);
+
+        Assertions.assertFalse(doTestIpFilter(config, "2001:db8:1::1"));
+        Assertions.assertTrue(doTestIpFilter(config, "2001:db9::1"));
+        Assertions.assertTrue(doTestIpFilter(config, "::1"));
+    }
+
+    @Test
+    public void testNotAllowedWithForwardHeader() {
+        List<IPSubnet> subnets = new ArrayList<>();
+        subnets.add(new IPSubnet(false, asList("1.2.3.0/24")));
+
+        IpSubnetFilterFactory.Config config = new IpSubnetFilterFactory.Config();
+        config.setIPSubnets(subnets);
+
+        Assertions.assertFalse(doTestIpFilter(config, "10.0.0.1", "1.2.3.4"));
+        Assertions.assertTrue(doTestIpFilter(config, "1.2.3.4", "10.0.0.1"));
+        // The invalid header value is skipped.
+        Assertions.assertFalse(doTestIpFilter(config, "1.2.3.4", "not-an-ip"));
+    }
+
+    @Test
+    public void testForwardHeaderOnlyHonoredFromTrustedProxy() {
+        List<IPSubnet> subnets = new ArrayList<>();
+        subnets.add(new IPSubnet(false, asList("1.2.3.0/24")));
+
+        IpSubnetFilterFactory.Config config = new IpSubnetFilterFactory.Config();
+        config.setIPSubnets(subnets);
+        List<String> trustedProxies = asList("10.0.0.0/8");
+
+        // The untrusted peer can't forge the client address.
+        Assertions.assertTrue(doTestIpFilter(config, trustedProxies, "8.8.8.8", "1.2.3.4"));
+        Assertions.assertFalse(doTestIpFilter(config, trustedProxies, "10.0.0.1", "1.2.3.4"));
+        // The forged hops on the left of the chain are ignored.
+        Assertions.assertTrue(doTestIpFilter(config, trustedProxies, "10.0.0.1", "1.2.3.4, 8.8.8.8, 10.0.0.2"));
+        Assertions.assertFalse(doTestIpFilter(config, trustedProxies, "10.0.0.1", "8.8.8.8, 1.2.3.4, 10.0.0.2"));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedForwardHeaderNames() {
+        List<IPSubnet> subnets = new ArrayList<>();
+        subnets.add(new IPSubnet(false, asList("1.2.3.0/24")));
+
+        IpSubnetFilterFactory.Config config = new IpSubnetFilterFactory.Config();
+        config.setIPSubnets(subnets);
+        // The route only looks up its own forward headers.
+        config.setForwardHeaderNames(asList("X-Real-IP"));
+        Assertions.assertTrue(doTestIpFilter(config, "10.0.0.1", "1.2.3.4"));
+        config.setForwardHeaderNames(asList("X-Real-IP", "X-Forwarded-For"));
+        Assertions.assertFalse(doTestIpFilter(config, "10.0.0.1", "1.2.3.4"));
+    }
+
     boolean doTestIpFilter(IpSubnetFilterFactory.Config config, String remoteIp) {
+        return doTestIpFilter(config, remoteIp, null);
+    }
+
+    boolean doTestIpFilter(IpSubnetFilterFactory.Config config, String remoteIp, String forwardedFor) {
+        return doTestIpFilter(config, asList("0.0.0.0/0", "::/0"), remoteIp, forwardedFor);
+    }
+
+    boolean doTestIpFilter(
+            IpSubnetFilterFactory.Config config,
+            List<String> trustedProxies,
+            String remoteIp,
+            String forwardedFor) {
         AtomicBoolean allowedFlag = new AtomicBoolean(false);
 
-        MockServerHttpRequest request = MockServerHttpRequest.get("http://httpbin.org/hello")
-                .remoteAddress(IpSubnetFilterFactory.createInetSocketAddress(remoteIp, 0, false))
-                .build();
+        MockServerHttpRequest.BaseBuilder<?> builder = MockServerHttpRequest.get("http://httpbin.org/hello")
+                .remoteAddress(IpSubnetFilterFactory.createInetSocketAddress(remoteIp, 0, false));
+        if (forwardedFor != null) {
+            builder.header("X-Forwarded-For", forwardedFor);
+        }
+        MockServerHttpRequest request = builder.build();
         MockServerWebExchange exchange = MockServerWebExchange.from(request);
 
         // Add route to attributes.
@@ -134,7 +211,11 @@ public class IpSubnetFilterFactoryTests {
                 .build();
         exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
 
-        IpSubnetFilterFactory factory = new IpSubnetFilterFactory(new IpFilterProperties(), mockMetricsFacade);
+        IpFilterProperties ipFilterConfig = new IpFilterProperties();
+        ClientAddressProperties clientAddressConfig = new ClientAddressProperties();
+        clientAddressConfig.setTrustedProxies(trustedProxies);
+        IpSubnetFilterFactory factory = new IpSubnetFilterFactory(ipFilterConfig, mockMetricsFacade,
+                new IpListFeedManager(ipFilterConfig, mockMetricsFacade, null), new ClientAddressResolver(clientAddressConfig));
 
         GatewayFilter tailFilter = (_exchange, chain) -> {
             System.out.println(">>>>> Accpeted !");
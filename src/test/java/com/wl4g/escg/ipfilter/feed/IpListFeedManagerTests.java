@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter.feed;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.sun.net.httpserver.HttpServer;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IpListFeedProperties;
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IpListFeedType;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * {@link IpListFeedManagerTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-12 v1.0.0
+ * @since v1.0.0
+ */
+public class IpListFeedManagerTests {
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+    private HttpServer mockFeedServer;
+    private final AtomicInteger feedDownloads = new AtomicInteger(0);
+    private volatile String feedContent = "1.2.3.0/24\n";
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+
+        // The local stand-in of the HTTP feed, which supports the ETag.
+        this.mockFeedServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mockFeedServer.createContext("/drop.txt", exchange -> {
+            String etag = "\"" + Integer.toHexString(feedContent.hashCode()) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                feedDownloads.incrementAndGet();
+                byte[] body = feedContent.getBytes(UTF_8);
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        mockFeedServer.start();
+    }
+
+    @AfterEach
+    public void destroy() {
+        mockFeedServer.stop(0);
+    }
+
+    @Test
+    public void testReloadHttpFeed() throws Exception {
+        IpListFeedProperties feedConfig = new IpListFeedProperties();
+        feedConfig.setName("drop");
+        feedConfig.setType(IpListFeedType.HTTP);
+        feedConfig.setLocation("http://127.0.0.1:" + mockFeedServer.getAddress().getPort() + "/drop.txt");
+        IpListFeedManager manager = newFeedManager(feedConfig);
+        IpListFeed feed = manager.getFeed("drop");
+
+        manager.reload(feed);
+        assertTrue(feed.contains(IpListFeedTests.ipv4("1.2.3.4")));
+        // Not modified.
+        manager.reload(feed);
+        assertEquals(1, feedDownloads.get());
+
+        feedContent = "5.6.7.0/24\n";
+        manager.reload(feed);
+        assertEquals(2, feedDownloads.get());
+        assertFalse(feed.contains(IpListFeedTests.ipv4("1.2.3.4")));
+        assertTrue(feed.contains(IpListFeedTests.ipv4("5.6.7.8")));
+    }
+
+    @Test
+    public void testReloadFileFeed() throws Exception {
+        Path file = Files.createTempFile("drop", ".txt");
+        try {
+            Files.write(file, "10.0.0.0/8 ; private\n".getBytes(UTF_8));
+            IpListFeedProperties feedConfig = new IpListFeedProperties();
+            feedConfig.setName("file-drop");
+            feedConfig.setLocation(file.toString());
+            IpListFeedManager manager = newFeedManager(feedConfig);
+            IpListFeed feed = manager.getFeed("file-drop");
+
+            manager.reload(feed);
+            assertTrue(feed.contains(IpListFeedTests.ipv4("10.1.2.3")));
+            assertThrows(IllegalArgumentException.class, () -> manager.getFeed("no-such-feed"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    IpListFeedManager newFeedManager(IpListFeedProperties feedConfig) {
+        IpFilterProperties ipFilterConfig = new IpFilterProperties();
+        ipFilterConfig.getFeeds().add(feedConfig);
+        return new IpListFeedManager(ipFilterConfig, mockMetricsFacade, null);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.ipfilter.feed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.wl4g.escg.ipfilter.config.IpFilterProperties.IpListFeedProperties;
+import com.wl4g.escg.ipfilter.feed.IpListFeed.UpdateResult;
+
+/**
+ * {@link IpListFeedTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-12 v1.0.0
+ * @since v1.0.0
+ */
+public class IpListFeedTests {
+
+    @Test
+    public void testDeltaUpdateAndRebuild() throws Exception {
+        IpListFeed feed = new IpListFeed(new IpListFeedProperties(), 2);
+        assertFalse(feed.contains(ipv4("1.2.3.4")));
+
+        UpdateResult result = feed.update(entries("1.2.3.0/24", "2001:db8::/32"));
+        assertFalse(result.isRebuilt());
+        assertTrue(feed.contains(ipv4("1.2.3.4")));
+        assertTrue(feed.contains(InetAddress.getByName("2001:db8::1").getAddress()));
+
+        // Unchanged.
+        assertNull(feed.update(entries("1.2.3.0/24", "2001:db8::/32")));
+
+        // The delta exceeded.
+        result = feed.update(entries("1.2.3.0/24", "2001:db8::/32", "5.6.7.8"));
+        assertTrue(result.isRebuilt());
+        assertEquals(1, result.getAdded());
+        assertTrue(feed.contains(ipv4("5.6.7.8")));
+
+        // Added into the delta.
+        result = feed.update(entries("1.2.3.0/24", "2001:db8::/32", "5.6.7.8", "9.9.9.9", "bad-entry"));
+        assertFalse(result.isRebuilt());
+        assertEquals(1, result.getInvalid());
+        assertTrue(feed.contains(ipv4("9.9.9.9")));
+        assertTrue(feed.contains(ipv4("1.2.3.4")));
+
+        // Removed.
+        result = feed.update(entries("9.9.9.9"));
+        assertTrue(result.isRebuilt());
+        assertTrue(result.isRemoved());
+        assertFalse(feed.contains(ipv4("1.2.3.4")));
+        assertFalse(feed.contains(ipv4("5.6.7.8")));
+        assertTrue(feed.contains(ipv4("9.9.9.9")));
+        assertEquals(1, feed.size());
+    }
+
+    @Test
+    public void testParseEntries() throws Exception {
+        Set<String> entries = IpListFeedManager
+                .parseEntries(new StringReader("# The drop list\n\n1.10.16.0/20 ; SBL256894\n  2.56.192.0/22  \n::1 # local\n"));
+        assertEquals(entries("1.10.16.0/20", "2.56.192.0/22", "::1"), entries);
+    }
+
+    static int ipv4(String ip) throws Exception {
+        return InetAddress.getByName(ip).hashCode();
+    }
+
+    static Set<String> entries(String... entries) {
+        return new HashSet<>(Arrays.asList(entries));
+    }
+
+}
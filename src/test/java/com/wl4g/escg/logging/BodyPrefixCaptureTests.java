@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * {@link BodyPrefixCaptureTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-22 v1.0.0
+ * @since v1.0.0
+ */
+public class BodyPrefixCaptureTests {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Test
+    public void testCapturePrefixAndPassThrough() {
+        List<String> captured = new ArrayList<>();
+        BodyPrefixCapture capture = new BodyPrefixCapture(4, prefix -> captured.add(new String(prefix, UTF_8)));
+
+        List<String> chunks = capture.capture(body("abc", "def", "ghi")).map(this::toString).collectList().block();
+        assertEquals(asList("abc", "def", "ghi"), chunks);
+        assertEquals(singletonList("abcd"), captured);
+
+        // The callback is invoked at most once.
+        capture.complete();
+        assertEquals(1, captured.size());
+    }
+
+    @Test
+    public void testCaptureShortAndEmptyBody() {
+        List<String> captured = new ArrayList<>();
+        BodyPrefixCapture capture = new BodyPrefixCapture(1024, prefix -> captured.add(new String(prefix, UTF_8)));
+        capture.capture(body("ab", "c")).blockLast();
+        assertEquals(singletonList("abc"), captured);
+
+        captured.clear();
+        capture = new BodyPrefixCapture(1024, prefix -> captured.add(new String(prefix, UTF_8)));
+        capture.capture(Flux.<DataBuffer> empty()).blockLast();
+        assertEquals(singletonList(""), captured);
+    }
+
+    @Test
+    public void testCompleteBeforeBodyTerminated() {
+        List<String> captured = new ArrayList<>();
+        BodyPrefixCapture capture = new BodyPrefixCapture(1024, prefix -> captured.add(new String(prefix, UTF_8)));
+        // e.g. The record is completed by the response logging filter first.
+        List<String> chunks = capture.capture(body("ab", "c")).map(chunk -> {
+            capture.complete();
+            return toString(chunk);
+        }).collectList().block();
+        assertEquals(asList("ab", "c"), chunks);
+        assertEquals(singletonList("ab"), captured);
+    }
+
+    private Flux<DataBuffer> body(String... chunks) {
+        return Flux.fromArray(chunks).map(chunk -> bufferFactory.wrap(chunk.getBytes(UTF_8)));
+    }
+
+    private String toString(DataBuffer buffer) {
+        return buffer.toString(buffer.readPosition(), buffer.readableByteCount(), UTF_8);
+    }
+
+}
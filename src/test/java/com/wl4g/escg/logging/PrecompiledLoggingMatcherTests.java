@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.google.common.base.Predicates;
+import com.wl4g.escg.logging.PrecompiledLoggingMatcher.Kind;
+import com.wl4g.escg.logging.access.AccessLogSampler;
+import com.wl4g.escg.logging.access.AccessLogWriter;
+import com.wl4g.escg.logging.config.LoggingProperties;
+import com.wl4g.escg.logging.config.LoggingProperties.AccessLogProperties;
+import com.wl4g.escg.logging.config.LoggingProperties.TailSamplingProperties;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+import com.wl4g.infra.common.web.WebUtils.WebRequestExtractor;
+import com.wl4g.infra.context.utils.web.ReactiveRequestExtractor;
+import com.wl4g.infra.context.web.matcher.SpelRequestMatcher;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * {@link PrecompiledLoggingMatcherTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-23 v1.0.0
+ * @since v1.0.0
+ */
+public class PrecompiledLoggingMatcherTests {
+
+    @Test
+    public void testAnalyzeConstant() {
+        assertEquals(Kind.CONSTANT, PrecompiledLoggingMatcher.analyze("#{true}"));
+        assertEquals(Kind.CONSTANT, PrecompiledLoggingMatcher.analyze("#{1 > 0 and 'a' == 'a'}"));
+    }
+
+    @Test
+    public void testAnalyzeRouteOnly() {
+        assertEquals(Kind.ROUTE, PrecompiledLoggingMatcher.analyze("#{routeId.get().test('my-route')}"));
+        assertEquals(Kind.ROUTE, PrecompiledLoggingMatcher.analyze("#{#routeId.get().test('my-route')}"));
+    }
+
+    @Test
+    public void testAnalyzeRequest() {
+        assertEquals(Kind.REQUEST,
+                PrecompiledLoggingMatcher.analyze("#{$defaultLogHeader.or($defaultLogQuery).test($request)}"));
+        assertEquals(Kind.REQUEST,
+                PrecompiledLoggingMatcher.analyze("#{routeId.get().test('my-route') and $defaultLogHeader.test($request)}"));
+        assertEquals(Kind.REQUEST, PrecompiledLoggingMatcher.analyze("#{T(java.lang.Math).random() > 0.5}"));
+    }
+
+    @Test
+    public void testMatchesConstantWithoutEvaluation() {
+        CountingLoggingMatcher matcher = new CountingLoggingMatcher("#{1 > 0 and 'a' == 'a'}");
+        assertEquals(Kind.CONSTANT, matcher.getKind());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(matcher.matches(newExchange("my-route"), "my-route"));
+        }
+        assertEquals(0, matcher.evaluated.get());
+    }
+
+    @Test
+    public void testMatchesRouteEvaluatedOncePerRoute() {
+        CountingLoggingMatcher matcher = new CountingLoggingMatcher("#{routeId.get().test('my-route')}");
+        assertEquals(Kind.ROUTE, matcher.getKind());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(matcher.matches(newExchange("my-route"), "my-route"));
+            assertFalse(matcher.matches(newExchange("other-route"), "other-route"));
+        }
+        assertEquals(2, matcher.evaluated.get());
+    }
+
+    @Test
+    public void testMatchesRequestEvaluatedPerExchange() {
+        CountingLoggingMatcher matcher = new CountingLoggingMatcher("#{#root != null}");
+        assertEquals(Kind.REQUEST, matcher.getKind());
+        for (int i = 0; i < 10; i++) {
+            matcher.matches(newExchange("my-route"), "my-route");
+        }
+        assertEquals(10, matcher.evaluated.get());
+    }
+
+    @Test
+    public void testMatchesEquivalentToSpel() {
+        SpelRequestMatcher requestMatcher = new SpelRequestMatcher(emptyList());
+        for (String expression : asList("#{true}", "#{false}", "#{1 > 0 and 'a' == 'b'}", "#{routeId.get().test('my-route')}",
+                "#{#routeId.get().test('my-route') or false}", "#{#root != null}")) {
+            PrecompiledLoggingMatcher matcher = new PrecompiledLoggingMatcher(requestMatcher, expression);
+            for (String routeId : asList("my-route", "other-route")) {
+                ServerWebExchange exchange = newExchange(routeId);
+                Predicate<String> predicate = Predicates.equalTo(routeId);
+                Map<String, Supplier<Predicate<String>>> routePredicates = singletonMap(BasedLoggingGlobalFilter.VAR_ROUTE_ID,
+                        () -> predicate);
+                boolean expected = requestMatcher.matches(new ReactiveRequestExtractor(exchange.getRequest()), expression,
+                        routePredicates);
+                // Repeated to hit the cached decisions.
+                for (int i = 0; i < 2; i++) {
+                    assertEquals(expected, matcher.matches(exchange, routeId), expression + " of " + routeId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLoggingDecisionSharedByRequestAndResponseFilters() throws Exception {
+        LoggingProperties loggingConfig = new LoggingProperties();
+        loggingConfig.setPreferOpenMatchExpression("#{routeId.get().test('my-route')}");
+        IamGatewayMetricsFacade metricsFacade = newMetricsFacade();
+        ClientAddressResolver clientAddressResolver = new ClientAddressResolver(new ClientAddressProperties());
+        AccessLogWriter accessLogWriter = new AccessLogWriter(new AccessLogProperties(), metricsFacade);
+        RequestLoggingGlobalFilter requestFilter = new RequestLoggingGlobalFilter(loggingConfig, clientAddressResolver,
+                accessLogWriter);
+        ResponseLoggingGlobalFilter responseFilter = new ResponseLoggingGlobalFilter(loggingConfig, clientAddressResolver,
+                accessLogWriter, new AccessLogSampler(new TailSamplingProperties(), metricsFacade));
+
+        ServerWebExchange exchange = newExchange("my-route");
+        assertTrue(requestFilter.isLoggingRequest(exchange));
+        assertEquals(Boolean.TRUE, exchange.getAttribute(BasedLoggingGlobalFilter.KEY_LOGGING_DECISION));
+
+        // The response filter reuses the decision of the exchange, rather
+        // than evaluating against the (e.g. rewritten) route again.
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, newRoute("other-route"));
+        assertTrue(responseFilter.isLoggingRequest(exchange));
+        assertFalse(responseFilter.isLoggingRequest(newExchange("other-route")));
+    }
+
+    private IamGatewayMetricsFacade newMetricsFacade() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+        IamGatewayMetricsFacade metricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        metricsFacade.afterPropertiesSet();
+        return metricsFacade;
+    }
+
+    private ServerWebExchange newExchange(String routeId) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress("1.2.3.4", 0))
+                .build());
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, newRoute(routeId));
+        return exchange;
+    }
+
+    private Route newRoute(String routeId) {
+        return Route.async().asyncPredicate(AsyncPredicate.from(e -> true)).id(routeId).uri("http://httpbin.org/").build();
+    }
+
+    static class CountingLoggingMatcher extends PrecompiledLoggingMatcher {
+        private final AtomicInteger evaluated = new AtomicInteger(0);
+
+        CountingLoggingMatcher(String expression) {
+            super(new SpelRequestMatcher(emptyList()), expression);
+        }
+
+        @Override
+        boolean evaluate(
+                WebRequestExtractor extractor,
+                String expression,
+                Map<String, Supplier<Predicate<String>>> routePredicates) {
+            evaluated.incrementAndGet();
+            return super.evaluate(extractor, expression, routePredicates);
+        }
+    }
+
+}
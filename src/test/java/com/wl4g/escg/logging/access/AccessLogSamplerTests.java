@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging.access;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.wl4g.escg.logging.config.LoggingProperties.TailSamplingProperties;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * {@link AccessLogSamplerTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-24 v1.0.0
+ * @since v1.0.0
+ */
+public class AccessLogSamplerTests {
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+    }
+
+    @Test
+    public void testRetainAllIfDisabled() {
+        TailSamplingProperties config = newConfig(0d, 1);
+        config.setEnabled(false);
+        AccessLogSampler sampler = new AccessLogSampler(config, mockMetricsFacade);
+        for (int i = 0; i < 10; i++) {
+            AccessLogRecord record = newRecord(200, 10);
+            assertTrue(sampler.sample(record));
+            assertNull(record.getSampledBy());
+        }
+    }
+
+    @Test
+    public void testAlwaysRetainFailed() {
+        AccessLogSampler sampler = new AccessLogSampler(newConfig(0d, 1), mockMetricsFacade);
+        for (int i = 0; i < 100; i++) {
+            AccessLogRecord record = newRecord(502, 10);
+            assertTrue(sampler.sample(record));
+            assertEquals(AccessLogSampler.DECISION_ERROR, record.getSampledBy());
+        }
+        AccessLogRecord record = newRecord(200, 10);
+        record.setError(true);
+        assertTrue(sampler.sample(record));
+        assertEquals(AccessLogSampler.DECISION_ERROR, record.getSampledBy());
+    }
+
+    @Test
+    public void testRetainSlowAndDiscardNormal() {
+        AccessLogSampler sampler = new AccessLogSampler(newConfig(0d, 100), mockMetricsFacade);
+        AccessLogRecord slow = newRecord(200, 1500);
+        assertTrue(sampler.sample(slow));
+        assertEquals(AccessLogSampler.DECISION_SLOW, slow.getSampledBy());
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(sampler.sample(newRecord(200, 10)));
+        }
+    }
+
+    @Test
+    public void testLimitSampledPerRoute() {
+        AccessLogSampler sampler = new AccessLogSampler(newConfig(1d, 5), mockMetricsFacade);
+        int retained = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sampler.sample(newRecord(200, 10))) {
+                ++retained;
+            }
+        }
+        // The burst of the bucket, and at most one refilled token.
+        assertTrue(retained >= 5 && retained <= 6, "retained: " + retained);
+
+        // The other routes have the separate buckets.
+        AccessLogRecord record = newRecord(200, 10);
+        record.setRouteId("other-route");
+        assertTrue(sampler.sample(record));
+    }
+
+    private TailSamplingProperties newConfig(double percentage, int maxRecordsPerRoutePerSecond) {
+        TailSamplingProperties config = new TailSamplingProperties();
+        config.setEnabled(true);
+        config.setSlowThreshold(Duration.ofMillis(1000));
+        config.setPercentage(percentage);
+        config.setMaxRecordsPerRoutePerSecond(maxRecordsPerRoutePerSecond);
+        return config;
+    }
+
+    private AccessLogRecord newRecord(int status, long costTime) {
+        AccessLogRecord record = new AccessLogRecord();
+        record.setRouteId("test-route");
+        record.setMethod("GET");
+        record.setPath("/test");
+        record.setStatus(status);
+        record.setCostTime(costTime);
+        return record;
+    }
+
+}
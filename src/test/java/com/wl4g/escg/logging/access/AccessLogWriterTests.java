@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.logging.access;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wl4g.escg.logging.config.LoggingProperties.AccessLogProperties;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * {@link AccessLogWriterTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-21 v1.0.0
+ * @since v1.0.0
+ */
+public class AccessLogWriterTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+    }
+
+    @Test
+    public void testEncodeByVerboseLevel() throws Exception {
+        JsonNode coarse = encode(newRecord(1));
+        assertEquals("GET", coarse.get("method").asText());
+        assertEquals(200, coarse.get("status").asInt());
+        assertFalse(coarse.has("traceId"));
+        assertFalse(coarse.has("requestHeaders"));
+
+        JsonNode generic = encode(newRecord(5));
+        assertEquals("trace-1", generic.get("traceId").asText());
+        assertEquals("application/json", generic.get("requestHeaders").get("Content-Type").asText());
+        assertFalse(generic.get("requestHeaders").has("X-Custom"));
+
+        JsonNode fine = encode(newRecord(10));
+        assertEquals(2, fine.get("requestHeaders").get("X-Custom").size());
+        assertTrue(fine.get("requestBody").asText().contains("\"foo\":\"bar\""));
+        assertEquals("text/plain", fine.get("responseHeaders").get("Content-Type").asText());
+    }
+
+    @Test
+    public void testCopyLoggedHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "application/json");
+        headers.add("X-Custom", "a");
+        headers.add("X-Custom", "b");
+
+        HttpHeaders generic = AccessLogWriter.copyLoggedHeaders(headers, false);
+        assertEquals("application/json", generic.getFirst("Content-Type"));
+        assertNull(generic.get("X-Custom"));
+
+        HttpHeaders all = AccessLogWriter.copyLoggedHeaders(headers, true);
+        assertEquals(headers, all);
+        // Detached from the live headers of the exchange.
+        headers.add("X-Custom", "c");
+        headers.remove("Content-Type");
+        assertEquals(2, all.get("X-Custom").size());
+        assertEquals("application/json", all.getFirst("Content-Type"));
+    }
+
+    @Test
+    public void testDropOnFull() {
+        AccessLogProperties config = new AccessLogProperties();
+        config.setBufferSize(2);
+        AccessLogWriter writer = new AccessLogWriter(config, mockMetricsFacade);
+        assertTrue(writer.offer(newRecord(1)));
+        assertTrue(writer.offer(newRecord(1)));
+        assertFalse(writer.offer(newRecord(1)));
+    }
+
+    @Test
+    public void testWriteAndRotate(@TempDir Path directory) throws Exception {
+        AccessLogProperties config = new AccessLogProperties();
+        config.setDirectory(directory.toString());
+        config.setMaxFileSize(DataSize.ofBytes(512));
+        config.setMaxFiles(2);
+        AccessLogWriter writer = new AccessLogWriter(config, mockMetricsFacade);
+        for (int i = 0; i < 20; i++) {
+            writer.write(newRecord(10));
+        }
+        writer.flush();
+
+        List<String> lines = Files.readAllLines(directory.resolve(AccessLogWriter.FILE_NAME), UTF_8);
+        assertFalse(lines.isEmpty());
+        for (String line : lines) {
+            assertEquals("/foo/bar", MAPPER.readTree(line).get("path").asText());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> rotated = files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.startsWith(AccessLogWriter.ROTATED_FILE_PREFIX))
+                    .collect(Collectors.toList());
+            // The oldest rotated files are deleted beyond the max.
+            assertTrue(rotated.size() >= 1 && rotated.size() <= 2, "rotated: " + rotated);
+        }
+    }
+
+    private JsonNode encode(AccessLogRecord record) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AccessLogWriter.encode(record, out);
+        return MAPPER.readTree(out.toByteArray());
+    }
+
+    private AccessLogRecord newRecord(int verboseLevel) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.add("Content-Type", "application/json");
+        requestHeaders.add("X-Custom", "a");
+        requestHeaders.add("X-Custom", "b");
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.add("Content-Type", "text/plain");
+
+        AccessLogRecord record = new AccessLogRecord();
+        record.setTimestamp(System.currentTimeMillis());
+        record.setVerboseLevel(verboseLevel);
+        record.setRouteId("test-route");
+        record.setTraceId("trace-1");
+        record.setMethod("GET");
+        record.setPath("/foo/bar");
+        record.setQuery("a=1");
+        record.setClientHost("1.2.3.4");
+        record.setRequestHeaders(requestHeaders);
+        record.setStatus(200);
+        record.setCostTime(12);
+        record.setResponseHeaders(responseHeaders);
+        if (verboseLevel >= 8) {
+            record.setRequestBody("{\"foo\":\"bar\"}".getBytes(UTF_8));
+        }
+        return record;
+    }
+
+}
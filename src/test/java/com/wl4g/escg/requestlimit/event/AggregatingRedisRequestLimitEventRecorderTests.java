@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+
+/**
+ * {@link AggregatingRedisRequestLimitEventRecorderTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-03 v1.0.0
+ * @since v1.0.0
+ */
+public class AggregatingRedisRequestLimitEventRecorderTests {
+
+    @Test
+    public void testNoHitsLostWhileDraining() throws Exception {
+        AggregatingRedisRequestLimitEventRecorder recorder = new AggregatingRedisRequestLimitEventRecorder(
+                new IamRequestLimiterProperties());
+        int threads = 4;
+        int hitsPerThread = 50_000;
+        AtomicLong flushed = new AtomicLong(0);
+        AtomicBoolean recording = new AtomicBoolean(true);
+        CountDownLatch startLatch = new CountDownLatch(1);
+
+        // Drains concurrently with the recording, like the scheduled flush.
+        Thread flusher = new Thread(() -> {
+            while (recording.get()) {
+                recorder.drainPendingHits().values().forEach(flushed::addAndGet);
+            }
+        });
+        flusher.start();
+
+        List<Thread> recorders = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int j = 0; j < hitsPerThread; j++) {
+                    recorder.onRateLimitHit(new RateLimitHitEvent("route1", "key" + (j % 8), "/test"));
+                }
+            });
+            t.start();
+            recorders.add(t);
+        }
+        startLatch.countDown();
+        for (Thread t : recorders) {
+            t.join();
+        }
+        recording.set(false);
+        flusher.join();
+        recorder.drainPendingHits().values().forEach(flushed::addAndGet);
+
+        assertEquals((long) threads * hitsPerThread, flushed.get());
+        assertEquals(0, recorder.getDroppedEvents());
+        // The idle keys are evicted by the draining.
+        assertEquals(0, recorder.getPendingKeys());
+    }
+
+    @Test
+    public void testDropNewKeysBeyondMaxPendingKeys() {
+        IamRequestLimiterProperties config = new IamRequestLimiterProperties();
+        config.getEventRecorder().getAggregation().setMaxPendingKeys(2);
+        AggregatingRedisRequestLimitEventRecorder recorder = new AggregatingRedisRequestLimitEventRecorder(config);
+        for (int i = 0; i < 3; i++) {
+            recorder.onRateLimitHit(new RateLimitHitEvent("route1", "key" + i, "/test"));
+        }
+        recorder.onRateLimitHit(new RateLimitHitEvent("route1", "key0", "/test"));
+
+        assertEquals(2, recorder.getPendingKeys());
+        assertEquals(1, recorder.getDroppedEvents());
+        assertEquals(3L, recorder.drainPendingHits().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+}
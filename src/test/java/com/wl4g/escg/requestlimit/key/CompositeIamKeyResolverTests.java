@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.key;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_MATCHED_PATH_ATTR;
+
+import java.security.Principal;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.google.common.hash.Hashing;
+import com.wl4g.escg.requestlimit.IamRequestLimiterFilterFactory.Config.KeyResolverStrategyConfig;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.requestlimit.key.CompositeIamKeyResolver.CompositeKeyResolverStrategy;
+import com.wl4g.escg.requestlimit.key.IamKeyResolver.KeyResolverProvider;
+import com.wl4g.escg.requestlimit.key.IamKeyResolver.KeyResolverStrategy;
+import com.wl4g.escg.requestlimit.key.PathIamKeyResolver.PathKeyResolverStrategy;
+import com.wl4g.infra.common.framework.operator.GenericOperatorAdapter;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * {@link CompositeIamKeyResolverTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-12 v1.0.0
+ * @since v1.0.0
+ */
+public class CompositeIamKeyResolverTests {
+
+    private final GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>> adapter = new GenericOperatorAdapter<KeyResolverProvider, IamKeyResolver<? extends KeyResolverStrategy>>(
+            asList(new PathIamKeyResolver(), new PrincipalIamKeyResolver())) {
+    };
+    private final CompositeIamKeyResolver resolver = new CompositeIamKeyResolver(() -> adapter);
+
+    @Test
+    public void testResolveInOrder() {
+        ServerWebExchange exchange = newExchange("tenant-a", "/orders/1001");
+
+        StepVerifier.create(resolver.resolve(newStrategy(false, newPrincipalResolver(), newPathResolver(false)), exchange))
+                .expectNext("8#tenant-a:12#/orders/1001")
+                .verifyComplete();
+        StepVerifier.create(resolver.resolve(newStrategy(false, newPathResolver(false), newPrincipalResolver()), exchange))
+                .expectNext("12#/orders/1001:8#tenant-a")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testResolveHashed() {
+        ServerWebExchange exchange = newExchange("tenant-a", "/orders/1001");
+        String expected = Hashing.murmur3_128().hashString("8#tenant-a:12#/orders/1001", UTF_8).toString();
+
+        StepVerifier.create(resolver.resolve(newStrategy(true, newPrincipalResolver(), newPathResolver(false)), exchange))
+                .expectNext(expected)
+                .verifyComplete();
+        assertEquals(32, expected.length());
+    }
+
+    @Test
+    public void testResolveEmptyIfAnyDelegateEmpty() {
+        // No principal bound, e.g. the anonymous request.
+        ServerWebExchange exchange = newExchange(null, "/orders/1001");
+
+        StepVerifier.create(resolver.resolve(newStrategy(true, newPathResolver(false), newPrincipalResolver()), exchange))
+                .verifyComplete();
+        StepVerifier.create(resolver.resolve(newStrategy(false, newPathResolver(false), newPrincipalResolver()), exchange))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testResolveTemplatedPath() {
+        ServerWebExchange exchange = newExchange("tenant-a", "/orders/1001");
+        exchange.getAttributes().put(GATEWAY_PREDICATE_MATCHED_PATH_ATTR, "/orders/{id}");
+
+        StepVerifier.create(resolver.resolve(newStrategy(false, newPrincipalResolver(), newPathResolver(true)), exchange))
+                .expectNext("8#tenant-a:12#/orders/{id}")
+                .verifyComplete();
+        StepVerifier.create(resolver.resolve(newStrategy(false, newPrincipalResolver(), newPathResolver(false)), exchange))
+                .expectNext("8#tenant-a:12#/orders/1001")
+                .verifyComplete();
+
+        // The actual path is used if the route has no path predicate.
+        PathKeyResolverStrategy pathStrategy = new PathKeyResolverStrategy();
+        pathStrategy.setTemplated(true);
+        StepVerifier.create(new PathIamKeyResolver().resolve(pathStrategy, newExchange("tenant-a", "/orders/1001")))
+                .expectNext("/orders/1001")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testJoinKeysContainingDelimiter() {
+        assertNotEquals(CompositeIamKeyResolver.joinKeys(":", asList("a:b", "c")),
+                CompositeIamKeyResolver.joinKeys(":", asList("a", "b:c")));
+        assertNotEquals(CompositeIamKeyResolver.joinKeys("", asList("ab", "c")),
+                CompositeIamKeyResolver.joinKeys("", asList("a", "bc")));
+        assertEquals("3#a:b:1#c", CompositeIamKeyResolver.joinKeys(":", asList("a:b", "c")));
+    }
+
+    @Test
+    public void testNestedCompositeRejected() {
+        CompositeKeyResolverStrategy strategy = new CompositeKeyResolverStrategy();
+        strategy.setResolvers(asList(newPrincipalResolver(), newResolverConfig(KeyResolverProvider.Composite, emptyMap())));
+
+        assertThrows(IllegalArgumentException.class, () -> strategy.applyDefaultIfNecessary(new IamRequestLimiterProperties()));
+        // Not applied.
+        assertThrows(IllegalStateException.class, () -> strategy.getDelegates());
+    }
+
+    private ServerWebExchange newExchange(String principalName, String path) {
+        ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://httpbin.org" + path).build());
+        if (principalName == null) {
+            return exchange;
+        }
+        return exchange.mutate().principal(Mono.just((Principal) () -> principalName)).build();
+    }
+
+    private CompositeKeyResolverStrategy newStrategy(boolean hashed, KeyResolverStrategyConfig... resolvers) {
+        CompositeKeyResolverStrategy strategy = new CompositeKeyResolverStrategy();
+        strategy.setResolvers(asList(resolvers));
+        strategy.setHashed(hashed);
+        strategy.applyDefaultIfNecessary(new IamRequestLimiterProperties());
+        return strategy;
+    }
+
+    private KeyResolverStrategyConfig newPrincipalResolver() {
+        return newResolverConfig(KeyResolverProvider.Principal, emptyMap());
+    }
+
+    private KeyResolverStrategyConfig newPathResolver(boolean templated) {
+        return newResolverConfig(KeyResolverProvider.Path, singletonMap("templated", templated));
+    }
+
+    private KeyResolverStrategyConfig newResolverConfig(KeyResolverProvider provider, Map<String, Object> properties) {
+        KeyResolverStrategyConfig resolver = new KeyResolverStrategyConfig();
+        resolver.setProvider(provider);
+        resolver.setProperties(properties);
+        return resolver;
+    }
+
+}
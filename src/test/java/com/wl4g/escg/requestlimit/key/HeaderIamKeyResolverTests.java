@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.key;
+
+import static java.util.Collections.singletonList;
+import static java.util.Objects.nonNull;
+
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import com.wl4g.escg.requestlimit.key.HeaderIamKeyResolver.HeaderKeyResolverStrategy;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+
+import reactor.test.StepVerifier;
+
+/**
+ * {@link HeaderIamKeyResolverTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-22 v1.0.0
+ * @since v1.0.0
+ */
+public class HeaderIamKeyResolverTests {
+
+    private final HeaderIamKeyResolver resolver = new HeaderIamKeyResolver(
+            new ClientAddressResolver(new ClientAddressProperties()));
+
+    @Test
+    public void testResolveHeader() {
+        HeaderKeyResolverStrategy strategy = new HeaderKeyResolverStrategy(singletonList("X-Tenant-Id"));
+        StepVerifier.create(resolver.resolve(strategy, newExchange("10.0.0.1", "tenant-a")))
+                .expectNext("tenant-a")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFallbackToPeerAddress() {
+        HeaderKeyResolverStrategy strategy = new HeaderKeyResolverStrategy(singletonList("X-Tenant-Id"));
+        // The forwarded chain isn't resolved unless it's opted in.
+        StepVerifier.create(resolver.resolve(strategy, newExchange("10.0.0.1", null))).expectNext("10.0.0.1").verifyComplete();
+    }
+
+    @Test
+    public void testFallbackToClientAddress() {
+        HeaderKeyResolverStrategy strategy = new HeaderKeyResolverStrategy(singletonList("X-Tenant-Id"));
+        strategy.setClientAddressFallback(true);
+        // The peer is a trusted proxy.
+        StepVerifier.create(resolver.resolve(strategy, newExchange("10.0.0.1", null))).expectNext("1.2.3.4").verifyComplete();
+    }
+
+    private MockServerWebExchange newExchange(String peerHost, String tenantId) {
+        MockServerHttpRequest.BaseBuilder<?> builder = MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress(peerHost, 0))
+                .header("X-Forwarded-For", "1.2.3.4");
+        if (nonNull(tenantId)) {
+            builder.header("X-Tenant-Id", tenantId);
+        }
+        return MockServerWebExchange.from(builder.build());
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.key;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import com.wl4g.escg.requestlimit.key.IpRangeIamKeyResolver.IpRange;
+import com.wl4g.escg.requestlimit.key.IpRangeIamKeyResolver.IpRangeKeyResolverStrategy;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+
+import reactor.test.StepVerifier;
+
+/**
+ * {@link IpRangeIamKeyResolverTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-22 v1.0.0
+ * @since v1.0.0
+ */
+public class IpRangeIamKeyResolverTests {
+
+    private final IpRangeIamKeyResolver resolver = new IpRangeIamKeyResolver(
+            new ClientAddressResolver(new ClientAddressProperties()));
+
+    @Test
+    public void testResolveNamedRange() {
+        IpRangeKeyResolverStrategy strategy = newStrategy();
+        StepVerifier.create(resolver.resolve(strategy, newExchange("203.0.113.7"))).expectNext("office").verifyComplete();
+        StepVerifier.create(resolver.resolve(strategy, newExchange("2001:db8:ffff::1"))).expectNext("office").verifyComplete();
+        // The longest matching range wins.
+        StepVerifier.create(resolver.resolve(strategy, newExchange("203.0.113.200"))).expectNext("lab").verifyComplete();
+    }
+
+    @Test
+    public void testResolveNamedRangeOfForwardedClient() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                // The peer is a trusted proxy.
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 0))
+                .header("X-Forwarded-For", "203.0.113.7")
+                .build());
+        StepVerifier.create(resolver.resolve(newStrategy(), exchange)).expectNext("office").verifyComplete();
+    }
+
+    @Test
+    public void testResolveIpv4FallbackNetwork() {
+        StepVerifier.create(resolver.resolve(newStrategy(), newExchange("198.51.100.77")))
+                .expectNext("198.51.100.0/24")
+                .verifyComplete();
+
+        IpRangeKeyResolverStrategy strategy = newStrategy();
+        strategy.setIpv4FallbackPrefixLength(16);
+        StepVerifier.create(resolver.resolve(strategy, newExchange("198.51.100.77"))).expectNext("198.51.0.0/16").verifyComplete();
+    }
+
+    @Test
+    public void testResolveIpv6FallbackNetwork() {
+        StepVerifier.create(resolver.resolve(newStrategy(), newExchange("2001:db9:1:2:3:4:5:6")))
+                .expectNext("2001:db9:1:2::/64")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testResolveUnresolvedAddress() {
+        // e.g: The unix domain socket.
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello").build());
+        StepVerifier.create(resolver.resolve(newStrategy(), exchange)).verifyComplete();
+    }
+
+    private IpRangeKeyResolverStrategy newStrategy() {
+        IpRangeKeyResolverStrategy strategy = new IpRangeKeyResolverStrategy();
+        strategy.setRanges(asList(new IpRange("office", asList("203.0.113.0/24", "2001:db8::/32")),
+                new IpRange("lab", singletonList("203.0.113.128/25"))));
+        return strategy;
+    }
+
+    private MockServerWebExchange newExchange(String peerHost) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress(peerHost, 0))
+                .build());
+    }
+
+}
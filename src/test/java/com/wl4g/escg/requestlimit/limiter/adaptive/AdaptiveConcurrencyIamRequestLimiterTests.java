@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.limiter.adaptive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.requestlimit.config.IamRequestLimiterProperties;
+import com.wl4g.escg.requestlimit.configurer.LimiterStrategyConfigurer;
+import com.wl4g.escg.requestlimit.limiter.quota.RedisQuotaRequestLimiterStrategy;
+import com.wl4g.escg.requestlimit.limiter.rate.RedisRateRequestLimiterStrategy;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link AdaptiveConcurrencyIamRequestLimiterTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-06 v1.0.0
+ * @since v1.0.0
+ */
+public class AdaptiveConcurrencyIamRequestLimiterTests {
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+    private AtomicInteger loadCount;
+    private AdaptiveConcurrencyIamRequestLimiter limiter;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+
+        this.loadCount = new AtomicInteger(0);
+        this.limiter = new AdaptiveConcurrencyIamRequestLimiter(new IamRequestLimiterProperties(), new LimiterStrategyConfigurer() {
+            @Override
+            public Mono<RedisRateRequestLimiterStrategy> loadRateStrategy(String routeId, String limitKey) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<RedisQuotaRequestLimiterStrategy> loadQuotaStrategy(String routeId, String limitKey) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<AdaptiveConcurrencyRequestLimiterStrategy> loadAdaptiveStrategy(String routeId, String limitKey) {
+                loadCount.incrementAndGet();
+                if ("narrow-route".equals(routeId)) {
+                    AdaptiveConcurrencyRequestLimiterStrategy strategy = new AdaptiveConcurrencyRequestLimiterStrategy();
+                    strategy.setInitialLimit(1);
+                    strategy.setMaxLimit(1);
+                    strategy.setPartitionByLimitKey(true);
+                    return Mono.just(strategy);
+                }
+                if ("broken-route".equals(routeId)) {
+                    return Mono.error(new IllegalStateException("Unavailable"));
+                }
+                return Mono.empty();
+            }
+        }, mockMetricsFacade);
+    }
+
+    @Test
+    public void testLoadStrategyPerRoute() {
+        // The route has the strategy with limit 1.
+        assertTrue(limiter.isAllowed(null, null, "narrow-route", "user1").block().isAllowed());
+        assertFalse(limiter.isAllowed(null, null, "narrow-route", "user1").block().isAllowed());
+        // Partitioned by the limit key.
+        assertTrue(limiter.isAllowed(null, null, "narrow-route", "user2").block().isAllowed());
+
+        // The other routes use the default strategy with limit 20.
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.isAllowed(null, null, "default-route", "user1").block().isAllowed());
+        }
+        assertFalse(limiter.isAllowed(null, null, "default-route", "user1").block().isAllowed());
+    }
+
+    @Test
+    public void testCacheLoadedStrategy() {
+        for (int i = 0; i < 10; i++) {
+            limiter.isAllowed(null, null, "default-route", "user1").block();
+        }
+        // Include the absent (default) strategy.
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void testCacheDefaultStrategyOnLoadError() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.isAllowed(null, null, "broken-route", "user1").block().isAllowed());
+        }
+        // Fallback to the default strategy, and not loaded per request.
+        assertEquals(1, loadCount.get());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.requestlimit.limiter.adaptive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.wl4g.escg.requestlimit.limiter.adaptive.AdaptiveConcurrencyRequestLimiterStrategy.AdaptiveAlgorithm;
+
+/**
+ * {@link AdaptiveLimitTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-06 v1.0.0
+ * @since v1.0.0
+ */
+public class AdaptiveLimitTests {
+
+    @Test
+    public void testGradient2IncreaseWithStableLatency() {
+        AdaptiveLimit limit = new AdaptiveLimit.Gradient2Limit(20, 1, 1000, 0.2d, 1.5d, 600, 4);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(10_000_000L, limit.getLimit(), false);
+        }
+        System.out.println(limit.getLimit());
+        assertTrue(limit.getLimit() > 20);
+    }
+
+    @Test
+    public void testGradient2DecreaseWithIncreasedLatency() {
+        AdaptiveLimit limit = new AdaptiveLimit.Gradient2Limit(100, 1, 1000, 1.0d, 1.5d, 600, 0);
+        for (int i = 0; i < AdaptiveLimit.WARMUP_SAMPLES; i++) {
+            limit.onSample(10_000_000L, limit.getLimit(), false);
+        }
+        int before = limit.getLimit();
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(100_000_000L, limit.getLimit(), false);
+        }
+        System.out.println(before + " -> " + limit.getLimit());
+        assertTrue(limit.getLimit() < before);
+    }
+
+    @Test
+    public void testVegasDecreaseOnDrop() {
+        AdaptiveLimit limit = new AdaptiveLimit.VegasLimit(50, 1, 1000, 1.0d, 30);
+        limit.onSample(10_000_000L, 50, false);
+        int before = limit.getLimit();
+        limit.onSample(20_000_000L, 50, true);
+        assertTrue(limit.getLimit() < before);
+    }
+
+    @Test
+    public void testClampToMinMax() {
+        AdaptiveConcurrencyRequestLimiterStrategy strategy = new AdaptiveConcurrencyRequestLimiterStrategy();
+        strategy.setAlgorithm(AdaptiveAlgorithm.Gradient2);
+        strategy.setInitialLimit(5000);
+        strategy.setMaxLimit(100);
+        AdaptiveLimit limit = AdaptiveLimit.newLimit(strategy);
+        assertEquals(100, limit.getLimit());
+    }
+
+}
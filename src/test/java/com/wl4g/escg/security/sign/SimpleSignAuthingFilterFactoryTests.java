@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.google.common.io.BaseEncoding.base16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.mock.MockGatewayFilterChain;
+import com.wl4g.escg.requestlimit.key.PrincipalIamKeyResolver;
+import com.wl4g.escg.requestlimit.key.PrincipalIamKeyResolver.PrincipalKeyResolverStrategy;
+import com.wl4g.escg.security.config.IamSecurityProperties;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.Config;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignAlgorithm;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignHashingMode;
+import com.wl4g.infra.common.eventbus.EventBusSupport;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * {@link SimpleSignAuthingFilterFactoryTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-11 v1.0.0
+ * @since v1.0.0
+ */
+public class SimpleSignAuthingFilterFactoryTests {
+
+    private static final String TEST_APPID = "oi554a94bc416e4edd9ff963ed0e9e25e6c10545";
+    private static final String TEST_APPSECRET = "5aUpyX5X7wzC8iLgFNJuxqj3xJdNQw8yS";
+    private static final String TEST_BODY = "{\"name\":\"hello world\"}";
+
+    private SimpleSignAuthingFilterFactory factory;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+        IamGatewayMetricsFacade mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+
+        // The secret is loaded from the system properties, and the replay
+        // verification is disabled, so the redis is never connected.
+        IamSecurityProperties authingConfig = new IamSecurityProperties();
+        System.setProperty(authingConfig.getSimpleSign().getSecretStorePrefix().concat(":").concat(TEST_APPID), TEST_APPSECRET);
+        this.factory = new SimpleSignAuthingFilterFactory(authingConfig,
+                new ReactiveStringRedisTemplate(new LettuceConnectionFactory()), RedisScript.of("return 0", Long.class),
+                mockMetricsFacade, EventBusSupport.getDefault());
+    }
+
+    @Test
+    public void testPrincipalResolvedBeforeBodyVerified() {
+        MockServerWebExchange exchange = newExchange(newSign(TEST_BODY));
+        AtomicReference<String> resolvedKey = new AtomicReference<>();
+
+        StepVerifier.create(doFilter(exchange, resolvedKey)).expectComplete().verify(Duration.ofSeconds(10));
+
+        assertEquals(TEST_APPID, resolvedKey.get());
+        assertNull(exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    public void testRejectedAfterPrincipalResolved() {
+        MockServerWebExchange exchange = newExchange(newSign("other"));
+        AtomicReference<String> resolvedKey = new AtomicReference<>();
+
+        StepVerifier.create(doFilter(exchange, resolvedKey)).expectComplete().verify(Duration.ofSeconds(10));
+
+        // The key is resolved upfront, but the forged body still fails closed.
+        assertEquals(TEST_APPID, resolvedKey.get());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+
+    private Mono<Void> doFilter(MockServerWebExchange exchange, AtomicReference<String> resolvedKey) {
+        Config config = newConfig();
+        config.setSignReplayVerifyEnabled(false);
+
+        // e.g. the request limiter resolves the key before routing.
+        PrincipalIamKeyResolver keyResolver = new PrincipalIamKeyResolver();
+        GatewayFilter limitFilter = (_exchange, chain) -> keyResolver.resolve(new PrincipalKeyResolverStrategy(), _exchange)
+                .doOnNext(resolvedKey::set)
+                .then(chain.filter(_exchange));
+        // e.g. the routing filter streams the body to the upstream.
+        GatewayFilter routingFilter = (_exchange, chain) -> DataBufferUtils.join(_exchange.getRequest().getBody())
+                .doOnNext(DataBufferUtils::release)
+                .then(chain.filter(_exchange));
+
+        return new MockGatewayFilterChain(asList(factory.apply(config), limitFilter, routingFilter)).filter(exchange);
+    }
+
+    private MockServerWebExchange newExchange(String sign) {
+        MultiValueMap<String, String> queryParams = newQueryParams();
+        queryParams.add("sign", sign);
+        MockServerWebExchange exchange = MockServerWebExchange
+                .from(MockServerHttpRequest.post("http://httpbin.org/post").queryParams(queryParams).body(TEST_BODY));
+
+        // Add route to attributes.
+        // see:org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator#convertToRoute(RouteDefinition)
+        Route route = Route.async()
+                .asyncPredicate(AsyncPredicate.from(_exchange -> true))
+                .id("my-test-route")
+                .uri("http://httpbin.org/")
+                .build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+
+    private String newSign(String body) {
+        byte[] prefix = SimpleSignEngineTests.referencePlaintext(newConfig(), newQueryParams());
+        byte[] bodyBytes = body.getBytes(UTF_8);
+        byte[] plaintext = Arrays.copyOf(prefix, prefix.length + bodyBytes.length);
+        System.arraycopy(bodyBytes, 0, plaintext, prefix.length, bodyBytes.length);
+        return base16().lowerCase()
+                .encode(SimpleSignEngineTests.referenceHashing(SignAlgorithm.HS256).hashBytes(plaintext).asBytes());
+    }
+
+    private MultiValueMap<String, String> newQueryParams() {
+        MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+        queryParams.add("appId", TEST_APPID);
+        queryParams.add("nonce", "0L9GyULPfwsD3Swg");
+        queryParams.add("timestamp", "1599637679878");
+        return queryParams;
+    }
+
+    private Config newConfig() {
+        return SimpleSignEngineTests.newConfig(SignAlgorithm.HS256, SignHashingMode.UriParamsKeySortedBodyHashing);
+    }
+
+}
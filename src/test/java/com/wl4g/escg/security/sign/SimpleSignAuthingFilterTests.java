@@ -24,6 +24,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
@@ -31,13 +32,15 @@ import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.Ordered;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.security.config.IamSecurityAutoConfiguration;
 import com.wl4g.escg.security.config.IamSecurityProperties;
 import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignHashingMode;
 import com.wl4g.infra.common.eventbus.EventBusSupport;
@@ -66,7 +69,8 @@ public class SimpleSignAuthingFilterTests {
     @TestConfiguration
     public static class TestEnvParameterSimpleParamsBytesSortedHashingS256Configuration {
         private @Autowired IamSecurityProperties authingConfig;
-        private @Autowired StringRedisTemplate redisTemplate;
+        private @Autowired ReactiveStringRedisTemplate redisTemplate;
+        private @Autowired @Qualifier(IamSecurityAutoConfiguration.BEAN_SIMPLE_SIGN_BLOOM_SCRIPT) RedisScript<Long> bloomCheckAndSetScript;
         private @Autowired IamGatewayMetricsFacade metricsFacade;
         private EventBusSupport eventBus = EventBusSupport.getDefault();
 
@@ -91,7 +95,8 @@ public class SimpleSignAuthingFilterTests {
                             p -> p.path(TEST_ROUTE_PATH).filters(f -> {
                                 // for Add simple sign filter.
                                 SimpleSignAuthingFilterFactory filter = new SimpleSignAuthingFilterFactory(
-                                        new IamSecurityProperties(), redisTemplate, metricsFacade, eventBus);
+                                        new IamSecurityProperties(), redisTemplate, bloomCheckAndSetScript, metricsFacade,
+                                        eventBus);
                                 SimpleSignAuthingFilterFactory.Config config = new SimpleSignAuthingFilterFactory.Config();
                                 // custom sign parameter name.
                                 config.setSignParam("signature");
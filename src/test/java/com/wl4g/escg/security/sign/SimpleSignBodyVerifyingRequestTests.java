@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.google.common.io.BaseEncoding.base16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.util.MultiValueMap;
+
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.Config;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignAlgorithm;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignHashingMode;
+import com.wl4g.escg.security.sign.SimpleSignBodyVerifyingRequest.BodySignRejectedException;
+import com.wl4g.escg.security.sign.SimpleSignEngine.BodySigner;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * {@link SimpleSignBodyVerifyingRequestTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-11 v1.0.0
+ * @since v1.0.0
+ */
+public class SimpleSignBodyVerifyingRequestTests {
+
+    private static final byte[] TEST_APPSECRET = "5aUpyX5X7wzC8iLgFNJuxqj3xJdNQw8yS".getBytes(UTF_8);
+    private static final String TEST_BODY = "{\"name\":\"hello world\"}";
+    private static final MultiValueMap<String, String> TEST_QUERY_PARAMS = SimpleSignEngineTests.newQueryParams();
+
+    @Test
+    public void testVerifyUnreadBody() {
+        SimpleSignBodyVerifyingRequest request = newRequest(newSign(TEST_BODY));
+        assertFalse(request.isVerified());
+        StepVerifier.create(request.awaitVerified()).verifyComplete();
+        assertTrue(request.isVerified());
+    }
+
+    @Test
+    public void testRejectUnreadBody() {
+        SimpleSignBodyVerifyingRequest request = newRequest(newSign("other"));
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        StepVerifier.create(request.decorateResponse(response).setComplete())
+                .expectError(BodySignRejectedException.class)
+                .verify();
+        assertFalse(request.isVerified());
+        assertFalse(response.isCommitted());
+    }
+
+    @Test
+    public void testVerifyRetriedBody() {
+        SimpleSignBodyVerifyingRequest request = newRequest(newSign(TEST_BODY));
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(DataBufferUtils.join(request.getBody()).map(buffer -> {
+                String body = buffer.toString(UTF_8);
+                DataBufferUtils.release(buffer);
+                return body;
+            })).expectNext(TEST_BODY).verifyComplete();
+        }
+        assertTrue(request.isVerified());
+    }
+
+    @Test
+    public void testRejectCancelledBody() {
+        SimpleSignBodyVerifyingRequest request = newRequest(newSign(TEST_BODY));
+        request.getBody().take(0).subscribe();
+        StepVerifier.create(request.awaitVerified()).expectErrorMatches(ex -> ex instanceof BodySignRejectedException
+                && "incomplete_body".equals(((BodySignRejectedException) ex).getReason())).verify();
+        assertFalse(request.isVerified());
+    }
+
+    private SimpleSignBodyVerifyingRequest newRequest(String sign) {
+        BodySigner signer = SimpleSignEngine.beginBody(newConfig(), TEST_APPSECRET, TEST_QUERY_PARAMS);
+        return new SimpleSignBodyVerifyingRequest(MockServerHttpRequest.post("/test").body(TEST_BODY), signer, 1024,
+                (bodySigner, first) -> bodySigner.verify(sign) ? Mono.empty()
+                        : Mono.error(new BodySignRejectedException(HttpStatus.UNAUTHORIZED, "invalid_signature")));
+    }
+
+    private String newSign(String body) {
+        Config config = newConfig();
+        byte[] prefix = SimpleSignEngineTests.referencePlaintext(config, TEST_QUERY_PARAMS);
+        byte[] bodyBytes = body.getBytes(UTF_8);
+        byte[] plaintext = Arrays.copyOf(prefix, prefix.length + bodyBytes.length);
+        System.arraycopy(bodyBytes, 0, plaintext, prefix.length, bodyBytes.length);
+        return base16().lowerCase()
+                .encode(SimpleSignEngineTests.referenceHashing(config.getSignAlgorithm()).hashBytes(plaintext).asBytes());
+    }
+
+    private Config newConfig() {
+        return SimpleSignEngineTests.newConfig(SignAlgorithm.HS256, SignHashingMode.UriParamsKeySortedBodyHashing);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.google.common.io.BaseEncoding.base16;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.MultiValueMap;
+
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.Config;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignAlgorithm;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignHashingMode;
+
+/**
+ * The benchmark of {@link SimpleSignEngine} against the previous string
+ * concatenation and per request Guava hashing, across all the
+ * {@link SignAlgorithm} and {@link SignHashingMode} combinations, e.g. run
+ * with {@link #main(String[])} after test compiling.
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-10 v1.0.0
+ * @since v1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleSignEngineBenchmark {
+
+    @Param
+    private SignAlgorithm algorithm;
+
+    @Param
+    private SignHashingMode mode;
+
+    private Config config;
+    private MultiValueMap<String, String> queryParams;
+    private byte[] storedSecret;
+    private String sign;
+
+    @Setup
+    public void setup() {
+        this.config = SimpleSignEngineTests.newConfig(algorithm, mode);
+        this.queryParams = SimpleSignEngineTests.newQueryParams();
+        this.storedSecret = SimpleSignEngineTests.TEST_APPSECRET;
+        this.sign = base16().lowerCase().encode(SimpleSignEngine.sign(config, storedSecret, queryParams));
+    }
+
+    @Benchmark
+    public boolean engineVerify() {
+        return SimpleSignEngine.verify(config, storedSecret, queryParams, sign);
+    }
+
+    @Benchmark
+    public boolean referenceVerify() throws Exception {
+        byte[] plaintext = SimpleSignEngineTests.referencePlaintext(config, queryParams);
+        byte[] signed = SimpleSignEngineTests.referenceHashing(algorithm).hashBytes(plaintext).asBytes();
+        return MessageDigest.isEqual(signed, base16().lowerCase().decode(sign));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SimpleSignEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static com.google.common.io.BaseEncoding.base16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.Config;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignAlgorithm;
+import com.wl4g.escg.security.sign.SimpleSignAuthingFilterFactory.SignHashingMode;
+import com.wl4g.escg.security.sign.SimpleSignEngine.BodySigner;
+
+/**
+ * {@link SimpleSignEngineTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-10 v1.0.0
+ * @since v1.0.0
+ */
+public class SimpleSignEngineTests {
+
+    private static final byte[] TEST_APPSECRET = "5aUpyX5X7wzC8iLgFNJuxqj3xJdNQw8yS".getBytes(UTF_8);
+
+    @Test
+    public void testSignEqualsToReferenceHashing() {
+        MultiValueMap<String, String> queryParams = newQueryParams();
+        for (SignAlgorithm algorithm : SignAlgorithm.values()) {
+            for (SignHashingMode mode : SignHashingMode.values()) {
+                Config config = newConfig(algorithm, mode);
+                byte[] expected = referenceHashing(algorithm).hashBytes(referencePlaintext(config, queryParams)).asBytes();
+                // Repeated for the cached digests/macs.
+                for (int i = 0; i < 3; i++) {
+                    assertArrayEquals(expected, SimpleSignEngine.sign(config, TEST_APPSECRET, queryParams),
+                            algorithm + "/" + mode);
+                    assertTrue(SimpleSignEngine.verify(config, TEST_APPSECRET, queryParams, base16().lowerCase().encode(expected)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBodySignerEqualsToReferenceHashing() {
+        MultiValueMap<String, String> queryParams = newQueryParams();
+        byte[] body = new byte[10_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * 31);
+        }
+        for (SignAlgorithm algorithm : SignAlgorithm.values()) {
+            Config config = newConfig(algorithm, SignHashingMode.UriParamsKeySortedBodyHashing);
+            byte[] prefix = referencePlaintext(config, queryParams);
+            byte[] plaintext = Arrays.copyOf(prefix, prefix.length + body.length);
+            System.arraycopy(body, 0, plaintext, prefix.length, body.length);
+            String expected = base16().lowerCase().encode(referenceHashing(algorithm).hashBytes(plaintext).asBytes());
+
+            BodySigner signer = SimpleSignEngine.beginBody(config, TEST_APPSECRET, queryParams);
+            // The thread cached digests/macs are still usable.
+            assertTrue(SimpleSignEngine.verify(newConfig(algorithm, SignHashingMode.UriParamsKeySortedHashing), TEST_APPSECRET,
+                    queryParams, base16().lowerCase().encode(referenceHashing(algorithm).hashBytes(prefix).asBytes())));
+            // The copies are independent, e.g. for the retried subscriptions.
+            for (int i = 0; i < 2; i++) {
+                BodySigner copied = signer.copy();
+                for (int offset = 0; offset < body.length; offset += 4096) {
+                    copied.update(ByteBuffer.wrap(body, offset, Math.min(4096, body.length - offset)));
+                }
+                assertTrue(copied.verify(expected), algorithm.name());
+            }
+        }
+    }
+
+    @Test
+    public void testVerifyMismatched() {
+        MultiValueMap<String, String> queryParams = newQueryParams();
+        Config config = newConfig(SignAlgorithm.HS256, SignHashingMode.UriParamsKeySortedHashing);
+        String sign = base16().lowerCase().encode(SimpleSignEngine.sign(config, TEST_APPSECRET, queryParams));
+        assertTrue(SimpleSignEngine.verify(config, TEST_APPSECRET, queryParams, sign.toUpperCase()));
+        assertFalse(SimpleSignEngine.verify(config, "other".getBytes(UTF_8), queryParams, sign));
+        assertFalse(SimpleSignEngine.verify(config, TEST_APPSECRET, queryParams, sign.substring(2)));
+        assertFalse(SimpleSignEngine.verify(config, TEST_APPSECRET, queryParams, "zz".concat(sign.substring(2))));
+        assertFalse(SimpleSignEngine.verify(config, TEST_APPSECRET, queryParams, null));
+    }
+
+    @Test
+    public void testMissingRequiredParams() {
+        MultiValueMap<String, String> queryParams = newQueryParams();
+        queryParams.remove("nonce");
+        Config config = newConfig(SignAlgorithm.S256, SignHashingMode.SimpleParamsBytesSortedHashing);
+        assertThrows(IllegalArgumentException.class, () -> SimpleSignEngine.sign(config, TEST_APPSECRET, queryParams));
+    }
+
+    static MultiValueMap<String, String> newQueryParams() {
+        MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+        queryParams.add("appId", "oi554a94bc416e4edd9ff963ed0e9e25e6c10545");
+        queryParams.add("nonce", "0L9GyULPfwsD3Swg");
+        queryParams.add("timestamp", "1599637679878");
+        queryParams.add("name", "\u4e2d\u6587-\u00fc-\ud83d\ude00");
+        queryParams.add("sign", "5ac8747ccc2b1b332e8445b496d0c38529b38fba2c1b8ca8490cbf2932e06943");
+        return queryParams;
+    }
+
+    static Config newConfig(SignAlgorithm algorithm, SignHashingMode mode) {
+        Config config = new Config();
+        config.setSignAlgorithm(algorithm);
+        config.setSignHashingMode(mode);
+        config.setSignHashingIncludeParams(asList("*"));
+        config.setSignHashingRequiredIncludeParams(asList("appId", "timestamp", "nonce"));
+        return config;
+    }
+
+    /**
+     * The plain text made by string concatenation as before.
+     */
+    static byte[] referencePlaintext(Config config, MultiValueMap<String, String> queryParams) {
+        Map<String, String> params = queryParams.toSingleValueMap();
+        String[] names = SimpleSignEngine.getEffectiveHashingParamNames(config, queryParams);
+        StringBuffer signPlaintext = new StringBuffer();
+        switch (config.getSignHashingMode()) {
+        case SimpleParamsBytesSortedHashing:
+            for (String name : names) {
+                if (!config.getSignParam().equals(name)) {
+                    signPlaintext.append(params.get(name));
+                }
+            }
+            signPlaintext.append(new String(TEST_APPSECRET, UTF_8));
+            byte[] signPlainBytes = signPlaintext.toString().getBytes(UTF_8);
+            Arrays.sort(signPlainBytes);
+            return signPlainBytes;
+        default:
+            // The body is not included.
+            Arrays.sort(names);
+            for (String name : names) {
+                if (!config.getSignParam().equals(name)) {
+                    signPlaintext.append(name).append("=").append(params.get(name)).append("&");
+                }
+            }
+            signPlaintext.append(config.getSecretParam()).append("=").append(new String(TEST_APPSECRET, UTF_8));
+            return signPlaintext.toString().getBytes(UTF_8);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    static HashFunction referenceHashing(SignAlgorithm algorithm) {
+        switch (algorithm) {
+        case MD5:
+            return Hashing.md5();
+        case S1:
+            return Hashing.sha1();
+        case S256:
+            return Hashing.sha256();
+        case S384:
+            return Hashing.sha384();
+        case S512:
+            return Hashing.sha512();
+        case HMD5:
+            return Hashing.hmacMd5(TEST_APPSECRET);
+        case HS1:
+            return Hashing.hmacSha1(TEST_APPSECRET);
+        case HS256:
+            return Hashing.hmacSha256(TEST_APPSECRET);
+        default:
+            return Hashing.hmacSha512(TEST_APPSECRET);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.security.sign;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+
+import com.wl4g.escg.security.config.IamSecurityProperties.SecretStore;
+import com.wl4g.escg.security.config.IamSecurityProperties.SimpleSignAuthingProperties;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+/**
+ * {@link SimpleSignSecretStoreTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-09 v1.0.0
+ * @since v1.0.0
+ */
+public class SimpleSignSecretStoreTests {
+
+    private static final String TEST_APPID = "oi554a94bc416e4edd9ff963ed0e9e25e6c10545";
+
+    private SimpleSignAuthingProperties config;
+    private MockRedisTemplate redisTemplate;
+
+    @BeforeEach
+    public void init() {
+        this.config = new SimpleSignAuthingProperties();
+        config.setSecretStore(SecretStore.REDIS);
+        this.redisTemplate = new MockRedisTemplate();
+    }
+
+    @Test
+    public void testMergeConcurrentLoads() {
+        Sinks.One<String> stored = Sinks.one();
+        redisTemplate.storedSecret = () -> stored.asMono();
+        SimpleSignSecretStore secretStore = new SimpleSignSecretStore(config, redisTemplate);
+
+        Mono<String> load1 = secretStore.loadSecret(TEST_APPID).map(secret -> new String(secret, UTF_8)).cache();
+        Mono<String> load2 = secretStore.loadSecret(TEST_APPID).map(secret -> new String(secret, UTF_8)).cache();
+        load1.subscribe();
+        load2.subscribe();
+        stored.tryEmitValue("secret1");
+
+        assertEquals("secret1", load1.block());
+        assertEquals("secret1", load2.block());
+        assertEquals(1, redisTemplate.gets.get());
+        // Then hits the local cache.
+        assertEquals("secret1", loadSecret(secretStore));
+        assertEquals(1, redisTemplate.gets.get());
+    }
+
+    @Test
+    public void testRefreshAheadWithStaleSecret() {
+        // Every access after loaded is stale, but not yet expired.
+        config.setSecretLocalRefreshSeconds(0);
+        redisTemplate.storedSecret = () -> Mono.just("secret1");
+        SimpleSignSecretStore secretStore = new SimpleSignSecretStore(config, redisTemplate);
+        assertEquals("secret1", loadSecret(secretStore));
+        assertEquals(1, redisTemplate.gets.get());
+
+        // The stale secret is returned without waiting, and is refreshed in
+        // the background.
+        redisTemplate.storedSecret = () -> Mono.just("secret2");
+        assertEquals("secret1", loadSecret(secretStore));
+        assertEquals(2, redisTemplate.gets.get());
+        assertEquals("secret2", loadSecret(secretStore));
+    }
+
+    @Test
+    public void testNegativeCacheMissingSecret() {
+        redisTemplate.storedSecret = () -> Mono.empty();
+        SimpleSignSecretStore secretStore = new SimpleSignSecretStore(config, redisTemplate);
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(secretStore.loadSecret(TEST_APPID)).verifyComplete();
+        }
+        assertEquals(1, redisTemplate.gets.get());
+
+        // Not cached without the negative cache seconds.
+        config.setSecretNegativeCacheSeconds(0);
+        secretStore = new SimpleSignSecretStore(config, redisTemplate);
+        StepVerifier.create(secretStore.loadSecret(TEST_APPID)).verifyComplete();
+        StepVerifier.create(secretStore.loadSecret(TEST_APPID)).verifyComplete();
+        assertEquals(3, redisTemplate.gets.get());
+    }
+
+    private String loadSecret(SimpleSignSecretStore secretStore) {
+        return secretStore.loadSecret(TEST_APPID).map(secret -> new String(secret, UTF_8)).block();
+    }
+
+    static class MockRedisTemplate extends ReactiveStringRedisTemplate {
+        final AtomicInteger gets = new AtomicInteger(0);
+        volatile Supplier<Mono<String>> storedSecret = () -> Mono.empty();
+
+        MockRedisTemplate() {
+            super(new LettuceConnectionFactory());
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ReactiveValueOperations<String, String> opsForValue() {
+            return (ReactiveValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { ReactiveValueOperations.class }, (proxy, method, args) -> {
+                        if ("get".equals(method.getName()) && args.length == 1) {
+                            gets.incrementAndGet();
+                            return storedSecret.get();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.server;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+
+/**
+ * {@link ClientAddressResolverTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-13 v1.0.0
+ * @since v1.0.0
+ */
+public class ClientAddressResolverTests {
+
+    @Test
+    public void testResolveWithUntrustedPeer() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8");
+        assertEquals("8.8.8.8", resolver.resolveHost(newExchange("8.8.8.8", "X-Forwarded-For", "1.2.3.4")));
+    }
+
+    @Test
+    public void testResolveWithDefaultTrustedProxies() {
+        ClientAddressResolver resolver = new ClientAddressResolver(new ClientAddressProperties());
+        // Only the loopback and private networks are trusted by default.
+        assertEquals("8.8.8.8", resolver.resolveHost(newExchange("8.8.8.8", "X-Forwarded-For", "1.2.3.4")));
+        assertEquals("1.2.3.4", resolver.resolveHost(newExchange("127.0.0.1", "X-Forwarded-For", "1.2.3.4")));
+        assertEquals("1.2.3.4", resolver.resolveHost(newExchange("192.168.1.1", "WL-Proxy-Client-IP", "1.2.3.4")));
+    }
+
+    @Test
+    public void testResolveWithDerivedHeaderNames() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8");
+        ClientAddressResolver derived = resolver.withHeaderNames(asList("Proxy-Client-IP"));
+        MockServerWebExchange exchange = newExchange("10.0.0.1", "Proxy-Client-IP", "1.2.3.4");
+        assertEquals("1.2.3.4", derived.resolveHost(exchange));
+        // The derived resolving is not memoized for the shared resolver.
+        assertNull(exchange.getAttribute(ClientAddressResolver.CLIENT_ADDRESS_ATTR));
+        assertEquals("10.0.0.1", newResolver("10.0.0.0/8").withHeaderNames(asList("X-Real-IP")).resolveHost(exchange));
+    }
+
+    @Test
+    public void testResolveForwardedChainFromRightToLeft() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8");
+        assertEquals("8.8.8.8", resolver.resolveHost(newExchange("10.0.0.1", "X-Forwarded-For", "1.2.3.4, 8.8.8.8, 10.0.0.2")));
+        // All the hops are trusted.
+        assertEquals("10.0.0.3", resolver.resolveHost(newExchange("10.0.0.1", "X-Forwarded-For", "10.0.0.3,10.0.0.2")));
+        // Stops at the invalid hop.
+        assertEquals("10.0.0.2", resolver.resolveHost(newExchange("10.0.0.1", "X-Forwarded-For", "1.2.3.4, unknown, 10.0.0.2")));
+        // The rightmost hop is invalid.
+        assertEquals("10.0.0.1", resolver.resolveHost(newExchange("10.0.0.1", "X-Forwarded-For", "unknown")));
+    }
+
+    @Test
+    public void testResolveMultipleHeaderLines() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8");
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 0))
+                .header("X-Forwarded-For", "8.8.8.8, 10.0.0.3")
+                .header("X-Forwarded-For", "10.0.0.2")
+                .build());
+        assertEquals("8.8.8.8", resolver.resolveHost(exchange));
+    }
+
+    @Test
+    public void testResolveWithCaseInsensitiveHeaderPriority() {
+        ClientAddressProperties config = new ClientAddressProperties();
+        config.setHeaderNames(asList("X-REAL-IP", "x-real-ip", "X-Forwarded-For"));
+        ClientAddressResolver resolver = new ClientAddressResolver(config);
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 0))
+                .header("X-Forwarded-For", "8.8.8.8")
+                .header("X-Real-Ip", "1.2.3.4")
+                .build());
+        assertEquals("1.2.3.4", resolver.resolveHost(exchange));
+    }
+
+    @Test
+    public void testResolveMemoized() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8");
+        MockServerWebExchange exchange = newExchange("10.0.0.1", "X-Forwarded-For", "1.2.3.4");
+        InetAddress address = resolver.resolve(exchange);
+        assertSame(address, exchange.getAttribute(ClientAddressResolver.CLIENT_ADDRESS_ATTR));
+        assertSame(address, resolver.resolve(exchange));
+        assertSame(resolver.resolveHost(exchange), resolver.resolveHost(exchange));
+    }
+
+    @Test
+    public void testResolveWithoutRemoteAddress() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8");
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello").build());
+        assertNull(resolver.resolve(exchange));
+        assertNull(resolver.resolveHost(exchange));
+    }
+
+    @Test
+    public void testParseHop() {
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, ClientAddressResolver.parseHop(" 1.2.3.4 "));
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, ClientAddressResolver.parseHop("1.2.3.4:8080"));
+        assertEquals(16, ClientAddressResolver.parseHop("2001:db8::1").length);
+        assertEquals(16, ClientAddressResolver.parseHop("[2001:db8::1]:8080").length);
+        assertEquals(16, ClientAddressResolver.parseHop("\"[2001:db8::1]\"").length);
+        assertNull(ClientAddressResolver.parseHop("unknown"));
+        assertNull(ClientAddressResolver.parseHop("_hidden"));
+        assertNull(ClientAddressResolver.parseHop("[2001:db8::1"));
+    }
+
+    static ClientAddressResolver newResolver(String... trustedProxies) {
+        ClientAddressProperties config = new ClientAddressProperties();
+        config.setTrustedProxies(asList(trustedProxies));
+        return new ClientAddressResolver(config);
+    }
+
+    static MockServerWebExchange newExchange(String remoteIp, String headerName, String headerValue) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress(remoteIp, 0))
+                .header(headerName, headerValue)
+                .build());
+    }
+
+}
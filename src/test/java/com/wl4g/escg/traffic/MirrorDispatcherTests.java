@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.traffic.config.TrafficProperties.MirrorOverflowPolicy;
+import com.wl4g.escg.traffic.config.TrafficProperties.ReplicationProperties;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import reactor.core.publisher.Sinks;
+
+/**
+ * {@link MirrorDispatcherTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-16 v1.0.0
+ * @since v1.0.0
+ */
+public class MirrorDispatcherTests {
+
+    private static final String TARGET_URI = "http://localhost:8888/";
+
+    private PrometheusMeterRegistry meterRegistry;
+    private IamGatewayMetricsFacade mockMetricsFacade;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        this.meterRegistry = new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        });
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(meterRegistry, new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+    }
+
+    @Test
+    public void testQueueBeyondMaxInFlight() {
+        MirrorDispatcher dispatcher = newDispatcher(1, 2, MirrorOverflowPolicy.DROP_NEWEST);
+        List<Sinks.Empty<Void>> mirrors = newMirrors(3);
+        List<Integer> subscribed = new ArrayList<>();
+        for (int i = 0; i < mirrors.size(); i++) {
+            int index = i;
+            dispatcher.dispatch(TARGET_URI, mirrors.get(i).asMono().doOnSubscribe(s -> subscribed.add(index)), null);
+        }
+        assertEquals(singletonList(0), subscribed);
+
+        mirrors.get(0).tryEmitEmpty();
+        assertEquals(asList(0, 1), subscribed);
+        mirrors.get(1).tryEmitError(new IllegalStateException("Mirror failed"));
+        assertEquals(asList(0, 1, 2), subscribed);
+    }
+
+    @Test
+    public void testDropNewest() {
+        MirrorDispatcher dispatcher = newDispatcher(1, 1, MirrorOverflowPolicy.DROP_NEWEST);
+        List<Sinks.Empty<Void>> mirrors = newMirrors(3);
+        List<Integer> dropped = new ArrayList<>();
+        for (int i = 0; i < mirrors.size(); i++) {
+            int index = i;
+            dispatcher.dispatch(TARGET_URI, mirrors.get(i).asMono(), () -> dropped.add(index));
+        }
+        assertEquals(singletonList(2), dropped);
+    }
+
+    @Test
+    public void testDropOldest() {
+        MirrorDispatcher dispatcher = newDispatcher(1, 1, MirrorOverflowPolicy.DROP_OLDEST);
+        List<Sinks.Empty<Void>> mirrors = newMirrors(3);
+        List<Integer> dropped = new ArrayList<>();
+        List<Integer> subscribed = new ArrayList<>();
+        for (int i = 0; i < mirrors.size(); i++) {
+            int index = i;
+            dispatcher.dispatch(TARGET_URI, mirrors.get(i).asMono().doOnSubscribe(s -> subscribed.add(index)),
+                    () -> dropped.add(index));
+        }
+        assertEquals(singletonList(1), dropped);
+
+        mirrors.get(0).tryEmitEmpty();
+        assertEquals(asList(0, 2), subscribed);
+    }
+
+    @Test
+    public void testSampleDownWhenFull() {
+        MirrorDispatcher dispatcher = newDispatcher(1, 4, MirrorOverflowPolicy.SAMPLE_DOWN);
+        List<Sinks.Empty<Void>> mirrors = newMirrors(100);
+        List<Integer> dropped = new ArrayList<>();
+        for (int i = 0; i < mirrors.size(); i++) {
+            int index = i;
+            dispatcher.dispatch(TARGET_URI, mirrors.get(i).asMono(), () -> dropped.add(index));
+        }
+        // The 1 in-flight and at most 4 queued mirrors are admitted.
+        assertTrue(dropped.size() >= 95);
+    }
+
+    @Test
+    public void testGaugesFollowRecreatedDispatcher() {
+        MirrorDispatcher.Gauges gauges = new MirrorDispatcher.Gauges(mockMetricsFacade);
+        MirrorDispatcher dispatcher1 = newDispatcher(1, 4, MirrorOverflowPolicy.DROP_NEWEST);
+        gauges.bind(dispatcher1);
+        dispatcher1.dispatch(TARGET_URI, newMirrors(1).get(0).asMono(), null);
+        assertEquals(1d, getInFlightGauge());
+
+        // e.g. The route is refreshed.
+        MirrorDispatcher dispatcher2 = newDispatcher(1, 4, MirrorOverflowPolicy.DROP_NEWEST);
+        gauges.bind(dispatcher2);
+        assertEquals(0d, getInFlightGauge());
+        assertEquals(1, meterRegistry.find(MetricsName.TRAFFIC_REPLICATION_INFLIGHT.getName()).gauges().size());
+    }
+
+    private double getInFlightGauge() {
+        return meterRegistry.find(MetricsName.TRAFFIC_REPLICATION_INFLIGHT.getName())
+                .tags(MetricsTag.ROUTE_ID, "test-route", MetricsTag.TRAFFIC_TARGET, TARGET_URI)
+                .gauge()
+                .value();
+    }
+
+    private MirrorDispatcher newDispatcher(int maxInFlight, int maxQueueSize, MirrorOverflowPolicy overflowPolicy) {
+        ReplicationProperties config = new ReplicationProperties();
+        config.setTargetUris(singletonList(TARGET_URI));
+        config.setMaxInFlightPerTarget(maxInFlight);
+        config.setMaxQueueSizePerTarget(maxQueueSize);
+        config.setOverflowPolicy(overflowPolicy);
+        return new MirrorDispatcher("test-route", config, mockMetricsFacade);
+    }
+
+    private List<Sinks.Empty<Void>> newMirrors(int count) {
+        List<Sinks.Empty<Void>> mirrors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mirrors.add(Sinks.empty());
+        }
+        return mirrors;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.ReplicationProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.SamplingKey;
+
+/**
+ * {@link ReplicationSamplerTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-20 v1.0.0
+ * @since v1.0.0
+ */
+public class ReplicationSamplerTests {
+
+    private static final String TARGET_URI1 = "http://localhost:8888/";
+    private static final String TARGET_URI2 = "http://localhost:9999/";
+
+    @Test
+    public void testHashIntoUnitInterval() {
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            double point = ReplicationSampler.hash("user-" + i);
+            assertTrue(point >= 0d && point < 1d);
+            if (point < 0.3d) {
+                ++sampled;
+            }
+        }
+        // Uniformly distributed.
+        assertTrue(sampled > 2700 && sampled < 3300, "sampled: " + sampled);
+    }
+
+    @Test
+    public void testConsistentSamplingByHeader() {
+        ReplicationSampler sampler = newSampler(SamplingKey.HEADER, 0.5d);
+        for (int i = 0; i < 100; i++) {
+            List<String> first = sampler.sample(newExchange("X-Tenant-Id", "tenant-" + i)).block();
+            for (int j = 0; j < 10; j++) {
+                assertEquals(first, sampler.sample(newExchange("X-Tenant-Id", "tenant-" + i)).block());
+            }
+        }
+    }
+
+    @Test
+    public void testTargetPercentages() {
+        ReplicationProperties config = newConfig(SamplingKey.CLIENT_IP, 1d);
+        config.getSampling().getTargetPercentages().put(TARGET_URI2, 0d);
+        ReplicationSampler sampler = new ReplicationSampler(config, new ClientAddressResolver(new ClientAddressProperties()));
+        assertEquals(singletonList(TARGET_URI1), sampler.sample(newExchange("X-Tenant-Id", "tenant")).block());
+
+        config.getSampling().getTargetPercentages().put(TARGET_URI1, 0d);
+        assertEquals(emptyList(), sampler.sample(newExchange("X-Tenant-Id", "tenant")).block());
+    }
+
+    @Test
+    public void testFallbackToRandomWithoutKey() {
+        ReplicationSampler sampler = newSampler(SamplingKey.PRINCIPAL, 1d);
+        assertEquals(asList(TARGET_URI1, TARGET_URI2), sampler.sample(newExchange("X-Tenant-Id", "tenant")).block());
+    }
+
+    private ReplicationSampler newSampler(SamplingKey key, double percentage) {
+        return new ReplicationSampler(newConfig(key, percentage), new ClientAddressResolver(new ClientAddressProperties()));
+    }
+
+    private ReplicationProperties newConfig(SamplingKey key, double percentage) {
+        ReplicationProperties config = new ReplicationProperties();
+        config.setTargetUris(asList(TARGET_URI1, TARGET_URI2));
+        config.setPercentage(percentage);
+        config.getSampling().setKey(key);
+        config.getSampling().setHeaderName("X-Tenant-Id");
+        return config;
+    }
+
+    private MockServerWebExchange newExchange(String headerName, String headerValue) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress("1.2.3.4", 0))
+                .header(headerName, headerValue)
+                .build());
+    }
+
+}
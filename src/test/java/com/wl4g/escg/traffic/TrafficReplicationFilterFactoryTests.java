@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.cloud.gateway.config.HttpClientProperties.Pool;
+import org.springframework.cloud.gateway.config.HttpClientProperties.Pool.PoolType;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.sun.net.httpserver.HttpServer;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsName;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade.MetricsTag;
+import com.wl4g.escg.mock.MockGatewayFilterChain;
+import com.wl4g.escg.server.ClientAddressResolver;
+import com.wl4g.escg.server.config.GatewayWebServerProperties.ClientAddressProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.ReplicationProperties;
+import com.wl4g.escg.traffic.diff.ShadowResponseDiffer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * {@link TrafficReplicationFilterFactoryTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-17 v1.0.0
+ * @since v1.0.0
+ */
+public class TrafficReplicationFilterFactoryTests {
+
+    private static final String ROUTE_ID = "my-test-route";
+    private static final int RESPONSE_BODY_SIZE = 4 * 1024 * 1024;
+
+    private PrometheusMeterRegistry meterRegistry;
+    private IamGatewayMetricsFacade mockMetricsFacade;
+    private HttpServer mockTargetServer;
+    private ExecutorService mockTargetExecutor;
+    private String targetUri;
+    private String mirrorTargetUri;
+    private final BlockingQueue<MirrorResponse> responses = new LinkedBlockingQueue<>();
+    private final CountDownLatch received = new CountDownLatch(1);
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+        this.meterRegistry = new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        });
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(meterRegistry, new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+
+        // The local stand-in of the shadow target, which responds the large
+        // body that can't be buffered by the socket, fails the requests of
+        // '/error' halfway the body, and delays the requests of '/slow'.
+        this.mockTargetServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.mockTargetExecutor = Executors.newCachedThreadPool();
+        mockTargetServer.setExecutor(mockTargetExecutor);
+        mockTargetServer.createContext("/", exchange -> {
+            received.countDown();
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/slow")) {
+                try {
+                    Thread.sleep(3_000L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(200, RESPONSE_BODY_SIZE);
+            try (OutputStream out = exchange.getResponseBody()) {
+                byte[] chunk = new byte[8192];
+                for (int written = 0; written < RESPONSE_BODY_SIZE; written += chunk.length) {
+                    out.write(chunk);
+                    if (path.equals("/error")) {
+                        out.flush();
+                        // The server closes the connection on the exception.
+                        throw new IllegalStateException("Mock target failed");
+                    }
+                }
+            }
+        });
+        mockTargetServer.start();
+        this.targetUri = "http://127.0.0.1:" + mockTargetServer.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void destroy() {
+        mockTargetServer.stop(0);
+        mockTargetExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testResponseBodyDrainedWithFixedPool() throws Exception {
+        GatewayFilter filter = newFilter(targetUri + "/hello", newFixedPool(1));
+
+        // The single pooled connection is acquired by the next mirror only
+        // if the response body of the previous one is drained.
+        for (int i = 0; i < 2; i++) {
+            filter.filter(newExchange(), new MockGatewayFilterChain(emptyList())).block();
+            MirrorResponse response = responses.poll(10, TimeUnit.SECONDS);
+            assertNotNull(response, "mirror " + i);
+            assertEquals(200, response.getStatusCode());
+            // The body is discarded without copying.
+            assertNull(response.getBody());
+        }
+        awaitGauge(MetricsName.TRAFFIC_REPLICATION_POOL_ACQUIRED, 0d);
+        awaitGauge(MetricsName.TRAFFIC_REPLICATION_INFLIGHT, 0d);
+    }
+
+    @Test
+    public void testAcquiredReleasedOnError() throws Exception {
+        GatewayFilter filter = newFilter(targetUri + "/error", newFixedPool(1));
+        filter.filter(newExchange(), new MockGatewayFilterChain(emptyList())).block();
+
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        awaitGauge(MetricsName.TRAFFIC_REPLICATION_POOL_ACQUIRED, 0d);
+        awaitGauge(MetricsName.TRAFFIC_REPLICATION_INFLIGHT, 0d);
+        assertTrue(responses.isEmpty());
+    }
+
+    @Test
+    public void testAcquiredReleasedOnTimeout() throws Exception {
+        TrafficProperties trafficConfig = newTrafficConfig(targetUri + "/slow", newFixedPool(1));
+        trafficConfig.getDefaultReplication().setResponseTimeout(Duration.ofMillis(300));
+        GatewayFilter filter = newFilter(trafficConfig);
+        filter.filter(newExchange(), new MockGatewayFilterChain(emptyList())).block();
+
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        awaitGauge(MetricsName.TRAFFIC_REPLICATION_POOL_ACQUIRED, 0d);
+        awaitGauge(MetricsName.TRAFFIC_REPLICATION_INFLIGHT, 0d);
+        assertTrue(responses.isEmpty());
+    }
+
+    @Test
+    public void testUtilizationGaugeOnlyForFixedPool() throws Exception {
+        GatewayFilter filter = newFilter(targetUri + "/hello", newFixedPool(4));
+        filter.filter(newExchange(), new MockGatewayFilterChain(emptyList())).block();
+        assertNotNull(responses.poll(10, TimeUnit.SECONDS));
+        assertNotNull(findGauge(MetricsName.TRAFFIC_REPLICATION_POOL_UTILIZATION));
+        assertEquals(0d, findGauge(MetricsName.TRAFFIC_REPLICATION_POOL_UTILIZATION).value());
+    }
+
+    @Test
+    public void testNoUtilizationGaugeForElasticPool() throws Exception {
+        Pool pool = new Pool();
+        pool.setType(PoolType.ELASTIC);
+        GatewayFilter filter = newFilter(targetUri + "/hello", pool);
+        filter.filter(newExchange(), new MockGatewayFilterChain(emptyList())).block();
+        assertNotNull(responses.poll(10, TimeUnit.SECONDS));
+        assertNotNull(findGauge(MetricsName.TRAFFIC_REPLICATION_POOL_ACQUIRED));
+        assertNull(findGauge(MetricsName.TRAFFIC_REPLICATION_POOL_UTILIZATION));
+    }
+
+    private void awaitGauge(MetricsName name, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (findGauge(name).value() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20L);
+        }
+        assertEquals(expected, findGauge(name).value(), name.getName());
+    }
+
+    private Gauge findGauge(MetricsName name) {
+        return meterRegistry.find(name.getName())
+                .tags(MetricsTag.ROUTE_ID, ROUTE_ID, MetricsTag.TRAFFIC_TARGET, mirrorTargetUri)
+                .gauge();
+    }
+
+    private Pool newFixedPool(int maxConnections) {
+        Pool pool = new Pool();
+        pool.setType(PoolType.FIXED);
+        pool.setMaxConnections(maxConnections);
+        // Fail fast if the pooled connection is never released.
+        pool.setAcquireTimeout(2_000L);
+        return pool;
+    }
+
+    private TrafficProperties newTrafficConfig(String targetUri, Pool pool) {
+        this.mirrorTargetUri = targetUri;
+        TrafficProperties trafficConfig = new TrafficProperties();
+        ReplicationProperties defaultReplication = trafficConfig.getDefaultReplication();
+        defaultReplication.setTargetUris(singletonList(targetUri));
+        defaultReplication.setPercentage(1d);
+        defaultReplication.setPool(pool);
+        return trafficConfig;
+    }
+
+    private GatewayFilter newFilter(String targetUri, Pool pool) {
+        return newFilter(newTrafficConfig(targetUri, pool));
+    }
+
+    private GatewayFilter newFilter(TrafficProperties trafficConfig) {
+        MirrorResponseHandler recordingHandler = (exchange, response) -> responses.add(response);
+        TrafficReplicationFilterFactory factory = new TrafficReplicationFilterFactory(trafficConfig, new MockHeadersFilters(),
+                emptyList(), mockMetricsFacade, singletonList(recordingHandler),
+                new ShadowResponseDiffer(trafficConfig, mockMetricsFacade),
+                new ClientAddressResolver(new ClientAddressProperties()));
+        ReplicationProperties defaultReplication = trafficConfig.getDefaultReplication();
+        TrafficReplicationFilterFactory.Config config = new TrafficReplicationFilterFactory.Config();
+        config.setTargetUris(defaultReplication.getTargetUris());
+        config.setPool(defaultReplication.getPool());
+        config.setResponseTimeout(defaultReplication.getResponseTimeout());
+        return factory.apply(config);
+    }
+
+    private ServerWebExchange newExchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello")
+                .remoteAddress(new InetSocketAddress("1.2.3.4", 0))
+                .build());
+        Route route = Route.async()
+                .asyncPredicate(AsyncPredicate.from(e -> true))
+                .id(ROUTE_ID)
+                .uri("http://httpbin.org/")
+                .build();
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+
+    static class MockHeadersFilters implements ObjectProvider<List<HttpHeadersFilter>> {
+        @Override
+        public List<HttpHeadersFilter> getObject() {
+            return emptyList();
+        }
+
+        @Override
+        public List<HttpHeadersFilter> getObject(Object... args) {
+            return emptyList();
+        }
+
+        @Override
+        public List<HttpHeadersFilter> getIfAvailable() {
+            return emptyList();
+        }
+
+        @Override
+        public List<HttpHeadersFilter> getIfUnique() {
+            return emptyList();
+        }
+    }
+
+}
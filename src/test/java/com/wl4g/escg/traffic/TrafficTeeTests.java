@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * {@link TrafficTeeTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-15 v1.0.0
+ * @since v1.0.0
+ */
+public class TrafficTeeTests {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Test
+    public void testTeeToAllBranches() {
+        TrafficTee tee = new TrafficTee(2, 1024, index -> {
+        });
+        Mono<String> mirror1 = join(tee.branch(0).asFlux()).cache();
+        Mono<String> mirror2 = join(tee.branch(1).asFlux()).cache();
+        mirror1.subscribe();
+        mirror2.subscribe();
+
+        assertEquals("hello world", join(tee.tee(body("hello", " ", "world"))).block());
+        assertEquals("hello world", mirror1.block());
+        assertEquals("hello world", mirror2.block());
+    }
+
+    @Test
+    public void testDropSlowBranchWithoutBlockingPrimary() {
+        List<Integer> dropped = new CopyOnWriteArrayList<>();
+        TrafficTee tee = new TrafficTee(2, 4, dropped::add);
+        Mono<String> fastMirror = join(tee.branch(1).asFlux()).cache();
+        fastMirror.subscribe();
+
+        // The mirror of branch 0 is not subscribed (e.g: the slow target).
+        assertEquals("abcdef", join(tee.tee(body("ab", "cd", "ef"))).block());
+        assertEquals(singletonList(0), dropped);
+        assertEquals("abcdef", fastMirror.block());
+
+        StepVerifier.create(tee.branch(0).asFlux().map(this::toString))
+                .expectNext("ab", "cd")
+                .expectError(TrafficTee.MirrorAbortedException.class)
+                .verify();
+    }
+
+    @Test
+    public void testAbortIncompleteBranches() {
+        TrafficTee tee = new TrafficTee(1, 1024, index -> {
+        });
+        Flux<DataBuffer> primary = tee.tee(body("abc").concatWith(Mono.error(new IllegalStateException("Broken"))));
+        StepVerifier.create(primary).expectNextCount(1).expectError(IllegalStateException.class).verify();
+
+        StepVerifier.create(tee.branch(0).asFlux().map(this::toString))
+                .expectNext("abc")
+                .expectError(TrafficTee.MirrorAbortedException.class)
+                .verify();
+    }
+
+    @Test
+    public void testOnlyTeeFirstSubscription() {
+        TrafficTee tee = new TrafficTee(1, 1024, index -> {
+        });
+        Flux<DataBuffer> primary = tee.tee(body("abc"));
+        assertEquals("abc", join(primary).block());
+        // e.g: The retries of the primary request.
+        assertEquals("abc", join(primary).block());
+        assertEquals("abc", join(tee.branch(0).asFlux()).block());
+    }
+
+    @Test
+    public void testBranchSubscribedOnlyOnce() {
+        TrafficTee tee = new TrafficTee(1, 1024, index -> {
+        });
+        Mono<String> mirror = join(tee.branch(0).asFlux()).cache();
+        mirror.subscribe();
+        // e.g: The resent mirror request, which is why the retries of the
+        // mirror client are disabled.
+        StepVerifier.create(tee.branch(0).asFlux()).expectError(IllegalStateException.class).verify();
+
+        assertEquals("abc", join(tee.tee(body("abc"))).block());
+        assertEquals("abc", mirror.block());
+    }
+
+    private Flux<DataBuffer> body(String... chunks) {
+        return Flux.fromArray(chunks).map(chunk -> bufferFactory.wrap(chunk.getBytes(UTF_8)));
+    }
+
+    private Mono<String> join(Flux<DataBuffer> body) {
+        return body.map(this::toString).collectList().map(chunks -> String.join("", chunks));
+    }
+
+    private String toString(DataBuffer buffer) {
+        return buffer.toString(buffer.readPosition(), buffer.readableByteCount(), UTF_8);
+    }
+
+}
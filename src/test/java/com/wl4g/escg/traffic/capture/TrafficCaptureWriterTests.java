@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureCompression;
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureStoreProperties;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * {@link TrafficCaptureWriterTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+public class TrafficCaptureWriterTests {
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+    }
+
+    @Test
+    public void testEncodeAndDecodeFrame() throws Exception {
+        for (CaptureCompression compression : CaptureCompression.values()) {
+            CaptureRecord record = newRecord(1024);
+            ByteBuffer buffer = ByteBuffer.wrap(CaptureCodec.encodeFrame(record, compression));
+            assertRecordEquals(record, CaptureCodec.decodeFrame(buffer));
+            assertNull(CaptureCodec.decodeFrame(buffer));
+        }
+    }
+
+    @Test
+    public void testEncodeAndDecodeLongStrings() throws Exception {
+        // Beyond the 64KB limit of the modified UTF-8, e.g. the long cookie.
+        char[] chars = new char[70_000];
+        Arrays.fill(chars, 'c');
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Cookie", new String(chars));
+        headers.add("X-Emoji", "\uD83D\uDE00");
+        String uri = "/foo?q=".concat(new String(chars));
+        CaptureRecord record = new CaptureRecord(System.currentTimeMillis(), 1_000_000L, "GET", uri, 200, headers, new byte[0],
+                false);
+        ByteBuffer buffer = ByteBuffer.wrap(CaptureCodec.encodeFrame(record, CaptureCompression.DEFLATE));
+        assertRecordEquals(record, CaptureCodec.decodeFrame(buffer));
+    }
+
+    @Test
+    public void testDecodeTornFrame() throws Exception {
+        byte[] frame = CaptureCodec.encodeFrame(newRecord(16), CaptureCompression.NONE);
+        // e.g: The gateway crashed while writing the frame.
+        assertNull(CaptureCodec.decodeFrame(ByteBuffer.wrap(Arrays.copyOf(frame, frame.length - 1))));
+    }
+
+    @Test
+    public void testWriteAndReadSegments(@TempDir Path directory) throws Exception {
+        CaptureStoreProperties storeConfig = new CaptureStoreProperties();
+        storeConfig.setDirectory(directory.toString());
+        storeConfig.setSegmentSize(DataSize.ofKilobytes(4));
+        storeConfig.setMaxSegments(2);
+        storeConfig.setCompression(CaptureCompression.NONE);
+        TrafficCaptureWriter writer = new TrafficCaptureWriter(storeConfig, mockMetricsFacade);
+
+        List<CaptureRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            CaptureRecord record = newRecord(1000);
+            records.add(record);
+            writer.write(record);
+        }
+        writer.closeSegment();
+
+        // The oldest segments are deleted beyond the max.
+        List<Path> segments = TrafficCaptureWriter.listSegments(directory);
+        assertEquals(2, segments.size());
+
+        List<CaptureRecord> recent = new ArrayList<>();
+        for (Path segment : segments) {
+            try (CaptureSegmentReader reader = new CaptureSegmentReader(segment)) {
+                reader.forEachRemaining(recent::add);
+            }
+        }
+        assertFalse(recent.isEmpty());
+        List<CaptureRecord> expected = records.subList(records.size() - recent.size(), records.size());
+        for (int i = 0; i < recent.size(); i++) {
+            assertRecordEquals(expected.get(i), recent.get(i));
+        }
+    }
+
+    private CaptureRecord newRecord(int bodySize) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "application/json");
+        headers.add("X-Multi", "a");
+        headers.add("X-Multi", "b");
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        return new CaptureRecord(System.currentTimeMillis(), 1_000_000L, "POST", "/foo/bar?a=1&b=" + System.nanoTime(),
+                200, headers, body, false);
+    }
+
+    private void assertRecordEquals(CaptureRecord expected, CaptureRecord actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getLatencyNanos(), actual.getLatencyNanos());
+        assertEquals(expected.getMethod(), actual.getMethod());
+        assertEquals(expected.getUri(), actual.getUri());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getHeaders(), actual.getHeaders());
+        assertArrayEquals(expected.getBody(), actual.getBody());
+        assertEquals(expected.isBodyTruncated(), actual.isBodyTruncated());
+    }
+
+}
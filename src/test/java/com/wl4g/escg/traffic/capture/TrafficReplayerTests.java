@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.capture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.traffic.capture.TrafficReplayer.ReplayResult;
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureCompression;
+import com.wl4g.escg.traffic.config.TrafficProperties.CaptureStoreProperties;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * {@link TrafficReplayerTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-19 v1.0.0
+ * @since v1.0.0
+ */
+public class TrafficReplayerTests {
+
+    private IamGatewayMetricsFacade mockMetricsFacade;
+    private HttpServer mockTargetServer;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+        this.mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+
+        // The local stand-in of the replay target, which records the received
+        // requests, and fails the requests of '/fail'.
+        this.mockTargetServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mockTargetServer.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                received.add(exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+                        + new String(ByteStreams.toByteArray(in), UTF_8));
+            }
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/fail") ? 500 : 200, -1);
+            exchange.close();
+        });
+        mockTargetServer.start();
+    }
+
+    @AfterEach
+    public void destroy() {
+        mockTargetServer.stop(0);
+    }
+
+    @Test
+    public void testReplayWrittenSegments(@TempDir Path directory) throws Exception {
+        CaptureStoreProperties storeConfig = new CaptureStoreProperties();
+        storeConfig.setDirectory(directory.toString());
+        storeConfig.setSegmentSize(DataSize.ofKilobytes(4));
+        storeConfig.setCompression(CaptureCompression.NONE);
+        TrafficCaptureWriter writer = new TrafficCaptureWriter(storeConfig, mockMetricsFacade);
+
+        long now = System.currentTimeMillis();
+        writer.write(newRecord(now, "POST", "/echo?i=1", 200, "hello", false));
+        writer.write(newRecord(now + 1, "GET", "/fail?i=2", 200, "", false));
+        writer.write(newRecord(now + 2, "POST", "/echo?i=3", 200, "partial", true));
+        writer.write(newRecord(now + 3, "POST", "/echo?i=4", 200, "world", false));
+        writer.closeSegment();
+
+        List<Path> segments = TrafficCaptureWriter.listSegments(directory);
+        ReplayResult result = new TrafficReplayer(HttpClient.create(ConnectionProvider.newConnection()),
+                "http://127.0.0.1:" + mockTargetServer.getAddress().getPort(), 100d, 1).replay(segments)
+                        .block(Duration.ofSeconds(30));
+
+        assertEquals(3, result.getSent());
+        assertEquals(0, result.getErrors());
+        assertEquals(1, result.getStatusMismatches());
+        // The truncated record is skipped rather than replayed as complete.
+        assertEquals(1, result.getTruncated());
+        assertEquals(3, received.size());
+        assertEquals("POST /echo?i=1 hello", received.get(0));
+        assertEquals("GET /fail?i=2 ", received.get(1));
+        assertEquals("POST /echo?i=4 world", received.get(2));
+    }
+
+    private CaptureRecord newRecord(long timestamp, String method, String uri, int status, String body, boolean truncated) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "text/plain");
+        return new CaptureRecord(timestamp, 1_000_000L, method, uri, status, headers, body.getBytes(UTF_8), truncated);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.traffic.diff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.commons.util.InetUtils;
+import org.springframework.cloud.commons.util.InetUtilsProperties;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.wl4g.escg.metrics.IamGatewayMetricsFacade;
+import com.wl4g.escg.traffic.MirrorResponse;
+import com.wl4g.escg.traffic.config.TrafficProperties;
+import com.wl4g.escg.traffic.config.TrafficProperties.DiffBodyMode;
+import com.wl4g.escg.traffic.config.TrafficProperties.ResponseDiffProperties;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ShadowResponseDifferTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-18 v1.0.0
+ * @since v1.0.0
+ */
+public class ShadowResponseDifferTests {
+
+    private ShadowResponseDiffer differ;
+
+    @BeforeEach
+    public void init() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("spring.application.name", "test-iam-gateway");
+        env.setProperty("server.port", "12345");
+
+        IamGatewayMetricsFacade mockMetricsFacade = new IamGatewayMetricsFacade(new PrometheusMeterRegistry(new PrometheusConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+        }), new InetUtils(new InetUtilsProperties()), env);
+        mockMetricsFacade.afterPropertiesSet();
+        this.differ = new ShadowResponseDiffer(new TrafficProperties(), mockMetricsFacade);
+    }
+
+    @Test
+    public void testJsonStructureFingerprint() {
+        String fingerprint1 = fingerprint("{\"a\":1,\"b\":[\"x\",\"y\"],\"c\":{\"d\":true}}");
+        String fingerprint2 = fingerprint("{\"c\":{\"d\":false},\"b\":[\"z\"],\"a\":2}");
+        assertEquals(fingerprint1, fingerprint2);
+        assertNotEquals(fingerprint1, fingerprint("{\"a\":\"1\",\"b\":[\"x\"],\"c\":{\"d\":true}}"));
+        // Not a JSON, falls back to digest.
+        assertTrue(fingerprint("hello").startsWith("sha256:"));
+    }
+
+    @Test
+    public void testCompareMismatched() {
+        ResponseDiffProperties config = new ResponseDiffProperties();
+        config.setBodyMode(DiffBodyMode.DIGEST);
+        ServerWebExchange exchange = differ.capture(MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/hello?access_token=secret")),
+                "test-route", config, 1024);
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        exchange.getResponse()
+                .writeWith(Mono.just(new DefaultDataBufferFactory().wrap("{\"a\":1}".getBytes(UTF_8))))
+                .block();
+
+        HttpHeaders mirrorHeaders = new HttpHeaders();
+        mirrorHeaders.setContentType(MediaType.APPLICATION_JSON);
+        ShadowResponseDiffer.DiffContext context = exchange.getAttribute(ShadowResponseDiffer.DIFF_CONTEXT_ATTR);
+        differ.compare(context, new MirrorResponse("http://shadow/", 200, mirrorHeaders, "{\"a\":1}".getBytes(UTF_8), false, 0));
+        assertEquals(0, differ.getStore().getTotal());
+
+        differ.compare(context, new MirrorResponse("http://shadow/", 500, new HttpHeaders(), "{\"a\":2}".getBytes(UTF_8), false, 0));
+        List<ShadowDiffRecord> recent = differ.getStore().getRecent();
+        assertEquals(1, recent.size());
+        assertEquals(3, recent.get(0).getDifferences().size());
+        assertEquals(200, recent.get(0).getPrimaryStatus());
+        assertEquals(500, recent.get(0).getMirrorStatus());
+        // The query is never retained.
+        assertEquals("/hello", recent.get(0).getRequestPath());
+    }
+
+    @Test
+    public void testStoreRingBuffer() {
+        ShadowDiffStore store = new ShadowDiffStore(2);
+        for (int i = 0; i < 3; i++) {
+            store.add(new ShadowDiffRecord(i, "test-route", "GET", "/hello", "http://shadow/", 200, 500, null));
+        }
+        List<ShadowDiffRecord> recent = store.getRecent();
+        assertEquals(2, recent.size());
+        assertEquals(2, recent.get(0).getTimestamp());
+        assertEquals(1, recent.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testEndpointFilterByRoute() {
+        differ.getStore().add(new ShadowDiffRecord(1, "test-route1", "GET", "/hello", "http://shadow/", 200, 500, null));
+        differ.getStore().add(new ShadowDiffRecord(2, "test-route2", "GET", "/hello", "http://shadow/", 200, 500, null));
+
+        ShadowDiffEndpoint endpoint = new ShadowDiffEndpoint(differ);
+        assertEquals(2, endpoint.shadowDiffs(null).getTotal());
+        assertEquals(2, endpoint.shadowDiffs(null).getRecent().size());
+        List<ShadowDiffRecord> recent = endpoint.shadowDiffs("test-route1").getRecent();
+        assertEquals(1, recent.size());
+        assertEquals("test-route1", recent.get(0).getRouteId());
+    }
+
+    private String fingerprint(String body) {
+        return ShadowResponseDiffer.fingerprint(DiffBodyMode.JSON_STRUCTURE, body.getBytes(UTF_8), false);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import com.wl4g.escg.util.CycleClock.Cycle;
+
+/**
+ * {@link CycleClockTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-02 v1.0.0
+ * @since v1.0.0
+ */
+public class CycleClockTests {
+
+    @Test
+    public void testDailyCycle() {
+        CycleClock clock = new CycleClock("yyMMdd", ZoneId.of("UTC"));
+        long now = LocalDateTime.of(2022, 11, 2, 13, 14, 15).toInstant(ZoneOffset.UTC).toEpochMilli();
+        Cycle cycle = clock.current(now);
+        System.out.println(cycle);
+        assertEquals("221102", cycle.getCycleKey());
+        assertEquals(LocalDateTime.of(2022, 11, 3, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli(), cycle.getEndMillis());
+        assertSame(cycle, clock.current(now + 1000));
+        assertEquals("221103", clock.current(cycle.getEndMillis()).getCycleKey());
+    }
+
+    @Test
+    public void testHourlyAndMonthlyCycle() {
+        long now = LocalDateTime.of(2022, 12, 31, 23, 59, 59).toInstant(ZoneOffset.UTC).toEpochMilli();
+        Cycle hourly = new CycleClock("yyyyMMddHH", ZoneId.of("UTC")).current(now);
+        assertEquals("2022123123", hourly.getCycleKey());
+        assertEquals(now + 1000, hourly.getEndMillis());
+
+        Cycle monthly = new CycleClock("yyyyMM", ZoneId.of("UTC")).current(now);
+        assertEquals("202212", monthly.getCycleKey());
+        assertEquals(now + 1000, monthly.getEndMillis());
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.bloom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.hash.Funnel;
+
+/**
+ * {@link LocalRotatingBloomFilterTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-08 v1.0.0
+ * @since v1.0.0
+ */
+public class LocalRotatingBloomFilterTests {
+
+    private static final Funnel<String> FUNNEL = (from, into) -> into.putString(from, UTF_8);
+
+    @Test
+    public void testCheckAndAddWithinWindow() {
+        LocalRotatingBloomFilter<String> filter = new LocalRotatingBloomFilter<>(FUNNEL, 3000L, 4, 1000, 0.01d);
+        long now = 1_000_000L;
+        assertFalse(filter.checkAndAdd("sign1", now));
+        assertTrue(filter.checkAndAdd("sign1", now + 1));
+        // Still in the window after rotated generations.
+        assertTrue(filter.checkAndAdd("sign1", now + 2500L));
+        assertFalse(filter.checkAndAdd("sign2", now + 2500L));
+    }
+
+    @Test
+    public void testExpiredOutOfWindow() {
+        LocalRotatingBloomFilter<String> filter = new LocalRotatingBloomFilter<>(FUNNEL, 3000L, 4, 1000, 0.01d);
+        long now = 1_000_000L;
+        assertFalse(filter.checkAndAdd("sign1", now));
+        assertFalse(filter.checkAndAdd("sign1", now + 10_000L));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        LocalRotatingBloomFilter<String> filter = new LocalRotatingBloomFilter<>(FUNNEL, 3000L, 4, 10_000, 0.01d);
+        long now = 1_000_000L;
+        for (int i = 0; i < 5_000; i++) {
+            filter.checkAndAdd("sign-" + i, now);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 5_000; i++) {
+            if (filter.checkAndAdd("other-" + i, now)) {
+                ++falsePositives;
+            }
+        }
+        System.out.println("falsePositives: " + falsePositives);
+        assertTrue(falsePositives < 50);
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.bloom;
+
+import static com.wl4g.escg.security.config.IamSecurityAutoConfiguration.SIMPLE_SIGN_BLOOM_SCRIPT_LOCATION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import com.google.common.hash.Funnel;
+import com.wl4g.escg.util.bloom.RedisBloomFilter.BloomConfig;
+
+/**
+ * {@link RedisBloomFilterTests}, runs the check-and-set script against the
+ * local redis (localhost:6379), and is skipped if it's not available.
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-07 v1.0.0
+ * @since v1.0.0
+ */
+public class RedisBloomFilterTests {
+
+    private static final Funnel<String> FUNNEL = (from, into) -> into.putString(from, UTF_8);
+    private static final RedisScript<Long> PTTL_SCRIPT = RedisScript.of("return redis.call('pttl', KEYS[1])", Long.class);
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate redisTemplate;
+    private RedisBloomFilter<String> bloomFilter;
+    private String bloomKey;
+
+    @BeforeEach
+    public void init() {
+        this.connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+        this.redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+        boolean available;
+        try {
+            available = "PONG".equals(connectionFactory.getReactiveConnection().ping().block(Duration.ofSeconds(2)));
+        } catch (Exception e) {
+            available = false;
+        }
+        assumeTrue(available, "The local redis is not available");
+
+        DefaultRedisScript<Long> checkAndSetScript = new DefaultRedisScript<>();
+        checkAndSetScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(SIMPLE_SIGN_BLOOM_SCRIPT_LOCATION)));
+        checkAndSetScript.setResultType(Long.class);
+        this.bloomFilter = new RedisBloomFilter<>(redisTemplate, checkAndSetScript, new BloomConfig<>(FUNNEL, 1000, 0.01d));
+        this.bloomKey = "escg:test:bloom:".concat(UUID.randomUUID().toString());
+    }
+
+    @AfterEach
+    public void destroy() {
+        if (bloomKey != null) {
+            redisTemplate.delete(bloomKey).block();
+        }
+        connectionFactory.destroy();
+    }
+
+    @Test
+    public void testCheckAndAdd() {
+        long expireAt = System.currentTimeMillis() + 60_000L;
+        assertFalse(bloomFilter.bloomCheckAndAdd(bloomKey, "sign1", expireAt).block());
+        assertTrue(bloomFilter.bloomCheckAndAdd(bloomKey, "sign1", expireAt).block());
+        assertFalse(bloomFilter.bloomCheckAndAdd(bloomKey, "sign2", expireAt).block());
+    }
+
+    @Test
+    public void testCheckOnlyOtherKeys() {
+        String otherKey = bloomKey.concat(":other");
+        try {
+            long expireAt = System.currentTimeMillis() + 60_000L;
+            assertFalse(bloomFilter.bloomCheckAndAdd(otherKey, "sign1", expireAt).block());
+            // Found in the checked key, and added to the first key.
+            assertTrue(bloomFilter.bloomCheckAndAdd(asList(bloomKey, otherKey), "sign1", expireAt).block());
+            assertTrue(bloomFilter.bloomCheckAndAdd(bloomKey, "sign1", expireAt).block());
+        } finally {
+            redisTemplate.delete(otherKey).block();
+        }
+    }
+
+    @Test
+    public void testExpireOnlyWhenCreated() {
+        long expireAt = System.currentTimeMillis() + 60_000L;
+        bloomFilter.bloomCheckAndAdd(bloomKey, "sign1", expireAt).block();
+        long pttl = pttl();
+        assertTrue(pttl > 50_000L && pttl <= 60_000L, "pttl: " + pttl);
+
+        // The existing expiration is kept, e.g. not extended by the later
+        // additions to the same bucket.
+        redisTemplate.expire(bloomKey, Duration.ofSeconds(5)).block();
+        bloomFilter.bloomCheckAndAdd(bloomKey, "sign2", expireAt).block();
+        assertTrue(pttl() <= 5_000L);
+
+        // Sets the expiration again if the key has no expiration (pttl = -1).
+        redisTemplate.persist(bloomKey).block();
+        assertEquals(-1L, pttl());
+        bloomFilter.bloomCheckAndAdd(bloomKey, "sign3", expireAt).block();
+        assertTrue(pttl() > 5_000L);
+
+        // Never expire.
+        redisTemplate.persist(bloomKey).block();
+        bloomFilter.bloomCheckAndAdd(bloomKey, "sign4", 0L).block();
+        assertEquals(-1L, pttl());
+    }
+
+    private long pttl() {
+        return redisTemplate.execute(PTTL_SCRIPT, singletonList(bloomKey)).next().block();
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.bloom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.google.common.hash.Funnel;
+
+/**
+ * {@link RotatingRedisBloomFilterTests}
+ *
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-07 v1.0.0
+ * @since v1.0.0
+ */
+public class RotatingRedisBloomFilterTests {
+
+    private static final Funnel<String> FUNNEL = (from, into) -> into.putString(from, UTF_8);
+
+    @Test
+    public void testBucketCount() {
+        // The window may span one more partial bucket.
+        assertEquals(5, newFilter(3000L, 750L).getBucketCount());
+        assertEquals(4, newFilter(3000L, 1000L).getBucketCount());
+        assertEquals(4, newFilter(2500L, 1000L).getBucketCount());
+        assertEquals(2, newFilter(1000L, 6000L).getBucketCount());
+    }
+
+    @Test
+    public void testBucketFpp() {
+        RotatingRedisBloomFilter<String> filter = newFilter(3000L, 1000L);
+        assertEquals(0.01d / 4, filter.getBucketFpp(), 1e-12);
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        RotatingRedisBloomFilter<String> filter = newFilter(3000L, 1000L);
+        assertEquals(0L, filter.getBucket(0L));
+        assertEquals(0L, filter.getBucket(999L));
+        assertEquals(1L, filter.getBucket(1000L));
+        assertEquals(1_000_000L, filter.getBucket(1_000_000_999L));
+    }
+
+    @Test
+    public void testExpireAtEndOfWindowAfterBucket() {
+        RotatingRedisBloomFilter<String> filter = newFilter(3000L, 1000L);
+        long bucket = filter.getBucket(1_000_000_500L);
+        assertEquals((bucket + 1) * 1000L + 3000L, filter.getExpireAtMillis(bucket));
+        // The value added at the end of the bucket can still be checked for
+        // the whole window.
+        assertEquals(1_000_000_999L + 1 + 3000L, filter.getExpireAtMillis(filter.getBucket(1_000_000_999L)));
+    }
+
+    @Test
+    public void testBucketKeysWithHashTag() {
+        RotatingRedisBloomFilter<String> filter = newFilter(3000L, 1000L);
+        List<String> keys = filter.getBucketKeys("escg:bloom:route1", filter.getBucket(1_000_000_500L));
+        assertEquals(asList("{escg:bloom:route1}:1000000", "{escg:bloom:route1}:999999", "{escg:bloom:route1}:999998",
+                "{escg:bloom:route1}:999997"), keys);
+    }
+
+    private RotatingRedisBloomFilter<String> newFilter(long windowMillis, long bucketMillis) {
+        return new RotatingRedisBloomFilter<>(new ReactiveStringRedisTemplate(new LettuceConnectionFactory()),
+                RedisScript.of("return 0", Long.class), FUNNEL, windowMillis, bucketMillis, 1000, 0.01d);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 ~ 2025 the original authors James Wong.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wl4g.escg.util.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link CidrTrieTests}
+ * 
+ * @author James Wong &lt;wanglsir@gmail.com, 983708408@qq.com&gt;
+ * @date 2022-11-04 v1.0.0
+ * @since v1.0.0
+ */
+public class CidrTrieTests {
+
+    @Test
+    public void testLongestPrefixMatch() throws Exception {
+        CidrTrie<String> trie = new CidrTrie<String>().put("10.0.0.0/8", "ten")
+                .put("10.1.0.0/16", "ten-one")
+                .put("192.168.1.100", "host")
+                .put("2001:db8::/32", "doc")
+                .put("2001:db8:1::/48", "doc-one");
+
+        assertEquals(5, trie.size());
+        assertEquals("ten", trie.get(InetAddress.getByName("10.2.3.4")));
+        assertEquals("ten-one", trie.get(InetAddress.getByName("10.1.3.4")));
+        assertEquals("host", trie.get(InetAddress.getByName("192.168.1.100")));
+        assertNull(trie.get(InetAddress.getByName("192.168.1.101")));
+        assertEquals("doc", trie.get(InetAddress.getByName("2001:db8:2::1")));
+        assertEquals("doc-one", trie.get(InetAddress.getByName("2001:db8:1::1")));
+        assertNull(trie.get(InetAddress.getByName("2001:db9::1")));
+    }
+
+    @Test
+    public void testInvalidCidr() {
+        assertThrows(IllegalArgumentException.class, () -> new CidrTrie<String>().put("10.0.0.0/33", "x"));
+        assertThrows(IllegalArgumentException.class, () -> new CidrTrie<String>().put("localhost/8", "x"));
+    }
+
+    @Test
+    public void testParseIPv4() {
+        assertEquals(0x0A010203L, CidrTrie.parseIPv4("10.1.2.3"));
+        assertEquals(0xFFFFFFFFL, CidrTrie.parseIPv4("255.255.255.255"));
+        assertEquals(0L, CidrTrie.parseIPv4("0.0.0.0"));
+        assertEquals(-1L, CidrTrie.parseIPv4("256.1.1.1"));
+        assertEquals(-1L, CidrTrie.parseIPv4("10.01.1.1"));
+        assertEquals(-1L, CidrTrie.parseIPv4("10.1.1"));
+        assertEquals(-1L, CidrTrie.parseIPv4("10.1.1.1."));
+        assertEquals(-1L, CidrTrie.parseIPv4("10.1.1.1.1"));
+        assertEquals(-1L, CidrTrie.parseIPv4("10..1.1"));
+        assertEquals(-1L, CidrTrie.parseIPv4("::1"));
+        assertEquals(-1L, CidrTrie.parseIPv4(""));
+    }
+
+}